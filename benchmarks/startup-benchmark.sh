@@ -0,0 +1,99 @@
+#!/usr/bin/env bash
+# Сравнение старта приложения: обычная JVM, JVM с AOT-обработкой и native-образ.
+# Для каждого режима RUNS раз: запуск, время до первого успешного ответа на URL_PATH и RSS процесса сразу после него.
+#
+# Сборка:
+#   ./mvnw -Paot package -DskipTests                 # jar для режимов jvm и aot
+#   ./mvnw -Pnative native:compile -DskipTests       # target/conflarchreport для режима native (GraalVM 22.3+)
+# Нужна БД из application.properties (или --spring.datasource.* в APP_ARGS).
+#
+# Использование: benchmarks/startup-benchmark.sh [jvm] [aot] [native]
+# Переменные: RUNS (5), PORT (18080), URL_PATH (/actuator/health), TIMEOUT_S (120),
+#             JAR, NATIVE_BIN, JAVA_OPTS, APP_ARGS (например "--spring.jpa.hibernate.ddl-auto=none")
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${RUNS:-5}
+PORT=${PORT:-18080}
+URL_PATH=${URL_PATH:-/actuator/health}
+TIMEOUT_S=${TIMEOUT_S:-120}
+JAR=${JAR:-target/ConflArchReport-0.0.1-SNAPSHOT.jar}
+NATIVE_BIN=${NATIVE_BIN:-target/conflarchreport}
+JAVA_OPTS=${JAVA_OPTS:-}
+APP_ARGS=${APP_ARGS:-}
+MODES=("$@")
+if [ ${#MODES[@]} -eq 0 ]; then
+    MODES=(jvm aot)
+    [ -x "$NATIVE_BIN" ] && MODES+=(native)
+fi
+
+now_ms() {
+    date +%s%3N
+}
+
+start_app() {
+    local mode=$1 log=$2
+    case "$mode" in
+        jvm)    exec java $JAVA_OPTS -jar "$JAR" --server.port="$PORT" $APP_ARGS >"$log" 2>&1 ;;
+        aot)    exec java $JAVA_OPTS -Dspring.aot.enabled=true -jar "$JAR" --server.port="$PORT" $APP_ARGS >"$log" 2>&1 ;;
+        native) exec "$NATIVE_BIN" --server.port="$PORT" $APP_ARGS >"$log" 2>&1 ;;
+        *)      echo "Неизвестный режим: $mode (jvm, aot, native)" >&2; exit 2 ;;
+    esac
+}
+
+# Один запуск: печатает "время_до_ответа_мс rss_мб"
+measure() {
+    local mode=$1 log
+    log=$(mktemp)
+    local started
+    started=$(now_ms)
+    start_app "$mode" "$log" &
+    local pid=$!
+    local deadline=$((started + TIMEOUT_S * 1000))
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT$URL_PATH" || true)" = "200" ]; do
+        if ! kill -0 "$pid" 2>/dev/null || [ "$(now_ms)" -gt "$deadline" ]; then
+            echo "Режим $mode: приложение не ответило за ${TIMEOUT_S} с, лог: $log" >&2
+            kill "$pid" 2>/dev/null || true
+            exit 1
+        fi
+        sleep 0.05
+    done
+    local ready
+    ready=$(now_ms)
+    local rss_kb
+    rss_kb=$(awk '/^VmRSS:/ {print $2}' "/proc/$pid/status")
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    rm -f "$log"
+    echo "$((ready - started)) $((rss_kb / 1024))"
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : int((v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+}
+
+printf '%-8s %-5s %12s %8s\n' "режим" "запуск" "до ответа,мс" "RSS,МБ"
+declare -A SUMMARY
+for mode in "${MODES[@]}"; do
+    times=()
+    rss=()
+    for run in $(seq 1 "$RUNS"); do
+        read -r ms mb < <(measure "$mode") || true
+        if [ -z "${ms:-}" ]; then
+            exit 1
+        fi
+        printf '%-8s %-5s %12s %8s\n' "$mode" "$run" "$ms" "$mb"
+        times+=("$ms")
+        rss+=("$mb")
+    done
+    SUMMARY[$mode]="$(printf '%s\n' "${times[@]}" | median) $(printf '%s\n' "${rss[@]}" | median)"
+done
+
+echo
+echo "Медианы:"
+printf '%-8s %12s %8s\n' "режим" "до ответа,мс" "RSS,МБ"
+for mode in "${MODES[@]}"; do
+    read -r ms mb <<<"${SUMMARY[$mode]}"
+    printf '%-8s %12s %8s\n' "$mode" "$ms" "$mb"
+done
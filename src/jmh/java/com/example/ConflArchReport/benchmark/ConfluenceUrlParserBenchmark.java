@@ -0,0 +1,31 @@
+package com.example.ConflArchReport.benchmark;
+
+import com.example.ConflArchReport.confluence.ConfluenceUrlParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор URL страниц Confluence в разных формах (pageId в query, в пути, Cloud /wiki, REST).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfluenceUrlParserBenchmark {
+
+    @Param({
+            "https://confluence.example.com/pages/viewpage.action?pageId=123456",
+            "https://confluence.example.com/confluence/spaces/PERF/pages/123456/Load+Test+Report",
+            "https://example.atlassian.net/wiki/spaces/PERF/pages/123456",
+            "https://confluence.example.com:8443/rest/api/content/123456"
+    })
+    public String url;
+
+    @Benchmark
+    public ConfluenceUrlParser.ParsedUrl parse() {
+        return ConfluenceUrlParser.parse(url);
+    }
+}
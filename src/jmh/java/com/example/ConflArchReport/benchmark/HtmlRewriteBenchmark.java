@@ -0,0 +1,63 @@
+package com.example.ConflArchReport.benchmark;
+
+import com.example.ConflArchReport.confluence.ConfluenceHtmlRewriter;
+import com.example.ConflArchReport.confluence.HtmlMinifier;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка HTML при экспорте: перезапись ссылок ({@link ConfluenceHtmlRewriter}) в паре с прежней regex-версией
+ * ({@link LegacyRegexRewriter}) на тех же страницах, поиск статики и облегчение разметки.
+ * Regex-версия заменяла только ссылки на вложения, токенизатор — ещё миниатюры, страницы и статику,
+ * так что пара показывает верхнюю оценку выигрыша.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HtmlRewriteBenchmark {
+
+    /** Размер страницы в символах: обычное заключение и страница с большими таблицами */
+    @Param({"50000", "2000000"})
+    public int pageChars;
+
+    private String html;
+    private ConfluenceHtmlRewriter rewriter;
+    private LegacyRegexRewriter legacyRewriter;
+    private final HtmlMinifier minifier = new HtmlMinifier();
+
+    @Setup
+    public void setUp() {
+        html = SyntheticPages.page(pageChars);
+        rewriter = new ConfluenceHtmlRewriter(
+                SyntheticPages.attachmentPaths(),
+                SyntheticPages.pageFilesById(),
+                SyntheticPages.pageFilesByTitle(),
+                SyntheticPages.assetUrls(),
+                SyntheticPages.CONFLUENCE_BASE);
+        legacyRewriter = new LegacyRegexRewriter(SyntheticPages.attachmentPaths());
+    }
+
+    @Benchmark
+    public String rewrite() {
+        return rewriter.rewrite(html);
+    }
+
+    @Benchmark
+    public String rewriteLegacyRegex() {
+        return legacyRewriter.rewrite(html);
+    }
+
+    @Benchmark
+    public Object findAssetPaths() {
+        return rewriter.findAssetPaths(html);
+    }
+
+    @Benchmark
+    public String minify() {
+        return minifier.minify(html);
+    }
+}
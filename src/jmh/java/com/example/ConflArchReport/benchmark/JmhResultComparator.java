@@ -0,0 +1,85 @@
+package com.example.ConflArchReport.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Сравнение отчёта JMH (-rf json) с эталонным: печатает изменение по каждому бенчмарку
+ * и завершается с кодом 1, если хотя бы один стал хуже больше чем на порог.
+ * <p>
+ * Аргументы: путь к эталону, путь к текущему отчёту, порог в процентах.
+ * Если эталона нет, сравнение пропускается — первый отчёт можно сохранить как эталон (benchmarks/jmh-baseline.json).
+ */
+public final class JmhResultComparator {
+
+    private JmhResultComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Использование: JmhResultComparator <baseline.json> <current.json> [порог, %]");
+            System.exit(2);
+        }
+        Path baselinePath = Path.of(args[0]);
+        Path currentPath = Path.of(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 15.0;
+
+        if (!Files.exists(currentPath)) {
+            System.err.println("Нет отчёта JMH: " + currentPath);
+            System.exit(2);
+        }
+        if (!Files.exists(baselinePath)) {
+            System.out.println("Эталон " + baselinePath + " не найден, сравнение пропущено. "
+                    + "Чтобы зафиксировать эталон, скопируйте " + currentPath + " в " + baselinePath);
+            return;
+        }
+
+        Map<String, Result> baseline = read(baselinePath);
+        Map<String, Result> current = read(currentPath);
+        int regressions = 0;
+        for (Map.Entry<String, Result> e : current.entrySet()) {
+            Result before = baseline.get(e.getKey());
+            Result after = e.getValue();
+            if (before == null || !before.unit().equals(after.unit())) {
+                System.out.printf("%-110s %14.3f %-8s (нет в эталоне)%n", e.getKey(), after.score(), after.unit());
+                continue;
+            }
+            // Для среднего времени меньше — лучше, для пропускной способности — больше
+            double change = (after.score() - before.score()) / before.score() * 100.0;
+            double slowdown = after.higherIsBetter() ? -change : change;
+            boolean regression = slowdown > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-110s %14.3f -> %14.3f %-8s %+7.1f%%%s%n",
+                    e.getKey(), before.score(), after.score(), after.unit(), change, regression ? "  РЕГРЕССИЯ" : "");
+        }
+        if (regressions > 0) {
+            System.err.printf("Регрессий больше %.1f%%: %d%n", threshold, regressions);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> read(Path path) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(path.toFile());
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode run : root) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            JsonNode params = run.path("params");
+            params.fieldNames().forEachRemaining(name -> key.append(' ').append(name).append('=').append(params.path(name).asText()));
+            JsonNode metric = run.path("primaryMetric");
+            String mode = run.path("mode").asText();
+            results.put(key.toString(), new Result(metric.path("score").asDouble(), metric.path("scoreUnit").asText(),
+                    "thrpt".equals(mode)));
+        }
+        return results;
+    }
+
+    private record Result(double score, String unit, boolean higherIsBetter) {}
+}
@@ -0,0 +1,28 @@
+package com.example.ConflArchReport.benchmark;
+
+import com.example.ConflArchReport.confluence.ConfluenceHtmlRewriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConfluenceHtmlRewriter#sanitizeFilename} на заголовках страниц и именах вложений (вызывается на каждую ссылку).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SanitizeFilenameBenchmark {
+
+    private final String[] titles = SyntheticPages.titles();
+
+    @Benchmark
+    public void sanitizeFilename(Blackhole bh) {
+        for (String title : titles) {
+            bh.consume(ConfluenceHtmlRewriter.sanitizeFilename(title));
+        }
+    }
+}
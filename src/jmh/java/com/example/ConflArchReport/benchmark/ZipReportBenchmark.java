@@ -0,0 +1,151 @@
+package com.example.ConflArchReport.benchmark;
+
+import com.example.ConflArchReport.service.ArchiveLayout;
+import com.example.ConflArchReport.service.ArchiveMetrics;
+import com.example.ConflArchReport.service.ArchiveTieringService;
+import com.example.ConflArchReport.service.ArchiveTracing;
+import com.example.ConflArchReport.service.ZipReportService;
+import com.example.ConflArchReport.storage.FileSystemArchiveStore;
+import com.example.ConflArchReport.zip.ArchiveEntryTypes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Чтение архивов: {@link ZipReportService#extractHtmlContent} и {@link ZipReportService#getFileContent}
+ * на синтетических архивах с разным числом и размером записей.
+ * Архив повторяет раскладку экспорта: index.html и страницы в начале, вложения (PNG в STORED) в attachments/.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZipReportBenchmark {
+
+    private static final String PROJECT = "bench";
+    private static final String ARCHIVE_ID = "archive";
+    private static final int PAGE_COUNT = 5;
+
+    @Param({"20", "1000"})
+    public int entryCount;
+
+    @Param({"4096", "65536"})
+    public int entryBytes;
+
+    /** 0 — каталог разбирается на каждый запрос, как до кэша каталогов */
+    @Param({"0", "512"})
+    public int directoryCacheSize;
+
+    private Path baseDir;
+    private ZipReportService zipReportService;
+    private String firstAttachment;
+    private String lastAttachment;
+    private String lastPage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("zip-report-bench");
+        ArchiveTieringService tieringService = new ArchiveTieringService(null, null, new ArchiveLayout());
+        ReflectionTestUtils.setField(tieringService, "reportsBasePath", baseDir.toString());
+        zipReportService = new ZipReportService(new ArchiveMetrics(new SimpleMeterRegistry()),
+                new FileSystemArchiveStore(tieringService), ArchiveTracing.noop());
+        ReflectionTestUtils.setField(zipReportService, "directoryCacheSize", directoryCacheSize);
+
+        Path zipPath = tieringService.hotPath(PROJECT, ARCHIVE_ID);
+        Files.createDirectories(zipPath.getParent());
+        Random random = new Random(42);
+        try (OutputStream os = Files.newOutputStream(zipPath);
+             ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                String name = i == 0 ? "index.html" : "page_" + i + ".html";
+                write(zos, name, SyntheticPages.page(entryBytes).getBytes(StandardCharsets.UTF_8));
+                lastPage = name;
+            }
+            int attachments = Math.max(1, entryCount - PAGE_COUNT);
+            for (int i = 0; i < attachments; i++) {
+                byte[] data = new byte[entryBytes];
+                random.nextBytes(data);
+                if (i % 3 == 0) {
+                    // CSV сжимается, PNG хранится как есть
+                    data = SyntheticPages.page(entryBytes).substring(0, entryBytes).getBytes(StandardCharsets.UTF_8);
+                }
+                String name = "attachments/" + (900000 + i) + "_graph_" + i + (i % 3 == 0 ? ".csv" : ".png");
+                write(zos, name, data);
+                if (i == 0) {
+                    firstAttachment = name;
+                }
+                lastAttachment = name;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(baseDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Optional<String> extractHtmlContent() throws IOException {
+        return zipReportService.extractHtmlContent(PROJECT, ARCHIVE_ID);
+    }
+
+    @Benchmark
+    public Optional<byte[]> getFileContentLastPage() throws IOException {
+        return zipReportService.getFileContent(PROJECT, ARCHIVE_ID, lastPage);
+    }
+
+    @Benchmark
+    public Optional<byte[]> getFileContentFirstAttachment() throws IOException {
+        return zipReportService.getFileContent(PROJECT, ARCHIVE_ID, firstAttachment);
+    }
+
+    /** Худший случай последовательного чтения: запись в самом конце архива */
+    @Benchmark
+    public Optional<byte[]> getFileContentLastAttachment() throws IOException {
+        return zipReportService.getFileContent(PROJECT, ARCHIVE_ID, lastAttachment);
+    }
+
+    @Benchmark
+    public long findStoredEntryLastAttachment() throws IOException {
+        Optional<ZipReportService.StoredEntry> entry = zipReportService.findStoredEntry(PROJECT, ARCHIVE_ID, lastAttachment);
+        if (entry.isEmpty()) {
+            return -1;
+        }
+        try (ZipReportService.StoredEntry stored = entry.get()) {
+            return stored.offset();
+        }
+    }
+
+    private static void write(ZipOutputStream zos, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (ArchiveEntryTypes.isPrecompressed(name)) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+}
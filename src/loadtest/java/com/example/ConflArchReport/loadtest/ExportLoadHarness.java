@@ -0,0 +1,290 @@
+package com.example.ConflArchReport.loadtest;
+
+import com.example.ConflArchReport.entity.ConfluenceAsset;
+import com.example.ConflArchReport.entity.Project;
+import com.example.ConflArchReport.repository.ConfluenceAssetRepository;
+import com.example.ConflArchReport.service.*;
+import com.example.ConflArchReport.storage.FileSystemArchiveStore;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipFile;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Нагрузочный прогон шага 1 (экспорт в zip) против {@link FakeConfluenceServer}.
+ * Сервисы собираются вручную, БД заменена заглушками; архивы пишутся во временный каталог.
+ * <p>
+ * Параметры (системные свойства): loadtest.archives — число экспортов, loadtest.concurrency — параллельность,
+ * loadtest.keep-files — не удалять архивы; параметры сервера — см. {@link FakeConfluenceServer.Settings}.
+ * В конце печатает страниц/с, МБ/с (скачано из Confluence и записано в zip), p50/p99 по фазам и шагам, пик кучи,
+ * и проверяет один из архивов: вложения сохранены с расширением и без сжатия, для картинок есть копии
+ * attachments/w640/ и srcset в index.html, batch-CSS с разным query сохранены разными ресурсами набора.
+ * Непройденная проверка завершает прогон с ошибкой.
+ */
+public final class ExportLoadHarness {
+
+    private static final double[] PERCENTILES = {0.5, 0.99};
+    private static final Pattern STYLESHEET_HREF = Pattern.compile("<link rel=\"stylesheet\" href=\"(/_assets/[0-9a-f]{32}\\.css)\"");
+
+    private ExportLoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int archives = Integer.getInteger("loadtest.archives", 20);
+        int concurrency = Integer.getInteger("loadtest.concurrency", 4);
+        boolean keepFiles = Boolean.getBoolean("loadtest.keep-files");
+        FakeConfluenceServer.Settings settings = FakeConfluenceServer.Settings.fromSystemProperties();
+
+        Path workDir = Files.createTempDirectory("export-loadtest");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder().percentiles(PERCENTILES).build().merge(config);
+            }
+        });
+
+        try (FakeConfluenceServer server = new FakeConfluenceServer(settings).start()) {
+            ConfluenceArchiveService service = buildService(registry, workDir, concurrency);
+            System.out.printf("Fake Confluence: %s, %s%n", server.baseUrl(), settings);
+            System.out.printf("Экспортов: %d, параллельность: %d, каталог: %s%n", archives, concurrency, workDir);
+
+            HeapSampler heap = new HeapSampler();
+            heap.start();
+            AtomicInteger failed = new AtomicInteger();
+            AtomicLong pages = new AtomicLong();
+            AtomicLong zipBytes = new AtomicLong();
+            Queue<Path> exported = new ConcurrentLinkedQueue<>();
+            ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+            long started = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < archives; i++) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        ConfluenceArchiveService.ExportResult result = service.exportToZip(server.rootPageUrl(), "loadtest");
+                        pages.addAndGet(1 + result.childInfos().size());
+                        zipBytes.addAndGet(Files.size(Path.of(result.zipPath())));
+                        exported.add(Path.of(result.zipPath()));
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        System.err.println("Экспорт не удался: " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            pool.shutdown();
+            heap.stop();
+
+            System.out.println();
+            System.out.printf("Время: %.2f с, успешно: %d, ошибок: %d%n", seconds, archives - failed.get(), failed.get());
+            System.out.printf("Страниц/с: %.1f%n", pages.get() / seconds);
+            System.out.printf("Скачано из Confluence: %.1f МБ (%.2f МБ/с), запросов: %d, 500: %d, 429: %d%n",
+                    server.bytesSent() / 1048576.0, server.bytesSent() / 1048576.0 / seconds,
+                    server.requests(), server.errors(), server.throttled());
+            System.out.printf("Записано в zip: %.1f МБ (%.2f МБ/с)%n", zipBytes.get() / 1048576.0, zipBytes.get() / 1048576.0 / seconds);
+            System.out.printf("Пик кучи: %.1f МБ%n", heap.peakBytes() / 1048576.0);
+            System.out.println();
+            printTimers(registry, "confluence.export.phase", "phase");
+            printTimers(registry, "confluence.archive.step", "step");
+            if (!exported.isEmpty()) {
+                verifyArchive(exported.peek(), settings, server.attachmentSize());
+            }
+        } finally {
+            if (!keepFiles) {
+                deleteRecursively(workDir);
+            }
+        }
+    }
+
+    private static ConfluenceArchiveService buildService(SimpleMeterRegistry registry, Path workDir, int concurrency) {
+        ArchiveMetrics metrics = new ArchiveMetrics(registry);
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnPerRoute(concurrency * 2)
+                        .setMaxConnTotal(concurrency * 2)
+                        .build())
+                .build()));
+
+        ArchivedReportService archivedReportService = mock(ArchivedReportService.class);
+        when(archivedReportService.getOrCreateProject(anyString())).thenAnswer(inv -> new Project(inv.getArgument(0)));
+
+        // Реестр ресурсов в памяти: статика скачивается один раз на прогон, как с настоящей БД
+        Map<String, ConfluenceAsset> assets = new ConcurrentHashMap<>();
+        ConfluenceAssetRepository assetRepository = mock(ConfluenceAssetRepository.class);
+        when(assetRepository.findByInstanceAndSourcePath(anyString(), anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(assets.get(inv.<String>getArgument(0) + inv.<String>getArgument(1))));
+        when(assetRepository.save(any(ConfluenceAsset.class))).thenAnswer(inv -> {
+            ConfluenceAsset asset = inv.getArgument(0);
+            assets.put(asset.getInstance() + asset.getSourcePath(), asset);
+            return asset;
+        });
+        ConfluenceAssetService assetService = new ConfluenceAssetService(restTemplate, assetRepository);
+        ReflectionTestUtils.setField(assetService, "assetsBasePath", workDir.resolve("assets").toString());
+
+        HtmlMinificationService minificationService = new HtmlMinificationService();
+        ReflectionTestUtils.setField(minificationService, "enabled", Boolean.getBoolean("loadtest.minify-html"));
+
+        ArchiveTieringService tieringService = new ArchiveTieringService(null, null, new ArchiveLayout());
+        ReflectionTestUtils.setField(tieringService, "reportsBasePath", workDir.resolve("reports").toString());
+        FileSystemArchiveStore archiveStore = new FileSystemArchiveStore(tieringService);
+        ReflectionTestUtils.setField(archiveStore, "reportsBasePath", workDir.resolve("reports").toString());
+
+        ImageDerivativeService imageDerivativeService = new ImageDerivativeService();
+        ReflectionTestUtils.setField(imageDerivativeService, "enabled",
+                Boolean.parseBoolean(System.getProperty("loadtest.image-derivatives", "true")));
+        ConfluenceArchiveService service = new ConfluenceArchiveService(restTemplate, archivedReportService,
+                assetService, minificationService, metrics, archiveStore, imageDerivativeService, ArchiveTracing.noop());
+        ReflectionTestUtils.setField(service, "appBaseUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(service, "confluenceContextPath", "");
+        return service;
+    }
+
+    /**
+     * Проверка экспортированного архива: вложения — *.png в STORED; если картинки не меньше порога копий
+     * и этап включён — копии attachments/w640/ и srcset в index.html.
+     */
+    private static void verifyArchive(Path zipPath, FakeConfluenceServer.Settings settings, int attachmentSize) throws IOException {
+        ImageDerivativeService defaults = new ImageDerivativeService();
+        long minBytes = (Long) ReflectionTestUtils.getField(defaults, "minBytes");
+        boolean expectVariants = settings.attachmentsPerPage() > 0 && attachmentSize >= minBytes
+                && Boolean.parseBoolean(System.getProperty("loadtest.image-derivatives", "true"));
+        int originals = 0;
+        int stored = 0;
+        int variants = 0;
+        String indexHtml = "";
+        List<String> problems = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(zipPath.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                String name = entry.getName();
+                if (name.startsWith("attachments/w640/")) {
+                    variants++;
+                } else if (name.startsWith("attachments/") && !name.startsWith("attachments/w")) {
+                    originals++;
+                    if (!name.endsWith(".png")) {
+                        problems.add("вложение без расширения .png: " + name);
+                    }
+                    if (entry.getMethod() == ZipEntry.STORED) {
+                        stored++;
+                    }
+                } else if (name.equals("index.html")) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        indexHtml = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                    }
+                }
+            }
+        }
+        if (stored != originals) {
+            problems.add("сжаты " + (originals - stored) + " из " + originals + " вложений PNG");
+        }
+        if (expectVariants && variants == 0) {
+            problems.add("нет копий attachments/w640/");
+        }
+        if (expectVariants && !indexHtml.contains("srcset=\"attachments/w640/")) {
+            problems.add("в index.html нет srcset с attachments/w640/");
+        }
+        // main.css?media=all и ?media=print — разные ресурсы набора, а не один файл
+        Set<String> bundled = new TreeSet<>();
+        Matcher stylesheet = STYLESHEET_HREF.matcher(indexHtml);
+        while (stylesheet.find()) {
+            bundled.add(stylesheet.group(1));
+        }
+        if (bundled.size() < 3) {
+            problems.add("в index.html " + bundled.size() + " разных CSS из набора вместо 3: " + bundled);
+        }
+        System.out.printf("Проверка архива %s: вложений %d (STORED %d), копий w640 %d, srcset в index.html: %s, CSS из набора: %d%n",
+                zipPath.getFileName(), originals, stored, variants, indexHtml.contains("srcset=") ? "да" : "нет", bundled.size());
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Проверка архива не пройдена: " + String.join("; ", problems));
+        }
+    }
+
+    private static void printTimers(SimpleMeterRegistry registry, String name, String tag) {
+        List<Timer> timers = new ArrayList<>(registry.find(name).timers());
+        timers.sort(Comparator.comparing(t -> t.getId().getTag(tag) + t.getId().getTag("outcome")));
+        System.out.printf("%-24s %-8s %8s %10s %10s %10s%n", name, "outcome", "count", "p50, мс", "p99, мс", "max, мс");
+        for (Timer timer : timers) {
+            double p50 = 0;
+            double p99 = 0;
+            for (ValueAtPercentile v : timer.takeSnapshot().percentileValues()) {
+                if (v.percentile() == 0.5) {
+                    p50 = v.value(TimeUnit.MILLISECONDS);
+                } else if (v.percentile() == 0.99) {
+                    p99 = v.value(TimeUnit.MILLISECONDS);
+                }
+            }
+            System.out.printf("  %-22s %-8s %8d %10.1f %10.1f %10.1f%n", timer.getId().getTag(tag),
+                    timer.getId().getTag("outcome"), timer.count(), p50, p99, timer.max(TimeUnit.MILLISECONDS));
+        }
+        System.out.println();
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /**
+     * Пик занятой кучи: опрос MemoryMXBean раз в 20 мс (пики между опросами могут быть пропущены).
+     */
+    private static final class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "heap-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        void start() {
+            scheduler.scheduleAtFixedRate(this::sample, 0, 20, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() {
+            scheduler.shutdownNow();
+            sample();
+        }
+
+        long peakBytes() {
+            return peak.get();
+        }
+
+        private void sample() {
+            peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+        }
+    }
+}
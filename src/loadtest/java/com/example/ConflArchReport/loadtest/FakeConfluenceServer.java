@@ -0,0 +1,385 @@
+package com.example.ConflArchReport.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальная замена Confluence для нагрузочных прогонов экспорта: REST /rest/api/content/{id} (страница, дочерние,
+ * вложения, версия), постраничные списки /rest/api/content/{id}/child/{page|attachment}, скачивание вложений /download/attachments/{pageId}/{файл} и статика /s/..., /images/icons/...
+ * <p>
+ * Дерево страниц синтетическое: корень {@link #ROOT_PAGE_ID} и {@link Settings#children()} дочерних страниц,
+ * у каждой {@link Settings#attachmentsPerPage()} вложений — настоящих PNG 1600 px шириной (шум, поэтому размер файла
+ * не меньше {@link Settings#attachmentBytes()}), чтобы экспорт делал из них уменьшенные копии, как из скриншотов Grafana.
+ * Задержка, доля ошибок 500 и ответов 429 настраиваются.
+ * DELETE и PUT принимаются без изменения состояния, чтобы можно было прогонять и остальные шаги архивации.
+ */
+public class FakeConfluenceServer implements AutoCloseable {
+
+    public static final String ROOT_PAGE_ID = "1000";
+    /** Ограничение раскрытых children.page / children.attachment в ответе страницы */
+    private static final int EXPANDED_CHILDREN_LIMIT = 25;
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String pageHtml;
+    private final byte[] attachmentData;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * @param latencyMillis      базовая задержка ответа
+     * @param jitterMillis       случайная добавка к задержке (0..jitter)
+     * @param errorRate          доля ответов 500 (0..1)
+     * @param throttleRate       доля ответов 429 с Retry-After (0..1)
+     * @param children           число дочерних страниц у корня
+     * @param attachmentsPerPage вложений на страницу
+     * @param attachmentBytes    наименьший размер одного вложения (PNG)
+     * @param pageChars          примерный размер HTML страницы в символах
+     */
+    public record Settings(long latencyMillis, long jitterMillis, double errorRate, double throttleRate,
+                           int children, int attachmentsPerPage, int attachmentBytes, int pageChars) {
+
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Long.getLong("fake.latency-ms", 20),
+                    Long.getLong("fake.jitter-ms", 10),
+                    Double.parseDouble(System.getProperty("fake.error-rate", "0")),
+                    Double.parseDouble(System.getProperty("fake.throttle-rate", "0")),
+                    Integer.getInteger("fake.children", 10),
+                    Integer.getInteger("fake.attachments", 5),
+                    Integer.getInteger("fake.attachment-bytes", 256 * 1024),
+                    Integer.getInteger("fake.page-chars", 50_000));
+        }
+    }
+
+    public FakeConfluenceServer(Settings settings) throws IOException {
+        this.settings = settings;
+        this.pageHtml = buildPageHtml(settings);
+        this.attachmentData = buildPng(settings.attachmentBytes());
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fake-confluence");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public FakeConfluenceServer start() {
+        server.start();
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** URL корневой страницы в том виде, в каком его вводит пользователь */
+    public String rootPageUrl() {
+        return baseUrl() + "/pages/viewpage.action?pageId=" + ROOT_PAGE_ID;
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    public long errors() {
+        return errors.get();
+    }
+
+    public long throttled() {
+        return throttled.get();
+    }
+
+    /** Размер одного вложения в байтах */
+    public int attachmentSize() {
+        return attachmentData.length;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            simulateLatency();
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < settings.throttleRate()) {
+                throttled.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 429, "text/plain", "Too Many Requests".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (roll < settings.throttleRate() + settings.errorRate()) {
+                errors.incrementAndGet();
+                send(exchange, 500, "text/plain", "Internal Server Error".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            String method = exchange.getRequestMethod();
+            URI uri = exchange.getRequestURI();
+            String path = uri.getPath();
+            if ("DELETE".equals(method) || "PUT".equals(method)) {
+                exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+                send(exchange, "DELETE".equals(method) ? 204 : 200, "application/json",
+                        "PUT".equals(method) ? "{}".getBytes(StandardCharsets.UTF_8) : new byte[0]);
+                return;
+            }
+            if (path.startsWith("/rest/api/content/") && path.contains("/child/")) {
+                String rest = path.substring("/rest/api/content/".length());
+                int child = rest.indexOf("/child/");
+                handleChildren(exchange, rest.substring(0, child), rest.substring(child + "/child/".length()), uri.getRawQuery());
+            } else if (path.startsWith("/rest/api/content/")) {
+                handleContent(exchange, path.substring("/rest/api/content/".length()), uri.getRawQuery());
+            } else if (path.startsWith("/download/attachments/")) {
+                send(exchange, 200, "image/png", attachmentData);
+            } else if (path.startsWith("/s/") || path.startsWith("/images/icons/")) {
+                // Содержимое batch-ресурсов зависит от query, как у настоящего Confluence
+                String variant = uri.getRawQuery() == null ? "" : "/*" + uri.getRawQuery() + "*/";
+                byte[] body = path.endsWith(".css")
+                        ? (variant + "body{font-family:Arial,sans-serif}.confluenceTable{border-collapse:collapse}").getBytes(StandardCharsets.UTF_8)
+                        : "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"16\" height=\"16\"/>".getBytes(StandardCharsets.UTF_8);
+                send(exchange, 200, path.endsWith(".css") ? "text/css" : "image/svg+xml", body);
+            } else {
+                send(exchange, 404, "text/plain", new byte[0]);
+            }
+        }
+    }
+
+    private void handleContent(HttpExchange exchange, String pageId, String query) throws IOException {
+        if (!isKnownPage(pageId)) {
+            send(exchange, 404, "application/json", "{\"statusCode\":404}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        send(exchange, 200, "application/json", objectMapper.writeValueAsBytes(content(pageId, expandParam(query))));
+    }
+
+    /**
+     * Страница с раскрытыми по expand представлениями тела и дочерними элементами.
+     * Раскрытые children.* ограничены {@link #EXPANDED_CHILDREN_LIMIT} элементами, как в Confluence.
+     */
+    private Map<String, Object> content(String pageId, String expand) {
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("id", pageId);
+        page.put("type", "page");
+        page.put("title", title(pageId));
+        page.put("version", Map.of("number", 7));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        for (String representation : List.of("export_view", "view", "storage")) {
+            if (expand.contains("body." + representation)) {
+                body.put(representation, Map.of("value", pageHtml.replace("{pageId}", pageId), "representation", representation));
+            }
+        }
+        if (!body.isEmpty()) {
+            page.put("body", body);
+        }
+
+        Map<String, Object> children = new LinkedHashMap<>();
+        if (expand.contains("children.page")) {
+            children.put("page", listing(pageId, "page", childPages(pageId), 0, EXPANDED_CHILDREN_LIMIT));
+        }
+        if (expand.contains("children.attachment")) {
+            children.put("attachment", listing(pageId, "attachment", attachments(pageId), 0, EXPANDED_CHILDREN_LIMIT));
+        }
+        if (!children.isEmpty()) {
+            page.put("children", children);
+        }
+        return page;
+    }
+
+    /**
+     * /rest/api/content/{id}/child/{page|attachment}?start=&limit=&expand= — постраничный список с _links.next;
+     * для страниц expand раскрывает тело и вложения каждого элемента.
+     */
+    private void handleChildren(HttpExchange exchange, String pageId, String type, String query) throws IOException {
+        if (!isKnownPage(pageId)) {
+            send(exchange, 404, "application/json", "{\"statusCode\":404}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        String expand = expandParam(query);
+        List<Map<String, Object>> all = "attachment".equals(type) ? attachments(pageId) : childPages(pageId);
+        if ("page".equals(type) && !expand.isEmpty()) {
+            all = all.stream().map(child -> content((String) child.get("id"), expand)).toList();
+        }
+        int start = intParam(query, "start", 0);
+        int limit = intParam(query, "limit", 25);
+        send(exchange, 200, "application/json", objectMapper.writeValueAsBytes(listing(pageId, type, all, start, limit)));
+    }
+
+    private static Map<String, Object> listing(String pageId, String type, List<Map<String, Object>> all, int start, int limit) {
+        List<Map<String, Object>> results = all.subList(Math.min(start, all.size()), Math.min(start + limit, all.size()));
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("results", results);
+        page.put("start", start);
+        page.put("limit", limit);
+        page.put("size", results.size());
+        if (start + limit < all.size()) {
+            page.put("_links", Map.of("next", "/rest/api/content/" + pageId + "/child/" + type
+                    + "?start=" + (start + limit) + "&limit=" + limit));
+        }
+        return page;
+    }
+
+    private List<Map<String, Object>> childPages(String pageId) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        if (ROOT_PAGE_ID.equals(pageId)) {
+            for (int i = 1; i <= settings.children(); i++) {
+                String childId = String.valueOf(Long.parseLong(ROOT_PAGE_ID) + i);
+                results.add(Map.of("id", childId, "title", title(childId)));
+            }
+        }
+        return results;
+    }
+
+    private List<Map<String, Object>> attachments(String pageId) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int i = 0; i < settings.attachmentsPerPage(); i++) {
+            String fileName = "graph_" + i + ".png";
+            results.add(Map.of(
+                    "id", "att" + pageId + "_" + i,
+                    "title", fileName,
+                    "_links", Map.of("download", "/download/attachments/" + pageId + "/" + fileName + "?version=1&api=v2")));
+        }
+        return results;
+    }
+
+    private boolean isKnownPage(String pageId) {
+        try {
+            long id = Long.parseLong(pageId);
+            long root = Long.parseLong(ROOT_PAGE_ID);
+            return id >= root && id <= root + settings.children();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String title(String pageId) {
+        return ROOT_PAGE_ID.equals(pageId) ? "Заключение НТ" : "Результаты теста " + pageId;
+    }
+
+    private static String expandParam(String rawQuery) {
+        return queryParam(rawQuery, "expand", "");
+    }
+
+    private static int intParam(String rawQuery, String name, int defaultValue) {
+        try {
+            return Integer.parseInt(queryParam(rawQuery, name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String queryParam(String rawQuery, String name, String defaultValue) {
+        if (rawQuery == null) {
+            return defaultValue;
+        }
+        for (String param : rawQuery.split("&")) {
+            if (param.startsWith(name + "=")) {
+                return URLDecoder.decode(param.substring(name.length() + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return defaultValue;
+    }
+
+    private void simulateLatency() {
+        long delay = settings.latencyMillis()
+                + (settings.jitterMillis() > 0 ? ThreadLocalRandom.current().nextLong(settings.jitterMillis() + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+        bytesSent.addAndGet(body.length);
+    }
+
+    /**
+     * PNG из случайных пикселей: шум почти не сжимается, поэтому файл не меньше minBytes.
+     */
+    private static byte[] buildPng(int minBytes) throws IOException {
+        int width = 1600;
+        int height = Math.max(64, minBytes / (width * 3) + 1);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(width * height * 3 + 1024);
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * HTML страницы: абзацы, таблицы, картинки-вложения ({pageId} подставляется при выдаче), ссылка на корень и смайл.
+     */
+    private static String buildPageHtml(Settings settings) {
+        StringBuilder sb = new StringBuilder(settings.pageChars() + 1024);
+        sb.append("<link rel=\"stylesheet\" href=\"/s/1a2b3c/7901/_/styles/colors.css\">");
+        sb.append("<link rel=\"stylesheet\" href=\"/s/1a2b3c/7901/_/download/batch/main/main.css?locale=ru-RU&amp;media=all\">");
+        sb.append("<link rel=\"stylesheet\" href=\"/s/1a2b3c/7901/_/download/batch/main/main.css?media=print&amp;locale=ru-RU\">");
+        int block = 0;
+        while (sb.length() < settings.pageChars()) {
+            int att = block % Math.max(1, settings.attachmentsPerPage());
+            sb.append("<h2>Раздел ").append(block).append("</h2><p style=\"margin-left: 10px ;\">")
+                    .append("Время отклика в пределах SLA, пропускная способность соответствует профилю нагрузки. ".repeat(4))
+                    .append("</p>");
+            if (settings.attachmentsPerPage() > 0) {
+                sb.append("<p><img class=\"confluence-embedded-image\" src=\"/download/attachments/{pageId}/graph_")
+                        .append(att).append(".png?version=1&amp;api=v2\"></p>");
+            }
+            sb.append("<table class=\"confluenceTable\"><tbody>");
+            for (int row = 0; row < 5; row++) {
+                sb.append("<tr><td class=\"confluenceTd\">").append(row).append("</td><td>").append(block * 17 + row)
+                        .append(" ms</td></tr>");
+            }
+            sb.append("</tbody></table><p><a href=\"/pages/viewpage.action?pageId=").append(ROOT_PAGE_ID)
+                    .append("\">Заключение</a> <img class=\"emoticon\" src=\"/images/icons/emoticons/smile.svg\"></p>");
+            block++;
+        }
+        return sb.toString();
+    }
+}
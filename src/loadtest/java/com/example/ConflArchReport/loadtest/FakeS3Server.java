@@ -0,0 +1,390 @@
+package com.example.ConflArchReport.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Локальная замена S3 (в духе MinIO, адресация path-style) для проверки S3ArchiveStore: объекты в памяти,
+ * PUT, GET с Range и If-Match (ETag — MD5 содержимого, 412 при несовпадении), HEAD, DELETE и ListObjectsV2
+ * с постраничной выдачей.
+ * <p>
+ * Подпись AWS Signature V4 каждого запроса пересчитывается независимо от клиента — по тому, что пришло по сети
+ * (путь, параметры, заголовки host, x-amz-content-sha256, x-amz-date); несовпадение даёт 403, как у настоящего S3.
+ * Считаются запросы по методам и отданные байты, чтобы прогон мог проверить число запросов диапазона.
+ */
+public class FakeS3Server implements AutoCloseable {
+
+    private static final Pattern AUTHORIZATION = Pattern.compile(
+            "AWS4-HMAC-SHA256 Credential=([^/]+)/(\\d{8})/([^/]+)/s3/aws4_request, SignedHeaders=([^,]+), Signature=([0-9a-f]{64})");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final int pageSize;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final NavigableMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicLong> requestsByMethod = new ConcurrentHashMap<>();
+    private final AtomicLong rangeRequests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean failPuts;
+    private volatile boolean ignoreRange;
+
+    /**
+     * @param pageSize наибольшее число ключей в одной странице списка (маленькое значение проверяет continuation-token)
+     */
+    public FakeS3Server(String bucket, String accessKey, String secretKey, int pageSize) throws IOException {
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.pageSize = pageSize;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        this.executor = Executors.newFixedThreadPool(8);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public FakeS3Server start() {
+        server.start();
+        return this;
+    }
+
+    public String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** PUT отвечает 500 без сохранения объекта */
+    public void setFailPuts(boolean failPuts) {
+        this.failPuts = failPuts;
+    }
+
+    /** GET отвечает 200 с объектом целиком, как сервер без поддержки Range */
+    public void setIgnoreRange(boolean ignoreRange) {
+        this.ignoreRange = ignoreRange;
+    }
+
+    public long requests(String method) {
+        AtomicLong counter = requestsByMethod.get(method);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public long rangeRequests() {
+        return rangeRequests.get();
+    }
+
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    /** Запросы, отклонённые из-за подписи */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public void resetCounters() {
+        requestsByMethod.clear();
+        rangeRequests.set(0);
+        bytesSent.set(0);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            requestsByMethod.computeIfAbsent(method, m -> new AtomicLong()).incrementAndGet();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String signatureError = verifySignature(exchange);
+            if (signatureError != null) {
+                rejected.incrementAndGet();
+                sendError(exchange, 403, "SignatureDoesNotMatch", signatureError);
+                return;
+            }
+
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8);
+            String bucketPrefix = "/" + bucket;
+            if (!path.equals(bucketPrefix + "/") && !path.startsWith(bucketPrefix + "/")) {
+                sendError(exchange, 404, "NoSuchBucket", path);
+                return;
+            }
+            String key = path.substring(bucketPrefix.length() + 1);
+            if (key.isEmpty()) {
+                if ("GET".equals(method)) {
+                    list(exchange, queryParameters(exchange.getRequestURI().getRawQuery()));
+                } else {
+                    sendError(exchange, 405, "MethodNotAllowed", method);
+                }
+                return;
+            }
+            switch (method) {
+                case "PUT" -> put(exchange, key, body);
+                case "GET", "HEAD" -> get(exchange, key, "HEAD".equals(method));
+                case "DELETE" -> {
+                    objects.remove(key);
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> sendError(exchange, 405, "MethodNotAllowed", method);
+            }
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "InternalError", e.toString());
+        }
+    }
+
+    private void put(HttpExchange exchange, String key, byte[] body) throws IOException {
+        if (failPuts) {
+            sendError(exchange, 500, "InternalError", "PUT отключён");
+            return;
+        }
+        StoredObject object = new StoredObject(body, Instant.now(), etag(body));
+        objects.put(key, object);
+        exchange.getResponseHeaders().set("ETag", object.etag());
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void get(HttpExchange exchange, String key, boolean head) throws IOException {
+        StoredObject object = objects.get(key);
+        if (object == null) {
+            if (head) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                sendError(exchange, 404, "NoSuchKey", key);
+            }
+            return;
+        }
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified().atZone(ZoneOffset.UTC)));
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("ETag", object.etag());
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch != null && !ifMatch.equals(object.etag())) {
+            if (head) {
+                exchange.sendResponseHeaders(412, -1);
+            } else {
+                sendError(exchange, 412, "PreconditionFailed", "If-Match " + ifMatch + ", ETag " + object.etag());
+            }
+            return;
+        }
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.data().length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        byte[] data = object.data();
+        int from = 0;
+        int to = data.length - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && !ignoreRange) {
+            Matcher m = RANGE.matcher(range);
+            if (!m.matches() || Long.parseLong(m.group(1)) >= data.length) {
+                sendError(exchange, 416, "InvalidRange", range);
+                return;
+            }
+            rangeRequests.incrementAndGet();
+            from = Integer.parseInt(m.group(1));
+            to = (int) Math.min(data.length - 1L, Long.parseLong(m.group(2)));
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + data.length);
+        }
+        int length = to - from + 1;
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data, from, length);
+        }
+        bytesSent.addAndGet(length);
+    }
+
+    /**
+     * ListObjectsV2: ключи с prefix по возрастанию, не больше pageSize за раз; токен продолжения — последний ключ.
+     */
+    private void list(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String prefix = query.getOrDefault("prefix", "");
+        String after = query.get("continuation-token");
+        NavigableMap<String, StoredObject> tail = after == null ? objects.tailMap(prefix, true) : objects.tailMap(after, false);
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>").append(bucket).append("</Name><Prefix>").append(escapeXml(prefix)).append("</Prefix>");
+        int count = 0;
+        String lastKey = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : tail.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (count == pageSize) {
+                truncated = true;
+                break;
+            }
+            xml.append("<Contents><Key>").append(escapeXml(entry.getKey())).append("</Key><Size>")
+                    .append(entry.getValue().data().length).append("</Size></Contents>");
+            lastKey = entry.getKey();
+            count++;
+        }
+        xml.append("<KeyCount>").append(count).append("</KeyCount><IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(escapeXml(lastKey)).append("</NextContinuationToken>");
+        }
+        xml.append("</ListBucketResult>");
+        send(exchange, 200, "application/xml", xml.toString());
+    }
+
+    /**
+     * Пересчёт подписи SigV4 по полученному запросу.
+     *
+     * @return описание ошибки или null, если подпись верна
+     */
+    private String verifySignature(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null) {
+            return "нет заголовка Authorization";
+        }
+        Matcher m = AUTHORIZATION.matcher(authorization);
+        if (!m.matches()) {
+            return "неверный формат Authorization: " + authorization;
+        }
+        if (!accessKey.equals(m.group(1))) {
+            return "неизвестный ключ доступа " + m.group(1);
+        }
+        String amzDate = exchange.getRequestHeaders().getFirst("x-amz-date");
+        String payloadHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (amzDate == null || payloadHash == null || !amzDate.startsWith(m.group(2))) {
+            return "нет x-amz-date/x-amz-content-sha256 или дата не совпадает с областью подписи";
+        }
+        String dateStamp = m.group(2);
+        String region = m.group(3);
+        String signedHeaders = m.group(4);
+
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (String name : signedHeaders.split(";")) {
+            String value = exchange.getRequestHeaders().getFirst(name);
+            if (value == null) {
+                return "подписанный заголовок отсутствует: " + name;
+            }
+            canonicalHeaders.append(name).append(':').append(value.trim()).append('\n');
+        }
+        String canonicalRequest = exchange.getRequestMethod() + "\n"
+                + exchange.getRequestURI().getRawPath() + "\n"
+                + canonicalQuery(queryParameters(exchange.getRequestURI().getRawQuery())) + "\n"
+                + canonicalHeaders + "\n"
+                + signedHeaders + "\n"
+                + payloadHash;
+        String scope = dateStamp + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), dateStamp);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        String expected = HexFormat.of().formatHex(hmac(key, stringToSign));
+        return expected.equals(m.group(5)) ? null : "подпись не совпадает, канонический запрос:\n" + canonicalRequest;
+    }
+
+    private static Map<String, String> queryParameters(String rawQuery) {
+        Map<String, String> params = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String canonicalQuery(Map<String, String> params) {
+        return params.entrySet().stream()
+                .map(e -> uriEncode(e.getKey()) + "=" + uriEncode(e.getValue()))
+                .collect(Collectors.joining("&"));
+    }
+
+    private static String uriEncode(String value) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~') {
+                sb.append((char) c);
+            } else {
+                sb.append('%').append(String.format("%02X", c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        send(exchange, status, "application/xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Error><Code>" + code
+                + "</Code><Message>" + escapeXml(message) + "</Message></Error>");
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] data = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, data.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data);
+        }
+        bytesSent.addAndGet(data.length);
+    }
+
+    private static String etag(byte[] data) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data)) + "\"";
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String escapeXml(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record StoredObject(byte[] data, Instant lastModified, String etag) {}
+}
@@ -0,0 +1,269 @@
+package com.example.ConflArchReport.loadtest;
+
+import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.entity.Project;
+import com.example.ConflArchReport.service.*;
+import com.example.ConflArchReport.storage.ArchiveStore;
+import com.example.ConflArchReport.storage.S3ArchiveStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Прогон {@link S3ArchiveStore} (и подписи запросов) против {@link FakeS3Server}: загрузка, список с продолжением,
+ * выдача страницы и файла через {@link ZipReportService}, проверка целостности и массовая выгрузка
+ * (последовательное чтение), перезапись ключа (If-Match по ETag), удаление и неудачный PUT.
+ * <p>
+ * Параметры (системные свойства): loadtest.s3.archives — число архивов, loadtest.s3.archive-mb — размер вложения
+ * в каждом архиве. Печатает число GET по сценариям; подпись, отклонённая сервером, лишние запросы или расхождение
+ * содержимого завершают прогон с ошибкой.
+ */
+public final class S3StoreHarness {
+
+    private static final String BUCKET = "conflarch";
+    private static final String ACCESS_KEY = "loadtest-access";
+    private static final String SECRET_KEY = "loadtest-secret";
+    /** Проект с пробелом и кириллицей: проверяет кодирование ключа в пути и в подписи */
+    private static final String PROJECT = "Нагрузка s3";
+    private static final int MIN_RANGE_BYTES = 64 * 1024;
+    private static final int MAX_READ_AHEAD_BYTES = 8 * 1024 * 1024;
+
+    private S3StoreHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int archives = Integer.getInteger("loadtest.s3.archives", 3);
+        int archiveMegabytes = Integer.getInteger("loadtest.s3.archive-mb", 24);
+        List<String> problems = new ArrayList<>();
+
+        try (FakeS3Server server = new FakeS3Server(BUCKET, ACCESS_KEY, SECRET_KEY, 2).start()) {
+            S3ArchiveStore store = new S3ArchiveStore(server.endpoint(), "us-east-1", BUCKET, "reports/",
+                    ACCESS_KEY, SECRET_KEY, true, MIN_RANGE_BYTES, MAX_READ_AHEAD_BYTES, 30_000);
+            ArchiveMetrics metrics = new ArchiveMetrics(new SimpleMeterRegistry());
+            ZipReportService zipReportService = new ZipReportService(metrics, store, ArchiveTracing.noop());
+            System.out.printf("Fake S3: %s, архивов: %d, вложение: %d МБ%n", server.endpoint(), archives, archiveMegabytes);
+
+            byte[] attachment = new byte[archiveMegabytes * 1024 * 1024];
+            ThreadLocalRandom.current().nextBytes(attachment);
+            List<String> ids = new ArrayList<>();
+            long archiveSize = 0;
+            for (int i = 0; i < archives; i++) {
+                String id = "arch-" + i;
+                Path staged = store.createStagingFile();
+                writeArchive(staged, "Страница " + i, attachment);
+                archiveSize = Files.size(staged);
+                zipReportService.saveArchive(PROJECT, id, staged);
+                if (Files.exists(staged)) {
+                    problems.add("файл " + staged + " не удалён после успешного PUT");
+                }
+                ids.add(id);
+            }
+
+            List<ArchiveStore.StoredArchive> listed = store.list();
+            System.out.printf("Список: %d объектов (страницы по 2 ключа)%n", listed.size());
+            if (listed.size() != archives || !listed.stream().allMatch(a -> PROJECT.equals(a.project()) && a.size() > 0)) {
+                problems.add("список объектов не совпадает: " + listed);
+            }
+
+            server.resetCounters();
+            String html = zipReportService.extractHtmlContent(PROJECT, ids.get(0)).orElse("");
+            long pageGets = server.requests("GET");
+            if (!html.contains("Страница 0")) {
+                problems.add("index.html прочитан неверно");
+            }
+            server.resetCounters();
+            byte[] file = zipReportService.getFileContent(PROJECT, ids.get(0), "attachments/1_data.bin").orElse(new byte[0]);
+            long fileGets = server.requests("GET");
+            if (!Arrays.equals(file, attachment)) {
+                problems.add("вложение прочитано неверно");
+            }
+            // Каталог уже в кэше: локальный заголовок и затем данные с растущим опережающим чтением
+            long fileLimit = expectedSequentialGets(attachment.length) + 1;
+            System.out.printf("Выдача: index.html — GET %d, вложение %d МБ — GET %d (не больше %d)%n",
+                    pageGets, archiveMegabytes, fileGets, fileLimit);
+            if (fileGets > fileLimit) {
+                problems.add("вложение читается " + fileGets + " запросами вместо " + fileLimit);
+            }
+
+            server.resetCounters();
+            ArchiveIntegrityService integrityService = new ArchiveIntegrityService(null, store, metrics);
+            ArchiveIntegrityService.VerifyResult verified = integrityService.verify(PROJECT, ids.get(0), new IoThrottle(0));
+            long scrubGets = server.requests("GET");
+            long scrubLimit = expectedSequentialGets(archiveSize) + 2;
+            System.out.printf("Проверка целостности: %s, %d МБ — GET %d (не больше %d, по %d КБ было бы %d)%n",
+                    verified.status(), archiveSize / 1048576, scrubGets, scrubLimit, MIN_RANGE_BYTES / 1024,
+                    archiveSize / MIN_RANGE_BYTES + 1);
+            if (verified.status() != ArchivedReport.IntegrityStatus.OK) {
+                problems.add("проверка целостности: " + verified.status() + " " + verified.error());
+            }
+            if (scrubGets > scrubLimit) {
+                problems.add("проверка целостности сделала " + scrubGets + " GET вместо " + scrubLimit);
+            }
+
+            server.resetCounters();
+            long bulkBytes = bulkDownload(store, ids);
+            long bulkSent = server.bytesSent();
+            System.out.printf("Массовая выгрузка: %d архивов, %.1f МБ в ответе, скачано из S3 %.1f МБ, GET %d%n",
+                    archives, bulkBytes / 1048576.0, bulkSent / 1048576.0, server.requests("GET"));
+            if (bulkSent > archives * (archiveSize + MIN_RANGE_BYTES)) {
+                problems.add("массовая выгрузка скачала " + bulkSent + " байт при " + archives * archiveSize + " в архивах");
+            }
+
+            checkOverwrite(store, zipReportService, server, ids.get(0), attachment, problems);
+
+            server.setFailPuts(true);
+            Path staged = store.createStagingFile();
+            writeArchive(staged, "Не сохранится", new byte[1024]);
+            try {
+                store.put(PROJECT, "failed", staged);
+                problems.add("неудачный PUT не вернул ошибку");
+            } catch (IOException e) {
+                if (!Files.exists(staged)) {
+                    problems.add("файл удалён после неудачного PUT");
+                }
+            } finally {
+                Files.deleteIfExists(staged);
+                server.setFailPuts(false);
+            }
+
+            for (String id : ids) {
+                if (!store.delete(PROJECT, id) || store.exists(PROJECT, id)) {
+                    problems.add("архив " + id + " не удалён");
+                }
+            }
+            if (server.rejected() > 0) {
+                problems.add("сервер отклонил подпись " + server.rejected() + " запросов");
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Прогон S3 не пройден: " + String.join("; ", problems));
+        }
+        System.out.println("Прогон S3 пройден");
+    }
+
+    /**
+     * Перезапись ключа архивом того же размера (повтор шага 1 с тем же id, обычно в ту же секунду — Last-Modified
+     * не меняется): канал, открытый до перезаписи, получает ошибку (If-Match по ETag), а не байты нового объекта;
+     * новое чтение отдаёт новое содержимое. Ответ 200 на запрос диапазона — тоже ошибка.
+     */
+    private static void checkOverwrite(S3ArchiveStore store, ZipReportService zipReportService, FakeS3Server server,
+                                       String id, byte[] attachment, List<String> problems) throws IOException {
+        ArchiveStore.ArchiveStat before = store.stat(PROJECT, id).orElseThrow();
+        byte[] replacement = attachment.clone();
+        replacement[replacement.length / 2] ^= 1;
+        try (SeekableByteChannel stale = store.open(PROJECT, id, before)) {
+            Path staged = store.createStagingFile();
+            writeArchive(staged, "Страница 0", replacement);
+            zipReportService.saveArchive(PROJECT, id, staged);
+            ArchiveStore.ArchiveStat after = store.stat(PROJECT, id).orElseThrow();
+            if (after.size() != before.size() || Objects.equals(after.version(), before.version())) {
+                problems.add("перезапись: размер " + before.size() + " → " + after.size() + ", ETag "
+                        + before.version() + " → " + after.version());
+            }
+            try {
+                stale.position(before.size() / 2).read(ByteBuffer.allocate(1024));
+                problems.add("канал, открытый до перезаписи, прочитал новый объект");
+            } catch (IOException expected) {
+                System.out.println("Перезапись: старый канал — " + expected.getMessage());
+            }
+        }
+        byte[] file = zipReportService.getFileContent(PROJECT, id, "attachments/1_data.bin").orElse(new byte[0]);
+        if (!Arrays.equals(file, replacement)) {
+            problems.add("после перезаписи вложение прочитано не из нового объекта");
+        }
+
+        server.setIgnoreRange(true);
+        try (SeekableByteChannel channel = store.open(PROJECT, id)) {
+            channel.read(ByteBuffer.allocate(1024));
+            problems.add("ответ 200 на запрос диапазона принят");
+        } catch (IOException expected) {
+            System.out.println("Без поддержки Range: " + expected.getMessage());
+        } finally {
+            server.setIgnoreRange(false);
+        }
+    }
+
+    /**
+     * Запросов на последовательное чтение length байт с начала блока: диапазоны 64 КБ, 128 КБ, … до 8 МБ, затем по 8 МБ.
+     */
+    private static long expectedSequentialGets(long length) {
+        long gets = 0;
+        long range = MIN_RANGE_BYTES;
+        for (long read = 0; read < length; read += range, range = Math.min(MAX_READ_AHEAD_BYTES, range * 2)) {
+            gets++;
+        }
+        return gets;
+    }
+
+    /**
+     * Архив как у экспорта: index.html (DEFLATED) и несжимаемое вложение (STORED).
+     */
+    private static void writeArchive(Path path, String title, byte[] attachment) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(path))) {
+            zip.putNextEntry(new ZipEntry("index.html"));
+            zip.write(("<html><head><title>" + title + "</title></head><body><h1>" + title + "</h1></body></html>")
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            ZipEntry entry = new ZipEntry("attachments/1_data.bin");
+            CRC32 crc = new CRC32();
+            crc.update(attachment);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(attachment.length);
+            entry.setCompressedSize(attachment.length);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(attachment);
+            zip.closeEntry();
+        }
+    }
+
+    /**
+     * Выгрузка всех архивов по списку id; ответ проверяется разбором и отбрасывается.
+     *
+     * @return размер ответа
+     */
+    private static long bulkDownload(ArchiveStore store, List<String> ids) throws IOException {
+        ArchivedReportService archivedReportService = mock(ArchivedReportService.class);
+        when(archivedReportService.getReport(anyString(), anyString())).thenAnswer(inv -> Optional.of(
+                new ArchivedReport(inv.getArgument(1), inv.getArgument(1), new Project(inv.getArgument(0)))));
+        BulkDownloadService bulkDownloadService = new BulkDownloadService(archivedReportService, store);
+        ReflectionTestUtils.setField(bulkDownloadService, "maxArchives", ids.size());
+        Path out = Files.createTempFile("bulk-s3", ".zip");
+        try {
+            try (OutputStream stream = Files.newOutputStream(out)) {
+                bulkDownloadService.write(new BulkDownloadService.Selection(PROJECT, null, ids), stream);
+            }
+            int entries = 0;
+            try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(out))) {
+                while (zis.getNextEntry() != null) {
+                    zis.transferTo(OutputStream.nullOutputStream());
+                    entries++;
+                }
+            }
+            if (entries != ids.size() + 1) {
+                throw new IllegalStateException("В выгрузке " + entries + " записей вместо " + (ids.size() + 1));
+            }
+            return Files.size(out);
+        } finally {
+            Files.deleteIfExists(out);
+        }
+    }
+}
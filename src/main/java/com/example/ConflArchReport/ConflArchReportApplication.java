@@ -1,12 +1,19 @@
 package com.example.ConflArchReport;
 
+import com.example.ConflArchReport.cli.IngestCommand;
+import com.example.ConflArchReport.config.ConflArchRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(ConflArchRuntimeHints.class)
 public class ConflArchReportApplication {
 
 	public static void main(String[] args) {
+		if (IngestCommand.matches(args)) {
+			System.exit(IngestCommand.run(args));
+		}
 		SpringApplication.run(ConflArchReportApplication.class, args);
 	}
 
@@ -0,0 +1,253 @@
+package com.example.ConflArchReport.cli;
+
+import com.example.ConflArchReport.ConflArchReportApplication;
+import com.example.ConflArchReport.entity.Project;
+import com.example.ConflArchReport.service.ArchiveImportService;
+import com.example.ConflArchReport.service.ArchivedReportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.Banner;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Пакетный импорт готовых zip без веб-сервера:
+ * <pre>
+ * java -jar ConflArchReport.jar ingest --source=/data/zips [--project=NAME] [--move] [--parallelism=8] [--spring.*=...]
+ * </pre>
+ * Без --project каждая подпапка source — проект с его zip; с --project берутся zip прямо из source.
+ * Контекст поднимается без Tomcat, Thymeleaf и фоновых задач; архивы импортируются параллельно
+ * ({@link ArchiveImportService}), ход выводится каждые 2 секунды, в конце — итог.
+ * Код выхода: 0 — всё импортировано или пропущено, 1 — были ошибки, 2 — неверные параметры.
+ */
+public final class IngestCommand {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestCommand.class);
+
+    public static final String COMMAND = "ingest";
+
+    private static final String USAGE = "Использование: ingest --source=<папка> [--project=<проект>] [--move] [--parallelism=N]";
+    private static final long PROGRESS_INTERVAL_MS = 2000;
+    /** Сколько ошибок показывать в итоге (полный список — в логе) */
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final ArchiveImportService importService;
+    private final ArchivedReportService archivedReportService;
+    private final PrintStream out;
+
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger imported = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicLong importedBytes = new AtomicLong();
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+    IngestCommand(ArchiveImportService importService, ArchivedReportService archivedReportService, PrintStream out) {
+        this.importService = importService;
+        this.archivedReportService = archivedReportService;
+        this.out = out;
+    }
+
+    public static boolean matches(String[] args) {
+        return args.length > 0 && COMMAND.equals(args[0]);
+    }
+
+    /**
+     * Разбирает параметры, поднимает контекст без веб-сервера, импортирует и возвращает код выхода.
+     */
+    public static int run(String[] args) {
+        String[] springArgs = Arrays.copyOfRange(args, 1, args.length);
+        Options options;
+        List<SourceArchive> archives;
+        try {
+            options = Options.parse(new DefaultApplicationArguments(springArgs));
+            archives = scan(options);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        System.out.println("Найдено архивов: " + archives.size() + " в " + options.source());
+        if (archives.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("app.scheduling.enabled", "false");
+        defaults.put("spring.autoconfigure.exclude",
+                "org.springframework.boot.autoconfigure.thymeleaf.ThymeleafAutoConfiguration");
+        // Каждому потоку импорта — своё соединение, плюс запас на создание проектов
+        defaults.put("spring.datasource.hikari.maximum-pool-size", options.parallelism() + 2);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ConflArchReportApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(defaults)
+                .run(springArgs)) {
+            IngestCommand command = new IngestCommand(context.getBean(ArchiveImportService.class),
+                    context.getBean(ArchivedReportService.class), System.out);
+            return command.execute(archives, options);
+        }
+    }
+
+    int execute(List<SourceArchive> archives, Options options) {
+        // Проекты создаются заранее в одном потоке: параллельное создание упёрлось бы в уникальность имени
+        Map<String, Project> projects = new HashMap<>();
+        for (SourceArchive archive : archives) {
+            projects.computeIfAbsent(archive.project(), archivedReportService::getOrCreateProject);
+        }
+
+        long started = System.nanoTime();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ingest-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> printProgress(archives.size(), started, false),
+                PROGRESS_INTERVAL_MS, PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        ExecutorService pool = Executors.newFixedThreadPool(options.parallelism());
+        try {
+            for (SourceArchive archive : archives) {
+                pool.execute(() -> importOne(projects.get(archive.project()), archive, options.move()));
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            errors.add("Импорт прерван");
+        } finally {
+            progress.shutdownNow();
+        }
+        printProgress(archives.size(), started, true);
+        printSummary(started);
+        return errors.isEmpty() ? 0 : 1;
+    }
+
+    private void importOne(Project project, SourceArchive archive, boolean move) {
+        try {
+            ArchiveImportService.ImportResult result = importService.importArchive(project, archive.path(), move);
+            if (result.status() == ArchiveImportService.ImportStatus.IMPORTED) {
+                imported.incrementAndGet();
+                importedBytes.addAndGet(result.bytes());
+            } else {
+                skipped.incrementAndGet();
+            }
+        } catch (Exception e) {
+            log.warn("Не удалось импортировать {} в проект {}", archive.path(), archive.project(), e);
+            errors.add(archive.path() + ": " + e.getMessage());
+        } finally {
+            done.incrementAndGet();
+        }
+    }
+
+    private synchronized void printProgress(int total, long started, boolean last) {
+        int processed = done.get();
+        double seconds = Math.max(0.001, (System.nanoTime() - started) / 1e9);
+        String line = String.format(Locale.ROOT, "Импорт: %d/%d (%d%%), %.1f МБ, %.1f архивов/с, пропущено %d, ошибок %d",
+                processed, total, processed * 100L / Math.max(1, total), importedBytes.get() / 1048576.0, processed / seconds,
+                skipped.get(), errors.size());
+        // В терминале строка перерисовывается на месте, при выводе в файл — новая строка на каждый замер
+        if (System.console() != null) {
+            out.print("\r" + line + (last ? System.lineSeparator() : ""));
+        } else {
+            out.println(line);
+        }
+        out.flush();
+    }
+
+    private void printSummary(long started) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        out.printf(Locale.ROOT, "Готово за %.1f с: импортировано %d (%.1f МБ, %.1f МБ/с), пропущено %d (уже есть), ошибок %d%n",
+                seconds, imported.get(), importedBytes.get() / 1048576.0,
+                importedBytes.get() / 1048576.0 / Math.max(0.001, seconds), skipped.get(), errors.size());
+        errors.stream().limit(MAX_REPORTED_ERRORS).forEach(error -> out.println("  " + error));
+        if (errors.size() > MAX_REPORTED_ERRORS) {
+            out.println("  ... и ещё " + (errors.size() - MAX_REPORTED_ERRORS));
+        }
+    }
+
+    /**
+     * Zip-файлы источника с проектом: подпапка source или --project.
+     */
+    static List<SourceArchive> scan(Options options) throws IOException {
+        List<SourceArchive> archives = new ArrayList<>();
+        if (options.project() != null) {
+            for (Path zip : listZips(options.source())) {
+                archives.add(new SourceArchive(options.project(), zip));
+            }
+            return archives;
+        }
+        List<Path> projectDirs;
+        try (Stream<Path> entries = Files.list(options.source())) {
+            projectDirs = entries.filter(Files::isDirectory).sorted().toList();
+        }
+        for (Path projectDir : projectDirs) {
+            for (Path zip : listZips(projectDir)) {
+                archives.add(new SourceArchive(projectDir.getFileName().toString(), zip));
+            }
+        }
+        return archives;
+    }
+
+    private static List<Path> listZips(Path dir) throws IOException {
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    record SourceArchive(String project, Path path) {}
+
+    record Options(Path source, String project, boolean move, int parallelism) {
+
+        static Options parse(ApplicationArguments arguments) {
+            String source = single(arguments, "source");
+            if (source == null || source.isBlank()) {
+                throw new IllegalArgumentException("Не задана папка с архивами (--source)");
+            }
+            Path sourcePath = Path.of(source);
+            if (!Files.isDirectory(sourcePath)) {
+                throw new IllegalArgumentException("Папка не найдена: " + sourcePath.toAbsolutePath());
+            }
+            String project = single(arguments, "project");
+            String parallelism = single(arguments, "parallelism");
+            int threads = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+            if (parallelism != null) {
+                try {
+                    threads = Integer.parseInt(parallelism);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    throw new IllegalArgumentException("--parallelism должен быть положительным числом: " + parallelism);
+                }
+            }
+            return new Options(sourcePath, project != null && !project.isBlank() ? project.trim() : null,
+                    arguments.containsOption("move"), threads);
+        }
+
+        private static String single(ApplicationArguments arguments, String name) {
+            List<String> values = arguments.getOptionValues(name);
+            return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+        }
+    }
+}
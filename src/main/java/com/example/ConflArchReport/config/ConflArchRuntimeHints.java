@@ -0,0 +1,86 @@
+package com.example.ConflArchReport.config;
+
+import com.example.ConflArchReport.confluence.ConfluenceApiResponse;
+import com.example.ConflArchReport.entity.ArchiveRun;
+import com.example.ConflArchReport.entity.ArchiveViewStats;
+import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.entity.ArchivedReportChildPage;
+import com.example.ConflArchReport.entity.ConfluenceAsset;
+import com.example.ConflArchReport.entity.Project;
+import com.example.ConflArchReport.service.ArchiveIntegrityService;
+import com.example.ConflArchReport.service.ArchiveLayoutMigrationService;
+import com.example.ConflArchReport.service.ArchiveRepackService;
+import com.example.ConflArchReport.service.ArchiveTieringService;
+import com.example.ConflArchReport.service.CleanupReport;
+import com.example.ConflArchReport.service.ConfluenceArchiveService;
+import com.example.ConflArchReport.service.HtmlMinificationService;
+import com.example.ConflArchReport.service.JfrProfilingService;
+import com.example.ConflArchReport.service.ReportSyncService;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Подсказки для AOT-сборки и native-образа (профили aot и native): классы, к которым обращаются через отражение.
+ * <ul>
+ *     <li>модели Confluence API — бины Jackson со вложенными типами;</li>
+ *     <li>сущности JPA — их свойства читают шаблоны Thymeleaf (report.project.name) и Hibernate;</li>
+ *     <li>записи, которые контроллеры отдают в JSON внутри Map (статусы фоновых задач, итоги шагов).</li>
+ * </ul>
+ */
+public class ConflArchRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] CONFLUENCE_MODELS = {
+            ConfluenceApiResponse.class,
+            ConfluenceApiResponse.BodyRepresentation.class,
+            ConfluenceApiResponse.ChildrenWrapper.class,
+            ConfluenceApiResponse.ChildRef.class,
+            ConfluenceApiResponse.Version.class
+    };
+
+    private static final Class<?>[] ENTITIES = {
+            ArchivedReport.class,
+            ArchivedReport.IntegrityStatus.class,
+            ArchivedReportChildPage.class,
+            Project.class,
+            ArchiveRun.class,
+            ArchiveRun.Status.class,
+            ArchiveViewStats.class,
+            ConfluenceAsset.class
+    };
+
+    private static final Class<?>[] JSON_RESULTS = {
+            CleanupReport.class,
+            CleanupReport.Item.class,
+            ConfluenceArchiveService.ChildInfo.class,
+            ConfluenceArchiveService.AttachmentInfo.class,
+            HtmlMinificationService.PageSizeStat.class,
+            ReportSyncService.SyncResult.class,
+            ArchiveRepackService.RepackResult.class,
+            ArchiveRepackService.RepackJobStatus.class,
+            ArchiveIntegrityService.VerifyResult.class,
+            ArchiveIntegrityService.ScrubStatus.class,
+            ArchiveTieringService.TierMove.class,
+            ArchiveTieringService.TieringStatus.class,
+            ArchiveLayoutMigrationService.MigrationStatus.class,
+            JfrProfilingService.ProfilingStatus.class,
+            JfrProfilingService.ProfileSummary.class,
+            JfrProfilingService.Site.class,
+            JfrProfilingService.EventStats.class
+    };
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingRegistrar.registerReflectionHints(hints.reflection(), CONFLUENCE_MODELS);
+        bindingRegistrar.registerReflectionHints(hints.reflection(), JSON_RESULTS);
+        for (Class<?> entity : ENTITIES) {
+            hints.reflection().registerType(entity,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS,
+                    MemberCategory.DECLARED_FIELDS);
+        }
+    }
+}
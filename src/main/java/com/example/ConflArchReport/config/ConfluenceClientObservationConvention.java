@@ -0,0 +1,66 @@
+package com.example.ConflArchReport.config;
+
+import com.example.ConflArchReport.service.ArchiveTracing;
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.springframework.http.client.observation.ClientHttpObservationDocumentation;
+import org.springframework.http.client.observation.ClientRequestObservationContext;
+import org.springframework.http.client.observation.DefaultClientRequestObservationConvention;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Наблюдение REST-вызовов Confluence (http.client.requests и спаны клиента).
+ * <p>
+ * RestTemplate получает уже собранные URL, и стандартный тег uri стал бы уникальным для каждой страницы
+ * и вложения — метрика разрослась бы без предела. Здесь uri — шаблон пути ({id} вместо числовых сегментов,
+ * без файла вложения и query), а полный адрес и id страницы остаются только в атрибутах спана.
+ */
+public class ConfluenceClientObservationConvention extends DefaultClientRequestObservationConvention {
+
+    /** Id страницы в REST-пути (/rest/api/content/{id}/...) или в пути скачивания (/download/attachments/{id}/...) */
+    private static final Pattern PAGE_ID = Pattern.compile("/(?:rest/api/content|download/[^/]+)/(\\d+)(?:/|$)");
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    @Override
+    protected KeyValue uri(ClientRequestObservationContext context) {
+        if (context.getCarrier() == null) {
+            return super.uri(context);
+        }
+        return KeyValue.of(ClientHttpObservationDocumentation.LowCardinalityKeyNames.URI,
+                uriTemplate(context.getCarrier().getURI().getRawPath()));
+    }
+
+    @Override
+    public KeyValues getHighCardinalityKeyValues(ClientRequestObservationContext context) {
+        KeyValues values = super.getHighCardinalityKeyValues(context);
+        if (context.getCarrier() != null) {
+            Matcher m = PAGE_ID.matcher(context.getCarrier().getURI().getRawPath());
+            if (m.find()) {
+                values = values.and(ArchiveTracing.PAGE_ID, m.group(1));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * /confluence/rest/api/content/123/child/page → /rest/api/content/{id}/child/page;
+     * /download/attachments/123/a.png → /download/attachments/**; статика Confluence → /**.
+     */
+    static String uriTemplate(String path) {
+        if (path == null) {
+            return "none";
+        }
+        int rest = path.indexOf("/rest/");
+        if (rest >= 0) {
+            return NUMERIC_SEGMENT.matcher(path.substring(rest)).replaceAll("/{id}");
+        }
+        int download = path.indexOf("/download/");
+        if (download >= 0) {
+            int kindEnd = path.indexOf('/', download + "/download/".length());
+            return (kindEnd > 0 ? path.substring(download, kindEnd) : path.substring(download)) + "/**";
+        }
+        return "/**";
+    }
+}
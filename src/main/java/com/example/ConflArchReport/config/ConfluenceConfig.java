@@ -1,11 +1,13 @@
 package com.example.ConflArchReport.config;
 
+import io.micrometer.observation.ObservationRegistry;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.core5.ssl.SSLContextBuilder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -36,7 +38,7 @@ public class ConfluenceConfig {
     private String keystorePassword;
 
     @Bean("confluenceRestTemplate")
-    public RestTemplate confluenceRestTemplate() throws Exception {
+    public RestTemplate confluenceRestTemplate(ObjectProvider<ObservationRegistry> observationRegistry) throws Exception {
         RestTemplate restTemplate;
 
         if (keystorePath != null && !keystorePath.isBlank() && keystorePassword != null) {
@@ -65,6 +67,9 @@ public class ConfluenceConfig {
             request.getHeaders().set(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
             return execution.execute(request, body);
         });
+        // Каждый вызов — спан клиента в трассе экспорта и замер http.client.requests
+        restTemplate.setObservationRegistry(observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
+        restTemplate.setObservationConvention(new ConfluenceClientObservationConvention());
         return restTemplate;
     }
 
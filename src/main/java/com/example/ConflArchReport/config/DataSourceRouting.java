@@ -0,0 +1,134 @@
+package com.example.ConflArchReport.config;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.function.Supplier;
+
+/**
+ * Выбор пула БД для запросов каталога архивов (см. {@link ReplicaDataSourceConfig}):
+ * <ul>
+ *     <li>{@link #onReplica} — чтение в транзакции только для чтения на реплике;</li>
+ *     <li>{@link #onPrimary} — всё внутри на основной БД, даже чтения через {@link #onReplica};</li>
+ *     <li>{@link #recordWrite} — после сохранения архива клиент app.datasource.replica.sticky-ms читает с основной БД
+ *     (cookie {@value #STICKY_COOKIE}), чтобы увидеть свою запись, пока реплика догоняет.</li>
+ * </ul>
+ * Без app.datasource.replica.url всё идёт в основную БД, а {@link #onReplica} — просто транзакция только для чтения.
+ */
+@Component
+public class DataSourceRouting {
+
+    public static final String STICKY_COOKIE = "db-primary-until";
+
+    private static final ThreadLocal<Boolean> replicaRead = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> primaryPinned = new ThreadLocal<>();
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    /** Сколько после записи клиент читает с основной БД (должно превышать отставание реплики), мс */
+    @Value("${app.datasource.replica.sticky-ms:5000}")
+    private long stickyMillis;
+
+    public DataSourceRouting(PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Выполняет чтение в транзакции только для чтения на реплике (если поток не закреплён за основной БД).
+     * Внутри уже открытой транзакции соединение не меняется.
+     */
+    public <T> T onReplica(Supplier<T> read) {
+        Boolean previous = replicaRead.get();
+        replicaRead.set(Boolean.TRUE);
+        try {
+            return readOnlyTransaction.execute(status -> read.get());
+        } finally {
+            restore(replicaRead, previous);
+        }
+    }
+
+    /**
+     * Выполняет действие на основной БД — для чтений, которым нужна только что сделанная запись.
+     */
+    public <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = primaryPinned.get();
+        primaryPinned.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            restore(primaryPinned, previous);
+        }
+    }
+
+    /**
+     * Отмечает запись в каталог: текущий HTTP-запрос и следующие запросы того же клиента в течение
+     * app.datasource.replica.sticky-ms читают с основной БД.
+     */
+    public void recordWrite() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        primaryPinned.set(Boolean.TRUE);
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(STICKY_COOKIE, Long.toString(System.currentTimeMillis() + stickyMillis));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (stickyMillis + 999) / 1000));
+            response.addCookie(cookie);
+        }
+    }
+
+    /**
+     * Закрепляет обработку запроса за основной БД, если клиент недавно писал (cookie ещё действует).
+     *
+     * @return true, если поток закреплён и его нужно освободить через {@link #releaseRequest()}
+     */
+    boolean pinRequestIfSticky(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (STICKY_COOKIE.equals(cookie.getName()) && isFuture(cookie.getValue())) {
+                    primaryPinned.set(Boolean.TRUE);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    void releaseRequest() {
+        primaryPinned.remove();
+    }
+
+    /**
+     * Ключ пула для {@link ReplicaRoutingDataSource}: реплика только для {@link #onReplica} вне закрепления.
+     */
+    static boolean useReplica() {
+        return Boolean.TRUE.equals(replicaRead.get()) && !Boolean.TRUE.equals(primaryPinned.get());
+    }
+
+    private static boolean isFuture(String untilMillis) {
+        try {
+            return Long.parseLong(untilMillis) > System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void restore(ThreadLocal<Boolean> flag, Boolean previous) {
+        if (previous == null) {
+            flag.remove();
+        } else {
+            flag.set(previous);
+        }
+    }
+}
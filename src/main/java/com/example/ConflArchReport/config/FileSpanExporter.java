@@ -0,0 +1,142 @@
+package com.example.ConflArchReport.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Экспорт спанов в локальный файл, по строке JSON на спан — замена коллектора OTLP там, где его нет:
+ * трассу медленной архивации можно найти по traceId (заголовок X-Trace-Id, логи) и разобрать по вызовам.
+ * <p>
+ * Файл дописывается; при превышении maxBytes текущий файл переименовывается в *.1 (предыдущий *.1 удаляется).
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private static final AttributeKey<String> SERVICE_NAME = AttributeKey.stringKey("service.name");
+
+    private final Path file;
+    private final long maxBytes;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Writer writer;
+    private long size;
+
+    public FileSpanExporter(Path file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        try {
+            for (SpanData span : spans) {
+                String line = objectMapper.writeValueAsString(toJson(span)) + "\n";
+                int lineBytes = line.getBytes(StandardCharsets.UTF_8).length;
+                if (writer == null || (size > 0 && size + lineBytes > maxBytes)) {
+                    open(writer != null);
+                }
+                writer.write(line);
+                size += lineBytes;
+            }
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.warn("Не удалось записать спаны в {}: {}", file, e.getMessage());
+            closeQuietly();
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        closeQuietly();
+        return CompletableResultCode.ofSuccess();
+    }
+
+    private void open(boolean rotate) throws IOException {
+        closeQuietly();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        if (rotate) {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        size = Files.size(file);
+    }
+
+    private void closeQuietly() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.debug("Ошибка закрытия {}: {}", file, e.getMessage());
+        }
+        writer = null;
+    }
+
+    private static Map<String, Object> toJson(SpanData span) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("traceId", span.getTraceId());
+        json.put("spanId", span.getSpanId());
+        if (span.getParentSpanContext().isValid()) {
+            json.put("parentSpanId", span.getParentSpanId());
+        }
+        json.put("name", span.getName());
+        json.put("kind", span.getKind().name());
+        json.put("service", span.getResource().getAttribute(SERVICE_NAME));
+        json.put("start", Instant.ofEpochSecond(0, span.getStartEpochNanos()).toString());
+        json.put("durationMs", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000_000.0);
+        json.put("status", span.getStatus().getStatusCode().name());
+        if (!span.getStatus().getDescription().isEmpty()) {
+            json.put("statusDescription", span.getStatus().getDescription());
+        }
+        json.put("attributes", attributes(span.getAttributes()));
+        if (!span.getEvents().isEmpty()) {
+            List<Map<String, Object>> events = new ArrayList<>(span.getEvents().size());
+            for (EventData event : span.getEvents()) {
+                Map<String, Object> e = new LinkedHashMap<>();
+                e.put("name", event.getName());
+                e.put("attributes", attributes(event.getAttributes()));
+                events.add(e);
+            }
+            json.put("events", events);
+        }
+        return json;
+    }
+
+    private static Map<String, Object> attributes(Attributes attributes) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        attributes.forEach((key, value) -> map.put(key.getKey(), value));
+        return map;
+    }
+}
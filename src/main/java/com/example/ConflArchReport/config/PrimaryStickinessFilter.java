@@ -0,0 +1,35 @@
+package com.example.ConflArchReport.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Запросы клиента, недавно сохранившего архив, читают каталог с основной БД ({@link DataSourceRouting#recordWrite}).
+ * Закрепление снимается в конце запроса, в том числе выставленное во время него.
+ */
+@Component
+public class PrimaryStickinessFilter extends OncePerRequestFilter {
+
+    private final DataSourceRouting dataSourceRouting;
+
+    public PrimaryStickinessFilter(DataSourceRouting dataSourceRouting) {
+        this.dataSourceRouting = dataSourceRouting;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        dataSourceRouting.pinRequestIfSticky(request);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            dataSourceRouting.releaseRequest();
+        }
+    }
+}
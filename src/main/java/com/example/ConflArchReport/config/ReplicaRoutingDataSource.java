@@ -0,0 +1,19 @@
+package com.example.ConflArchReport.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Пул основной БД или реплики по флагам потока из {@link DataSourceRouting}.
+ * Оборачивается в LazyConnectionDataSourceProxy: пул выбирается при первом SQL-запросе,
+ * когда флаги уже выставлены, а не при открытии транзакции.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return DataSourceRouting.useReplica() ? REPLICA : PRIMARY;
+    }
+}
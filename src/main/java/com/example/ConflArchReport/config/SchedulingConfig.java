@@ -0,0 +1,15 @@
+package com.example.ConflArchReport.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Фоновые задачи (проверка целостности, перенос в холодное хранилище, запись счётчиков просмотров).
+ * Отключаются app.scheduling.enabled=false — так запускается пакетный импорт из командной строки.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "app.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,72 @@
+package com.example.ConflArchReport.config;
+
+import com.example.ConflArchReport.service.ArchiveTracing;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Трассировка (OpenTelemetry через Micrometer Tracing). Spring Boot сам создаёт спаны HTTP-запросов к приложению
+ * и отправляет спаны в OTLP-коллектор, если задан management.otlp.tracing.endpoint; здесь — экспорт в локальный
+ * файл (app.tracing.file.path) и атрибуты архива в спанах запросов к контроллерам.
+ */
+@Configuration
+public class TracingConfig implements WebMvcConfigurer {
+
+    /** Переменные пути контроллеров → атрибуты спана запроса */
+    private static final Map<String, String> PATH_VARIABLE_TAGS = Map.of(
+            "project", ArchiveTracing.PROJECT,
+            "id", ArchiveTracing.ARCHIVE_ID,
+            "runId", "archive.run.id"
+    );
+
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    private final ArchiveTracing tracing;
+
+    public TracingConfig(ArchiveTracing tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * Статический: экспортёр нужен Tracer'у, а этот класс сам зависит от Tracer (через ArchiveTracing).
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.file.path")
+    public static FileSpanExporter fileSpanExporter(@Value("${app.tracing.file.path}") String path,
+                                             @Value("${app.tracing.file.max-size:104857600}") long maxBytes) {
+        return new FileSpanExporter(Path.of(path), maxBytes);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE) instanceof Map<?, ?> variables) {
+                    PATH_VARIABLE_TAGS.forEach((variable, tag) -> {
+                        if (variables.get(variable) instanceof String value) {
+                            tracing.tagCurrent(tag, value);
+                        }
+                    });
+                }
+                // По заголовку трассу медленного запроса можно найти в коллекторе или файле спанов
+                String traceId = tracing.currentTraceId();
+                if (traceId != null) {
+                    response.setHeader(TRACE_ID_HEADER, traceId);
+                }
+                return true;
+            }
+        });
+    }
+}
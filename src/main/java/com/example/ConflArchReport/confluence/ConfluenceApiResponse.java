@@ -14,6 +14,7 @@ public class ConfluenceApiResponse {
     private String title;
     private Map<String, BodyRepresentation> body;
     private Map<String, ChildrenWrapper> children;
+    private Version version;
 
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
@@ -25,6 +26,8 @@ public class ConfluenceApiResponse {
     public void setBody(Map<String, BodyRepresentation> body) { this.body = body; }
     public Map<String, ChildrenWrapper> getChildren() { return children; }
     public void setChildren(Map<String, ChildrenWrapper> children) { this.children = children; }
+    public Version getVersion() { return version; }
+    public void setVersion(Version version) { this.version = version; }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class BodyRepresentation {
@@ -40,19 +43,35 @@ public class ConfluenceApiResponse {
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class ChildrenWrapper {
         private List<ChildRef> results;
+        /** В ответе не все элементы (есть _links.next или size достиг limit) — остальное читается через /child/{type} */
+        private boolean truncated;
 
         public List<ChildRef> getResults() { return results; }
         public void setResults(List<ChildRef> results) { this.results = results; }
+        public boolean isTruncated() { return truncated; }
+        public void setTruncated(boolean truncated) { this.truncated = truncated; }
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class ChildRef {
         private String id;
         private String title;
+        /** _links.download (для вложений) */
+        private String downloadPath;
 
         public String getId() { return id; }
         public void setId(String id) { this.id = id; }
         public String getTitle() { return title; }
         public void setTitle(String title) { this.title = title; }
+        public String getDownloadPath() { return downloadPath; }
+        public void setDownloadPath(String downloadPath) { this.downloadPath = downloadPath; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Version {
+        private Integer number;
+
+        public Integer getNumber() { return number; }
+        public void setNumber(Integer number) { this.number = number; }
     }
 }
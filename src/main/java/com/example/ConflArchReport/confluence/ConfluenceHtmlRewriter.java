@@ -0,0 +1,475 @@
+package com.example.ConflArchReport.confluence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Однопроходная замена ссылок в HTML страниц Confluence на относительные пути внутри архива.
+ * Разбирает теги простым токенизатором (без регулярных выражений и без построения DOM) и
+ * пишет результат сразу в {@link Appendable}: дополнительная память — только на значение текущего атрибута.
+ * <p>
+ * Заменяются значения атрибутов href/src (и data-*-src):
+ * <ul>
+ *     <li>/download/attachments/{pageId}/{file} и /download/thumbnails/{pageId}/{file} → attachments/...</li>
+ *     <li>/pages/viewpage.action?pageId={id}, /spaces/{key}/pages/{id}/..., /display/{key}/{title} → файл страницы в архиве</li>
+ *     <li>статика Confluence (/s/..., /images/icons/..., /download/resources/...) → URL в общем наборе ресурсов приложения</li>
+ * </ul>
+ * Ссылки на страницы, которых нет в архиве, и не сохранённая статика остаются как есть.
+ */
+public class ConfluenceHtmlRewriter {
+
+    private static final String ATTACHMENTS_PATH = "/download/attachments/";
+    private static final String THUMBNAILS_PATH = "/download/thumbnails/";
+    private static final String VIEWPAGE_PATH = "/pages/viewpage.action";
+    private static final String SPACES_PATH = "/spaces/";
+    private static final String DISPLAY_PATH = "/display/";
+    /** Префиксы статических ресурсов Confluence (CSS, иконки, смайлы, картинки макросов) */
+    private static final List<String> ASSET_PREFIXES = List.of("/s/", "/images/icons/", "/download/resources/");
+    private static final int MAX_EXTENSION_LENGTH = 10;
+
+    /** Ключ "pageId/имя файла" (как в Confluence и после sanitizeFilename) → путь в zip */
+    private final Map<String, String> attachmentPaths;
+    /** pageId → имя HTML-файла страницы в архиве */
+    private final Map<String, String> pageFilesById;
+    /** Заголовок страницы → имя HTML-файла страницы в архиве */
+    private final Map<String, String> pageFilesByTitle;
+    /** Путь статического ресурса от корня Confluence (/s/..., /images/icons/...) → URL в общем наборе ресурсов */
+    private final Map<String, String> assetUrls;
+    /** scheme://host[:port] экземпляра Confluence — абсолютные ссылки на статику других хостов не трогаем */
+    private final String confluenceOrigin;
+    /** Контекстный путь Confluence (например /confluence) или пустая строка */
+    private final String contextPath;
+
+    public ConfluenceHtmlRewriter(Map<String, String> attachmentPaths,
+                                  Map<String, String> pageFilesById,
+                                  Map<String, String> pageFilesByTitle) {
+        this(attachmentPaths, pageFilesById, pageFilesByTitle, Map.of(), null);
+    }
+
+    /**
+     * @param assetUrls     путь статики от корня Confluence → URL в общем наборе ресурсов
+     * @param confluenceBase базовый URL Confluence вместе с контекстным путём (https://host/confluence)
+     */
+    public ConfluenceHtmlRewriter(Map<String, String> attachmentPaths,
+                                  Map<String, String> pageFilesById,
+                                  Map<String, String> pageFilesByTitle,
+                                  Map<String, String> assetUrls,
+                                  String confluenceBase) {
+        this.attachmentPaths = attachmentPaths;
+        this.pageFilesById = pageFilesById;
+        this.pageFilesByTitle = pageFilesByTitle;
+        this.assetUrls = assetUrls;
+        String origin = null;
+        String context = "";
+        if (confluenceBase != null) {
+            int hostStart = confluenceBase.indexOf("://");
+            int pathStart = hostStart >= 0 ? confluenceBase.indexOf('/', hostStart + 3) : -1;
+            origin = pathStart >= 0 ? confluenceBase.substring(0, pathStart) : confluenceBase;
+            context = pathStart >= 0 ? confluenceBase.substring(pathStart).replaceAll("/+$", "") : "";
+        }
+        this.confluenceOrigin = origin;
+        this.contextPath = context;
+    }
+
+    /**
+     * Собирает пути статических ресурсов Confluence, на которые ссылается страница (без перезаписи).
+     */
+    public Set<String> findAssetPaths(CharSequence html) {
+        Set<String> found = new HashSet<>();
+        try {
+            process(html, null, found);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return found;
+    }
+
+    public String rewrite(String html) {
+        StringBuilder sb = new StringBuilder(html.length() + 256);
+        try {
+            rewrite(html, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Переписывает ссылки за один проход по html, записывая результат в out.
+     */
+    public void rewrite(CharSequence html, Appendable out) throws IOException {
+        process(html, out, null);
+    }
+
+    /**
+     * Общий проход токенизатора: out == null — только сбор путей статики в assetsFound.
+     */
+    private void process(CharSequence html, Appendable out, Set<String> assetsFound) throws IOException {
+        int n = html.length();
+        int copyFrom = 0;
+        int i = 0;
+        while (i < n) {
+            int lt = indexOf(html, '<', i);
+            if (lt < 0) {
+                break;
+            }
+            if (startsWith(html, lt, "<!--")) {
+                int end = indexOf(html, "-->", lt + 4, false);
+                i = end < 0 ? n : end + 3;
+                continue;
+            }
+            if (lt + 1 >= n || !isAsciiLetter(html.charAt(lt + 1))) {
+                i = lt + 1;
+                continue;
+            }
+
+            int nameStart = lt + 1;
+            int k = nameStart;
+            while (k < n && isTagNameChar(html.charAt(k))) {
+                k++;
+            }
+            boolean rawText = regionEqualsIgnoreCase(html, nameStart, k, "script")
+                    || regionEqualsIgnoreCase(html, nameStart, k, "style");
+            String rawTextTag = rawText ? html.subSequence(nameStart, k).toString() : null;
+
+            // Атрибуты тега
+            while (k < n) {
+                char c = html.charAt(k);
+                if (c == '>') {
+                    k++;
+                    break;
+                }
+                if (Character.isWhitespace(c) || c == '/') {
+                    k++;
+                    continue;
+                }
+                int attrStart = k;
+                while (k < n && !isAttrNameEnd(html.charAt(k))) {
+                    k++;
+                }
+                int attrEnd = k;
+                while (k < n && Character.isWhitespace(html.charAt(k))) {
+                    k++;
+                }
+                if (k >= n || html.charAt(k) != '=') {
+                    continue;
+                }
+                k++;
+                while (k < n && Character.isWhitespace(html.charAt(k))) {
+                    k++;
+                }
+                if (k >= n) {
+                    break;
+                }
+                int valueStart;
+                int valueEnd;
+                char quote = html.charAt(k);
+                if (quote == '"' || quote == '\'') {
+                    valueStart = k + 1;
+                    valueEnd = indexOf(html, quote, valueStart);
+                    if (valueEnd < 0) {
+                        valueEnd = n;
+                    }
+                    k = Math.min(valueEnd + 1, n);
+                } else {
+                    valueStart = k;
+                    while (k < n && !Character.isWhitespace(html.charAt(k)) && html.charAt(k) != '>') {
+                        k++;
+                    }
+                    valueEnd = k;
+                }
+                // href, src и производные вроде data-image-src
+                if (regionEndsWithIgnoreCase(html, attrStart, attrEnd, "href")
+                        || regionEndsWithIgnoreCase(html, attrStart, attrEnd, "src")) {
+                    String replacement = resolve(html.subSequence(valueStart, valueEnd).toString(), assetsFound);
+                    if (replacement != null && out != null) {
+                        out.append(html, copyFrom, attrStart);
+                        out.append(html, attrStart, attrEnd).append("=\"").append(replacement).append('"');
+                        copyFrom = k;
+                    }
+                }
+            }
+            i = k;
+
+            if (rawText) {
+                // Содержимое script/style не разбираем как разметку
+                int close = indexOf(html, "</" + rawTextTag, i, true);
+                i = close < 0 ? n : close;
+            }
+        }
+        if (out != null) {
+            out.append(html, copyFrom, n);
+        }
+    }
+
+    /**
+     * Путь в архиве для ссылки Confluence или null, если ссылку менять не нужно.
+     */
+    private String resolve(String value, Set<String> assetsFound) {
+        String url = value.indexOf('&') >= 0 ? value.replace("&amp;", "&") : value;
+
+        int a = url.indexOf(ATTACHMENTS_PATH);
+        if (a >= 0) {
+            return resolveAttachment(url, a + ATTACHMENTS_PATH.length());
+        }
+        a = url.indexOf(THUMBNAILS_PATH);
+        if (a >= 0) {
+            return resolveAttachment(url, a + THUMBNAILS_PATH.length());
+        }
+
+        String file = null;
+        if (url.contains(VIEWPAGE_PATH)) {
+            String pageId = queryParam(url, "pageId");
+            file = pageId != null ? pageFilesById.get(pageId) : null;
+        } else if ((a = url.indexOf(SPACES_PATH)) >= 0) {
+            int pages = url.indexOf("/pages/", a + SPACES_PATH.length());
+            if (pages >= 0) {
+                String pageId = leadingDigits(url, pages + "/pages/".length());
+                file = pageId != null ? pageFilesById.get(pageId) : null;
+            }
+        } else if ((a = url.indexOf(DISPLAY_PATH)) >= 0) {
+            int spaceEnd = url.indexOf('/', a + DISPLAY_PATH.length());
+            if (spaceEnd >= 0) {
+                String title = decode(url.substring(spaceEnd + 1, pathEnd(url, spaceEnd + 1)));
+                file = pageFilesByTitle.get(title);
+            }
+        }
+        if (file == null) {
+            String assetPath = assetPath(url);
+            if (assetPath == null) {
+                return null;
+            }
+            if (assetsFound != null) {
+                assetsFound.add(assetPath);
+            }
+            return assetUrls.get(assetPath);
+        }
+        int hash = url.indexOf('#');
+        return hash >= 0 ? file + url.substring(hash) : file;
+    }
+
+    /**
+     * Путь статического ресурса от корня Confluence (без контекстного пути, с нормализованным query) или null,
+     * если это не статика этого экземпляра. Query входит в ключ: batch.css?media=print и batch.js?locale=ru-RU —
+     * разные ресурсы.
+     */
+    private String assetPath(String url) {
+        String path;
+        if (url.startsWith("//")) {
+            return null;
+        }
+        if (url.startsWith("/")) {
+            path = url;
+        } else if (confluenceOrigin != null && url.startsWith(confluenceOrigin + "/")) {
+            path = url.substring(confluenceOrigin.length());
+        } else {
+            return null;
+        }
+        if (!path.startsWith(contextPath + "/")) {
+            return null;
+        }
+        path = normalizeAssetPath(path.substring(contextPath.length()));
+        for (String prefix : ASSET_PREFIXES) {
+            if (path.startsWith(prefix) && path.length() > prefix.length()) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ключ ресурса: путь и query без фрагмента; параметры упорядочены (порядок в разметке на ответ не влияет),
+     * пустые параметры и пустой query отбрасываются. Кодирование параметров не меняется.
+     */
+    public static String normalizeAssetPath(String pathAndQuery) {
+        int hash = pathAndQuery.indexOf('#');
+        String value = hash >= 0 ? pathAndQuery.substring(0, hash) : pathAndQuery;
+        int q = value.indexOf('?');
+        if (q < 0) {
+            return value;
+        }
+        String query = Arrays.stream(value.substring(q + 1).split("&"))
+                .filter(param -> !param.isEmpty())
+                .sorted()
+                .collect(Collectors.joining("&"));
+        return query.isEmpty() ? value.substring(0, q) : value.substring(0, q + 1) + query;
+    }
+
+    private String resolveAttachment(String url, int from) {
+        int slash = url.indexOf('/', from);
+        if (slash < 0) {
+            return null;
+        }
+        String pid = url.substring(from, slash);
+        String filename = url.substring(slash + 1, pathEnd(url, slash + 1));
+        if (filename.isEmpty() || !pid.equals(leadingDigits(pid, 0))) {
+            return null;
+        }
+        String zipPath = attachmentPaths.get(pid + "/" + filename);
+        if (zipPath == null && (filename.indexOf('%') >= 0 || filename.indexOf('+') >= 0)) {
+            zipPath = attachmentPaths.get(pid + "/" + decode(filename));
+        }
+        if (zipPath == null) {
+            zipPath = attachmentPaths.get(pid + "/" + sanitizeAttachmentFilename(filename));
+        }
+        if (zipPath == null) {
+            zipPath = attachmentPaths.get(pid + "/" + sanitizeFilename(filename));
+        }
+        return zipPath;
+    }
+
+    /**
+     * Имя файла, безопасное для архива: всё, кроме латиницы, кириллицы, цифр, '_' и '-', заменяется на '_',
+     * последовательности пробельных символов — на один '_'.
+     */
+    public static String sanitizeFilename(String name) {
+        if (name == null) return "page";
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean inWhitespace = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+                if (!inWhitespace) {
+                    sb.append('_');
+                    inWhitespace = true;
+                }
+                continue;
+            }
+            inWhitespace = false;
+            boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || (c >= 'а' && c <= 'я') || (c >= 'А' && c <= 'Я') || c == 'ё' || c == 'Ё'
+                    || c == '_' || c == '-';
+            sb.append(allowed ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Имя вложения для архива: {@link #sanitizeFilename} для имени без расширения, расширение (латиница и цифры,
+     * до {@value #MAX_EXTENSION_LENGTH} символов) сохраняется — по нему выбираются хранение в zip без сжатия,
+     * Content-Type при выдаче и уменьшенные копии картинок.
+     */
+    public static String sanitizeAttachmentFilename(String name) {
+        if (name == null) return "file";
+        int dot = name.lastIndexOf('.');
+        int extensionLength = name.length() - dot - 1;
+        if (dot <= 0 || extensionLength == 0 || extensionLength > MAX_EXTENSION_LENGTH) {
+            return sanitizeFilename(name);
+        }
+        for (int i = dot + 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9')) {
+                return sanitizeFilename(name);
+            }
+        }
+        return sanitizeFilename(name.substring(0, dot)) + name.substring(dot);
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s.replace('+', ' '), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return s;
+        }
+    }
+
+    private static String queryParam(String url, String name) {
+        int q = url.indexOf('?');
+        while (q >= 0) {
+            int start = q + 1;
+            if (url.startsWith(name + "=", start)) {
+                int end = start + name.length() + 1;
+                int stop = end;
+                while (stop < url.length() && url.charAt(stop) != '&' && url.charAt(stop) != '#') {
+                    stop++;
+                }
+                return url.substring(end, stop);
+            }
+            q = url.indexOf('&', start);
+        }
+        return null;
+    }
+
+    private static String leadingDigits(String s, int from) {
+        int end = from;
+        while (end < s.length() && Character.isDigit(s.charAt(end))) {
+            end++;
+        }
+        return end > from ? s.substring(from, end) : null;
+    }
+
+    private static int pathEnd(String url, int from) {
+        int end = from;
+        while (end < url.length() && url.charAt(end) != '?' && url.charAt(end) != '#') {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isTagNameChar(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':';
+    }
+
+    private static boolean isAttrNameEnd(char c) {
+        return Character.isWhitespace(c) || c == '=' || c == '>' || c == '/';
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence s, String needle, int from, boolean ignoreCase) {
+        int last = s.length() - needle.length();
+        for (int i = from; i <= last; i++) {
+            if (ignoreCase ? regionEqualsIgnoreCase(s, i, i + needle.length(), needle) : startsWith(s, i, needle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence s, int from, String prefix) {
+        if (from + prefix.length() > s.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEndsWithIgnoreCase(CharSequence s, int start, int end, String suffix) {
+        return end - start >= suffix.length() && regionEqualsIgnoreCase(s, end - suffix.length(), end, suffix);
+    }
+
+    private static boolean regionEqualsIgnoreCase(CharSequence s, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(s.charAt(start + i)) != Character.toLowerCase(expected.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.ConflArchReport.confluence;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый разбор ответов Confluence REST API (Jackson streaming): из ответа берутся только нужные поля,
+ * остальное (space, history, _expandable и т.д.) пропускается без построения дерева.
+ * Тело страницы материализуется один раз — строкой значения нужного представления.
+ */
+public final class ConfluenceJsonReader {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private ConfluenceJsonReader() {
+    }
+
+    /**
+     * Элемент списка: страница или вложение.
+     *
+     * @param downloadPath _links.download (для вложений), иначе null
+     */
+    public record ContentRef(String id, String title, String downloadPath) {}
+
+    /**
+     * Страница списка /child/{type}: число элементов и признак следующей страницы (_links.next).
+     */
+    public record ListingPage(int size, boolean hasNext) {}
+
+    /**
+     * Страница /rest/api/content/{id}: id, type, title, version.number, body.{представление}.value, children.{тип}.results.
+     */
+    public static ConfluenceApiResponse readPage(InputStream in) throws IOException {
+        try (JsonParser p = JSON.createParser(in)) {
+            requireStart(p.nextToken(), JsonToken.START_OBJECT);
+            return readPageObject(p);
+        }
+    }
+
+    /**
+     * Список /rest/api/content/{id}/child/{type}: каждый элемент results передаётся в consumer по мере чтения.
+     */
+    public static ListingPage readListing(InputStream in, Consumer<ContentRef> consumer) throws IOException {
+        int size = 0;
+        boolean hasNext = false;
+        try (JsonParser p = JSON.createParser(in)) {
+            requireStart(p.nextToken(), JsonToken.START_OBJECT);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        consumer.accept(readContentRef(p));
+                        size++;
+                    }
+                } else if ("_links".equals(field) && value == JsonToken.START_OBJECT) {
+                    hasNext = readLinks(p).get("next") != null;
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return new ListingPage(size, hasNext);
+    }
+
+    /**
+     * Список /rest/api/content/{id}/child/page?expand=...: каждая страница (с раскрытыми телом и вложениями)
+     * передаётся в consumer по мере чтения.
+     */
+    public static ListingPage readPageListing(InputStream in, Consumer<ConfluenceApiResponse> consumer) throws IOException {
+        int size = 0;
+        boolean hasNext = false;
+        try (JsonParser p = JSON.createParser(in)) {
+            requireStart(p.nextToken(), JsonToken.START_OBJECT);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        consumer.accept(readPageObject(p));
+                        size++;
+                    }
+                } else if ("_links".equals(field) && value == JsonToken.START_OBJECT) {
+                    hasNext = readLinks(p).get("next") != null;
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return new ListingPage(size, hasNext);
+    }
+
+    private static ConfluenceApiResponse readPageObject(JsonParser p) throws IOException {
+        ConfluenceApiResponse page = new ConfluenceApiResponse();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "id" -> page.setId(p.getValueAsString());
+                case "type" -> page.setType(p.getValueAsString());
+                case "title" -> page.setTitle(p.getValueAsString());
+                case "version" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        page.setVersion(readVersion(p));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                case "body" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        page.setBody(readBody(p));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                case "children" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        page.setChildren(readChildren(p));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return page;
+    }
+
+    private static ConfluenceApiResponse.Version readVersion(JsonParser p) throws IOException {
+        ConfluenceApiResponse.Version version = new ConfluenceApiResponse.Version();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("number".equals(field) && p.currentToken().isNumeric()) {
+                version.setNumber(p.getIntValue());
+            } else {
+                p.skipChildren();
+            }
+        }
+        return version;
+    }
+
+    private static Map<String, ConfluenceApiResponse.BodyRepresentation> readBody(JsonParser p) throws IOException {
+        Map<String, ConfluenceApiResponse.BodyRepresentation> body = new HashMap<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String representation = p.currentName();
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            ConfluenceApiResponse.BodyRepresentation br = new ConfluenceApiResponse.BodyRepresentation();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "value" -> br.setValue(p.getValueAsString());
+                    case "representation" -> br.setRepresentation(p.getValueAsString());
+                    default -> p.skipChildren();
+                }
+            }
+            body.put(representation, br);
+        }
+        return body;
+    }
+
+    private static Map<String, ConfluenceApiResponse.ChildrenWrapper> readChildren(JsonParser p) throws IOException {
+        Map<String, ConfluenceApiResponse.ChildrenWrapper> children = new HashMap<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String type = p.currentName();
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            List<ConfluenceApiResponse.ChildRef> results = new ArrayList<>();
+            int limit = -1;
+            boolean hasNext = false;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        ContentRef ref = readContentRef(p);
+                        ConfluenceApiResponse.ChildRef child = new ConfluenceApiResponse.ChildRef();
+                        child.setId(ref.id());
+                        child.setTitle(ref.title());
+                        child.setDownloadPath(ref.downloadPath());
+                        results.add(child);
+                    }
+                } else if ("limit".equals(field) && value.isNumeric()) {
+                    limit = p.getIntValue();
+                } else if ("_links".equals(field) && value == JsonToken.START_OBJECT) {
+                    hasNext = readLinks(p).get("next") != null;
+                } else {
+                    p.skipChildren();
+                }
+            }
+            ConfluenceApiResponse.ChildrenWrapper wrapper = new ConfluenceApiResponse.ChildrenWrapper();
+            wrapper.setResults(results);
+            wrapper.setTruncated(hasNext || (limit > 0 && results.size() >= limit));
+            children.put(type, wrapper);
+        }
+        return children;
+    }
+
+    private static ContentRef readContentRef(JsonParser p) throws IOException {
+        String id = null;
+        String title = null;
+        String download = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "id" -> id = p.getValueAsString();
+                case "title" -> title = p.getValueAsString();
+                case "_links" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        download = readLinks(p).get("download");
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return new ContentRef(id, title, download);
+    }
+
+    private static Map<String, String> readLinks(JsonParser p) throws IOException {
+        Map<String, String> links = new HashMap<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if (value == JsonToken.VALUE_STRING) {
+                links.put(name, p.getText());
+            } else {
+                p.skipChildren();
+            }
+        }
+        return links;
+    }
+
+    private static void requireStart(JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new IOException("Неожиданный ответ Confluence: ожидался " + expected + ", получен " + token);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.ConflArchReport.confluence;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Облегчение разметки Confluence (export_view) без изменения отображения:
+ * <ul>
+ *     <li>удаляются комментарии (кроме условных &lt;!--[if ...]&gt;);</li>
+ *     <li>удаляются атрибуты data-* (служебные данные макросов и редактора) и пустые style/class;</li>
+ *     <li>в style убираются пробелы вокруг ':' и ';' и завершающая ';';</li>
+ *     <li>удаляются пустые &lt;span&gt;&lt;/span&gt; без атрибутов;</li>
+ *     <li>последовательности пробельных символов в тексте сворачиваются в один символ.</li>
+ * </ul>
+ * Содержимое pre, textarea, script и style не изменяется.
+ * <p>
+ * Правила рассчитаны только на разметку Confluence: страницы других генераторов (отчёты JMeter, Gatling)
+ * используют data-* и пробелы в скриптах и стилях, поэтому для загруженных архивов сначала проверяется
+ * {@link #isConfluencePage(String)}.
+ */
+public class HtmlMinifier {
+
+    /** Метка страниц, сохранённых экспортом приложения (в &lt;head&gt; каждой страницы) */
+    public static final String GENERATOR_META = "<meta name=\"generator\" content=\"ConflArchReport\">";
+
+    /**
+     * Признаки разметки Confluence: метка экспорта приложения, экспорт пространства в HTML,
+     * классы и атрибуты макросов export_view.
+     */
+    private static final List<String> CONFLUENCE_MARKERS = List.of(
+            GENERATOR_META,
+            "class=\"wiki-content",
+            "generated by Confluence",
+            "data-macro-name=",
+            "confluence-embedded-",
+            "confluence-information-macro",
+            "class=\"confluence-link");
+
+    private static final Set<String> VERBATIM_TAGS = Set.of("pre", "textarea", "script", "style");
+
+    /**
+     * Похожа ли страница на выгрузку Confluence (признаки ищутся как есть, без разбора разметки).
+     */
+    public static boolean isConfluencePage(String html) {
+        for (String marker : CONFLUENCE_MARKERS) {
+            if (html.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String minify(String html) {
+        int n = html.length();
+        StringBuilder out = new StringBuilder(n);
+        int i = 0;
+        while (i < n) {
+            char c = html.charAt(i);
+            if (c != '<') {
+                i = appendText(html, i, out);
+                continue;
+            }
+            if (html.startsWith("<!--", i)) {
+                int end = html.indexOf("-->", i + 4);
+                int stop = end < 0 ? n : end + 3;
+                if (html.startsWith("<!--[if", i)) {
+                    out.append(html, i, stop);
+                }
+                i = stop;
+                continue;
+            }
+            if (i + 1 < n && isAsciiLetter(html.charAt(i + 1))) {
+                i = appendStartTag(html, i, out);
+                continue;
+            }
+            // Закрывающие теги, <!DOCTYPE> и прочее — как есть
+            int end = html.indexOf('>', i);
+            int stop = end < 0 ? n : end + 1;
+            out.append(html, i, stop);
+            i = stop;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Текст до следующего '<' со свёрнутыми пробельными символами (перевод строки сохраняется, если он был в серии).
+     */
+    private int appendText(String html, int from, StringBuilder out) {
+        int n = html.length();
+        int i = from;
+        while (i < n && html.charAt(i) != '<') {
+            char c = html.charAt(i);
+            if (isHtmlWhitespace(c)) {
+                boolean newline = false;
+                while (i < n && isHtmlWhitespace(html.charAt(i))) {
+                    newline |= html.charAt(i) == '\n';
+                    i++;
+                }
+                // Пробел уже выведен (например, перед удалённым пустым span) — второй ничего не меняет в отображении
+                if (out.length() == 0 || !isHtmlWhitespace(out.charAt(out.length() - 1))) {
+                    out.append(newline ? '\n' : ' ');
+                }
+                continue;
+            }
+            out.append(c);
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Открывающий тег с отфильтрованными атрибутами; для pre/textarea/script/style содержимое копируется без изменений.
+     */
+    private int appendStartTag(String html, int lt, StringBuilder out) {
+        int n = html.length();
+        int k = lt + 1;
+        while (k < n && isTagNameChar(html.charAt(k))) {
+            k++;
+        }
+        String name = html.substring(lt + 1, k);
+        String lowerName = name.toLowerCase();
+        StringBuilder tag = new StringBuilder(64).append('<').append(name);
+        boolean keptAttributes = false;
+        boolean selfClosing = false;
+        boolean closed = false;
+
+        while (k < n) {
+            char c = html.charAt(k);
+            if (c == '>') {
+                k++;
+                closed = true;
+                break;
+            }
+            if (c == '/') {
+                selfClosing = true;
+                k++;
+                continue;
+            }
+            if (isHtmlWhitespace(c)) {
+                k++;
+                continue;
+            }
+            selfClosing = false;
+            int attrStart = k;
+            while (k < n && !isAttrNameEnd(html.charAt(k))) {
+                k++;
+            }
+            String attrName = html.substring(attrStart, k);
+            int afterName = k;
+            while (k < n && isHtmlWhitespace(html.charAt(k))) {
+                k++;
+            }
+            String rawValue = null;
+            char quote = 0;
+            if (k < n && html.charAt(k) == '=') {
+                k++;
+                while (k < n && isHtmlWhitespace(html.charAt(k))) {
+                    k++;
+                }
+                if (k < n && (html.charAt(k) == '"' || html.charAt(k) == '\'')) {
+                    quote = html.charAt(k);
+                    int end = html.indexOf(quote, k + 1);
+                    if (end < 0) {
+                        end = n;
+                    }
+                    rawValue = html.substring(k + 1, end);
+                    k = Math.min(end + 1, n);
+                } else {
+                    int start = k;
+                    while (k < n && !isHtmlWhitespace(html.charAt(k)) && html.charAt(k) != '>') {
+                        k++;
+                    }
+                    rawValue = html.substring(start, k);
+                }
+            } else {
+                k = afterName;
+            }
+
+            String lowerAttr = attrName.toLowerCase();
+            if (lowerAttr.startsWith("data-")) {
+                continue;
+            }
+            if (rawValue != null && ("style".equals(lowerAttr) || "class".equals(lowerAttr))) {
+                rawValue = "style".equals(lowerAttr) ? compactStyle(rawValue) : rawValue.trim();
+                if (rawValue.isEmpty()) {
+                    continue;
+                }
+            }
+            tag.append(' ').append(attrName);
+            if (rawValue != null) {
+                char q = quote != 0 ? quote : '"';
+                if (quote == 0 && rawValue.indexOf('"') >= 0) {
+                    q = '\'';
+                }
+                tag.append('=').append(q).append(rawValue).append(q);
+            }
+            keptAttributes = true;
+        }
+
+        if (!closed) {
+            // Незакрытый тег в конце документа — оставляем исходный текст
+            out.append(html, lt, n);
+            return n;
+        }
+        if ("span".equals(lowerName) && !keptAttributes && !selfClosing && startsWithIgnoreCase(html, k, "</span>")) {
+            return k + "</span>".length();
+        }
+        if (selfClosing) {
+            tag.append('/');
+        }
+        out.append(tag).append('>');
+
+        if (VERBATIM_TAGS.contains(lowerName) && !selfClosing) {
+            int close = indexOfIgnoreCase(html, "</" + lowerName, k);
+            int stop = close < 0 ? n : close;
+            out.append(html, k, stop);
+            return stop;
+        }
+        return k;
+    }
+
+    /**
+     * "color: red ; width: 10px;" → "color:red;width:10px"
+     */
+    static String compactStyle(String style) {
+        if (style.indexOf('"') >= 0 || style.indexOf('\'') >= 0 || style.indexOf('(') >= 0) {
+            // ';' может встречаться внутри строк и url(...) — не разбираем
+            return style.trim();
+        }
+        StringBuilder sb = new StringBuilder(style.length());
+        for (String declaration : style.split(";")) {
+            String d = declaration.trim();
+            if (d.isEmpty()) {
+                continue;
+            }
+            int colon = d.indexOf(':');
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            if (colon > 0) {
+                sb.append(d, 0, colon).append(':').append(d.substring(colon + 1).trim());
+            } else {
+                sb.append(d);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isHtmlWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isTagNameChar(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':';
+    }
+
+    private static boolean isAttrNameEnd(char c) {
+        return isHtmlWhitespace(c) || c == '=' || c == '>' || c == '/';
+    }
+
+    private static boolean startsWithIgnoreCase(String s, int from, String prefix) {
+        return s.regionMatches(true, from, prefix, 0, prefix.length());
+    }
+
+    private static int indexOfIgnoreCase(String s, String needle, int from) {
+        int last = s.length() - needle.length();
+        for (int i = from; i <= last; i++) {
+            if (s.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.ConflArchReport.confluence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Подключение уменьшенных копий картинок к разметке страницы: у &lt;img&gt;, src которого есть в карте копий,
+ * src заменяется на наибольшую копию, добавляются srcset (копии и оригинал с шириной) и sizes по атрибуту width.
+ * Картинка вне ссылки оборачивается в &lt;a href="оригинал"&gt;, чтобы оригинал открывался по клику.
+ * Разметка разбирается простым токенизатором, как в {@link HtmlMinifier}; содержимое script/style не трогается.
+ */
+public class ResponsiveImageRewriter {
+
+    public static final String ORIGINAL_LINK_CLASS = "confluence-original-image";
+
+    /**
+     * Уменьшенная копия картинки: путь в архиве и ширина в пикселях.
+     */
+    public record Variant(String path, int width) {}
+
+    /**
+     * Ширина оригинала и его копии по возрастанию ширины.
+     */
+    public record ResponsiveImage(int width, List<Variant> variants) {}
+
+    /** Путь оригинала в архиве (как в src после {@link ConfluenceHtmlRewriter}) → копии */
+    private final Map<String, ResponsiveImage> images;
+
+    public ResponsiveImageRewriter(Map<String, ResponsiveImage> images) {
+        this.images = images;
+    }
+
+    public String rewrite(String html) {
+        if (images.isEmpty()) {
+            return html;
+        }
+        int n = html.length();
+        StringBuilder out = new StringBuilder(n + 256);
+        int linkDepth = 0;
+        int copyFrom = 0;
+        int i = 0;
+        while (i < n) {
+            int lt = html.indexOf('<', i);
+            if (lt < 0) {
+                break;
+            }
+            if (html.startsWith("<!--", lt)) {
+                int end = html.indexOf("-->", lt + 4);
+                i = end < 0 ? n : end + 3;
+                continue;
+            }
+            int end = tagEnd(html, lt);
+            if (end < 0) {
+                break;
+            }
+            if (isTag(html, lt, "<a")) {
+                linkDepth++;
+            } else if (isTag(html, lt, "</a")) {
+                linkDepth = Math.max(0, linkDepth - 1);
+            } else if (isTag(html, lt, "<script") || isTag(html, lt, "<style")) {
+                String name = isTag(html, lt, "<script") ? "</script" : "</style";
+                int close = indexOfIgnoreCase(html, name, end);
+                i = close < 0 ? n : close;
+                continue;
+            } else if (isTag(html, lt, "<img")) {
+                String replacement = rewriteImg(html.substring(lt, end), linkDepth > 0);
+                if (replacement != null) {
+                    out.append(html, copyFrom, lt).append(replacement);
+                    copyFrom = end;
+                }
+            }
+            i = end;
+        }
+        out.append(html, copyFrom, n);
+        return out.toString();
+    }
+
+    /**
+     * Новый тег (возможно, в обёртке-ссылке) или null, если картинку менять не нужно.
+     */
+    private String rewriteImg(String tag, boolean insideLink) {
+        List<String[]> attributes = parseAttributes(tag);
+        String src = null;
+        String width = null;
+        for (String[] attribute : attributes) {
+            String name = attribute[0].toLowerCase();
+            if ("srcset".equals(name)) {
+                return null;
+            }
+            if ("src".equals(name)) {
+                src = attribute[1];
+            } else if ("width".equals(name)) {
+                width = attribute[1];
+            }
+        }
+        ResponsiveImage image = src != null ? images.get(src) : null;
+        if (image == null || image.variants().isEmpty()) {
+            return null;
+        }
+
+        StringBuilder srcset = new StringBuilder();
+        for (Variant variant : image.variants()) {
+            srcset.append(variant.path()).append(' ').append(variant.width()).append("w, ");
+        }
+        srcset.append(src).append(' ').append(image.width()).append('w');
+
+        boolean explicitWidth = width != null && isDigits(width);
+        StringBuilder img = new StringBuilder(tag.length() + srcset.length() + 64).append("<img");
+        for (String[] attribute : attributes) {
+            String name = attribute[0];
+            if ("src".equalsIgnoreCase(name)) {
+                img.append(" src=\"").append(image.variants().get(image.variants().size() - 1).path()).append('"');
+                img.append(" srcset=\"").append(srcset).append('"');
+                if (explicitWidth) {
+                    // Показанная ширина известна — браузер выберет копию под неё, а не под ширину окна
+                    img.append(" sizes=\"").append(width).append("px\"");
+                }
+                continue;
+            }
+            if ("sizes".equalsIgnoreCase(name) && explicitWidth) {
+                continue;
+            }
+            img.append(' ').append(name);
+            if (attribute[1] != null) {
+                char quote = attribute[1].indexOf('"') >= 0 ? '\'' : '"';
+                img.append('=').append(quote).append(attribute[1]).append(quote);
+            }
+        }
+        img.append('>');
+        if (insideLink) {
+            return img.toString();
+        }
+        return "<a href=\"" + src + "\" class=\"" + ORIGINAL_LINK_CLASS + "\" target=\"_blank\">" + img + "</a>";
+    }
+
+    /**
+     * Атрибуты тега: [имя, значение без кавычек или null].
+     */
+    private static List<String[]> parseAttributes(String tag) {
+        List<String[]> result = new ArrayList<>();
+        int n = tag.length() - 1;
+        int k = 1;
+        while (k < n && !isSpace(tag.charAt(k)) && tag.charAt(k) != '/') {
+            k++;
+        }
+        while (k < n) {
+            char c = tag.charAt(k);
+            if (isSpace(c) || c == '/') {
+                k++;
+                continue;
+            }
+            int nameStart = k;
+            while (k < n && !isSpace(tag.charAt(k)) && tag.charAt(k) != '=' && tag.charAt(k) != '/') {
+                k++;
+            }
+            String name = tag.substring(nameStart, k);
+            while (k < n && isSpace(tag.charAt(k))) {
+                k++;
+            }
+            String value = null;
+            if (k < n && tag.charAt(k) == '=') {
+                k++;
+                while (k < n && isSpace(tag.charAt(k))) {
+                    k++;
+                }
+                if (k < n && (tag.charAt(k) == '"' || tag.charAt(k) == '\'')) {
+                    char quote = tag.charAt(k);
+                    int close = tag.indexOf(quote, k + 1);
+                    if (close < 0 || close > n) {
+                        close = n;
+                    }
+                    value = tag.substring(k + 1, close);
+                    k = close + 1;
+                } else {
+                    int start = k;
+                    while (k < n && !isSpace(tag.charAt(k))) {
+                        k++;
+                    }
+                    value = tag.substring(start, k);
+                }
+            }
+            result.add(new String[]{name, value});
+        }
+        return result;
+    }
+
+    /**
+     * Позиция после '>' тега, начинающегося в lt (с учётом кавычек в значениях атрибутов), или -1.
+     */
+    private static int tagEnd(String html, int lt) {
+        char quote = 0;
+        for (int k = lt + 1; k < html.length(); k++) {
+            char c = html.charAt(k);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return k + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Тег с именем prefix (например "&lt;img"), за которым идёт пробел, '/' или '&gt;'.
+     */
+    private static boolean isTag(String html, int lt, String prefix) {
+        int after = lt + prefix.length();
+        if (!html.regionMatches(true, lt, prefix, 0, prefix.length()) || after >= html.length()) {
+            return false;
+        }
+        char c = html.charAt(after);
+        return isSpace(c) || c == '/' || c == '>';
+    }
+
+    private static boolean isDigits(String value) {
+        return !value.isEmpty() && value.chars().allMatch(Character::isDigit);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static int indexOfIgnoreCase(String s, String needle, int from) {
+        int last = s.length() - needle.length();
+        for (int i = from; i <= last; i++) {
+            if (s.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,12 +1,28 @@
 package com.example.ConflArchReport.controller;
 
+import com.example.ConflArchReport.service.ArchiveIntegrityService;
+import com.example.ConflArchReport.service.ArchiveLayoutMigrationService;
+import com.example.ConflArchReport.service.ArchiveRepackService;
+import com.example.ConflArchReport.service.ArchiveTieringService;
+import com.example.ConflArchReport.service.JfrProfilingService;
 import com.example.ConflArchReport.service.ReportSyncService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.time.Duration;
 import java.util.Map;
 
 @RestController
@@ -14,9 +30,24 @@ import java.util.Map;
 public class AdminController {
 
     private final ReportSyncService reportSyncService;
+    private final ArchiveRepackService archiveRepackService;
+    private final ArchiveIntegrityService archiveIntegrityService;
+    private final ArchiveTieringService archiveTieringService;
+    private final ArchiveLayoutMigrationService archiveLayoutMigrationService;
+    private final JfrProfilingService jfrProfilingService;
 
-    public AdminController(ReportSyncService reportSyncService) {
+    public AdminController(ReportSyncService reportSyncService,
+                           ArchiveRepackService archiveRepackService,
+                           ArchiveIntegrityService archiveIntegrityService,
+                           ArchiveTieringService archiveTieringService,
+                           ArchiveLayoutMigrationService archiveLayoutMigrationService,
+                           JfrProfilingService jfrProfilingService) {
         this.reportSyncService = reportSyncService;
+        this.archiveRepackService = archiveRepackService;
+        this.archiveIntegrityService = archiveIntegrityService;
+        this.archiveTieringService = archiveTieringService;
+        this.archiveLayoutMigrationService = archiveLayoutMigrationService;
+        this.jfrProfilingService = jfrProfilingService;
     }
 
     @PostMapping("/sync")
@@ -33,4 +64,183 @@ public class AdminController {
                     .body(Map.of("error", e.getMessage()));
         }
     }
+
+    /**
+     * Запуск записи Java Flight Recorder (CPU, выделение памяти и события приложения) на minutes минут,
+     * но не дольше app.profiling.jfr.max-duration.
+     */
+    @PostMapping("/profiling")
+    public ResponseEntity<Map<String, Object>> startProfiling(@RequestParam(required = false) Integer minutes) {
+        if (minutes != null && minutes < 1) {
+            return ResponseEntity.badRequest().body(Map.of("error", "minutes должен быть положительным"));
+        }
+        try {
+            if (!jfrProfilingService.start(minutes != null ? Duration.ofMinutes(minutes) : null)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Запись JFR уже идёт"));
+            }
+            return ResponseEntity.accepted().body(Map.of("started", true));
+        } catch (IOException | ParseException | IllegalStateException e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Остановка записи JFR: сводка по горячим местам CPU и выделения памяти и по событиям приложения.
+     */
+    @PostMapping("/profiling/stop")
+    public ResponseEntity<?> stopProfiling() {
+        try {
+            return jfrProfilingService.stop()
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT)
+                            .body(Map.of("error", "Запись JFR не идёт")));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Состояние текущей или последней записи JFR (со сводкой, если запись остановлена).
+     */
+    @GetMapping("/profiling")
+    public ResponseEntity<?> profilingStatus() {
+        try {
+            return jfrProfilingService.getStatus()
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.ok(Map.of("running", false)));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Файл записи JFR для JDK Mission Control или jfr print; во время записи — снимок на текущий момент.
+     * Только с заголовком X-Profiling-Token, равным app.profiling.jfr.download-token: в записи — стеки, аргументы
+     * и данные запросов приложения.
+     */
+    @GetMapping("/profiling/recording")
+    public ResponseEntity<?> downloadRecording(@RequestHeader(value = "X-Profiling-Token", required = false) String token) {
+        if (!jfrProfilingService.isDownloadAllowed(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Скачивание записи JFR требует заголовок X-Profiling-Token"
+                            + " (app.profiling.jfr.download-token)"));
+        }
+        JfrProfilingService.RecordingDownload download;
+        try {
+            download = jfrProfilingService.download().orElse(null);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        }
+        if (download == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Записи JFR нет"));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(download.file().getFileName().toString()).build());
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(download.file(), out);
+            } finally {
+                if (download.temporary()) {
+                    Files.deleteIfExists(download.file());
+                }
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Запуск фоновой перепаковки архивов (всех, проекта или одного архива).
+     */
+    @PostMapping("/repack")
+    public ResponseEntity<Map<String, Object>> startRepack(@RequestParam(required = false) String project,
+                                                           @RequestParam(required = false) String id) {
+        if (!archiveRepackService.startRepack(project, id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Перепаковка уже выполняется"));
+        }
+        return ResponseEntity.accepted().body(Map.of("started", true));
+    }
+
+    /**
+     * Состояние последней перепаковки: сэкономленные байты и TTFB index.html по каждому архиву.
+     */
+    @GetMapping("/repack")
+    public ResponseEntity<?> repackStatus() {
+        return archiveRepackService.getStatus()
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.ok(Map.of("running", false)));
+    }
+
+    /**
+     * Внеплановый запуск фоновой проверки целостности всех архивов.
+     */
+    @PostMapping("/scrub")
+    public ResponseEntity<Map<String, Object>> startScrub() {
+        if (!archiveIntegrityService.startScrub()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Проверка целостности уже выполняется"));
+        }
+        return ResponseEntity.accepted().body(Map.of("started", true));
+    }
+
+    /**
+     * Состояние последней проверки целостности: число проверенных, повреждённых и отсутствующих архивов.
+     */
+    @GetMapping("/scrub")
+    public ResponseEntity<?> scrubStatus() {
+        return archiveIntegrityService.getStatus()
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.ok(Map.of("running", false)));
+    }
+
+    /**
+     * Внеплановый перенос давно не открывавшихся архивов в холодное хранилище.
+     */
+    @PostMapping("/tiering")
+    public ResponseEntity<Map<String, Object>> startDemotion() {
+        if (!archiveTieringService.startDemotion()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Хранение по уровням выключено или перенос уже выполняется"));
+        }
+        return ResponseEntity.accepted().body(Map.of("started", true));
+    }
+
+    /**
+     * Состояние последнего переноса: перенесённые архивы, объём и экономия от пересжатия.
+     */
+    @GetMapping("/tiering")
+    public ResponseEntity<?> tieringStatus() {
+        return archiveTieringService.getStatus()
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.ok(Map.of("running", false)));
+    }
+
+    /**
+     * Запуск фонового переноса архивов (всех или проекта) в раскладку каталогов app.reports.layout.
+     */
+    @PostMapping("/layout-migration")
+    public ResponseEntity<Map<String, Object>> startLayoutMigration(@RequestParam(required = false) String project) {
+        if (!archiveLayoutMigrationService.startMigration(project)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Перенос архивов уже выполняется"));
+        }
+        return ResponseEntity.accepted().body(Map.of("started", true));
+    }
+
+    /**
+     * Состояние последнего переноса архивов между раскладками.
+     */
+    @GetMapping("/layout-migration")
+    public ResponseEntity<?> layoutMigrationStatus() {
+        return archiveLayoutMigrationService.getStatus()
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.ok(Map.of("running", false)));
+    }
 }
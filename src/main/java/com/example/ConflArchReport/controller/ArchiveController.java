@@ -1,17 +1,32 @@
 package com.example.ConflArchReport.controller;
 
+import com.example.ConflArchReport.entity.ArchiveRun;
 import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.service.ArchivalSagaService;
 import com.example.ConflArchReport.service.ArchivedReportService;
+import com.example.ConflArchReport.service.BulkDownloadService;
+import com.example.ConflArchReport.service.CleanupReport;
 import com.example.ConflArchReport.service.ConfluenceArchiveService;
+import com.example.ConflArchReport.service.HtmlMinificationService;
 import com.example.ConflArchReport.service.ZipReportService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/archive")
@@ -20,18 +35,106 @@ public class ArchiveController {
     private final ConfluenceArchiveService confluenceArchiveService;
     private final ZipReportService zipReportService;
     private final ArchivedReportService archivedReportService;
+    private final HtmlMinificationService htmlMinificationService;
+    private final ArchivalSagaService archivalSagaService;
+    private final BulkDownloadService bulkDownloadService;
 
     public ArchiveController(ConfluenceArchiveService confluenceArchiveService,
                              ZipReportService zipReportService,
-                             ArchivedReportService archivedReportService) {
+                             ArchivedReportService archivedReportService,
+                             HtmlMinificationService htmlMinificationService,
+                             ArchivalSagaService archivalSagaService,
+                             BulkDownloadService bulkDownloadService) {
         this.confluenceArchiveService = confluenceArchiveService;
         this.zipReportService = zipReportService;
         this.archivedReportService = archivedReportService;
+        this.htmlMinificationService = htmlMinificationService;
+        this.archivalSagaService = archivalSagaService;
+        this.bulkDownloadService = bulkDownloadService;
+    }
+
+    /**
+     * Архивация целиком на сервере (шаги 1–5) с сохранением состояния после каждого шага.
+     * При ошибке возвращается 500 с состоянием запуска; продолжить — POST /api/archive/runs/{runId}/resume.
+     */
+    @PostMapping("/runs")
+    public ResponseEntity<?> startRun(@RequestBody Map<String, String> request) {
+        String confluenceUrl = request.get("confluenceUrl");
+        String project = request.get("project");
+        if (confluenceUrl == null || confluenceUrl.isBlank() || project == null || project.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Требуются confluenceUrl и project"));
+        }
+        return runResponse(archivalSagaService.start(confluenceUrl, project, request.get("jiraKey")));
+    }
+
+    /**
+     * Продолжение запуска с первого незавершённого шага без повторных запросов уже полученных данных.
+     */
+    @PostMapping("/runs/{runId}/resume")
+    public ResponseEntity<?> resumeRun(@PathVariable Long runId) {
+        try {
+            return runResponse(archivalSagaService.resume(runId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/runs/{runId}")
+    public ResponseEntity<?> getRun(@PathVariable Long runId) {
+        return archivalSagaService.getRun(runId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static ResponseEntity<?> runResponse(ArchiveRun run) {
+        return run.getStatus() == ArchiveRun.Status.COMPLETED
+                ? ResponseEntity.ok(run)
+                : ResponseEntity.internalServerError().body(run);
+    }
+
+    /**
+     * Выгрузка архивов одним zip: по проекту и/или поисковой строке (как на главной странице) либо по списку id проекта.
+     * Архивы вкладываются без пережатия ({project}/{id}.zip), в конце — manifest.csv.
+     */
+    @GetMapping("/bulk-download")
+    public ResponseEntity<?> bulkDownload(@RequestParam(required = false) String project,
+                                          @RequestParam(required = false) String search,
+                                          @RequestParam(required = false) List<String> ids) {
+        boolean hasProject = project != null && !project.isBlank();
+        boolean hasSearch = search != null && !search.isBlank();
+        boolean hasIds = ids != null && !ids.isEmpty();
+        if (!hasProject && !hasSearch) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Укажите project или search"));
+        }
+        if (hasIds && !hasProject) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Для выгрузки по ids укажите project"));
+        }
+        BulkDownloadService.Selection selection = new BulkDownloadService.Selection(
+                hasProject ? project.trim() : null, hasSearch ? search.trim() : null, hasIds ? ids : null);
+        long count = bulkDownloadService.count(selection);
+        if (count == 0) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Архивы не найдены"));
+        }
+        if (count > bulkDownloadService.getMaxArchives()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Найдено архивов: " + count
+                    + ", за раз можно выгрузить не больше " + bulkDownloadService.getMaxArchives() + " — уточните фильтр"));
+        }
+
+        String filename = "archives-" + (hasProject ? project.trim() : "search") + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".zip";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build());
+        StreamingResponseBody body = out -> bulkDownloadService.write(selection, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
     /**
      * Загрузка zip-архива на сервер (вместо экспорта из Confluence).
      * Сохраняет файл в reports/{project}/{archiveId}.zip и возвращает archiveId и pageTitle (из index.html).
+     * Если включено app.ingest.minify-html, HTML-страницы архива облегчаются; размеры до/после — в htmlSizes.
      */
     @PostMapping("/upload")
     public ResponseEntity<?> uploadZip(
@@ -49,14 +152,22 @@ public class ArchiveController {
         }
         try {
             archivedReportService.getOrCreateProject(project);
-            String archiveId = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
-            zipReportService.saveUploadedZip(project, archiveId, file.getInputStream());
+            String archiveId = ConfluenceArchiveService.newArchiveId();
+            Path staged = zipReportService.stageUploadedZip(file.getInputStream());
+            List<HtmlMinificationService.PageSizeStat> htmlSizes;
+            try {
+                htmlSizes = htmlMinificationService.minifyArchive(staged);
+                zipReportService.saveArchive(project, archiveId, staged);
+            } finally {
+                Files.deleteIfExists(staged);
+            }
             String pageTitle = zipReportService.extractPageTitleFromArchive(project, archiveId)
                     .orElse(originalName.replaceAll("\\.zip$", ""));
             return ResponseEntity.ok(Map.of(
                     "archiveId", archiveId,
                     "pageTitle", pageTitle,
-                    "project", project
+                    "project", project,
+                    "htmlSizes", htmlSizes
             ));
         } catch (IOException e) {
             return ResponseEntity.internalServerError().body(Map.of("error", "Ошибка сохранения архива: " + e.getMessage()));
@@ -80,7 +191,8 @@ public class ArchiveController {
                     "pageTitle", result.pageTitle(),
                     "childPageNames", result.childPageNames(),
                     "childPageIds", result.childInfos().stream().map(ConfluenceArchiveService.ChildInfo::id).toList(),
-                    "zipPath", result.zipPath()
+                    "zipPath", result.zipPath(),
+                    "htmlSizes", result.htmlSizes()
             ));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -95,6 +207,7 @@ public class ArchiveController {
      * Шаг 2: Удаление дочерних страниц в Confluence.
      * Если передан список childPageIds — используем его.
      * Если нет — получаем список дочерних страниц по URL и удаляем их.
+     * В ответе — отчёт по каждой странице; при ошибках (500) шаг можно повторить: удалённые ранее станут ALREADY_GONE.
      */
     @PostMapping("/delete-children")
     public ResponseEntity<?> deleteChildren(@RequestBody Map<String, Object> request) {
@@ -106,17 +219,23 @@ public class ArchiveController {
         }
         try {
             if (childPageIds != null && !childPageIds.isEmpty()) {
-                confluenceArchiveService.deleteChildPages(confluenceUrl, childPageIds);
-                return ResponseEntity.ok(Map.of(
-                        "success", true,
-                        "mode", "explicitIds"
+                CleanupReport report = confluenceArchiveService.deleteChildPages(confluenceUrl, childPageIds);
+                return cleanupResponse(report, Map.of(
+                        "success", !report.hasFailures(),
+                        "mode", "explicitIds",
+                        "report", report
                 ));
             } else {
-                List<String> deletedNames = confluenceArchiveService.deleteChildPagesByUrl(confluenceUrl);
-                return ResponseEntity.ok(Map.of(
-                        "success", true,
+                CleanupReport report = confluenceArchiveService.deleteChildPagesByUrl(confluenceUrl);
+                List<String> deletedNames = report.items().stream()
+                        .filter(i -> i.status() != CleanupReport.Status.FAILED && i.title() != null)
+                        .map(CleanupReport.Item::title)
+                        .toList();
+                return cleanupResponse(report, Map.of(
+                        "success", !report.hasFailures(),
                         "mode", "byUrl",
-                        "childPageNames", deletedNames
+                        "childPageNames", deletedNames,
+                        "report", report
                 ));
             }
         } catch (Exception e) {
@@ -134,13 +253,23 @@ public class ArchiveController {
             return ResponseEntity.badRequest().body(Map.of("error", "Требуется confluenceUrl"));
         }
         try {
-            confluenceArchiveService.deleteAttachments(confluenceUrl);
-            return ResponseEntity.ok(Map.of("success", true));
+            CleanupReport report = confluenceArchiveService.deleteAttachments(confluenceUrl);
+            return cleanupResponse(report, Map.of("success", !report.hasFailures(), "report", report));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
         }
     }
 
+    private static ResponseEntity<?> cleanupResponse(CleanupReport report, Map<String, Object> body) {
+        if (!report.hasFailures()) {
+            return ResponseEntity.ok(body);
+        }
+        Map<String, Object> error = new HashMap<>(body);
+        error.put("error", "Не удалось удалить " + report.failed() + " из " + report.items().size()
+                + ": " + String.join(", ", report.failedIds()) + ". Повторите шаг.");
+        return ResponseEntity.internalServerError().body(error);
+    }
+
     /**
      * Шаг 4: Замена контента страницы на текст об архивации
      */
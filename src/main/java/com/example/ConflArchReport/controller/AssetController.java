@@ -0,0 +1,40 @@
+package com.example.ConflArchReport.controller;
+
+import com.example.ConflArchReport.service.ConfluenceAssetService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общий набор статических ресурсов Confluence для архивированных страниц.
+ * - GET /_assets/{fileName} → файл по хешу содержимого; содержимое по имени не меняется, поэтому кешируется навсегда.
+ */
+@RestController
+public class AssetController {
+
+    private final ConfluenceAssetService confluenceAssetService;
+
+    public AssetController(ConfluenceAssetService confluenceAssetService) {
+        this.confluenceAssetService = confluenceAssetService;
+    }
+
+    @GetMapping("/_assets/{fileName:.+}")
+    public ResponseEntity<Resource> getAsset(@PathVariable String fileName) {
+        Optional<Path> file = confluenceAssetService.getBundleFile(fileName);
+        if (file.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(ReportApiController.getMediaType(fileName))
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .body(new FileSystemResource(file.get()));
+    }
+}
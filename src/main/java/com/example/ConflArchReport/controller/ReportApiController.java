@@ -1,13 +1,22 @@
 package com.example.ConflArchReport.controller;
 
+import com.example.ConflArchReport.service.ArchiveMetrics;
+import com.example.ConflArchReport.service.ArchiveViewStatsService;
 import com.example.ConflArchReport.service.ArchivedReportService;
+import com.example.ConflArchReport.service.ZipReportService;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Optional;
 import java.util.Set;
 
@@ -16,6 +25,8 @@ import java.util.Set;
  * - GET /{project}/{id} → редирект на /{project}/{id}/
  * - GET /{project}/{id}/ или /{project}/{id}/index.html → index.html
  * - GET /{project}/{id}/{path} → файл из архива (CSS, JS, другие HTML и т.д.)
+ * Записи, сохранённые без сжатия (STORED), отдаются напрямую из zip-файла через {@link FileChannel#transferTo}
+ * из канала, открытого при поиске записи, — без распаковки и копирования в массив.
  */
 @RestController
 public class ReportApiController {
@@ -29,10 +40,20 @@ public class ReportApiController {
             "zip", "rar", "7z"
     );
 
+    /** Способы выдачи для метрики archive.serve */
+    private static final String MODE_INDEX = "index";
+    private static final String MODE_INFLATE = "inflate";
+    private static final String MODE_STORED = "stored";
+
     private final ArchivedReportService archivedReportService;
+    private final ArchiveMetrics metrics;
+    private final ArchiveViewStatsService viewStats;
 
-    public ReportApiController(ArchivedReportService archivedReportService) {
+    public ReportApiController(ArchivedReportService archivedReportService, ArchiveMetrics metrics,
+                               ArchiveViewStatsService viewStats) {
         this.archivedReportService = archivedReportService;
+        this.metrics = metrics;
+        this.viewStats = viewStats;
     }
 
     /**
@@ -61,32 +82,88 @@ public class ReportApiController {
         }
 
         boolean serveIndex = normalizedPath.isEmpty() || "index.html".equalsIgnoreCase(normalizedPath);
+        Timer.Sample sample = metrics.start();
 
         if (serveIndex) {
             Optional<String> htmlContent = archivedReportService.getHtmlContent(project, id);
             if (htmlContent.isEmpty()) {
-                return ResponseEntity.notFound().build();
+                return recordServe(project, id, sample, MediaType.TEXT_HTML, MODE_INDEX, ResponseEntity.notFound().build(), 0);
             }
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.TEXT_HTML);
             headers.set(HttpHeaders.CACHE_CONTROL, "no-cache");
-            return new ResponseEntity<>(htmlContent.get(), headers, HttpStatus.OK);
+            return recordServe(project, id, sample, MediaType.TEXT_HTML, MODE_INDEX,
+                    new ResponseEntity<>(htmlContent.get(), headers, HttpStatus.OK),
+                    htmlContent.get().getBytes(StandardCharsets.UTF_8).length);
         }
 
+        MediaType mediaType = getMediaType(normalizedPath);
         if (!isAllowedPath(normalizedPath)) {
-            return ResponseEntity.notFound().build();
+            return recordServe(project, id, sample, mediaType, MODE_INFLATE, ResponseEntity.notFound().build(), 0);
+        }
+
+        Optional<ZipReportService.StoredEntry> storedEntry = archivedReportService.findStoredEntry(project, id, normalizedPath);
+        if (storedEntry.isPresent()) {
+            return recordServe(project, id, sample, mediaType, MODE_STORED,
+                    serveStoredEntry(storedEntry.get(), normalizedPath), storedEntry.get().length());
         }
 
         Optional<byte[]> fileContent = archivedReportService.getFileContent(project, id, normalizedPath);
         if (fileContent.isEmpty()) {
-            return ResponseEntity.notFound().build();
+            return recordServe(project, id, sample, mediaType, MODE_INFLATE, ResponseEntity.notFound().build(), 0);
         }
 
-        MediaType mediaType = getMediaType(normalizedPath);
+        return recordServe(project, id, sample, mediaType, MODE_INFLATE,
+                new ResponseEntity<>(fileContent.get(), resourceHeaders(normalizedPath), HttpStatus.OK),
+                fileContent.get().length);
+    }
+
+    /**
+     * Фиксирует задержку выдачи до передачи ответа контейнеру (тело STORED-записи дописывается уже после)
+     * и учитывает просмотр/отданные байты в счётчиках архива (в памяти, без записи в БД на запрос).
+     */
+    private <T> ResponseEntity<T> recordServe(String project, String id, Timer.Sample sample, MediaType mediaType,
+                                              String mode, ResponseEntity<T> response, long bytes) {
+        String contentType = mediaType.getType() + "/" + mediaType.getSubtype();
+        metrics.stopServe(sample, contentType, mode, response.getStatusCode().value(), bytes);
+        if (response.getStatusCode().is2xxSuccessful()) {
+            viewStats.record(project, id, MODE_INDEX.equals(mode), bytes);
+        }
+        return response;
+    }
+
+    /**
+     * Отдаёт несжатую запись прямо из zip-файла по смещению её данных: transferTo в поток ответа из канала,
+     * открытого при поиске записи. Открывать файл заново по пути нельзя — его могли заменить между поиском и
+     * отправкой (перепаковка, перенос в холодное хранилище), и смещение указывало бы в другой файл.
+     */
+    private ResponseEntity<?> serveStoredEntry(ZipReportService.StoredEntry entry, String path) {
+        HttpHeaders headers = resourceHeaders(path);
+        headers.setContentLength(entry.length());
+
+        StreamingResponseBody body = out -> {
+            try (FileChannel channel = entry.channel()) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = entry.offset();
+                long remaining = entry.length();
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    private static HttpHeaders resourceHeaders(String normalizedPath) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(mediaType);
+        headers.setContentType(getMediaType(normalizedPath));
         headers.set(HttpHeaders.CACHE_CONTROL, "private, max-age=3600");
-        
+
         // Для zip, архивов и документов устанавливаем Content-Disposition для правильной обработки браузером
         String filename = normalizedPath.substring(normalizedPath.lastIndexOf('/') + 1);
         if (normalizedPath.toLowerCase().endsWith(".zip") || 
@@ -102,8 +179,7 @@ public class ReportApiController {
             normalizedPath.toLowerCase().endsWith(".csv")) {
             headers.setContentDispositionFormData("attachment", filename);
         }
-
-        return new ResponseEntity<>(fileContent.get(), headers, HttpStatus.OK);
+        return headers;
     }
 
     private static boolean isAllowedPath(String path) {
@@ -120,7 +196,7 @@ public class ReportApiController {
         return ALLOWED_EXTENSIONS.contains(ext);
     }
 
-    private static MediaType getMediaType(String path) {
+    static MediaType getMediaType(String path) {
         int dot = path.lastIndexOf('.');
         if (dot < 0) {
             return MediaType.APPLICATION_OCTET_STREAM;
@@ -1,6 +1,7 @@
 package com.example.ConflArchReport.controller;
 
 import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.service.ArchiveViewStatsService;
 import com.example.ConflArchReport.service.ArchivedReportService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -23,13 +24,15 @@ import java.util.Map;
 public class ReportViewController {
 
     private final ArchivedReportService archivedReportService;
+    private final ArchiveViewStatsService viewStats;
     private final ObjectMapper objectMapper;
 
     @Value("${jira.url:}")
     private String jiraUrl;
 
-    public ReportViewController(ArchivedReportService archivedReportService) {
+    public ReportViewController(ArchivedReportService archivedReportService, ArchiveViewStatsService viewStats) {
         this.archivedReportService = archivedReportService;
+        this.viewStats = viewStats;
         this.objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
     }
 
@@ -52,6 +55,7 @@ public class ReportViewController {
 
         model.addAttribute("reports", reports);
         model.addAttribute("reportJsonInfo", buildReportJsonInfo(reports));
+        model.addAttribute("reportViews", viewStats.getViews(reports));
         model.addAttribute("currentPage", reportsPage.getNumber());
         model.addAttribute("totalPages", reportsPage.getTotalPages());
         model.addAttribute("totalItems", reportsPage.getTotalElements());
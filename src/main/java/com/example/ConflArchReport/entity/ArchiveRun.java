@@ -0,0 +1,227 @@
+package com.example.ConflArchReport.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Состояние серверной архивации страницы Confluence (шаги 1–5) с контрольной точкой после каждого шага.
+ * Хранит метаданные, полученные при экспорте (REST-адрес, версия страницы, дочерние страницы, вложения),
+ * чтобы следующие шаги и повторный запуск не запрашивали их у Confluence заново.
+ */
+@Entity
+@Table(name = "archive_runs")
+public class ArchiveRun {
+
+    public enum Status {
+        RUNNING,
+        FAILED,
+        COMPLETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "confluence_url", nullable = false, length = 2000)
+    private String confluenceUrl;
+
+    @Column(name = "project_name", nullable = false)
+    private String projectName;
+
+    @Column(name = "jira_key", length = 50)
+    private String jiraKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    /** Номер последнего завершённого шага (0 — ни один) */
+    @Column(name = "completed_step", nullable = false)
+    private int completedStep;
+
+    @Column(name = "archive_id", length = 500)
+    private String archiveId;
+
+    @Column(name = "page_title", length = 1000)
+    private String pageTitle;
+
+    /** REST API base (…/rest/api/content/) экземпляра Confluence */
+    @Column(name = "api_base", length = 1000)
+    private String apiBase;
+
+    @Column(name = "page_id", length = 50)
+    private String pageId;
+
+    /** Версия корневой страницы на момент экспорта */
+    @Column(name = "page_version")
+    private Integer pageVersion;
+
+    /** Дочерние страницы, которые ещё нужно удалить: [{id, title}] */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "pending_children", columnDefinition = "jsonb")
+    private List<Map<String, String>> pendingChildren;
+
+    /** Вложения корневой страницы, которые ещё нужно удалить: [{id, title}] */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "pending_attachments", columnDefinition = "jsonb")
+    private List<Map<String, String>> pendingAttachments;
+
+    /** Названия всех архивированных дочерних страниц (для json_info отчёта) */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "child_page_names", columnDefinition = "jsonb")
+    private List<String> childPageNames;
+
+    /** pk созданной записи archived_reports */
+    @Column(name = "report_pk")
+    private Long reportPk;
+
+    @Column(length = 4000)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public ArchiveRun() {
+    }
+
+    public ArchiveRun(String confluenceUrl, String projectName, String jiraKey) {
+        this.confluenceUrl = confluenceUrl;
+        this.projectName = projectName;
+        this.jiraKey = jiraKey;
+        this.status = Status.RUNNING;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getConfluenceUrl() {
+        return confluenceUrl;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getJiraKey() {
+        return jiraKey;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getCompletedStep() {
+        return completedStep;
+    }
+
+    public void setCompletedStep(int completedStep) {
+        this.completedStep = completedStep;
+    }
+
+    public String getArchiveId() {
+        return archiveId;
+    }
+
+    public void setArchiveId(String archiveId) {
+        this.archiveId = archiveId;
+    }
+
+    public String getPageTitle() {
+        return pageTitle;
+    }
+
+    public void setPageTitle(String pageTitle) {
+        this.pageTitle = pageTitle;
+    }
+
+    public String getApiBase() {
+        return apiBase;
+    }
+
+    public void setApiBase(String apiBase) {
+        this.apiBase = apiBase;
+    }
+
+    public String getPageId() {
+        return pageId;
+    }
+
+    public void setPageId(String pageId) {
+        this.pageId = pageId;
+    }
+
+    public Integer getPageVersion() {
+        return pageVersion;
+    }
+
+    public void setPageVersion(Integer pageVersion) {
+        this.pageVersion = pageVersion;
+    }
+
+    public List<Map<String, String>> getPendingChildren() {
+        return pendingChildren;
+    }
+
+    public void setPendingChildren(List<Map<String, String>> pendingChildren) {
+        this.pendingChildren = pendingChildren;
+    }
+
+    public List<Map<String, String>> getPendingAttachments() {
+        return pendingAttachments;
+    }
+
+    public void setPendingAttachments(List<Map<String, String>> pendingAttachments) {
+        this.pendingAttachments = pendingAttachments;
+    }
+
+    public List<String> getChildPageNames() {
+        return childPageNames;
+    }
+
+    public void setChildPageNames(List<String> childPageNames) {
+        this.childPageNames = childPageNames;
+    }
+
+    public Long getReportPk() {
+        return reportPk;
+    }
+
+    public void setReportPk(Long reportPk) {
+        this.reportPk = reportPk;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
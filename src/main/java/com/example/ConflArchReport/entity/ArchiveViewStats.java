@@ -0,0 +1,63 @@
+package com.example.ConflArchReport.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Накопленная статистика обращений к архиву: просмотры главной страницы и отданные байты.
+ * Пишется пачками (INSERT ... ON CONFLICT) из счётчиков в памяти, а не на каждый запрос.
+ */
+@Entity
+@Table(name = "archive_view_stats", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"project_name", "archive_id"})
+})
+public class ArchiveViewStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "project_name", nullable = false)
+    private String projectName;
+
+    @Column(name = "archive_id", nullable = false, length = 500)
+    private String archiveId;
+
+    /** Просмотры главной страницы архива */
+    @Column(nullable = false)
+    private long views;
+
+    @Column(name = "bytes_served", nullable = false)
+    private long bytesServed;
+
+    @Column(name = "last_viewed_at")
+    private LocalDateTime lastViewedAt;
+
+    public ArchiveViewStats() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getArchiveId() {
+        return archiveId;
+    }
+
+    public long getViews() {
+        return views;
+    }
+
+    public long getBytesServed() {
+        return bytesServed;
+    }
+
+    public LocalDateTime getLastViewedAt() {
+        return lastViewedAt;
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
+import java.time.LocalDateTime;
 import java.util.Map;
 
 @Entity
@@ -12,6 +13,13 @@ import java.util.Map;
 })
 public class ArchivedReport {
 
+    /** Результат фоновой проверки целостности архива */
+    public enum IntegrityStatus {
+        OK,
+        CORRUPT,
+        MISSING
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long pk;
@@ -36,6 +44,21 @@ public class ArchivedReport {
     @Column(name = "json_info", columnDefinition = "jsonb")
     private Map<String, Object> jsonInfo;
 
+    /** Статус последней проверки zip (null — ещё не проверялся) */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "integrity_status", length = 20)
+    private IntegrityStatus integrityStatus;
+
+    @Column(name = "integrity_error", length = 1000)
+    private String integrityError;
+
+    @Column(name = "last_verified_at")
+    private LocalDateTime lastVerifiedAt;
+
+    /** Последнее обращение к архиву (пишется пачками, с задержкой до минуты) */
+    @Column(name = "last_accessed_at")
+    private LocalDateTime lastAccessedAt;
+
     public ArchivedReport() {
     }
 
@@ -92,4 +115,36 @@ public class ArchivedReport {
     public void setJsonInfo(Map<String, Object> jsonInfo) {
         this.jsonInfo = jsonInfo;
     }
+
+    public IntegrityStatus getIntegrityStatus() {
+        return integrityStatus;
+    }
+
+    public void setIntegrityStatus(IntegrityStatus integrityStatus) {
+        this.integrityStatus = integrityStatus;
+    }
+
+    public String getIntegrityError() {
+        return integrityError;
+    }
+
+    public void setIntegrityError(String integrityError) {
+        this.integrityError = integrityError;
+    }
+
+    public LocalDateTime getLastVerifiedAt() {
+        return lastVerifiedAt;
+    }
+
+    public void setLastVerifiedAt(LocalDateTime lastVerifiedAt) {
+        this.lastVerifiedAt = lastVerifiedAt;
+    }
+
+    public LocalDateTime getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    public void setLastAccessedAt(LocalDateTime lastAccessedAt) {
+        this.lastAccessedAt = lastAccessedAt;
+    }
 }
@@ -0,0 +1,44 @@
+package com.example.ConflArchReport.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Заголовок дочерней страницы, заархивированной вместе с отчётом: копия json_info.childPages построчно,
+ * чтобы поиск по заголовкам шёл по индексу (GIN pg_trgm по lower(title)), а не разбором JSON каждой записи.
+ * Заполняется при сохранении архива и при старте для уже существующих записей ({@code ChildPageSearchIndex}).
+ */
+@Entity
+@Table(name = "archived_report_child_pages", indexes = {
+        @Index(name = "idx_child_pages_report", columnList = "report_pk")
+})
+public class ArchivedReportChildPage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "report_pk", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private ArchivedReport report;
+
+    @Column(nullable = false, length = 1000)
+    private String title;
+
+    public ArchivedReportChildPage() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public ArchivedReport getReport() {
+        return report;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+}
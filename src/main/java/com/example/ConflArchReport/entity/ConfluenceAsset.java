@@ -0,0 +1,83 @@
+package com.example.ConflArchReport.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Статический ресурс Confluence (CSS, иконка, смайл, картинка макроса), сохранённый один раз на экземпляр Confluence
+ * в общий набор ресурсов. Файл называется по хешу содержимого, поэтому одинаковые ресурсы разных экземпляров не дублируются.
+ */
+@Entity
+@Table(name = "confluence_assets", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"instance", "source_path"})
+})
+public class ConfluenceAsset {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Базовый URL экземпляра Confluence (с контекстным путём) */
+    @Column(nullable = false, length = 500)
+    private String instance;
+
+    /** Путь ресурса от корня Confluence, например /s/.../batch.css или /images/icons/emoticons/smile.svg */
+    @Column(name = "source_path", nullable = false, length = 2000)
+    private String sourcePath;
+
+    /** Имя файла в наборе ресурсов: хеш содержимого + расширение */
+    @Column(name = "file_name", nullable = false, length = 100)
+    private String fileName;
+
+    @Column(name = "size_bytes")
+    private long size;
+
+    public ConfluenceAsset() {
+    }
+
+    public ConfluenceAsset(String instance, String sourcePath, String fileName, long size) {
+        this.instance = instance;
+        this.sourcePath = sourcePath;
+        this.fileName = fileName;
+        this.size = size;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getInstance() {
+        return instance;
+    }
+
+    public void setInstance(String instance) {
+        this.instance = instance;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    public void setSourcePath(String sourcePath) {
+        this.sourcePath = sourcePath;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.ConflArchReport.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Открытие архива при выдаче: чтение центрального каталога zip (для S3 — диапазонными запросами).
+ * Пишется только при разборе каталога — обращения, обслуженные кэшем каталогов, события не дают.
+ */
+@Name(ArchiveOpenEvent.NAME)
+@Label("Открытие архива")
+@Description("Чтение центрального каталога zip при выдаче")
+@Category({"ConflArchReport", "Архивы"})
+@StackTrace(false)
+public class ArchiveOpenEvent extends Event {
+
+    public static final String NAME = "conflarch.ArchiveOpen";
+
+    @Label("Проект")
+    public String project;
+
+    @Label("Архив")
+    public String archiveId;
+
+    @Label("Записей")
+    public int entries;
+
+    @Label("Каталог разобран")
+    @Description("false — Zip64 или повреждённый конец файла, архив читается последовательно")
+    public boolean parsed;
+}
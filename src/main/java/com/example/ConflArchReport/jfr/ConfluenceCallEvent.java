@@ -0,0 +1,31 @@
+package com.example.ConflArchReport.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * REST-вызов Confluence целиком: запрос, ожидание ответа и чтение тела.
+ */
+@Name(ConfluenceCallEvent.NAME)
+@Label("Вызов Confluence")
+@Category({"ConflArchReport", "Confluence"})
+@StackTrace(false)
+public class ConfluenceCallEvent extends Event {
+
+    public static final String NAME = "conflarch.ConfluenceCall";
+
+    @Label("Метод")
+    public String method;
+
+    @Label("Шаблон пути")
+    public String uri;
+
+    @Label("URL")
+    public String url;
+
+    @Label("HTTP-статус")
+    public String status;
+}
@@ -0,0 +1,51 @@
+package com.example.ConflArchReport.jfr;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.springframework.http.client.observation.ClientRequestObservationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Пишет {@link ConfluenceCallEvent} по наблюдениям RestTemplate Confluence: наблюдение заканчивается
+ * после чтения тела ответа, поэтому событие включает скачивание, а не только ожидание заголовков.
+ * Без записи JFR событие не фиксируется.
+ */
+@Component
+public class ConfluenceCallJfrHandler implements ObservationHandler<ClientRequestObservationContext> {
+
+    @Override
+    public void onStart(ClientRequestObservationContext context) {
+        ConfluenceCallEvent event = new ConfluenceCallEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            context.put(ConfluenceCallEvent.class, event);
+        }
+    }
+
+    @Override
+    public void onStop(ClientRequestObservationContext context) {
+        ConfluenceCallEvent event = context.get(ConfluenceCallEvent.class);
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = value(context, "method");
+            event.uri = value(context, "uri");
+            event.status = value(context, "status");
+            event.url = context.getCarrier() != null ? context.getCarrier().getURI().toString() : null;
+            event.commit();
+        }
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context instanceof ClientRequestObservationContext;
+    }
+
+    private static String value(ClientRequestObservationContext context, String key) {
+        KeyValue keyValue = context.getLowCardinalityKeyValue(key);
+        return keyValue != null ? keyValue.getValue() : null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.ConflArchReport.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Чтение записи архива по смещению из центрального каталога, с распаковкой для DEFLATED.
+ */
+@Name(EntryInflateEvent.NAME)
+@Label("Чтение записи архива")
+@Category({"ConflArchReport", "Архивы"})
+@StackTrace(false)
+public class EntryInflateEvent extends Event {
+
+    public static final String NAME = "conflarch.EntryInflate";
+
+    @Label("Запись")
+    public String entry;
+
+    @Label("Сжата")
+    public boolean deflated;
+
+    @Label("Размер в архиве")
+    @DataAmount
+    public long compressedSize;
+
+    @Label("Размер")
+    @DataAmount
+    public long size;
+}
@@ -0,0 +1,25 @@
+package com.example.ConflArchReport.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Синхронизация хранилища архивов с БД (POST /admin/sync): список архивов и запись новых в БД.
+ */
+@Name(SyncBatchEvent.NAME)
+@Label("Синхронизация с БД")
+@Category({"ConflArchReport", "Архивы"})
+@StackTrace(false)
+public class SyncBatchEvent extends Event {
+
+    public static final String NAME = "conflarch.SyncBatch";
+
+    @Label("Архивов в хранилище")
+    public int total;
+
+    @Label("Добавлено")
+    public int added;
+}
@@ -0,0 +1,7 @@
+package com.example.ConflArchReport.repository;
+
+import com.example.ConflArchReport.entity.ArchiveRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ArchiveRunRepository extends JpaRepository<ArchiveRun, Long> {
+}
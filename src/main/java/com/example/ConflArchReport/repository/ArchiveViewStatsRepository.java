@@ -0,0 +1,12 @@
+package com.example.ConflArchReport.repository;
+
+import com.example.ConflArchReport.entity.ArchiveViewStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ArchiveViewStatsRepository extends JpaRepository<ArchiveViewStats, Long> {
+
+    List<ArchiveViewStats> findByArchiveIdIn(Collection<String> archiveIds);
+}
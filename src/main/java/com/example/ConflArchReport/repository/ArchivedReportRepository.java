@@ -4,9 +4,12 @@ import com.example.ConflArchReport.entity.ArchivedReport;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,18 +19,27 @@ public interface ArchivedReportRepository extends JpaRepository<ArchivedReport,
 
     Optional<ArchivedReport> findByProjectNameAndId(String projectName, String id);
 
-    @Query("SELECT ar FROM ArchivedReport ar WHERE ar.project.name = :projectName " +
-           "AND (LOWER(ar.name) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR LOWER(ar.id) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR (ar.jiraKey IS NOT NULL AND LOWER(ar.jiraKey) LIKE LOWER(CONCAT('%', :search, '%'))))")
+    /**
+     * pk архивов, у которых строка поиска входит в название, id, ключ Jira или заголовок заархивированной дочерней страницы.
+     * Ветки объединяются через UNION, чтобы каждая шла по своему GIN-индексу pg_trgm ({@code ChildPageSearchIndex}).
+     */
+    String SEARCH_MATCHES = "SELECT m.pk FROM ArchivedReport m WHERE " +
+            "LOWER(m.name) LIKE LOWER(CONCAT('%', :search, '%')) " +
+            "OR LOWER(m.id) LIKE LOWER(CONCAT('%', :search, '%')) " +
+            "OR LOWER(m.jiraKey) LIKE LOWER(CONCAT('%', :search, '%')) " +
+            "UNION SELECT c.report.pk FROM ArchivedReportChildPage c " +
+            "WHERE LOWER(c.title) LIKE LOWER(CONCAT('%', :search, '%'))";
+
+    @Query(value = "SELECT ar FROM ArchivedReport ar WHERE ar.project.name = :projectName " +
+                   "AND ar.pk IN (" + SEARCH_MATCHES + ")",
+           countQuery = "SELECT COUNT(ar) FROM ArchivedReport ar WHERE ar.project.name = :projectName " +
+                        "AND ar.pk IN (" + SEARCH_MATCHES + ")")
     Page<ArchivedReport> findByProjectAndSearch(@Param("projectName") String projectName,
                                                  @Param("search") String search,
                                                  Pageable pageable);
 
-    @Query("SELECT ar FROM ArchivedReport ar WHERE " +
-           "(LOWER(ar.name) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR LOWER(ar.id) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR (ar.jiraKey IS NOT NULL AND LOWER(ar.jiraKey) LIKE LOWER(CONCAT('%', :search, '%'))))")
+    @Query(value = "SELECT ar FROM ArchivedReport ar WHERE ar.pk IN (" + SEARCH_MATCHES + ")",
+           countQuery = "SELECT COUNT(ar) FROM ArchivedReport ar WHERE ar.pk IN (" + SEARCH_MATCHES + ")")
     Page<ArchivedReport> findBySearch(@Param("search") String search, Pageable pageable);
 
     @Query("SELECT ar FROM ArchivedReport ar WHERE ar.project.name = :projectName")
@@ -36,11 +48,38 @@ public interface ArchivedReportRepository extends JpaRepository<ArchivedReport,
     @Query("SELECT ar FROM ArchivedReport ar WHERE ar.project.name IN :projectNames")
     Page<ArchivedReport> findByProjects(@Param("projectNames") List<String> projectNames, Pageable pageable);
 
-    @Query("SELECT ar FROM ArchivedReport ar WHERE ar.project.name IN :projectNames " +
-           "AND (LOWER(ar.name) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR LOWER(ar.id) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR (ar.jiraKey IS NOT NULL AND LOWER(ar.jiraKey) LIKE LOWER(CONCAT('%', :search, '%'))))")
+    @Query(value = "SELECT ar FROM ArchivedReport ar WHERE ar.project.name IN :projectNames " +
+                   "AND ar.pk IN (" + SEARCH_MATCHES + ")",
+           countQuery = "SELECT COUNT(ar) FROM ArchivedReport ar WHERE ar.project.name IN :projectNames " +
+                        "AND ar.pk IN (" + SEARCH_MATCHES + ")")
     Page<ArchivedReport> findByProjectsAndSearch(@Param("projectNames") List<String> projectNames,
                                                   @Param("search") String search,
                                                   Pageable pageable);
+
+    /**
+     * Пачка архивов для фоновых проходов (проверка целостности, перенос в холодное хранилище):
+     * по возрастанию pk, вместе с проектом.
+     */
+    @Query("SELECT ar FROM ArchivedReport ar JOIN FETCH ar.project WHERE ar.pk > :afterPk ORDER BY ar.pk")
+    List<ArchivedReport> findBatchAfterPk(@Param("afterPk") long afterPk, Pageable pageable);
+
+    /**
+     * Запись результата проверки без перезаписи остальных полей (json_info мог измениться параллельно).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ArchivedReport ar SET ar.integrityStatus = :status, ar.integrityError = :error, " +
+           "ar.lastVerifiedAt = :verifiedAt WHERE ar.pk = :pk")
+    int updateIntegrity(@Param("pk") Long pk,
+                        @Param("status") ArchivedReport.IntegrityStatus status,
+                        @Param("error") String error,
+                        @Param("verifiedAt") LocalDateTime verifiedAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ArchivedReport ar SET ar.lastAccessedAt = :accessedAt WHERE ar.id = :id " +
+           "AND ar.project.id IN (SELECT p.id FROM Project p WHERE p.name = :projectName)")
+    int updateLastAccessed(@Param("projectName") String projectName,
+                           @Param("id") String id,
+                           @Param("accessedAt") LocalDateTime accessedAt);
 }
@@ -0,0 +1,11 @@
+package com.example.ConflArchReport.repository;
+
+import com.example.ConflArchReport.entity.ConfluenceAsset;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface ConfluenceAssetRepository extends JpaRepository<ConfluenceAsset, Long> {
+
+    Optional<ConfluenceAsset> findByInstanceAndSourcePath(String instance, String sourcePath);
+}
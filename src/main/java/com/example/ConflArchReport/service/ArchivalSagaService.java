@@ -0,0 +1,205 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.config.DataSourceRouting;
+import com.example.ConflArchReport.entity.ArchiveRun;
+import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.repository.ArchiveRunRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Серверная архивация страницы Confluence: шаги 1–5 выполняются подряд, после каждого состояние сохраняется в archive_runs.
+ * Следующие шаги используют данные экспорта (REST-адрес, версию страницы, списки дочерних страниц и вложений),
+ * а повторный запуск продолжает с первого незавершённого шага; в шагах 2 и 3 повторяются только неудалённые элементы.
+ * Id архива записывается в запуск до экспорта: повтор шага 1 после сбоя между сохранением zip и контрольной точкой
+ * заменяет тот же объект хранилища, а не оставляет прежний архив без записи в БД.
+ */
+@Service
+public class ArchivalSagaService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivalSagaService.class);
+
+    static final int STEP_EXPORT = 1;
+    static final int STEP_DELETE_CHILDREN = 2;
+    static final int STEP_DELETE_ATTACHMENTS = 3;
+    static final int STEP_REPLACE_CONTENT = 4;
+    static final int STEP_SAVE_DB = 5;
+
+    private static final Map<Integer, String> STEP_NAMES = Map.of(
+            STEP_EXPORT, "экспорт в zip",
+            STEP_DELETE_CHILDREN, "удаление дочерних страниц",
+            STEP_DELETE_ATTACHMENTS, "удаление вложений",
+            STEP_REPLACE_CONTENT, "замена контента",
+            STEP_SAVE_DB, "сохранение в БД"
+    );
+
+    private final ConfluenceArchiveService confluenceArchiveService;
+    private final ArchivedReportService archivedReportService;
+    private final ArchiveRunRepository archiveRunRepository;
+    private final DataSourceRouting dataSourceRouting;
+
+    /** Запуски, выполняемые сейчас: один запуск не продолжается параллельно из двух запросов */
+    private final Set<Long> activeRuns = ConcurrentHashMap.newKeySet();
+
+    public ArchivalSagaService(ConfluenceArchiveService confluenceArchiveService,
+                               ArchivedReportService archivedReportService,
+                               ArchiveRunRepository archiveRunRepository,
+                               DataSourceRouting dataSourceRouting) {
+        this.confluenceArchiveService = confluenceArchiveService;
+        this.archivedReportService = archivedReportService;
+        this.archiveRunRepository = archiveRunRepository;
+        this.dataSourceRouting = dataSourceRouting;
+    }
+
+    /**
+     * Создаёт запуск и выполняет все шаги. Ошибка шага не бросается наружу — запуск сохраняется в статусе FAILED.
+     */
+    public ArchiveRun start(String confluenceUrl, String projectName, String jiraKey) {
+        ArchiveRun run = archiveRunRepository.save(new ArchiveRun(confluenceUrl.trim(), projectName.trim(),
+                jiraKey != null && !jiraKey.isBlank() ? jiraKey.trim() : null));
+        return execute(run);
+    }
+
+    /**
+     * Продолжает запуск с первого незавершённого шага.
+     *
+     * @throws IllegalArgumentException запуск не найден
+     * @throws IllegalStateException    запуск уже выполняется
+     */
+    public ArchiveRun resume(Long runId) {
+        ArchiveRun run = archiveRunRepository.findById(runId)
+                .orElseThrow(() -> new IllegalArgumentException("Запуск архивации не найден: " + runId));
+        if (run.getStatus() == ArchiveRun.Status.COMPLETED) {
+            return run;
+        }
+        return execute(run);
+    }
+
+    public Optional<ArchiveRun> getRun(Long runId) {
+        return archiveRunRepository.findById(runId);
+    }
+
+    private ArchiveRun execute(ArchiveRun run) {
+        if (!activeRuns.add(run.getId())) {
+            throw new IllegalStateException("Запуск архивации " + run.getId() + " уже выполняется");
+        }
+        int step = run.getCompletedStep() + 1;
+        try {
+            run.setStatus(ArchiveRun.Status.RUNNING);
+            run.setError(null);
+            if (step == STEP_EXPORT && run.getArchiveId() == null) {
+                run.setArchiveId(ConfluenceArchiveService.newArchiveId());
+            }
+            run = checkpoint(run);
+            for (; step <= STEP_SAVE_DB; step++) {
+                runStep(run, step);
+                run.setCompletedStep(step);
+                run = checkpoint(run);
+            }
+            run.setStatus(ArchiveRun.Status.COMPLETED);
+            return checkpoint(run);
+        } catch (Exception e) {
+            log.warn("Архивация {} остановлена на шаге {} ({}): {}", run.getId(), step, STEP_NAMES.get(step), e.getMessage());
+            run.setStatus(ArchiveRun.Status.FAILED);
+            String message = "Шаг " + step + " (" + STEP_NAMES.get(step) + "): " + e.getMessage();
+            run.setError(message.length() > 4000 ? message.substring(0, 4000) : message);
+            return checkpoint(run);
+        } finally {
+            activeRuns.remove(run.getId());
+        }
+    }
+
+    private void runStep(ArchiveRun run, int step) throws Exception {
+        switch (step) {
+            case STEP_EXPORT -> export(run);
+            case STEP_DELETE_CHILDREN -> deleteChildren(run);
+            case STEP_DELETE_ATTACHMENTS -> deleteAttachments(run);
+            case STEP_REPLACE_CONTENT -> confluenceArchiveService.replacePageContent(pageRef(run), run.getPageTitle(),
+                    run.getPageVersion(), run.getArchiveId(), run.getProjectName(), run.getJiraKey());
+            case STEP_SAVE_DB -> saveToDatabase(run);
+            default -> throw new IllegalStateException("Неизвестный шаг " + step);
+        }
+    }
+
+    private void export(ArchiveRun run) throws Exception {
+        ConfluenceArchiveService.ExportResult result =
+                confluenceArchiveService.exportToZip(run.getConfluenceUrl(), run.getProjectName(), run.getArchiveId());
+        run.setPageTitle(result.pageTitle());
+        run.setApiBase(result.page().apiBase());
+        run.setPageId(result.page().pageId());
+        run.setPageVersion(result.pageVersion());
+        run.setChildPageNames(result.childPageNames());
+        run.setPendingChildren(result.childInfos().stream().map(c -> item(c.id(), c.title())).toList());
+        run.setPendingAttachments(result.attachments().stream().map(a -> item(a.id(), a.title())).toList());
+    }
+
+    private void deleteChildren(ArchiveRun run) {
+        List<ConfluenceArchiveService.ChildInfo> children = pending(run.getPendingChildren()).stream()
+                .map(m -> new ConfluenceArchiveService.ChildInfo(m.get("id"), m.get("title")))
+                .toList();
+        CleanupReport report = confluenceArchiveService.deleteChildPages(pageRef(run), children);
+        run.setPendingChildren(failedItems(report));
+        requireNoFailures(report, "страниц");
+    }
+
+    private void deleteAttachments(ArchiveRun run) {
+        List<ConfluenceArchiveService.AttachmentInfo> attachments = pending(run.getPendingAttachments()).stream()
+                .map(m -> new ConfluenceArchiveService.AttachmentInfo(m.get("id"), m.get("title")))
+                .toList();
+        CleanupReport report = confluenceArchiveService.deleteAttachments(pageRef(run), attachments);
+        run.setPendingAttachments(failedItems(report));
+        requireNoFailures(report, "вложений");
+    }
+
+    private void saveToDatabase(ArchiveRun run) {
+        // Повтор после сбоя между сохранением отчёта и контрольной точкой не создаёт дубликат
+        // (проверка — на основной БД: реплика может ещё не получить сохранённый отчёт)
+        ArchivedReport report = dataSourceRouting.onPrimary(() -> archivedReportService.getReport(run.getProjectName(), run.getArchiveId())
+                .orElseGet(() -> confluenceArchiveService.saveToDatabase(run.getArchiveId(), run.getPageTitle(),
+                        run.getProjectName(), run.getChildPageNames(), run.getJiraKey())));
+        run.setReportPk(report.getPk());
+    }
+
+    private ArchiveRun checkpoint(ArchiveRun run) {
+        run.setUpdatedAt(LocalDateTime.now());
+        return archiveRunRepository.save(run);
+    }
+
+    private static ConfluenceArchiveService.PageRef pageRef(ArchiveRun run) {
+        return new ConfluenceArchiveService.PageRef(run.getApiBase(), run.getPageId());
+    }
+
+    private static List<Map<String, String>> pending(List<Map<String, String>> items) {
+        return items != null ? items : List.of();
+    }
+
+    private static List<Map<String, String>> failedItems(CleanupReport report) {
+        return report.items().stream()
+                .filter(i -> i.status() == CleanupReport.Status.FAILED)
+                .map(i -> item(i.id(), i.title()))
+                .toList();
+    }
+
+    private static void requireNoFailures(CleanupReport report, String what) {
+        if (report.hasFailures()) {
+            CleanupReport.Item first = report.items().stream()
+                    .filter(i -> i.status() == CleanupReport.Status.FAILED)
+                    .findFirst()
+                    .orElseThrow();
+            throw new IllegalStateException("не удалось удалить " + report.failed() + " " + what
+                    + " (например " + first.id() + ": " + first.reason() + ")");
+        }
+    }
+
+    private static Map<String, String> item(String id, String title) {
+        Map<String, String> item = new LinkedHashMap<>();
+        item.put("id", id);
+        item.put("title", title);
+        return item;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.entity.Project;
+import com.example.ConflArchReport.repository.ArchivedReportRepository;
+import com.example.ConflArchReport.storage.ArchiveStore;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Приём готового zip с диска сервера (пакетный импорт из командной строки, см. {@link com.example.ConflArchReport.cli.IngestCommand}):
+ * копирование или перенос в хранилище архивов, облегчение HTML, заголовок из &lt;title&gt; и запись в БД.
+ */
+@Service
+public class ArchiveImportService {
+
+    /** Имя файла без .zip становится идентификатором архива, если в нём нет символов, опасных для пути и URL */
+    private static final Pattern SAFE_ARCHIVE_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,199}");
+
+    private final ArchivedReportRepository archivedReportRepository;
+    private final ArchivedReportService archivedReportService;
+    private final ZipReportService zipReportService;
+    private final HtmlMinificationService htmlMinificationService;
+    private final ArchiveStore archiveStore;
+
+    public ArchiveImportService(ArchivedReportRepository archivedReportRepository,
+                                ArchivedReportService archivedReportService,
+                                ZipReportService zipReportService,
+                                HtmlMinificationService htmlMinificationService,
+                                ArchiveStore archiveStore) {
+        this.archivedReportRepository = archivedReportRepository;
+        this.archivedReportService = archivedReportService;
+        this.zipReportService = zipReportService;
+        this.htmlMinificationService = htmlMinificationService;
+        this.archiveStore = archiveStore;
+    }
+
+    /**
+     * Импортирует один zip. Проект должен существовать (создаётся заранее, до параллельного импорта).
+     *
+     * @param project название проекта
+     * @param source  zip-файл
+     * @param move    перенести файл (переименованием, если хранилище на том же диске), а не копировать
+     * @return результат; архив, уже зарегистрированный в БД или лежащий в хранилище, пропускается
+     */
+    public ImportResult importArchive(Project project, Path source, boolean move) throws IOException {
+        String archiveId = archiveId(source);
+        if (archivedReportRepository.findByProjectNameAndId(project.getName(), archiveId).isPresent()
+                || archiveStore.exists(project.getName(), archiveId)) {
+            return new ImportResult(archiveId, null, 0, ImportStatus.SKIPPED);
+        }
+        long size = Files.size(source);
+        Path staged = archiveStore.createStagingFile();
+        boolean moved = false;
+        try {
+            if (move) {
+                Files.move(source, staged, StandardCopyOption.REPLACE_EXISTING);
+                moved = true;
+            } else {
+                Files.copy(source, staged, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (ZipFile zip = new ZipFile(staged.toFile())) {
+                // Битый или не-zip файл не должен попасть в хранилище и каталог
+                if (zip.size() == 0) {
+                    throw new ZipException("пустой архив");
+                }
+            }
+            htmlMinificationService.minifyArchive(staged);
+            zipReportService.saveArchive(project.getName(), archiveId, staged);
+        } catch (IOException | RuntimeException e) {
+            if (moved) {
+                // Исходный файл возвращается на место, чтобы повторный запуск мог его импортировать
+                // (хранилище оставляет файл при неудачном сохранении, см. ArchiveStore#put)
+                try {
+                    Files.move(staged, source, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException restoreError) {
+                    e.addSuppressed(restoreError);
+                    throw new IOException("Импорт " + source + " не удался, и файл не возвращён на место; он остался в "
+                            + staged + ": " + e.getMessage(), e);
+                }
+            }
+            throw e;
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+
+        String fileName = source.getFileName().toString();
+        String title = zipReportService.extractPageTitleFromArchive(project.getName(), archiveId)
+                .orElse(fileName.substring(0, fileName.length() - ".zip".length()));
+        archivedReportService.saveReport(new ArchivedReport(archiveId, title, project));
+        return new ImportResult(archiveId, title, size, ImportStatus.IMPORTED);
+    }
+
+    /**
+     * Идентификатор из имени файла; для имён с кириллицей, пробелами и т.п. — первые 16 hex SHA-256 от имени,
+     * чтобы повторный запуск узнал уже импортированный архив.
+     */
+    private static String archiveId(Path source) {
+        String name = source.getFileName().toString();
+        String stem = name.substring(0, name.length() - ".zip".length());
+        if (SAFE_ARCHIVE_ID.matcher(stem).matches()) {
+            return stem;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(stem.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public enum ImportStatus {
+        IMPORTED,
+        SKIPPED
+    }
+
+    public record ImportResult(String archiveId, String title, long bytes, ImportStatus status) {}
+}
@@ -0,0 +1,325 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.repository.ArchivedReportRepository;
+import com.example.ConflArchReport.storage.ArchiveStore;
+import com.example.ConflArchReport.zip.ZipCentralDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Фоновая проверка целостности архивов в хранилище ({@link ArchiveStore}): центральный каталог (границы записей и локальные заголовки)
+ * и CRC каждой записи. Результат сохраняется в archived_reports (integrity_status, integrity_error, last_verified_at).
+ * Чтение ограничено бюджетом app.scrub.io-bytes-per-second; при росте задержки выдачи архивов пользователям
+ * проверка приостанавливается, чтобы не конкурировать с ними за диск.
+ */
+@Service
+public class ArchiveIntegrityService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveIntegrityService.class);
+
+    /** Кодировка имён записей — как в {@link ZipReportService} */
+    private static final Charset ZIP_ENTRY_CHARSET = StandardCharsets.ISO_8859_1;
+    private static final int BATCH_SIZE = 100;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ArchivedReportRepository archivedReportRepository;
+    private final ArchiveStore archiveStore;
+    private final ArchiveMetrics metrics;
+
+    @Value("${app.scrub.enabled:true}")
+    private boolean enabled;
+
+    /** Бюджет дискового ввода-вывода проверки, байт/с (0 — без ограничения) */
+    @Value("${app.scrub.io-bytes-per-second:10485760}")
+    private long ioBytesPerSecond;
+
+    /** Порог скользящей средней задержки выдачи архивов, мс, выше которого проверка ждёт */
+    @Value("${app.scrub.pause-latency-ms:300}")
+    private long pauseLatencyMillis;
+
+    /** Пауза перед повторной оценкой задержки выдачи, мс */
+    @Value("${app.scrub.pause-ms:5000}")
+    private long pauseMillis;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "archive-scrub");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<ScrubRun> currentRun = new AtomicReference<>();
+
+    public ArchiveIntegrityService(ArchivedReportRepository archivedReportRepository,
+                                   ArchiveStore archiveStore,
+                                   ArchiveMetrics metrics) {
+        this.archivedReportRepository = archivedReportRepository;
+        this.archiveStore = archiveStore;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Плановый проход по всем архивам (app.scrub.interval-ms после окончания предыдущего).
+     */
+    @Scheduled(initialDelayString = "${app.scrub.initial-delay-ms:600000}",
+               fixedDelayString = "${app.scrub.interval-ms:21600000}")
+    public void scheduledScrub() {
+        if (enabled) {
+            startScrub();
+        }
+    }
+
+    /**
+     * Запускает проверку всех архивов в фоне.
+     *
+     * @return false, если проверка уже выполняется
+     */
+    public boolean startScrub() {
+        ScrubRun run = new ScrubRun();
+        ScrubRun previous = currentRun.get();
+        if (previous != null && previous.running) {
+            return false;
+        }
+        if (!currentRun.compareAndSet(previous, run)) {
+            return false;
+        }
+        executor.submit(() -> scrubAll(run));
+        return true;
+    }
+
+    /**
+     * Состояние последней (или текущей) проверки.
+     */
+    public Optional<ScrubStatus> getStatus() {
+        ScrubRun run = currentRun.get();
+        return run != null ? Optional.of(run.snapshot()) : Optional.empty();
+    }
+
+    private void scrubAll(ScrubRun run) {
+        IoThrottle throttle = new IoThrottle(ioBytesPerSecond);
+        try {
+            long afterPk = 0;
+            List<ArchivedReport> batch;
+            do {
+                batch = archivedReportRepository.findBatchAfterPk(afterPk, PageRequest.of(0, BATCH_SIZE));
+                for (ArchivedReport report : batch) {
+                    afterPk = report.getPk();
+                    VerifyResult result = verify(report.getProject().getName(), report.getId(), throttle);
+                    archivedReportRepository.updateIntegrity(report.getPk(), result.status(), result.error(), LocalDateTime.now());
+                    metrics.recordScrub(result.status().name(), result.bytesRead());
+                    String archive = report.getProject().getName() + "/" + report.getId();
+                    run.add(archive, result);
+                    if (result.status() != ArchivedReport.IntegrityStatus.OK) {
+                        log.warn("Архив {} не прошёл проверку: {} {}", archive, result.status(), result.error());
+                    }
+                }
+            } while (batch.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("Ошибка проверки целостности архивов: {}", e.getMessage());
+            run.error = e.getMessage();
+        } finally {
+            run.finish();
+            ScrubStatus status = run.snapshot();
+            log.info("Проверка целостности архивов: проверено {}, повреждено {}, отсутствует {}",
+                    status.checked(), status.corrupt(), status.missing());
+        }
+    }
+
+    /**
+     * Проверяет архив из хранилища: локальный файл — через {@link ZipFile}, удалённый — последовательным чтением.
+     */
+    public VerifyResult verify(String project, String id, IoThrottle throttle) {
+        Optional<Path> localPath = archiveStore.localPath(project, id);
+        if (localPath.isPresent()) {
+            return verify(localPath.get(), throttle);
+        }
+        long[] bytesRead = {0};
+        try {
+            if (!archiveStore.exists(project, id)) {
+                return new VerifyResult(ArchivedReport.IntegrityStatus.MISSING, "Архив не найден: " + project + "/" + id, 0);
+            }
+            try (SeekableByteChannel channel = archiveStore.open(project, id)) {
+                verifyCentralDirectory(channel);
+                channel.position(0);
+                // ZipInputStream сам сверяет CRC и размер каждой записи
+                ZipInputStream zis = new ZipInputStream(Channels.newInputStream(channel), ZIP_ENTRY_CHARSET);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (zis.getNextEntry() != null) {
+                    int n;
+                    while ((n = zis.read(buffer)) > 0) {
+                        waitForQuietServing();
+                        throttle.acquire(n);
+                        bytesRead[0] += n;
+                    }
+                }
+            }
+            return new VerifyResult(ArchivedReport.IntegrityStatus.OK, null, bytesRead[0]);
+        } catch (IOException e) {
+            return corrupt(e, bytesRead[0]);
+        }
+    }
+
+    /**
+     * Проверяет один архив: структуру центрального каталога и CRC/размер каждой записи.
+     */
+    public VerifyResult verify(Path zipPath, IoThrottle throttle) {
+        if (!Files.isRegularFile(zipPath)) {
+            return new VerifyResult(ArchivedReport.IntegrityStatus.MISSING, "Файл не найден: " + zipPath, 0);
+        }
+        long[] bytesRead = {0};
+        try {
+            try (FileChannel channel = FileChannel.open(zipPath, StandardOpenOption.READ)) {
+                verifyCentralDirectory(channel);
+            }
+            try (ZipFile zip = new ZipFile(zipPath.toFile(), ZIP_ENTRY_CHARSET)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        verifyEntry(zip, entry, buffer, throttle, bytesRead);
+                    }
+                }
+            }
+            return new VerifyResult(ArchivedReport.IntegrityStatus.OK, null, bytesRead[0]);
+        } catch (IOException e) {
+            return corrupt(e, bytesRead[0]);
+        }
+    }
+
+    private static VerifyResult corrupt(IOException e, long bytesRead) {
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        return new VerifyResult(ArchivedReport.IntegrityStatus.CORRUPT, error, bytesRead);
+    }
+
+    /**
+     * Центральный каталог читается, а локальный заголовок и данные каждой записи лежат в пределах файла
+     * (обрезанный при копировании архив обнаруживается без чтения содержимого).
+     */
+    private void verifyCentralDirectory(SeekableByteChannel channel) throws IOException {
+        ZipCentralDirectory directory;
+        try {
+            directory = ZipCentralDirectory.read(channel, ZIP_ENTRY_CHARSET);
+        } catch (ZipCentralDirectory.Zip64Exception e) {
+            // Zip64 проверяется только по CRC
+            return;
+        }
+        long fileSize = channel.size();
+        for (ZipCentralDirectory.Entry entry : directory.entries()) {
+            long dataOffset = ZipCentralDirectory.dataOffset(channel, entry);
+            if (dataOffset + entry.compressedSize() > fileSize) {
+                throw new IOException("Данные записи выходят за границы файла: " + entry.name());
+            }
+        }
+    }
+
+    private void verifyEntry(ZipFile zip, ZipEntry entry, byte[] buffer, IoThrottle throttle, long[] bytesRead)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = zip.getInputStream(entry)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                waitForQuietServing();
+                throttle.acquire(n);
+                crc.update(buffer, 0, n);
+                size += n;
+                bytesRead[0] += n;
+            }
+        }
+        if (entry.getCrc() != -1 && crc.getValue() != entry.getCrc()) {
+            throw new IOException("Несовпадение CRC: " + entry.getName());
+        }
+        if (entry.getSize() != -1 && size != entry.getSize()) {
+            throw new IOException("Несовпадение размера: " + entry.getName());
+        }
+    }
+
+    /**
+     * Ждёт, пока скользящая средняя задержки выдачи архивов не опустится ниже порога.
+     */
+    private void waitForQuietServing() {
+        if (pauseLatencyMillis <= 0) {
+            return;
+        }
+        while (metrics.recentServeLatencyMillis() > pauseLatencyMillis) {
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public record VerifyResult(ArchivedReport.IntegrityStatus status, String error, long bytesRead) {}
+
+    public record ScrubStatus(boolean running, LocalDateTime startedAt, LocalDateTime finishedAt,
+                              int checked, int corrupt, int missing, long bytesRead,
+                              List<String> problems, String error) {}
+
+    private static class ScrubRun {
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile boolean running = true;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+        private int checked;
+        private int corrupt;
+        private int missing;
+        private long bytesRead;
+        private final List<String> problems = new ArrayList<>();
+
+        synchronized void add(String archive, VerifyResult result) {
+            checked++;
+            bytesRead += result.bytesRead();
+            if (result.status() == ArchivedReport.IntegrityStatus.CORRUPT) {
+                corrupt++;
+            } else if (result.status() == ArchivedReport.IntegrityStatus.MISSING) {
+                missing++;
+            }
+            if (result.status() != ArchivedReport.IntegrityStatus.OK) {
+                problems.add(archive + ": " + result.status() + " " + result.error());
+            }
+        }
+
+        void finish() {
+            finishedAt = LocalDateTime.now();
+            running = false;
+        }
+
+        synchronized ScrubStatus snapshot() {
+            return new ScrubStatus(running, startedAt, finishedAt, checked, corrupt, missing, bytesRead,
+                    List.copyOf(problems), error);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.ConflArchReport.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Раскладка архивов по каталогам внутри корня хранилища (app.reports.path или холодного хранилища):
+ * <ul>
+ *     <li>flat — {корень}/{проект}/{id}.zip;</li>
+ *     <li>sharded — {корень}/{проект}/{ab}/{cd}/{id}.zip, где ab и cd — первые байты SHA-256 от id в hex
+ *     (до 65536 каталогов на проект вместо одного каталога со всеми архивами).</li>
+ * </ul>
+ * Новые архивы пишутся в раскладке app.reports.layout, а поиск проверяет обе — архивы можно переносить
+ * между раскладками без остановки ({@link ArchiveLayoutMigrationService}).
+ */
+@Component
+public class ArchiveLayout {
+
+    public static final String FLAT = "flat";
+    public static final String SHARDED = "sharded";
+
+    /** Глубина каталогов с архивами внутри каталога проекта (два уровня шардов) */
+    private static final int SHARD_DEPTH = 2;
+
+    @Value("${app.reports.layout:flat}")
+    private String layout = FLAT;
+
+    public boolean isSharded() {
+        return SHARDED.equalsIgnoreCase(layout);
+    }
+
+    /**
+     * Путь архива в текущей раскладке — куда пишутся новые архивы.
+     */
+    public Path path(Path root, String project, String id) {
+        return layoutPath(root, project, id, isSharded());
+    }
+
+    /**
+     * Путь архива в другой раскладке (откуда архивы переносятся миграцией).
+     */
+    public Path alternatePath(Path root, String project, String id) {
+        return layoutPath(root, project, id, !isSharded());
+    }
+
+    /**
+     * Существующий файл архива: сначала в текущей раскладке, затем в другой.
+     */
+    public Optional<Path> find(Path root, String project, String id) {
+        Path preferred = path(root, project, id);
+        if (Files.exists(preferred)) {
+            return Optional.of(preferred);
+        }
+        Path alternate = alternatePath(root, project, id);
+        return Files.exists(alternate) ? Optional.of(alternate) : Optional.empty();
+    }
+
+    /**
+     * Все архивы каталога проекта в обеих раскладках.
+     */
+    public static List<Path> listArchives(Path projectDir) throws IOException {
+        try (Stream<Path> files = Files.walk(projectDir, SHARD_DEPTH + 1)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".zip") && Files.isRegularFile(p)).toList();
+        }
+    }
+
+    /**
+     * Идентификатор архива по имени файла (без .zip).
+     */
+    public static String archiveId(Path zipPath) {
+        String fileName = zipPath.getFileName().toString();
+        return fileName.substring(0, fileName.length() - ".zip".length());
+    }
+
+    /**
+     * Лежит ли файл в шардированной раскладке (каталог шарда внутри каталога проекта).
+     */
+    public static boolean isShardedPath(Path projectDir, Path zipPath) {
+        return projectDir.relativize(zipPath).getNameCount() == SHARD_DEPTH + 1;
+    }
+
+    private static Path layoutPath(Path root, String project, String id, boolean sharded) {
+        Path projectDir = root.resolve(project);
+        if (sharded) {
+            String hash = sha256Hex(id);
+            projectDir = projectDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4));
+        }
+        return projectDir.resolve(id + ".zip").normalize();
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.ConflArchReport.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Перенос архивов в раскладку каталогов app.reports.layout (flat ↔ sharded) без остановки сервиса.
+ * Архивы переносятся переименованием внутри того же корня (горячего и, если есть, холодного хранилища)
+ * пачками по app.reports.migration.batch-size с паузой между пачками. Пока перенос идёт, архивы находятся
+ * в обеих раскладках ({@link ArchiveLayout#find}), а уже открытые файлы дочитываются по старому пути.
+ */
+@Service
+public class ArchiveLayoutMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveLayoutMigrationService.class);
+
+    private final ArchiveLayout layout;
+
+    @Value("${app.reports.path:reports}")
+    private String reportsBasePath;
+
+    @Value("${app.tiering.cold-path:reports-cold}")
+    private String coldBasePath;
+
+    /** Сколько архивов переносится подряд перед паузой */
+    @Value("${app.reports.migration.batch-size:500}")
+    private int batchSize;
+
+    /** Пауза между пачками, мс */
+    @Value("${app.reports.migration.pause-ms:200}")
+    private long pauseMillis;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "archive-layout-migration");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<MigrationRun> currentRun = new AtomicReference<>();
+
+    public ArchiveLayoutMigrationService(ArchiveLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Запускает перенос в фоне: всех проектов (project == null) или одного проекта.
+     *
+     * @return false, если перенос уже выполняется
+     */
+    public boolean startMigration(String project) {
+        MigrationRun run = new MigrationRun(layout.isSharded() ? ArchiveLayout.SHARDED : ArchiveLayout.FLAT);
+        MigrationRun previous = currentRun.get();
+        if (previous != null && previous.running) {
+            return false;
+        }
+        if (!currentRun.compareAndSet(previous, run)) {
+            return false;
+        }
+        executor.submit(() -> migrateAll(run, project));
+        return true;
+    }
+
+    /**
+     * Состояние последнего (или текущего) переноса.
+     */
+    public Optional<MigrationStatus> getStatus() {
+        MigrationRun run = currentRun.get();
+        return run != null ? Optional.of(run.snapshot()) : Optional.empty();
+    }
+
+    private void migrateAll(MigrationRun run, String project) {
+        try {
+            for (Path root : List.of(Paths.get(reportsBasePath), Paths.get(coldBasePath))) {
+                if (Files.isDirectory(root)) {
+                    migrateRoot(run, root.normalize(), project);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка переноса архивов в раскладку {}: {}", run.target, e.getMessage());
+            run.addError(e.getMessage());
+        } finally {
+            run.finish();
+            MigrationStatus status = run.snapshot();
+            log.info("Перенос архивов в раскладку {}: перенесено {}, пропущено {}, ошибок {}",
+                    status.target(), status.moved(), status.skipped(), status.errors().size());
+        }
+    }
+
+    private void migrateRoot(MigrationRun run, Path root, String project) throws IOException, InterruptedException {
+        List<Path> projectDirs = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path projectDir : dirs) {
+                if (project == null || project.isBlank() || projectDir.getFileName().toString().equals(project)) {
+                    projectDirs.add(projectDir);
+                }
+            }
+        }
+        int inBatch = 0;
+        for (Path projectDir : projectDirs) {
+            String projectName = projectDir.getFileName().toString();
+            for (Path source : ArchiveLayout.listArchives(projectDir)) {
+                if (ArchiveLayout.isShardedPath(projectDir, source) == layout.isSharded()) {
+                    continue;
+                }
+                String id = ArchiveLayout.archiveId(source);
+                Path target = layout.path(root, projectName, id);
+                try {
+                    if (Files.exists(target)) {
+                        // Архив в текущей раскладке уже есть и отдаётся вместо этого файла
+                        run.skip(projectName + "/" + id + ": уже есть " + target);
+                        continue;
+                    }
+                    Files.createDirectories(target.getParent());
+                    move(source, target);
+                    run.moved();
+                    if (!layout.isSharded()) {
+                        deleteEmptyShardDirs(projectDir, source.getParent());
+                    }
+                } catch (IOException e) {
+                    log.warn("Ошибка переноса архива {}/{}: {}", projectName, id, e.getMessage());
+                    run.addError(projectName + "/" + id + ": " + e.getMessage());
+                }
+                if (++inBatch >= batchSize) {
+                    inBatch = 0;
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * Переименование в пределах одного корня хранилища; если атомарное недоступно — обычное перемещение.
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+
+    private static void deleteEmptyShardDirs(Path projectDir, Path dir) {
+        while (dir != null && dir.startsWith(projectDir) && !dir.equals(projectDir)) {
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                // Каталог не пуст или уже удалён
+                return;
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    public record MigrationStatus(boolean running, String target, LocalDateTime startedAt, LocalDateTime finishedAt,
+                                  int moved, int skipped, List<String> skippedArchives, List<String> errors) {}
+
+    private static class MigrationRun {
+        private final String target;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile boolean running = true;
+        private volatile LocalDateTime finishedAt;
+        private int moved;
+        private final List<String> skipped = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        MigrationRun(String target) {
+            this.target = target;
+        }
+
+        synchronized void moved() {
+            moved++;
+        }
+
+        synchronized void skip(String archive) {
+            skipped.add(archive);
+        }
+
+        synchronized void addError(String error) {
+            errors.add(error);
+        }
+
+        void finish() {
+            finishedAt = LocalDateTime.now();
+            running = false;
+        }
+
+        synchronized MigrationStatus snapshot() {
+            return new MigrationStatus(running, target, startedAt, finishedAt, moved, skipped.size(),
+                    List.copyOf(skipped), List.copyOf(errors));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.ConflArchReport.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Метрики горячих путей: экспорт из Confluence (по фазам), шаги архивации, синхронизация с БД,
+ * чтение архивов и выдача ресурсов. Публикуются через Actuator (/actuator/prometheus).
+ * <p>
+ * Таймеры публикуют гистограммы, поэтому по ним можно строить перцентили и алерты в Prometheus.
+ */
+@Component
+public class ArchiveMetrics {
+
+    /** Фазы экспорта (шаг 1) */
+    public static final String PHASE_FETCH_PAGE = "fetch_page";
+    public static final String PHASE_LIST_CHILDREN = "list_children";
+    public static final String PHASE_LIST_ATTACHMENTS = "list_attachments";
+    public static final String PHASE_DOWNLOAD_ATTACHMENT = "download_attachment";
+    public static final String PHASE_CAPTURE_ASSETS = "capture_assets";
+    public static final String PHASE_IMAGE_DERIVATIVES = "image_derivatives";
+    public static final String PHASE_REWRITE_HTML = "rewrite_html";
+    public static final String PHASE_WRITE_ZIP = "write_zip";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+
+    /** Вес нового замера в скользящей средней задержки выдачи */
+    private static final double SERVE_LATENCY_ALPHA = 0.2;
+    /** Без запросов дольше этого окна выдача считается простаивающей */
+    private static final long SERVE_IDLE_NANOS = 10_000_000_000L;
+
+    private final MeterRegistry registry;
+    private final AtomicInteger lastSyncTotal;
+    /** Экспоненциальная скользящая средняя задержки выдачи (double в битах long) и время последней выдачи */
+    private final AtomicLong serveLatencyEwmaBits = new AtomicLong(Double.doubleToLongBits(0));
+    private volatile long lastServeNanos = System.nanoTime() - SERVE_IDLE_NANOS - 1;
+
+    public ArchiveMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.lastSyncTotal = registry.gauge("reports.sync.last.total", new AtomicInteger());
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Фаза экспорта страницы из Confluence (запрос страницы, список вложений, скачивание, запись zip и т.д.).
+     */
+    public void stopExportPhase(Timer.Sample sample, String phase, String outcome) {
+        sample.stop(Timer.builder("confluence.export.phase")
+                .description("Длительность фаз экспорта страницы Confluence")
+                .tag("phase", phase)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void recordAttachmentBytes(long bytes) {
+        DistributionSummary.builder("confluence.export.attachment.size")
+                .description("Размер скачанных вложений")
+                .baseUnit("bytes")
+                .register(registry)
+                .record(bytes);
+    }
+
+    /**
+     * Шаг архивации целиком (export, delete_children, delete_attachments, replace_content, save_db).
+     */
+    public void stopArchiveStep(Timer.Sample sample, String step, String outcome) {
+        sample.stop(Timer.builder("confluence.archive.step")
+                .description("Длительность шагов архивации")
+                .tag("step", step)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void stopSync(Timer.Sample sample, int added, int total) {
+        sample.stop(Timer.builder("reports.sync")
+                .description("Длительность сканирования папки reports")
+                .register(registry));
+        Counter.builder("reports.sync.added")
+                .description("Архивы, добавленные в БД при синхронизации")
+                .register(registry)
+                .increment(added);
+        lastSyncTotal.set(total);
+    }
+
+    /**
+     * Открытие архива и поиск записи (operation: index, entry, stored_lookup).
+     */
+    public void stopArchiveLookup(Timer.Sample sample, String operation, boolean found) {
+        sample.stop(Timer.builder("archive.lookup")
+                .description("Открытие zip и поиск записи")
+                .tag("operation", operation)
+                .tag("found", String.valueOf(found))
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * Выдача ресурса архива клиенту: задержка по типу содержимого и способу выдачи, объём отданных байт.
+     *
+     * @param mode index, inflate (распаковка в память) или stored (напрямую из файла)
+     */
+    public void stopServe(Timer.Sample sample, String contentType, String mode, int status, long bytes) {
+        long nanos = sample.stop(Timer.builder("archive.serve")
+                .description("Задержка выдачи ресурсов архивов")
+                .tag("content_type", contentType)
+                .tag("mode", mode)
+                .tag("status", String.valueOf(status))
+                .publishPercentileHistogram()
+                .register(registry));
+        updateServeLatency(nanos);
+        if (bytes > 0) {
+            Counter.builder("archive.serve.bytes")
+                    .description("Отдано байт из архивов")
+                    .baseUnit("bytes")
+                    .tag("content_type", contentType)
+                    .tag("mode", mode)
+                    .register(registry)
+                    .increment(bytes);
+        }
+    }
+
+    /**
+     * Скользящая средняя задержки выдачи ресурсов архивов, мс; 0, если запросов не было последние 10 секунд.
+     * По ней фоновые задачи (проверка целостности) уступают диск пользовательским запросам.
+     */
+    public double recentServeLatencyMillis() {
+        if (System.nanoTime() - lastServeNanos > SERVE_IDLE_NANOS) {
+            return 0;
+        }
+        return Double.longBitsToDouble(serveLatencyEwmaBits.get()) / 1_000_000.0;
+    }
+
+    /**
+     * Проверка архива фоновой задачей: число проверенных архивов по статусу и прочитанные байты.
+     */
+    public void recordScrub(String status, long bytes) {
+        Counter.builder("archive.scrub.verified")
+                .description("Архивы, проверенные фоновой проверкой целостности")
+                .tag("status", status)
+                .register(registry)
+                .increment();
+        if (bytes > 0) {
+            Counter.builder("archive.scrub.bytes")
+                    .description("Прочитано байт фоновой проверкой целостности")
+                    .baseUnit("bytes")
+                    .register(registry)
+                    .increment(bytes);
+        }
+    }
+
+    private void updateServeLatency(long nanos) {
+        boolean idle = System.nanoTime() - lastServeNanos > SERVE_IDLE_NANOS;
+        serveLatencyEwmaBits.updateAndGet(bits -> {
+            double previous = Double.longBitsToDouble(bits);
+            double next = idle ? nanos : previous + SERVE_LATENCY_ALPHA * (nanos - previous);
+            return Double.doubleToLongBits(next);
+        });
+        lastServeNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.zip.ArchiveEntryTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.*;
+
+/**
+ * Фоновая перепаковка архивов отчётов:
+ * уже сжатые медиа (картинки, PDF, офисные файлы) сохраняются как STORED,
+ * HTML/CSS/JS — с повышенным уровнем deflate, index.html и ресурсы первой отрисовки ставятся в начало архива.
+ * Новый архив проверяется по CRC и атомарно подменяет исходный.
+ */
+@Service
+public class ArchiveRepackService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveRepackService.class);
+
+    /** Кодировка имён записей — как в {@link ZipReportService} */
+    private static final Charset ZIP_ENTRY_CHARSET = StandardCharsets.ISO_8859_1;
+    private static final Pattern RESOURCE_REF = Pattern.compile("(?i)(?:src|href)=[\"']([^\"'#?]+)");
+    private static final int TTFB_SAMPLES = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${app.reports.path:reports}")
+    private String reportsBasePath;
+
+    /** Бюджет дискового ввода-вывода перепаковки, байт/с (0 — без ограничения) */
+    @Value("${app.repack.io-bytes-per-second:20971520}")
+    private long ioBytesPerSecond;
+
+    /** Уровень deflate для HTML/CSS/JS */
+    @Value("${app.repack.text-deflate-level:9}")
+    private int textDeflateLevel;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "archive-repack");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<RepackJob> currentJob = new AtomicReference<>();
+
+    private final ArchiveLayout layout;
+
+    public ArchiveRepackService(ArchiveLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Запускает перепаковку в фоне: всех архивов (project == null), архивов проекта или одного архива.
+     *
+     * @return false, если задача уже выполняется
+     */
+    public boolean startRepack(String project, String id) {
+        RepackJob job = new RepackJob();
+        RepackJob previous = currentJob.get();
+        if (previous != null && previous.running) {
+            return false;
+        }
+        if (!currentJob.compareAndSet(previous, job)) {
+            return false;
+        }
+        executor.submit(() -> runJob(job, project, id));
+        return true;
+    }
+
+    /**
+     * Состояние последней (или текущей) задачи перепаковки.
+     */
+    public Optional<RepackJobStatus> getStatus() {
+        RepackJob job = currentJob.get();
+        return job != null ? Optional.of(job.snapshot()) : Optional.empty();
+    }
+
+    private void runJob(RepackJob job, String project, String id) {
+        try {
+            for (Path zipPath : listArchives(project, id)) {
+                try {
+                    job.add(repack(zipPath));
+                } catch (Exception e) {
+                    log.warn("Ошибка перепаковки {}: {}", zipPath, e.getMessage());
+                    job.addError(zipPath + ": " + e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка перепаковки архивов: {}", e.getMessage());
+            job.addError(e.getMessage());
+        } finally {
+            job.finish();
+        }
+    }
+
+    private List<Path> listArchives(String project, String id) throws IOException {
+        Path reportsPath = Paths.get(reportsBasePath).normalize();
+        if (project != null && !project.isBlank() && id != null && !id.isBlank()) {
+            return layout.find(reportsPath, project, id).map(List::of).orElse(List.of());
+        }
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(reportsPath)) {
+            return result;
+        }
+        try (DirectoryStream<Path> projectDirs = Files.newDirectoryStream(reportsPath, Files::isDirectory)) {
+            for (Path projectDir : projectDirs) {
+                if (project != null && !project.isBlank() && !projectDir.getFileName().toString().equals(project)) {
+                    continue;
+                }
+                result.addAll(ArchiveLayout.listArchives(projectDir));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Перепаковывает один архив: запись во временный файл рядом, проверка CRC, атомарная подмена.
+     */
+    public RepackResult repack(Path zipPath) throws IOException {
+        IoThrottle throttle = new IoThrottle(ioBytesPerSecond);
+        long sizeBefore = Files.size(zipPath);
+        long ttfbBefore = measureIndexTtfbNanos(zipPath);
+        Path tempPath = zipPath.resolveSibling(zipPath.getFileName() + ".repack.tmp");
+
+        try {
+            List<ZipEntry> ordered;
+            try (ZipFile source = new ZipFile(zipPath.toFile(), ZIP_ENTRY_CHARSET)) {
+                ordered = orderEntries(source);
+                writeRepacked(source, ordered, tempPath, throttle);
+            }
+            verify(ordered, tempPath, throttle);
+
+            long sizeAfter = Files.size(tempPath);
+            long ttfbAfter = measureIndexTtfbNanos(tempPath);
+            try {
+                Files.move(tempPath, zipPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, zipPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            RepackResult result = new RepackResult(zipPath.toString(), ordered.size(), sizeBefore, sizeAfter,
+                    sizeBefore - sizeAfter, ttfbBefore / 1000, ttfbAfter / 1000);
+            log.info("Архив перепакован {}: {} -> {} байт, TTFB index.html {} -> {} мкс",
+                    zipPath, sizeBefore, sizeAfter, result.ttfbBeforeMicros(), result.ttfbAfterMicros());
+            return result;
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * index.html, затем ресурсы, на которые он ссылается (в порядке появления), затем остальные HTML и прочие записи.
+     */
+    private List<ZipEntry> orderEntries(ZipFile source) throws IOException {
+        List<ZipEntry> all = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = source.entries();
+        while (entries.hasMoreElements()) {
+            all.add(entries.nextElement());
+        }
+
+        ZipEntry index = all.stream()
+                .filter(e -> !e.isDirectory() && "index.html".equalsIgnoreCase(fileName(e.getName())))
+                .findFirst()
+                .orElseGet(() -> all.stream()
+                        .filter(e -> !e.isDirectory() && e.getName().toLowerCase().endsWith(".html"))
+                        .findFirst().orElse(null));
+
+        LinkedHashMap<String, ZipEntry> ordered = new LinkedHashMap<>();
+        if (index != null) {
+            ordered.put(index.getName(), index);
+            Map<String, ZipEntry> byName = new HashMap<>();
+            for (ZipEntry e : all) {
+                byName.put(e.getName().replace('\\', '/'), e);
+            }
+            String html;
+            try (InputStream in = source.getInputStream(index)) {
+                html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            String indexDir = parentDir(index.getName().replace('\\', '/'));
+            Matcher m = RESOURCE_REF.matcher(html);
+            while (m.find()) {
+                String ref = m.group(1).trim();
+                if (ref.isEmpty() || ref.contains(":") || ref.startsWith("/") || ArchiveEntryTypes.isHtml(ref)) {
+                    continue;
+                }
+                ZipEntry asset = byName.get(resolveRelative(indexDir, ref));
+                if (asset != null && !asset.isDirectory()) {
+                    ordered.putIfAbsent(asset.getName(), asset);
+                }
+            }
+        }
+        for (ZipEntry e : all) {
+            if (!e.isDirectory() && ArchiveEntryTypes.isHtml(e.getName())) {
+                ordered.putIfAbsent(e.getName(), e);
+            }
+        }
+        for (ZipEntry e : all) {
+            ordered.putIfAbsent(e.getName(), e);
+        }
+        return new ArrayList<>(ordered.values());
+    }
+
+    private void writeRepacked(ZipFile source, List<ZipEntry> ordered, Path tempPath, IoThrottle throttle) throws IOException {
+        Charset charset = ArchiveEntryTypes.nameCharset(ordered.stream().map(ZipEntry::getName).toList());
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(tempPath), charset)) {
+            for (ZipEntry original : ordered) {
+                ZipEntry entry = new ZipEntry(original.getName());
+                if (original.getTime() != -1) {
+                    entry.setTime(original.getTime());
+                }
+                if (original.isDirectory()) {
+                    zos.putNextEntry(entry);
+                    zos.closeEntry();
+                    continue;
+                }
+                if (ArchiveEntryTypes.isPrecompressed(source, original)) {
+                    long[] sizeAndCrc = original.getCrc() != -1 && original.getSize() != -1
+                            ? new long[]{original.getSize(), original.getCrc()}
+                            : computeSizeAndCrc(source, original, throttle);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(sizeAndCrc[0]);
+                    entry.setCompressedSize(sizeAndCrc[0]);
+                    entry.setCrc(sizeAndCrc[1]);
+                } else {
+                    entry.setMethod(ZipEntry.DEFLATED);
+                    zos.setLevel(ArchiveEntryTypes.isText(original.getName()) ? textDeflateLevel : Deflater.DEFAULT_COMPRESSION);
+                }
+                zos.putNextEntry(entry);
+                try (InputStream in = source.getInputStream(original)) {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        throttle.acquire(n);
+                        zos.write(buffer, 0, n);
+                    }
+                }
+                zos.closeEntry();
+            }
+        }
+    }
+
+    private long[] computeSizeAndCrc(ZipFile source, ZipEntry entry, IoThrottle throttle) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = source.getInputStream(entry)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                throttle.acquire(n);
+                crc.update(buffer, 0, n);
+                size += n;
+            }
+        }
+        return new long[]{size, crc.getValue()};
+    }
+
+    /**
+     * Перечитывает новый архив и сверяет размер и CRC каждой записи с исходными.
+     */
+    private void verify(List<ZipEntry> originals, Path tempPath, IoThrottle throttle) throws IOException {
+        try (ZipFile repacked = new ZipFile(tempPath.toFile(), ZIP_ENTRY_CHARSET)) {
+            for (ZipEntry original : originals) {
+                ZipEntry copy = repacked.getEntry(original.getName());
+                if (copy == null) {
+                    throw new IOException("Запись отсутствует после перепаковки: " + original.getName());
+                }
+                if (original.isDirectory()) {
+                    continue;
+                }
+                long[] sizeAndCrc = computeSizeAndCrc(repacked, copy, throttle);
+                if (original.getCrc() != -1 && sizeAndCrc[1] != original.getCrc()) {
+                    throw new IOException("Несовпадение CRC после перепаковки: " + original.getName());
+                }
+                if (original.getSize() != -1 && sizeAndCrc[0] != original.getSize()) {
+                    throw new IOException("Несовпадение размера после перепаковки: " + original.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Время до первого байта index.html при потоковом чтении архива (как в {@link ZipReportService}), медиана нескольких замеров.
+     */
+    private long measureIndexTtfbNanos(Path zipPath) throws IOException {
+        long[] samples = new long[TTFB_SAMPLES];
+        for (int i = 0; i < TTFB_SAMPLES; i++) {
+            long start = System.nanoTime();
+            try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipPath), ZIP_ENTRY_CHARSET)) {
+                ZipEntry entry;
+                while ((entry = zis.getNextEntry()) != null) {
+                    if (!entry.isDirectory() && "index.html".equalsIgnoreCase(fileName(entry.getName()))) {
+                        zis.read();
+                        break;
+                    }
+                }
+            }
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[TTFB_SAMPLES / 2];
+    }
+
+    private static String fileName(String entryName) {
+        String name = entryName.replace('\\', '/');
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    private static String parentDir(String entryName) {
+        int slash = entryName.lastIndexOf('/');
+        return slash >= 0 ? entryName.substring(0, slash + 1) : "";
+    }
+
+    private static String resolveRelative(String dir, String ref) {
+        Deque<String> parts = new ArrayDeque<>();
+        for (String p : (dir + ref.replace('\\', '/')).split("/")) {
+            if (p.isEmpty() || ".".equals(p)) continue;
+            if ("..".equals(p)) {
+                parts.pollLast();
+            } else {
+                parts.addLast(p);
+            }
+        }
+        return String.join("/", parts);
+    }
+
+    public record RepackResult(String zipPath, int entries, long sizeBefore, long sizeAfter, long bytesSaved,
+                               long ttfbBeforeMicros, long ttfbAfterMicros) {}
+
+    public record RepackJobStatus(boolean running, LocalDateTime startedAt, LocalDateTime finishedAt,
+                                  long totalBytesSaved, List<RepackResult> results, List<String> errors) {}
+
+    private static class RepackJob {
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile boolean running = true;
+        private volatile LocalDateTime finishedAt;
+        private final List<RepackResult> results = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        synchronized void add(RepackResult result) {
+            results.add(result);
+        }
+
+        synchronized void addError(String error) {
+            errors.add(error);
+        }
+
+        void finish() {
+            finishedAt = LocalDateTime.now();
+            running = false;
+        }
+
+        synchronized RepackJobStatus snapshot() {
+            long saved = results.stream().mapToLong(RepackResult::bytesSaved).sum();
+            return new RepackJobStatus(running, startedAt, finishedAt, saved, List.copyOf(results), List.copyOf(errors));
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.repository.ArchivedReportRepository;
+import com.example.ConflArchReport.zip.ArchiveEntryTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Горячее/холодное хранение архивов: архивы, к которым не обращались app.tiering.cold-after-days дней,
+ * переносятся из app.reports.path в app.tiering.cold-path (в той же раскладке каталогов — {@link ArchiveLayout}),
+ * при app.tiering.recompress — с пересжатием записей максимальным уровнем deflate (уже сжатые форматы копируются как есть).
+ * <p>
+ * Расположение архива прозрачно для остального кода: {@link #locate} возвращает холодный путь,
+ * если горячего файла нет, и архив отдаётся с места. При обращении пользователя холодный архив в фоне
+ * возвращается в горячее хранилище (app.tiering.promote-on-access) — отдельным потоком, не дожидаясь переноса
+ * в холодное хранилище, который может идти часами.
+ * Время последнего обращения копится в памяти и записывается в archived_reports.last_accessed_at пачками.
+ */
+@Service
+public class ArchiveTieringService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveTieringService.class);
+
+    /** Кодировка имён записей — как в {@link ZipReportService} */
+    private static final Charset ZIP_ENTRY_CHARSET = StandardCharsets.ISO_8859_1;
+    private static final int BATCH_SIZE = 100;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ArchivedReportRepository archivedReportRepository;
+    private final ArchiveRepackService archiveRepackService;
+    private final ArchiveLayout layout;
+
+    @Value("${app.reports.path:reports}")
+    private String reportsBasePath;
+
+    @Value("${app.tiering.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.tiering.cold-path:reports-cold}")
+    private String coldBasePath;
+
+    /** Через сколько дней без обращений архив переносится в холодное хранилище */
+    @Value("${app.tiering.cold-after-days:30}")
+    private int coldAfterDays;
+
+    /** Пересжимать архив при переносе в холодное хранилище (deflate с максимальным уровнем) */
+    @Value("${app.tiering.recompress:false}")
+    private boolean recompress;
+
+    /** Возвращать архив в горячее хранилище при обращении */
+    @Value("${app.tiering.promote-on-access:true}")
+    private boolean promoteOnAccess;
+
+    /** Бюджет дискового ввода-вывода переноса в холодное хранилище, байт/с (0 — без ограничения) */
+    @Value("${app.tiering.io-bytes-per-second:20971520}")
+    private long ioBytesPerSecond;
+
+    private final Map<ArchiveKey, LocalDateTime> pendingAccess = new ConcurrentHashMap<>();
+    /** Архивы, возврат которых уже в очереди: не больше одной задачи на архив */
+    private final Set<ArchiveKey> promoting = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "archive-tiering");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService promotionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "archive-promotion");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<TieringRun> currentRun = new AtomicReference<>();
+
+    public ArchiveTieringService(ArchivedReportRepository archivedReportRepository,
+                                 ArchiveRepackService archiveRepackService,
+                                 ArchiveLayout layout) {
+        this.archivedReportRepository = archivedReportRepository;
+        this.archiveRepackService = archiveRepackService;
+        this.layout = layout;
+    }
+
+    /**
+     * Путь для нового архива в горячем хранилище (в текущей раскладке каталогов).
+     */
+    public Path hotPath(String project, String id) {
+        return layout.path(hotRoot(), project, id);
+    }
+
+    /**
+     * Текущее расположение архива: горячее хранилище (любая раскладка), затем холодное;
+     * если архива нет нигде — путь для нового архива.
+     * Холодный архив, к которому только что обращался пользователь ({@link #recordAccess}), ставится в очередь
+     * на возврат: поиск здесь уже выяснил, что горячей копии нет, — без повторных проверок файлов на запрос.
+     */
+    public Path locate(String project, String id) {
+        Optional<Path> hot = layout.find(hotRoot(), project, id);
+        if (hot.isPresent()) {
+            return hot.get();
+        }
+        if (enabled) {
+            Optional<Path> cold = layout.find(coldRoot(), project, id);
+            if (cold.isPresent()) {
+                schedulePromotion(new ArchiveKey(project, id));
+                return cold.get();
+            }
+        }
+        return hotPath(project, id);
+    }
+
+    private Path hotRoot() {
+        return Paths.get(reportsBasePath);
+    }
+
+    private Path coldRoot() {
+        return Paths.get(coldBasePath);
+    }
+
+    /**
+     * Отмечает обращение к архиву (только в памяти, без обращения к диску). Если архив холодный, его возврат
+     * в горячее хранилище запускает {@link #locate} при чтении архива.
+     */
+    public void recordAccess(String project, String id) {
+        if (!enabled) {
+            return;
+        }
+        pendingAccess.put(new ArchiveKey(project, id), LocalDateTime.now());
+    }
+
+    /**
+     * Возврат в горячее хранилище, если к архиву обращался пользователь (обращение ещё не записано в БД):
+     * чтение при обслуживании — проверке целостности, массовой выгрузке — само по себе архив не возвращает.
+     * Своя очередь с одной задачей на архив: перенос в холодное хранилище её не держит.
+     */
+    private void schedulePromotion(ArchiveKey key) {
+        if (!promoteOnAccess || !pendingAccess.containsKey(key) || !promoting.add(key)) {
+            return;
+        }
+        promotionExecutor.submit(() -> {
+            try {
+                promote(key.project(), key.id());
+            } catch (Exception e) {
+                log.warn("Не удалось вернуть архив {}/{} в горячее хранилище: {}", key.project(), key.id(), e.getMessage());
+            } finally {
+                promoting.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Записывает накопленные времена обращений в БД.
+     */
+    @Scheduled(fixedDelayString = "${app.tiering.access-flush-ms:60000}")
+    public void flushAccessTimes() {
+        for (ArchiveKey key : new ArrayList<>(pendingAccess.keySet())) {
+            LocalDateTime accessedAt = pendingAccess.remove(key);
+            if (accessedAt != null) {
+                archivedReportRepository.updateLastAccessed(key.project(), key.id(), accessedAt);
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.tiering.initial-delay-ms:900000}",
+               fixedDelayString = "${app.tiering.interval-ms:86400000}")
+    public void scheduledDemotion() {
+        if (enabled) {
+            startDemotion();
+        }
+    }
+
+    /**
+     * Запускает в фоне перенос давно не открывавшихся архивов в холодное хранилище.
+     *
+     * @return false, если хранение по уровням выключено или перенос уже выполняется
+     */
+    public boolean startDemotion() {
+        if (!enabled) {
+            return false;
+        }
+        TieringRun run = new TieringRun();
+        TieringRun previous = currentRun.get();
+        if (previous != null && previous.running) {
+            return false;
+        }
+        if (!currentRun.compareAndSet(previous, run)) {
+            return false;
+        }
+        executor.submit(() -> demoteAll(run));
+        return true;
+    }
+
+    /**
+     * Состояние последнего (или текущего) переноса.
+     */
+    public Optional<TieringStatus> getStatus() {
+        TieringRun run = currentRun.get();
+        return run != null ? Optional.of(run.snapshot()) : Optional.empty();
+    }
+
+    private void demoteAll(TieringRun run) {
+        IoThrottle throttle = new IoThrottle(ioBytesPerSecond);
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(coldAfterDays);
+        try {
+            flushAccessTimes();
+            long afterPk = 0;
+            List<ArchivedReport> batch;
+            do {
+                batch = archivedReportRepository.findBatchAfterPk(afterPk, PageRequest.of(0, BATCH_SIZE));
+                for (ArchivedReport report : batch) {
+                    afterPk = report.getPk();
+                    String project = report.getProject().getName();
+                    Optional<Path> hot = layout.find(hotRoot(), project, report.getId());
+                    if (hot.isEmpty() || !isCold(report, hot.get(), cutoff)) {
+                        continue;
+                    }
+                    try {
+                        run.add(demote(project, report.getId(), throttle));
+                    } catch (Exception e) {
+                        log.warn("Ошибка переноса архива {}/{} в холодное хранилище: {}", project, report.getId(), e.getMessage());
+                        run.addError(project + "/" + report.getId() + ": " + e.getMessage());
+                    }
+                }
+            } while (batch.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("Ошибка переноса архивов в холодное хранилище: {}", e.getMessage());
+            run.addError(e.getMessage());
+        } finally {
+            run.finish();
+        }
+    }
+
+    /**
+     * Архив холодный, если к нему не обращались с cutoff; для архивов без учёта обращений — по времени изменения файла.
+     */
+    private boolean isCold(ArchivedReport report, Path hot, LocalDateTime cutoff) throws IOException {
+        ArchiveKey key = new ArchiveKey(report.getProject().getName(), report.getId());
+        if (pendingAccess.containsKey(key) || promoting.contains(key)) {
+            return false;
+        }
+        LocalDateTime lastUse = report.getLastAccessedAt();
+        if (lastUse == null) {
+            lastUse = LocalDateTime.ofInstant(Files.getLastModifiedTime(hot).toInstant(), ZoneId.systemDefault());
+        }
+        return lastUse.isBefore(cutoff);
+    }
+
+    /**
+     * Переносит архив в холодное хранилище: запись во временный файл рядом с целью, сверка CRC записей,
+     * атомарная подмена, удаление горячей копии.
+     */
+    TierMove demote(String project, String id, IoThrottle throttle) throws IOException {
+        Path hot = layout.find(hotRoot(), project, id)
+                .orElseThrow(() -> new NoSuchFileException(hotPath(project, id).toString()));
+        Path cold = layout.path(coldRoot(), project, id);
+        Files.createDirectories(cold.getParent());
+        Path temp = cold.resolveSibling(cold.getFileName() + ".tier.tmp");
+        long sizeBefore = Files.size(hot);
+        try {
+            if (recompress) {
+                writeRecompressed(hot, temp, throttle);
+            } else {
+                copyThrottled(hot, temp, throttle);
+            }
+            verifySameEntries(hot, temp);
+            moveReplacing(temp, cold);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Files.delete(hot);
+        long sizeAfter = Files.size(cold);
+        log.info("Архив {}/{} перенесён в холодное хранилище: {} -> {} байт", project, id, sizeBefore, sizeAfter);
+        return new TierMove(project + "/" + id, sizeBefore, sizeAfter);
+    }
+
+    /**
+     * Возвращает архив в горячее хранилище. Пересжатый архив перепаковывается обратно
+     * (STORED для медиа, index.html в начале), чтобы снова отдаваться без распаковки.
+     */
+    void promote(String project, String id) throws IOException {
+        Optional<Path> coldFile = layout.find(coldRoot(), project, id);
+        if (coldFile.isEmpty() || layout.find(hotRoot(), project, id).isPresent()) {
+            return;
+        }
+        Path cold = coldFile.get();
+        Path hot = hotPath(project, id);
+        Files.createDirectories(hot.getParent());
+        Path temp = hot.resolveSibling(hot.getFileName() + ".tier.tmp");
+        try {
+            Files.copy(cold, temp, StandardCopyOption.REPLACE_EXISTING);
+            moveReplacing(temp, hot);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Files.delete(cold);
+        if (recompress) {
+            archiveRepackService.repack(hot);
+        }
+        log.info("Архив {}/{} возвращён в горячее хранилище", project, id);
+    }
+
+    private void writeRecompressed(Path source, Path target, IoThrottle throttle) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipFile zip = new ZipFile(source.toFile(), ZIP_ENTRY_CHARSET)) {
+            List<? extends ZipEntry> entries = Collections.list(zip.entries());
+            Charset charset = ArchiveEntryTypes.nameCharset(entries.stream().map(ZipEntry::getName).toList());
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(target), charset)) {
+                zos.setLevel(Deflater.BEST_COMPRESSION);
+                for (ZipEntry original : entries) {
+                    ZipEntry entry = new ZipEntry(original.getName());
+                    if (original.getTime() != -1) {
+                        entry.setTime(original.getTime());
+                    }
+                    if (original.getMethod() == ZipEntry.STORED && original.getCrc() != -1 && original.getSize() != -1
+                            && ArchiveEntryTypes.isPrecompressed(zip, original)) {
+                        // Картинки и офисные файлы deflate только увеличит — копируем как есть
+                        entry.setMethod(ZipEntry.STORED);
+                        entry.setSize(original.getSize());
+                        entry.setCompressedSize(original.getSize());
+                        entry.setCrc(original.getCrc());
+                    } else {
+                        entry.setMethod(ZipEntry.DEFLATED);
+                    }
+                    zos.putNextEntry(entry);
+                    if (!original.isDirectory()) {
+                        try (InputStream in = zip.getInputStream(original)) {
+                            int n;
+                            while ((n = in.read(buffer)) > 0) {
+                                throttle.acquire(n);
+                                zos.write(buffer, 0, n);
+                            }
+                        }
+                    }
+                    zos.closeEntry();
+                }
+            }
+        }
+    }
+
+    private static void copyThrottled(Path source, Path target, IoThrottle throttle) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                throttle.acquire(n);
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Копия содержит те же записи с теми же CRC и размерами, что и исходный архив.
+     */
+    private static void verifySameEntries(Path source, Path copy) throws IOException {
+        Map<String, ZipEntry> expected = new HashMap<>();
+        try (ZipFile zip = new ZipFile(source.toFile(), ZIP_ENTRY_CHARSET)) {
+            zip.stream().forEach(e -> expected.put(e.getName(), e));
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipFile zip = new ZipFile(copy.toFile(), ZIP_ENTRY_CHARSET)) {
+            if (zip.size() != expected.size()) {
+                throw new IOException("Число записей после переноса не совпадает: " + zip.size() + " из " + expected.size());
+            }
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                ZipEntry original = expected.get(entry.getName());
+                if (original == null) {
+                    throw new IOException("Лишняя запись после переноса: " + entry.getName());
+                }
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                CRC32 crc = new CRC32();
+                long size = 0;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        crc.update(buffer, 0, n);
+                        size += n;
+                    }
+                }
+                if ((original.getCrc() != -1 && crc.getValue() != original.getCrc())
+                        || (original.getSize() != -1 && size != original.getSize())) {
+                    throw new IOException("Несовпадение CRC или размера после переноса: " + entry.getName());
+                }
+            }
+        }
+    }
+
+    private static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private record ArchiveKey(String project, String id) {}
+
+    public record TierMove(String archive, long sizeBefore, long sizeAfter) {}
+
+    public record TieringStatus(boolean running, LocalDateTime startedAt, LocalDateTime finishedAt,
+                                int demoted, long bytesMoved, long bytesSaved,
+                                List<TierMove> moves, List<String> errors) {}
+
+    private static class TieringRun {
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile boolean running = true;
+        private volatile LocalDateTime finishedAt;
+        private final List<TierMove> moves = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        synchronized void add(TierMove move) {
+            moves.add(move);
+        }
+
+        synchronized void addError(String error) {
+            errors.add(error);
+        }
+
+        void finish() {
+            finishedAt = LocalDateTime.now();
+            running = false;
+        }
+
+        synchronized TieringStatus snapshot() {
+            long moved = moves.stream().mapToLong(TierMove::sizeBefore).sum();
+            long saved = moves.stream().mapToLong(m -> m.sizeBefore() - m.sizeAfter()).sum();
+            return new TieringStatus(running, startedAt, finishedAt, moves.size(), moved, saved,
+                    List.copyOf(moves), List.copyOf(errors));
+        }
+    }
+}
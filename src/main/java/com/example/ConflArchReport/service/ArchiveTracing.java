@@ -0,0 +1,133 @@
+package com.example.ConflArchReport.service;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Спаны трассировки архивации и выдачи (OpenTelemetry через Micrometer Tracing): фазы экспорта, шаги архивации,
+ * чтение архивов. Вложенные в них REST-вызовы Confluence и HTTP-запросы к приложению трассируются Spring
+ * автоматически, поэтому медленный экспорт раскладывается по вызовам. Куда уходят спаны — см. TracingConfig.
+ * <p>
+ * Используется Tracer, а не Observation: длительности фаз уже пишет {@link ArchiveMetrics}, и Observation
+ * задублировал бы эти таймеры. Без трассировки (management.tracing.enabled=false) спаны пустые.
+ */
+@Component
+public class ArchiveTracing {
+
+    /** Атрибуты спанов */
+    public static final String PAGE_ID = "confluence.page.id";
+    public static final String CONFLUENCE_URL = "confluence.url";
+    public static final String ATTACHMENT_SIZE = "confluence.attachment.size";
+    public static final String ARCHIVE_ID = "archive.id";
+    public static final String PROJECT = "archive.project";
+    public static final String ENTRY = "archive.entry";
+    public static final String FOUND = "archive.found";
+    public static final String COUNT = "items.count";
+    public static final String BYTES = "bytes";
+
+    private final Tracer tracer;
+
+    @Autowired
+    public ArchiveTracing(ObjectProvider<Tracer> tracer) {
+        this(tracer.getIfAvailable(() -> Tracer.NOOP));
+    }
+
+    private ArchiveTracing(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Без трассировки — для сервисов, собранных вне контекста Spring (нагрузочный стенд, бенчмарки).
+     */
+    public static ArchiveTracing noop() {
+        return new ArchiveTracing(Tracer.NOOP);
+    }
+
+    /**
+     * Начинает дочерний спан текущего и делает его текущим до {@link TracedSpan#close()}.
+     */
+    public TracedSpan start(String name) {
+        Span span = tracer.nextSpan().name(name).start();
+        return new TracedSpan(span, tracer.withSpan(span));
+    }
+
+    /**
+     * Атрибут текущего спана (например, спана HTTP-запроса в контроллере).
+     */
+    public void tagCurrent(String key, String value) {
+        Span span = tracer.currentSpan();
+        if (span != null && value != null) {
+            span.tag(key, value);
+        }
+    }
+
+    /**
+     * Идентификатор текущей трассы или null — для заголовка ответа и поиска трассы по запросу.
+     */
+    public String currentTraceId() {
+        Span span = tracer.currentSpan();
+        return span != null && !span.isNoop() ? span.context().traceId() : null;
+    }
+
+    /**
+     * Задача для другого потока, выполняемая в контексте текущего спана (параллельная зачистка).
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        Span parent = tracer.currentSpan();
+        if (parent == null) {
+            return task;
+        }
+        return () -> {
+            try (Tracer.SpanInScope ignored = tracer.withSpan(parent)) {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * Спан, открытый {@link #start}; закрывается в try-with-resources.
+     */
+    public static final class TracedSpan implements AutoCloseable {
+
+        private final Span span;
+        private final Tracer.SpanInScope scope;
+
+        private TracedSpan(Span span, Tracer.SpanInScope scope) {
+            this.span = span;
+            this.scope = scope;
+        }
+
+        public TracedSpan tag(String key, String value) {
+            if (value != null) {
+                span.tag(key, value);
+            }
+            return this;
+        }
+
+        public TracedSpan tag(String key, long value) {
+            span.tag(key, value);
+            return this;
+        }
+
+        public TracedSpan tag(String key, boolean value) {
+            span.tag(key, value);
+            return this;
+        }
+
+        public TracedSpan error(Throwable error) {
+            span.error(error);
+            return this;
+        }
+
+        @Override
+        public void close() {
+            scope.close();
+            span.end();
+        }
+    }
+}
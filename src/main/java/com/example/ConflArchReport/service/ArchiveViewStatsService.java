@@ -0,0 +1,139 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.entity.ArchiveViewStats;
+import com.example.ConflArchReport.entity.ArchivedReport;
+import com.example.ConflArchReport.repository.ArchiveViewStatsRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики просмотров и отданных байт по архивам.
+ * Запрос только увеличивает {@link LongAdder} в памяти (без блокировок и записи в БД);
+ * накопленные приращения периодически записываются в archive_view_stats одним пакетом INSERT ... ON CONFLICT.
+ */
+@Service
+public class ArchiveViewStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveViewStatsService.class);
+
+    private static final String UPSERT = """
+            INSERT INTO archive_view_stats (project_name, archive_id, views, bytes_served, last_viewed_at)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (project_name, archive_id) DO UPDATE SET
+                views = archive_view_stats.views + EXCLUDED.views,
+                bytes_served = archive_view_stats.bytes_served + EXCLUDED.bytes_served,
+                last_viewed_at = GREATEST(archive_view_stats.last_viewed_at, EXCLUDED.last_viewed_at)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ArchiveViewStatsRepository archiveViewStatsRepository;
+
+    private final Map<ArchiveKey, Counters> counters = new ConcurrentHashMap<>();
+
+    public ArchiveViewStatsService(JdbcTemplate jdbcTemplate, ArchiveViewStatsRepository archiveViewStatsRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.archiveViewStatsRepository = archiveViewStatsRepository;
+    }
+
+    /**
+     * Учитывает выдачу ресурса архива.
+     *
+     * @param view  true для просмотра главной страницы архива
+     * @param bytes отдано байт
+     */
+    public void record(String project, String id, boolean view, long bytes) {
+        Counters c = counters.computeIfAbsent(new ArchiveKey(project, id), k -> new Counters());
+        if (view) {
+            c.views.increment();
+            c.lastViewedAt = LocalDateTime.now();
+        }
+        if (bytes > 0) {
+            c.bytes.add(bytes);
+        }
+    }
+
+    /**
+     * Записывает накопленные с прошлой записи приращения в БД одним пакетом.
+     * Счётчики не сбрасываются: записанная часть запоминается, поэтому параллельные увеличения не теряются,
+     * а при ошибке БД приращения уйдут в следующий раз.
+     */
+    @Scheduled(fixedDelayString = "${app.views.flush-ms:30000}")
+    @PreDestroy
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        List<Runnable> commits = new ArrayList<>();
+        counters.forEach((key, c) -> {
+            long views = c.views.sum();
+            long bytes = c.bytes.sum();
+            long viewsDelta = views - c.flushedViews;
+            long bytesDelta = bytes - c.flushedBytes;
+            if (viewsDelta == 0 && bytesDelta == 0) {
+                return;
+            }
+            LocalDateTime lastViewedAt = c.lastViewedAt;
+            batch.add(new Object[]{key.project(), key.id(), viewsDelta, bytesDelta,
+                    lastViewedAt != null ? Timestamp.valueOf(lastViewedAt) : null});
+            commits.add(() -> {
+                c.flushedViews = views;
+                c.flushedBytes = bytes;
+            });
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT, batch);
+            commits.forEach(Runnable::run);
+        } catch (Exception e) {
+            log.warn("Не удалось записать статистику просмотров ({} архивов): {}", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Просмотры архивов для списка на главной: сохранённые в БД плюс ещё не записанные приращения.
+     *
+     * @return pk архива → число просмотров
+     */
+    public Map<Long, Long> getViews(List<ArchivedReport> reports) {
+        Map<Long, Long> result = new HashMap<>();
+        if (reports.isEmpty()) {
+            return result;
+        }
+        Map<ArchiveKey, Long> stored = new HashMap<>();
+        for (ArchiveViewStats stats : archiveViewStatsRepository.findByArchiveIdIn(
+                reports.stream().map(ArchivedReport::getId).toList())) {
+            stored.put(new ArchiveKey(stats.getProjectName(), stats.getArchiveId()), stats.getViews());
+        }
+        for (ArchivedReport report : reports) {
+            ArchiveKey key = new ArchiveKey(report.getProject().getName(), report.getId());
+            long views = stored.getOrDefault(key, 0L);
+            Counters c = counters.get(key);
+            if (c != null) {
+                views += c.views.sum() - c.flushedViews;
+            }
+            result.put(report.getPk(), views);
+        }
+        return result;
+    }
+
+    private record ArchiveKey(String project, String id) {}
+
+    private static class Counters {
+        final LongAdder views = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        volatile LocalDateTime lastViewedAt;
+        /** Уже записанные в БД значения — меняются только в {@link #flush()} */
+        volatile long flushedViews;
+        volatile long flushedBytes;
+    }
+}
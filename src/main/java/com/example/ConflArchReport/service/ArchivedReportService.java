@@ -1,5 +1,6 @@
 package com.example.ConflArchReport.service;
 
+import com.example.ConflArchReport.config.DataSourceRouting;
 import com.example.ConflArchReport.entity.ArchivedReport;
 import com.example.ConflArchReport.entity.Project;
 import com.example.ConflArchReport.repository.ArchivedReportRepository;
@@ -10,6 +11,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -20,23 +22,48 @@ public class ArchivedReportService {
     private final ArchivedReportRepository archivedReportRepository;
     private final ProjectRepository projectRepository;
     private final ZipReportService zipReportService;
+    private final ArchiveTieringService tieringService;
+    private final DataSourceRouting dataSourceRouting;
+    private final ChildPageSearchIndex childPageSearchIndex;
 
     public ArchivedReportService(ArchivedReportRepository archivedReportRepository,
                                  ProjectRepository projectRepository,
-                                 ZipReportService zipReportService) {
+                                 ZipReportService zipReportService,
+                                 ArchiveTieringService tieringService,
+                                 DataSourceRouting dataSourceRouting,
+                                 ChildPageSearchIndex childPageSearchIndex) {
         this.archivedReportRepository = archivedReportRepository;
         this.projectRepository = projectRepository;
         this.zipReportService = zipReportService;
+        this.tieringService = tieringService;
+        this.dataSourceRouting = dataSourceRouting;
+        this.childPageSearchIndex = childPageSearchIndex;
     }
 
     public List<String> getAllProjectNames() {
-        return projectRepository.findAll().stream()
+        return dataSourceRouting.onReplica(() -> projectRepository.findAll().stream()
                 .map(Project::getName)
                 .sorted()
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
+    /**
+     * Поиск по каталогу архивов (с реплики, если она настроена).
+     */
     public Page<ArchivedReport> searchArchives(String projectFilter, String searchTerm, Pageable pageable) {
+        return dataSourceRouting.onReplica(() -> findArchives(projectFilter, searchTerm, pageable));
+    }
+
+    /**
+     * Та же выборка, что {@link #searchArchives}, но только проект, id и название: проект читается внутри транзакции,
+     * поэтому результат можно использовать вне HTTP-запроса (потоковая выгрузка архивов).
+     */
+    public Page<ArchiveRef> searchArchiveRefs(String projectFilter, String searchTerm, Pageable pageable) {
+        return dataSourceRouting.onReplica(() -> findArchives(projectFilter, searchTerm, pageable)
+                .map(report -> new ArchiveRef(report.getProject().getName(), report.getId(), report.getName())));
+    }
+
+    private Page<ArchivedReport> findArchives(String projectFilter, String searchTerm, Pageable pageable) {
         String search = (searchTerm == null || searchTerm.isBlank()) ? "" : searchTerm.trim();
         String project = (projectFilter == null || projectFilter.isBlank()) ? null : projectFilter.trim();
 
@@ -56,10 +83,11 @@ public class ArchivedReportService {
     }
 
     public Optional<ArchivedReport> getReport(String projectName, String id) {
-        return archivedReportRepository.findByProjectNameAndId(projectName, id);
+        return dataSourceRouting.onReplica(() -> archivedReportRepository.findByProjectNameAndId(projectName, id));
     }
 
     public Optional<String> getHtmlContent(String project, String id) {
+        tieringService.recordAccess(project, id);
         try {
             return zipReportService.extractHtmlContent(project, id);
         } catch (IOException e) {
@@ -71,6 +99,7 @@ public class ArchivedReportService {
      * Возвращает содержимое файла из архива (CSS, JS, другой HTML и т.д.).
      */
     public Optional<byte[]> getFileContent(String project, String id, String path) {
+        tieringService.recordAccess(project, id);
         try {
             return zipReportService.getFileContent(project, id, path);
         } catch (IOException e) {
@@ -78,18 +107,46 @@ public class ArchivedReportService {
         }
     }
 
+    /**
+     * Положение несжатой (STORED) записи в архиве — для выдачи без распаковки и копирования в памяти.
+     * Запись держит открытый канал архива; вызывающий закрывает её после отдачи.
+     */
+    public Optional<ZipReportService.StoredEntry> findStoredEntry(String project, String id, String path) {
+        tieringService.recordAccess(project, id);
+        try {
+            return zipReportService.findStoredEntry(project, id, path);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
     public boolean reportExists(String project, String id) {
-        return zipReportService.archiveExists(project, id);
+        try {
+            return zipReportService.archiveExists(project, id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Transactional
     public Project getOrCreateProject(String name) {
         return projectRepository.findByName(name)
-                .orElseGet(() -> projectRepository.save(new Project(name)));
+                .orElseGet(() -> {
+                    dataSourceRouting.recordWrite();
+                    return projectRepository.save(new Project(name));
+                });
     }
 
+    /**
+     * Сохраняет запись архива; заголовки дочерних страниц из json_info попадают в индекс поиска.
+     */
     @Transactional
     public ArchivedReport saveReport(ArchivedReport report) {
-        return archivedReportRepository.save(report);
+        dataSourceRouting.recordWrite();
+        ArchivedReport saved = archivedReportRepository.save(report);
+        childPageSearchIndex.update(saved);
+        return saved;
     }
+
+    public record ArchiveRef(String project, String id, String name) {}
 }
@@ -0,0 +1,235 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.storage.ArchiveStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Выгрузка многих архивов одним zip (для аудита): по проекту, поисковой строке ({@link ArchivedReportService#searchArchives})
+ * или списку id. Архивы вкладываются как {project}/{id}.zip без сжатия (STORED) — уже сжатые данные не пережимаются,
+ * а поток пишется прямо в ответ через один буфер: память не зависит от размера выборки.
+ * <p>
+ * Для STORED размер и CRC нужны до данных записи, поэтому локальный архив читается дважды: подсчёт CRC и копирование
+ * (второе чтение обычно из кеша страниц). Архив из удалённого хранилища скачивается один раз во временный файл
+ * с подсчётом CRC и копируется из него. В конец кладётся manifest.csv: проект, id, название, размер, статус.
+ */
+@Service
+public class BulkDownloadService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkDownloadService.class);
+
+    public static final String MANIFEST_NAME = "manifest.csv";
+
+    /** Размер страницы при чтении выборки из БД */
+    private static final int PAGE_SIZE = 200;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ArchivedReportService archivedReportService;
+    private final ArchiveStore archiveStore;
+
+    /** Наибольшее число архивов в одной выгрузке */
+    @Value("${app.bulk-download.max-archives:5000}")
+    private int maxArchives;
+
+    public BulkDownloadService(ArchivedReportService archivedReportService, ArchiveStore archiveStore) {
+        this.archivedReportService = archivedReportService;
+        this.archiveStore = archiveStore;
+    }
+
+    /**
+     * Что выгружать: список id (в пределах проекта) или выборка по проекту и/или поисковой строке.
+     */
+    public record Selection(String project, String search, List<String> ids) {
+
+        public boolean byIds() {
+            return ids != null && !ids.isEmpty();
+        }
+    }
+
+    public int getMaxArchives() {
+        return maxArchives;
+    }
+
+    /**
+     * Число архивов выборки (проверяется до начала выгрузки, чтобы ответить 404/400, а не обрывать поток).
+     */
+    public long count(Selection selection) {
+        if (selection.byIds()) {
+            return resolveIds(selection).size();
+        }
+        return archivedReportService.searchArchiveRefs(selection.project(), selection.search(), PageRequest.of(0, 1))
+                .getTotalElements();
+    }
+
+    /**
+     * Пишет zip с архивами выборки в поток (не закрывая его).
+     */
+    public void write(Selection selection, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        StringBuilder manifest = new StringBuilder("project;id;name;bytes;status\n");
+        int written = 0;
+        long bytes = 0;
+
+        if (selection.byIds()) {
+            for (ArchivedReportService.ArchiveRef ref : resolveIds(selection)) {
+                long size = writeArchive(zip, ref, buffer, manifest);
+                written += size >= 0 ? 1 : 0;
+                bytes += Math.max(0, size);
+            }
+        } else {
+            int seen = 0;
+            int page = 0;
+            Page<ArchivedReportService.ArchiveRef> refs;
+            do {
+                // По возрастанию pk: новые архивы, добавленные во время выгрузки, не сдвигают уже пройденные страницы
+                refs = archivedReportService.searchArchiveRefs(selection.project(), selection.search(),
+                        PageRequest.of(page++, PAGE_SIZE, Sort.by("pk")));
+                for (ArchivedReportService.ArchiveRef ref : refs) {
+                    if (seen++ >= maxArchives) {
+                        break;
+                    }
+                    long size = writeArchive(zip, ref, buffer, manifest);
+                    written += size >= 0 ? 1 : 0;
+                    bytes += Math.max(0, size);
+                }
+            } while (refs.hasNext() && seen < maxArchives);
+        }
+
+        ZipEntry manifestEntry = new ZipEntry(MANIFEST_NAME);
+        zip.putNextEntry(manifestEntry);
+        zip.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        zip.finish();
+        zip.flush();
+        log.info("Выгрузка архивов (проект={}, поиск={}, id={}): {} архивов, {} байт за {} мс",
+                selection.project(), selection.search(), selection.byIds() ? selection.ids().size() : "-",
+                written, bytes, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Вкладывает архив как STORED-запись.
+     *
+     * @return размер архива или -1, если его нет в хранилище (отмечается в manifest)
+     */
+    private long writeArchive(ZipOutputStream zip, ArchivedReportService.ArchiveRef ref, ByteBuffer buffer,
+                              StringBuilder manifest) throws IOException {
+        boolean local = archiveStore.localPath(ref.project(), ref.id()).isPresent();
+        Path spooled = null;
+        SeekableByteChannel source = null;
+        try {
+            CRC32 crc = new CRC32();
+            long size;
+            try {
+                source = archiveStore.open(ref.project(), ref.id());
+                if (local) {
+                    // Оба прохода — по одному открытому файлу: замена архива между ними (перепаковка, перенос)
+                    // не рассогласует CRC и данные
+                    size = copy(source, buffer, crc, null);
+                    source.position(0);
+                } else {
+                    spooled = Files.createTempFile("bulk-", ".zip.tmp");
+                    try (SeekableByteChannel remote = source; OutputStream out = Files.newOutputStream(spooled)) {
+                        size = copy(remote, buffer, crc, out);
+                    }
+                    source = FileChannel.open(spooled, StandardOpenOption.READ);
+                }
+            } catch (NoSuchFileException e) {
+                appendManifest(manifest, ref, 0, "missing");
+                return -1;
+            }
+
+            ZipEntry entry = new ZipEntry(ref.project() + "/" + ref.id() + ".zip");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            copy(source, buffer, null, zip);
+            zip.closeEntry();
+            appendManifest(manifest, ref, size, "ok");
+            return size;
+        } finally {
+            if (source != null) {
+                source.close();
+            }
+            if (spooled != null) {
+                Files.deleteIfExists(spooled);
+            }
+        }
+    }
+
+    private static long copy(SeekableByteChannel channel, ByteBuffer buffer, CRC32 crc, OutputStream out) throws IOException {
+        long total = 0;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer);
+            if (read < 0) {
+                return total;
+            }
+            if (crc != null) {
+                crc.update(buffer.array(), 0, read);
+            }
+            if (out != null) {
+                out.write(buffer.array(), 0, read);
+            }
+            total += read;
+        }
+    }
+
+    /**
+     * Архивы из списка id, найденные в каталоге (без повторов, не больше max-archives).
+     */
+    private List<ArchivedReportService.ArchiveRef> resolveIds(Selection selection) {
+        List<ArchivedReportService.ArchiveRef> refs = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(selection.ids())) {
+            if (refs.size() >= maxArchives) {
+                break;
+            }
+            archivedReportService.getReport(selection.project(), id.trim())
+                    .ifPresent(report -> refs.add(new ArchivedReportService.ArchiveRef(selection.project(), report.getId(), report.getName())));
+        }
+        return refs;
+    }
+
+    private static void appendManifest(StringBuilder manifest, ArchivedReportService.ArchiveRef ref, long size, String status) {
+        manifest.append(csv(ref.project())).append(';')
+                .append(csv(ref.id())).append(';')
+                .append(csv(ref.name())).append(';')
+                .append(size).append(';')
+                .append(status).append('\n');
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(';') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
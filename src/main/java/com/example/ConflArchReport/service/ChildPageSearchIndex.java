@@ -0,0 +1,113 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.entity.ArchivedReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Индекс поиска по заголовкам заархивированных дочерних страниц (archived_report_child_pages).
+ * <p>
+ * GIN по jsonb (jsonb_path_ops) ускоряет только точное совпадение элемента, а поиск на главной ищет подстроку
+ * (LIKE '%...%'), поэтому заголовки из json_info.childPages хранятся построчно с GIN-индексом pg_trgm по lower(title).
+ * Такие же индексы строятся для названия, id и ключа Jira архива: поиск объединяет ветки через UNION
+ * и не читает весь каталог. Без расширения pg_trgm (нет прав на CREATE EXTENSION) поиск работает, но без индексов.
+ */
+@Service
+public class ChildPageSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ChildPageSearchIndex.class);
+
+    public static final String CHILD_PAGES_KEY = "childPages";
+
+    private static final int TITLE_MAX_LENGTH = 1000;
+
+    private static final List<String> TRIGRAM_INDEXES = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_child_pages_title_trgm ON archived_report_child_pages USING gin (lower(title) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_archived_reports_name_trgm ON archived_reports USING gin (lower(name) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_archived_reports_id_trgm ON archived_reports USING gin (lower(archive_id) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_archived_reports_jira_trgm ON archived_reports USING gin (lower(jira_key) gin_trgm_ops)"
+    );
+
+    /** Перенос заголовков из json_info для архивов, сохранённых до появления таблицы */
+    private static final String BACKFILL = """
+            INSERT INTO archived_report_child_pages (report_pk, title)
+            SELECT ar.pk, left(child.title, %d)
+            FROM archived_reports ar
+            CROSS JOIN LATERAL jsonb_array_elements_text(ar.json_info -> 'childPages') AS child(title)
+            WHERE jsonb_typeof(ar.json_info -> 'childPages') = 'array'
+              AND NOT EXISTS (SELECT 1 FROM archived_report_child_pages c WHERE c.report_pk = ar.pk)
+            """.formatted(TITLE_MAX_LENGTH);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Построение индексов pg_trgm и перенос заголовков при старте */
+    @Value("${app.search.child-pages.init-on-startup:true}")
+    private boolean initOnStartup;
+
+    public ChildPageSearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!initOnStartup) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            for (String ddl : TRIGRAM_INDEXES) {
+                jdbcTemplate.execute(ddl);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Индексы pg_trgm для поиска не созданы, поиск будет без индексов: {}", e.getMostSpecificCause().getMessage());
+        }
+        try {
+            int added = jdbcTemplate.update(BACKFILL);
+            if (added > 0) {
+                log.info("Заголовки дочерних страниц перенесены из json_info в индекс поиска: {}", added);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Не удалось перенести заголовки дочерних страниц из json_info: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * Заменяет заголовки дочерних страниц архива значениями из его json_info (вызывается в транзакции сохранения).
+     */
+    public void update(ArchivedReport report) {
+        jdbcTemplate.update("DELETE FROM archived_report_child_pages WHERE report_pk = ?", report.getPk());
+        List<Object[]> rows = new ArrayList<>();
+        for (String title : childTitles(report.getJsonInfo())) {
+            rows.add(new Object[]{report.getPk(), title});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO archived_report_child_pages (report_pk, title) VALUES (?, ?)", rows);
+        }
+    }
+
+    private static Set<String> childTitles(Map<String, Object> jsonInfo) {
+        Set<String> titles = new LinkedHashSet<>();
+        if (jsonInfo != null && jsonInfo.get(CHILD_PAGES_KEY) instanceof Collection<?> children) {
+            for (Object child : children) {
+                if (child != null && !child.toString().isBlank()) {
+                    String title = child.toString();
+                    titles.add(title.length() > TITLE_MAX_LENGTH ? title.substring(0, TITLE_MAX_LENGTH) : title);
+                }
+            }
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.ConflArchReport.service;
+
+import java.util.List;
+
+/**
+ * Результат зачистки Confluence (удаление дочерних страниц или вложений) по каждому элементу.
+ * Повторный запуск безопасен: уже удалённые элементы попадают в ALREADY_GONE, поэтому можно повторить только FAILED.
+ */
+public record CleanupReport(int deleted, int alreadyGone, int failed, List<Item> items) {
+
+    public enum Status {
+        DELETED,
+        /** Элемента уже нет (404) — удалён ранее или вручную */
+        ALREADY_GONE,
+        FAILED
+    }
+
+    /**
+     * @param id     id страницы или вложения
+     * @param title  заголовок, если известен
+     * @param reason причина ошибки для FAILED
+     */
+    public record Item(String id, String title, Status status, String reason) {}
+
+    public static CleanupReport of(List<Item> items) {
+        int deleted = 0;
+        int alreadyGone = 0;
+        int failed = 0;
+        for (Item item : items) {
+            switch (item.status()) {
+                case DELETED -> deleted++;
+                case ALREADY_GONE -> alreadyGone++;
+                case FAILED -> failed++;
+            }
+        }
+        return new CleanupReport(deleted, alreadyGone, failed, List.copyOf(items));
+    }
+
+    public boolean hasFailures() {
+        return failed > 0;
+    }
+
+    public List<String> failedIds() {
+        return items.stream().filter(i -> i.status() == Status.FAILED).map(Item::id).toList();
+    }
+}
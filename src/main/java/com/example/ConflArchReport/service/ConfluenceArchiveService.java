@@ -1,16 +1,24 @@
 package com.example.ConflArchReport.service;
 
 import com.example.ConflArchReport.confluence.ConfluenceApiResponse;
+import com.example.ConflArchReport.confluence.ConfluenceHtmlRewriter;
+import com.example.ConflArchReport.confluence.ConfluenceJsonReader;
 import com.example.ConflArchReport.confluence.ConfluenceUrlParser;
+import com.example.ConflArchReport.confluence.HtmlMinifier;
+import com.example.ConflArchReport.confluence.ResponsiveImageRewriter;
 import com.example.ConflArchReport.entity.ArchivedReport;
 import com.example.ConflArchReport.entity.Project;
+import com.example.ConflArchReport.storage.ArchiveStore;
+import com.example.ConflArchReport.zip.ArchiveEntryTypes;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
@@ -21,29 +29,41 @@ import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 /**
  * Экспорт контента Confluence в zip через REST API.
  * HTML страниц + вложения (картинки, файлы) выгружаются и сохраняются в zip;
- * ссылки на вложения в HTML заменяются на относительные пути к файлам в архиве.
+ * ссылки на вложения, миниатюры и архивируемые страницы в HTML заменяются на относительные пути к файлам в архиве.
  */
 @Service
 public class ConfluenceArchiveService {
 
     private static final Logger log = LoggerFactory.getLogger(ConfluenceArchiveService.class);
-    private static final String EXPAND = "body.export_view,body.storage,body.view,children.page";
+    /** Запрашивается только export_view; view и storage — лишь если export_view не пришёл */
+    private static final String PAGE_EXPAND = "body.export_view,children.attachment,version";
+    /** Дочерние страницы читаются пачками вместе с телом и списком вложений */
+    private static final String CHILD_EXPAND = "body.export_view,children.attachment";
+    private static final List<String> FALLBACK_REPRESENTATIONS = List.of("view", "storage");
     private static final String ATTACHMENTS_DIR = "attachments";
+    /** Размер страницы при чтении списков /child/page и /child/attachment */
+    private static final int CHILDREN_PAGE_SIZE = 100;
 
     private final RestTemplate restTemplate;
     private final ArchivedReportService archivedReportService;
-
-    @Value("${app.reports.path:reports}")
-    private String reportsBasePath;
+    private final ConfluenceAssetService confluenceAssetService;
+    private final HtmlMinificationService htmlMinificationService;
+    private final ArchiveMetrics metrics;
+    private final ArchiveStore archiveStore;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ArchiveTracing tracing;
 
     @Value("${app.base-url:}")
     private String appBaseUrl;
@@ -52,16 +72,75 @@ public class ConfluenceArchiveService {
     @Value("${confluence.context-path:}")
     private String confluenceContextPath;
 
+    /** Число параллельных DELETE-запросов при зачистке (шаги 2 и 3) */
+    @Value("${confluence.cleanup.parallelism:4}")
+    private int cleanupParallelism;
+
+    /** Ограничение частоты DELETE-запросов при зачистке (0 — без ограничения) */
+    @Value("${confluence.cleanup.requests-per-second:10}")
+    private int cleanupRequestsPerSecond;
+
+    /** Размер пачки дочерних страниц при экспорте (/child/page?expand=body.export_view,children.attachment) */
+    @Value("${confluence.export.children-batch-size:25}")
+    private int childrenBatchSize;
+
     public ConfluenceArchiveService(@Qualifier("confluenceRestTemplate") RestTemplate restTemplate,
-                                    ArchivedReportService archivedReportService) {
+                                    ArchivedReportService archivedReportService,
+                                    ConfluenceAssetService confluenceAssetService,
+                                    HtmlMinificationService htmlMinificationService,
+                                    ArchiveMetrics metrics,
+                                    ArchiveStore archiveStore,
+                                    ImageDerivativeService imageDerivativeService,
+                                    ArchiveTracing tracing) {
         this.restTemplate = restTemplate;
         this.archivedReportService = archivedReportService;
+        this.confluenceAssetService = confluenceAssetService;
+        this.htmlMinificationService = htmlMinificationService;
+        this.metrics = metrics;
+        this.archiveStore = archiveStore;
+        this.imageDerivativeService = imageDerivativeService;
+        this.tracing = tracing;
     }
 
     /**
      * Шаг 1: Экспорт страницы и дочерних в HTML, сохранение в zip на сервере
      */
     public ExportResult exportToZip(String confluenceUrl, String projectName) throws IOException {
+        return exportToZip(confluenceUrl, projectName, newArchiveId());
+    }
+
+    /**
+     * Шаг 1 с заранее выбранным id архива: повторный экспорт с тем же id заменяет архив в хранилище.
+     */
+    public ExportResult exportToZip(String confluenceUrl, String projectName, String archiveId) throws IOException {
+        Timer.Sample sample = metrics.start();
+        String outcome = ArchiveMetrics.OUTCOME_ERROR;
+        try (ArchiveTracing.TracedSpan span = tracing.start("confluence.export")
+                .tag(ArchiveTracing.CONFLUENCE_URL, confluenceUrl)
+                .tag(ArchiveTracing.PROJECT, projectName)) {
+            try {
+                ExportResult result = doExportToZip(confluenceUrl, projectName, archiveId);
+                span.tag(ArchiveTracing.PAGE_ID, result.page().pageId())
+                        .tag(ArchiveTracing.ARCHIVE_ID, result.archiveId());
+                outcome = ArchiveMetrics.OUTCOME_SUCCESS;
+                return result;
+            } catch (IOException | RuntimeException e) {
+                span.error(e);
+                throw e;
+            }
+        } finally {
+            metrics.stopArchiveStep(sample, "export", outcome);
+        }
+    }
+
+    /**
+     * Новый id архива (16 hex-символов).
+     */
+    public static String newArchiveId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+    }
+
+    private ExportResult doExportToZip(String confluenceUrl, String projectName, String archiveId) throws IOException {
         ConfluenceUrlParser.ParsedUrl parsed = ConfluenceUrlParser.parse(confluenceUrl);
         archivedReportService.getOrCreateProject(projectName);
 
@@ -78,116 +157,280 @@ public class ConfluenceArchiveService {
         // Получаем главную страницу
         ConfluenceApiResponse mainPage = fetchPageOrThrow(apiBase, pageId, "корневая страница");
         String pageTitle = mainPage.getTitle();
-        String mainHtml = extractHtmlFromPage(mainPage);
 
-        List<PageContent> pages = new ArrayList<>();
+        List<FetchedPage> fetchedPages = new ArrayList<>();
         List<AttachmentEntry> attachmentEntries = new ArrayList<>();
 
-        // Вложения корневой страницы
-        collectAttachments(apiBase, webBase, pageId, attachmentUrlToZipPath, attachmentEntries);
-
-        pages.add(new PageContent("index.html", pageTitle, rewriteAttachmentUrlsInHtml(mainHtml, pageId, attachmentUrlToZipPath)));
+        // Вложения корневой страницы (их id нужны шагу 3 — удалению без повторного запроса списка)
+        List<AttachmentInfo> rootAttachments = collectAttachments(apiBase, webBase, pageId,
+                inlineAttachments(mainPage), attachmentUrlToZipPath, attachmentEntries);
+        Integer pageVersion = mainPage.getVersion() != null ? mainPage.getVersion().getNumber() : null;
+        fetchedPages.add(new FetchedPage("index.html", pageId, pageTitle, extractHtmlFromPage(mainPage)));
 
         List<ChildInfo> childInfos = new ArrayList<>();
-        List<ConfluenceApiResponse.ChildRef> childRefs = getChildPages(mainPage);
+        // Дочерние страницы — пачками вместе с телом и вложениями: O(N / размер пачки) запросов вместо 2N.
+        // Ошибка по любой странице или вложению прерывает экспорт: шаги 2 и 3 удаляют всё, что попало в результат,
+        // поэтому неполный архив недопустим — повтор шага 1 перезапишет архив с тем же id.
+        for (ConfluenceApiResponse child : listChildPages(apiBase, pageId)) {
+            ConfluenceApiResponse childPage = child;
+            if (!hasBody(childPage)) {
+                // Тело не пришло в пачке (Confluence урезает раскрытия для больших страниц) — запрашиваем отдельно
+                childPage = fetchPageOrThrow(apiBase, child.getId(), "дочерняя: " + child.getTitle());
+            }
+            String childHtml = extractHtmlFromPage(childPage);
+            // Тело из пачки больше не нужно: без этого до конца цикла в памяти и ответ, и обёрнутая копия
+            child.setBody(null);
+            childPage.setBody(null);
+            collectAttachments(apiBase, webBase, child.getId(), inlineAttachments(childPage),
+                    attachmentUrlToZipPath, attachmentEntries);
+            String safeName = ConfluenceHtmlRewriter.sanitizeFilename(child.getTitle()) + ".html";
+            fetchedPages.add(new FetchedPage(safeName, child.getId(), child.getTitle(), childHtml));
+            childInfos.add(new ChildInfo(child.getId(), child.getTitle()));
+        }
 
-        for (ConfluenceApiResponse.ChildRef child : childRefs) {
-            try {
-                ConfluenceApiResponse childPage = fetchPageOrThrow(apiBase, child.getId(), "дочерняя: " + child.getTitle());
-                String childHtml = extractHtmlFromPage(childPage);
-                collectAttachments(apiBase, webBase, child.getId(), attachmentUrlToZipPath, attachmentEntries);
-                String safeName = sanitizeFilename(child.getTitle()) + ".html";
-                pages.add(new PageContent(safeName, child.getTitle(), rewriteAttachmentUrlsInHtml(childHtml, child.getId(), attachmentUrlToZipPath)));
-                childInfos.add(new ChildInfo(child.getId(), child.getTitle()));
-            } catch (Exception e) {
-                log.warn("Пропуск дочерней страницы id={} title={}: {}", child.getId(), child.getTitle(), e.getMessage());
+        // Ссылки переписываются после загрузки всех страниц, чтобы ссылки между страницами вели на файлы в архиве.
+        // Поэтому пик памяти экспорта — исходный HTML всех страниц (плюс вложения): карты id/заголовков полны только
+        // после списка дочерних, который и так приходит пачками вместе с телами. Переписанная страница сразу пишется
+        // в zip, и её исходник освобождается — переписанные копии не копятся.
+        Map<String, String> pageFilesById = new HashMap<>();
+        Map<String, String> pageFilesByTitle = new HashMap<>();
+        for (FetchedPage fp : fetchedPages) {
+            pageFilesById.put(fp.pageId(), fp.filename());
+            if (fp.title() != null) {
+                pageFilesByTitle.putIfAbsent(fp.title(), fp.filename());
             }
         }
+        // Статика Confluence (CSS, иконки, смайлы) — в общий набор ресурсов приложения, а не в каждый архив
+        Map<String, String> assetUrls = new HashMap<>();
+        ConfluenceHtmlRewriter rewriter = new ConfluenceHtmlRewriter(
+                attachmentUrlToZipPath, pageFilesById, pageFilesByTitle, assetUrls, effectiveBase);
+        Set<String> assetPaths = new HashSet<>();
+        for (FetchedPage fp : fetchedPages) {
+            assetPaths.addAll(rewriter.findAssetPaths(fp.html()));
+        }
+        Timer.Sample assetsSample = metrics.start();
+        try (ArchiveTracing.TracedSpan ignored = tracing.start("confluence.capture-assets")
+                .tag(ArchiveTracing.COUNT, assetPaths.size())) {
+            assetUrls.putAll(confluenceAssetService.captureAssets(effectiveBase, assetPaths));
+        }
+        metrics.stopExportPhase(assetsSample, ArchiveMetrics.PHASE_CAPTURE_ASSETS, ArchiveMetrics.OUTCOME_SUCCESS);
+
+        ResponsiveImageRewriter imageRewriter = new ResponsiveImageRewriter(deriveImages(attachmentEntries));
 
-        String archiveId = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
-        Path projectDir = Path.of(reportsBasePath, projectName);
-        Files.createDirectories(projectDir);
-        Path zipPath = projectDir.resolve(archiveId + ".zip");
+        Path zipPath = archiveStore.createStagingFile();
+        int pageCount = fetchedPages.size();
+        List<HtmlMinificationService.PageSizeStat> htmlSizes = new ArrayList<>(pageCount);
 
+        Timer.Sample zipSample = null;
+        String zipOutcome = ArchiveMetrics.OUTCOME_ERROR;
+        String location;
         try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipPath))) {
-            for (PageContent pc : pages) {
-                ZipEntry entry = new ZipEntry(pc.filename());
-                zos.putNextEntry(entry);
-                zos.write(pc.content().getBytes(StandardCharsets.UTF_8));
-                zos.closeEntry();
+            // Фаза rewrite_html включает запись страницы в zip (сжатие одной страницы)
+            Timer.Sample rewriteSample = metrics.start();
+            try (ArchiveTracing.TracedSpan ignored = tracing.start("confluence.rewrite-html")
+                    .tag(ArchiveTracing.COUNT, pageCount)) {
+                for (int i = 0; i < pageCount; i++) {
+                    FetchedPage fp = fetchedPages.set(i, null);
+                    HtmlMinificationService.MinifiedPage minified =
+                            htmlMinificationService.minifyPage(fp.filename(), imageRewriter.rewrite(rewriter.rewrite(fp.html())));
+                    zos.putNextEntry(new ZipEntry(fp.filename()));
+                    zos.write(minified.html().getBytes(StandardCharsets.UTF_8));
+                    zos.closeEntry();
+                    htmlSizes.add(minified.stat());
+                }
             }
-            for (AttachmentEntry att : attachmentEntries) {
-                if (att.data() == null || att.data().length == 0) continue;
-                ZipEntry entry = new ZipEntry(att.zipPath());
-                zos.putNextEntry(entry);
-                zos.write(att.data());
-                zos.closeEntry();
+            metrics.stopExportPhase(rewriteSample, ArchiveMetrics.PHASE_REWRITE_HTML, ArchiveMetrics.OUTCOME_SUCCESS);
+
+            zipSample = metrics.start();
+            try (ArchiveTracing.TracedSpan span = tracing.start("archive.write-zip")
+                    .tag(ArchiveTracing.ARCHIVE_ID, archiveId)
+                    .tag(ArchiveTracing.PROJECT, projectName)
+                    .tag(ArchiveTracing.COUNT, pageCount + attachmentEntries.size())) {
+                writeAttachments(zos, attachmentEntries);
+                zos.finish();
+                zos.close();
+                span.tag(ArchiveTracing.BYTES, Files.size(zipPath));
+                location = archiveStore.put(projectName, archiveId, zipPath);
+                zipOutcome = ArchiveMetrics.OUTCOME_SUCCESS;
+            }
+        } finally {
+            Files.deleteIfExists(zipPath);
+            if (zipSample != null) {
+                metrics.stopExportPhase(zipSample, ArchiveMetrics.PHASE_WRITE_ZIP, zipOutcome);
             }
         }
 
+        htmlMinificationService.logTotals(location, htmlSizes);
+
         return new ExportResult(
                 archiveId,
                 pageTitle,
                 childInfos.stream().map(ChildInfo::title).collect(Collectors.toList()),
                 childInfos,
-                zipPath.toString()
+                location,
+                htmlSizes,
+                new PageRef(apiBase, pageId),
+                pageVersion,
+                rootAttachments
         );
     }
 
     /**
-     * Собирает список вложений страницы, скачивает их и добавляет в карту для подмены URL в HTML.
+     * Вложения и их уменьшенные копии; уже сжатые форматы — без пересжатия (STORED).
      */
-    @SuppressWarnings("unchecked")
-    private void collectAttachments(String apiBase, String webBase, String pageId,
-                                   Map<String, String> attachmentUrlToZipPath,
-                                   List<AttachmentEntry> attachmentEntries) {
-        String url = apiBase + pageId + "?expand=children.attachment";
-        try {
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    org.springframework.http.HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
-            Map<String, Object> body = response.getBody();
-            if (body == null) return;
-            Object childrenObj = body.get("children");
-            if (childrenObj == null) return;
-            Map<String, Object> children = (Map<String, Object>) childrenObj;
-            Object attachmentObj = children.get("attachment");
-            if (attachmentObj == null) return;
-            Map<String, Object> attachmentData = (Map<String, Object>) attachmentObj;
-            List<Map<String, Object>> results = (List<Map<String, Object>>) attachmentData.get("results");
-            if (results == null) return;
-
-            for (Map<String, Object> att : results) {
-                String attId = (String) att.get("id");
-                String title = (String) att.get("title");
-                if (attId == null || title == null || title.isBlank()) continue;
-                String safeFileName = sanitizeFilename(title);
-                String zipPath = ATTACHMENTS_DIR + "/" + attId + "_" + safeFileName;
-                attachmentUrlToZipPath.put(pageId + "/" + title, zipPath);
-                attachmentUrlToZipPath.put(pageId + "/" + safeFileName, zipPath);
-
-                Object linksObj = att.get("_links");
-                String downloadPath = null;
-                if (linksObj instanceof Map<?, ?> links) {
-                    Object download = links.get("download");
-                    if (download != null) downloadPath = download.toString();
+    private static void writeAttachments(ZipOutputStream zos, List<AttachmentEntry> attachmentEntries) throws IOException {
+        for (AttachmentEntry att : attachmentEntries) {
+            ZipEntry entry = new ZipEntry(att.zipPath());
+            if (ArchiveEntryTypes.isPrecompressed(att.zipPath(), att.data())) {
+                // Картинки, PDF, офисные файлы уже сжаты: STORED позволяет отдавать их из zip без распаковки
+                CRC32 crc = new CRC32();
+                crc.update(att.data());
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(att.data().length);
+                entry.setCompressedSize(att.data().length);
+                entry.setCrc(crc.getValue());
+            }
+            zos.putNextEntry(entry);
+            zos.write(att.data());
+            zos.closeEntry();
+        }
+    }
+
+    /**
+     * Уменьшенные копии крупных картинок-вложений: добавляются в attachmentEntries и возвращаются картой
+     * «путь оригинала → копии» для srcset в HTML. Пустая карта, если этап выключен.
+     */
+    private Map<String, ResponsiveImageRewriter.ResponsiveImage> deriveImages(List<AttachmentEntry> attachmentEntries) {
+        if (!imageDerivativeService.isEnabled()) {
+            return Map.of();
+        }
+        Timer.Sample sample = metrics.start();
+        Map<String, ResponsiveImageRewriter.ResponsiveImage> images = new HashMap<>();
+        List<AttachmentEntry> derived = new ArrayList<>();
+        long originalBytes = 0;
+        long variantBytes = 0;
+        try (ArchiveTracing.TracedSpan span = tracing.start("confluence.image-derivatives")) {
+            for (AttachmentEntry att : attachmentEntries) {
+                Optional<ImageDerivativeService.DerivedImage> image = imageDerivativeService.derive(att.zipPath(), att.data());
+                if (image.isEmpty()) continue;
+                List<ResponsiveImageRewriter.Variant> variants = new ArrayList<>();
+                for (ImageDerivativeService.DerivedVariant variant : image.get().variants()) {
+                    derived.add(new AttachmentEntry(variant.zipPath(), variant.data()));
+                    variants.add(new ResponsiveImageRewriter.Variant(variant.zipPath(), variant.width()));
+                    variantBytes += variant.data().length;
                 }
-                if (downloadPath == null || downloadPath.isBlank()) {
-                    downloadPath = "/download/attachments/" + pageId + "/" + title;
+                images.put(att.zipPath(), new ResponsiveImageRewriter.ResponsiveImage(image.get().width(), variants));
+                originalBytes += att.data().length;
+            }
+            span.tag(ArchiveTracing.COUNT, images.size()).tag(ArchiveTracing.BYTES, variantBytes);
+        }
+        attachmentEntries.addAll(derived);
+        metrics.stopExportPhase(sample, ArchiveMetrics.PHASE_IMAGE_DERIVATIVES, ArchiveMetrics.OUTCOME_SUCCESS);
+        if (!images.isEmpty()) {
+            log.info("Уменьшенные копии картинок: {} шт., оригиналы {} байт, копии {} байт", images.size(), originalBytes, variantBytes);
+        }
+        return images;
+    }
+
+    /**
+     * Дочерние страницы через /child/page с раскрытыми телом и вложениями, постранично по childrenBatchSize.
+     * Ошибка чтения списка прерывает экспорт: иначе шаг 2 не узнал бы о пропущенных страницах.
+     */
+    private List<ConfluenceApiResponse> listChildPages(String apiBase, String pageId) {
+        List<ConfluenceApiResponse> all = new ArrayList<>();
+        int limit = Math.max(1, childrenBatchSize);
+        int start = 0;
+        Timer.Sample sample = metrics.start();
+        String outcome = ArchiveMetrics.OUTCOME_ERROR;
+        String url = null;
+        try (ArchiveTracing.TracedSpan span = tracing.start("confluence.list-children")
+                .tag(ArchiveTracing.PAGE_ID, pageId)) {
+            while (true) {
+                url = apiBase + pageId + "/child/page?expand=" + CHILD_EXPAND + "&start=" + start + "&limit=" + limit;
+                ConfluenceJsonReader.ListingPage listing = restTemplate.execute(url, HttpMethod.GET, null,
+                        response -> ConfluenceJsonReader.readPageListing(response.getBody(), all::add));
+                // Confluence может вернуть меньше запрошенного limit для раскрытых тел — идём по фактическому size
+                if (listing == null || listing.size() == 0 || (!listing.hasNext() && listing.size() < limit)) {
+                    break;
                 }
-                byte[] data = downloadAttachment(webBase, downloadPath);
-                attachmentEntries.add(new AttachmentEntry(zipPath, data));
+                start += listing.size();
             }
+            span.tag(ArchiveTracing.COUNT, all.size());
+            outcome = ArchiveMetrics.OUTCOME_SUCCESS;
+            return all;
         } catch (Exception e) {
-            log.warn("Не удалось загрузить вложения страницы {}: {}", pageId, e.getMessage());
+            throw new IllegalStateException("Не удалось получить дочерние страницы " + pageId + ": " + url + " — " + e.getMessage(), e);
+        } finally {
+            metrics.stopExportPhase(sample, ArchiveMetrics.PHASE_LIST_CHILDREN, outcome);
         }
     }
 
-    private byte[] downloadAttachment(String webBase, String downloadPath) {
-        try {
+    /**
+     * Вложения, пришедшие в ответе страницы (children.attachment), или null, если их нет.
+     */
+    private static ConfluenceApiResponse.ChildrenWrapper inlineAttachments(ConfluenceApiResponse page) {
+        return page.getChildren() != null ? page.getChildren().get("attachment") : null;
+    }
+
+    /**
+     * Собирает список вложений страницы, скачивает их и добавляет в карту для подмены URL в HTML.
+     * Берётся список из ответа страницы; если его нет или он неполный — читается постранично через /child/attachment.
+     * Ошибка чтения списка или скачивания любого вложения прерывает экспорт: вложение, которого нет в архиве,
+     * не должно попасть в список на удаление (шаг 3).
+     *
+     * @return вложения страницы (id и имя) — все они скачаны и попадут в архив
+     */
+    private List<AttachmentInfo> collectAttachments(String apiBase, String webBase, String pageId,
+                                                    ConfluenceApiResponse.ChildrenWrapper inline,
+                                                    Map<String, String> attachmentUrlToZipPath,
+                                                    List<AttachmentEntry> attachmentEntries) {
+        List<AttachmentInfo> found = new ArrayList<>();
+        List<ConfluenceJsonReader.ContentRef> results;
+        if (inline != null && inline.getResults() != null && !inline.isTruncated()) {
+            results = inline.getResults().stream()
+                    .map(ref -> new ConfluenceJsonReader.ContentRef(ref.getId(), ref.getTitle(), ref.getDownloadPath()))
+                    .toList();
+        } else {
+            Timer.Sample listSample = metrics.start();
+            try (ArchiveTracing.TracedSpan ignored = tracing.start("confluence.list-attachments")
+                    .tag(ArchiveTracing.PAGE_ID, pageId)) {
+                results = listChildren(apiBase, pageId, "attachment");
+            } catch (RuntimeException e) {
+                metrics.stopExportPhase(listSample, ArchiveMetrics.PHASE_LIST_ATTACHMENTS, ArchiveMetrics.OUTCOME_ERROR);
+                throw new IllegalStateException("Не удалось получить вложения страницы " + pageId + ": " + e.getMessage(), e);
+            }
+            metrics.stopExportPhase(listSample, ArchiveMetrics.PHASE_LIST_ATTACHMENTS, ArchiveMetrics.OUTCOME_SUCCESS);
+        }
+
+        for (ConfluenceJsonReader.ContentRef att : results) {
+            String attId = att.id();
+            String title = att.title();
+            if (attId == null || title == null || title.isBlank()) continue;
+            // Расширение сохраняется: по нему запись хранится без сжатия и получает верный Content-Type
+            String safeFileName = ConfluenceHtmlRewriter.sanitizeAttachmentFilename(title);
+            String zipPath = ATTACHMENTS_DIR + "/" + attId + "_" + safeFileName;
+            attachmentUrlToZipPath.put(pageId + "/" + title, zipPath);
+            attachmentUrlToZipPath.put(pageId + "/" + safeFileName, zipPath);
+            attachmentUrlToZipPath.putIfAbsent(pageId + "/" + ConfluenceHtmlRewriter.sanitizeFilename(title), zipPath);
+
+            String downloadPath = att.downloadPath();
+            if (downloadPath == null || downloadPath.isBlank()) {
+                downloadPath = "/download/attachments/" + pageId + "/" + title;
+            }
+            byte[] data = downloadAttachment(webBase, pageId, downloadPath);
+            attachmentEntries.add(new AttachmentEntry(zipPath, data));
+            found.add(new AttachmentInfo(attId, title));
+        }
+        return found;
+    }
+
+    /**
+     * Скачивает вложение целиком. Пустое тело ответа — файл нулевой длины; любая ошибка бросается дальше.
+     */
+    private byte[] downloadAttachment(String webBase, String pageId, String downloadPath) {
+        Timer.Sample sample = metrics.start();
+        try (ArchiveTracing.TracedSpan span = tracing.start("confluence.download-attachment")
+                .tag(ArchiveTracing.PAGE_ID, pageId)) {
             String fullUrl = downloadPath.startsWith("http") ? downloadPath : webBase + (downloadPath.startsWith("/") ? downloadPath.substring(1) : downloadPath);
             ResponseEntity<byte[]> response = restTemplate.exchange(
                     URI.create(fullUrl),
@@ -195,121 +438,198 @@ public class ConfluenceArchiveService {
                     null,
                     byte[].class
             );
-            return response.getBody() != null ? response.getBody() : new byte[0];
+            byte[] data = response.getBody() != null ? response.getBody() : new byte[0];
+            span.tag(ArchiveTracing.ATTACHMENT_SIZE, data.length);
+            metrics.stopExportPhase(sample, ArchiveMetrics.PHASE_DOWNLOAD_ATTACHMENT, ArchiveMetrics.OUTCOME_SUCCESS);
+            metrics.recordAttachmentBytes(data.length);
+            return data;
         } catch (Exception e) {
-            log.warn("Ошибка скачивания вложения {}: {}", downloadPath, e.getMessage());
-            return new byte[0];
+            metrics.stopExportPhase(sample, ArchiveMetrics.PHASE_DOWNLOAD_ATTACHMENT, ArchiveMetrics.OUTCOME_ERROR);
+            throw new IllegalStateException("Ошибка скачивания вложения " + downloadPath + " страницы " + pageId
+                    + ": " + e.getMessage(), e);
         }
     }
 
-    /** Подмена в HTML ссылок вида /download/attachments/{pageId}/{filename} на относительный путь в архиве. */
-    private static final Pattern DOWNLOAD_LINK = Pattern.compile(
-            "(?i)(href|src)=[\"']([^\"']*?/download/attachments/)(\\d+)/([^\"'?]+)([^\"']*)[\"']");
-
-    private String rewriteAttachmentUrlsInHtml(String html, String pageId, Map<String, String> attachmentUrlToZipPath) {
-        Matcher m = DOWNLOAD_LINK.matcher(html);
-        StringBuffer sb = new StringBuffer(html.length());
-        while (m.find()) {
-            String attr = m.group(1);
-            String pid = m.group(3);
-            String filename = m.group(4);
-            String key = pid + "/" + filename;
-            String keyDecoded;
-            try {
-                keyDecoded = pid + "/" + java.net.URLDecoder.decode(filename.replace('+', ' '), StandardCharsets.UTF_8);
-            } catch (Exception ignored) {
-                keyDecoded = key;
-            }
-            String zipPath = attachmentUrlToZipPath.get(key);
-            if (zipPath == null) zipPath = attachmentUrlToZipPath.get(keyDecoded);
-            if (zipPath == null) zipPath = attachmentUrlToZipPath.get(pid + "/" + sanitizeFilename(filename));
-            if (zipPath != null) {
-                m.appendReplacement(sb, Matcher.quoteReplacement(attr + "=\"" + zipPath + "\""));
-            }
-        }
-        m.appendTail(sb);
-        return sb.toString();
+    /**
+     * Шаг 2: Удаление дочерних страниц в Confluence (параллельно, с ограничением частоты запросов).
+     * Ошибка по одной странице не прерывает остальные — результат по каждой странице в отчёте.
+     */
+    public CleanupReport deleteChildPages(String confluenceUrl, List<String> childPageIds) {
+        List<CleanupTarget> targets = childPageIds.stream().map(id -> new CleanupTarget(id, null)).toList();
+        return deletePages(ConfluenceUrlParser.parse(confluenceUrl).getApiBaseUrl(), targets);
     }
 
     /**
-     * Шаг 2: Удаление дочерних страниц в Confluence
+     * Удаляет все дочерние страницы, найденные по URL корневой страницы (список читается постранично).
+     * Используется, когда заранее нет списка childPageIds; заголовки страниц — в отчёте.
      */
-    public void deleteChildPages(String confluenceUrl, List<String> childPageIds) {
+    public CleanupReport deleteChildPagesByUrl(String confluenceUrl) {
         ConfluenceUrlParser.ParsedUrl parsed = ConfluenceUrlParser.parse(confluenceUrl);
         String apiBase = parsed.getApiBaseUrl();
 
-        for (String childId : childPageIds) {
-            try {
-                restTemplate.delete(apiBase + childId + "?status=trashed");
-            } catch (Exception e) {
-                // Пробуем без status для старых версий
-                try {
-                    restTemplate.delete(apiBase + childId);
-                } catch (Exception ex) {
-                    throw new RuntimeException("Не удалось удалить страницу " + childId + ": " + ex.getMessage());
-                }
+        List<CleanupTarget> targets = new ArrayList<>();
+        for (ConfluenceJsonReader.ContentRef child : listChildren(apiBase, parsed.pageId(), "page")) {
+            if (child.id() != null) {
+                targets.add(new CleanupTarget(child.id(), child.title()));
             }
         }
+        return deletePages(apiBase, targets);
     }
 
     /**
-     * Удаляет все дочерние страницы, найденные по URL корневой страницы, и возвращает их названия.
-     * Используется, когда заранее нет списка childPageIds.
+     * Удаление известных дочерних страниц (id и заголовки получены при экспорте) без повторного чтения списка.
      */
-    public List<String> deleteChildPagesByUrl(String confluenceUrl) {
-        ConfluenceUrlParser.ParsedUrl parsed = ConfluenceUrlParser.parse(confluenceUrl);
-        String apiBase = parsed.getApiBaseUrl();
-        String pageId = parsed.pageId();
+    public CleanupReport deleteChildPages(PageRef page, List<ChildInfo> children) {
+        List<CleanupTarget> targets = children.stream().map(c -> new CleanupTarget(c.id(), c.title())).toList();
+        return deletePages(page.apiBase(), targets);
+    }
 
-        ConfluenceApiResponse mainPage = fetchPageOrThrow(apiBase, pageId, "корневая страница");
-        List<ConfluenceApiResponse.ChildRef> childRefs = getChildPages(mainPage);
-        if (childRefs.isEmpty()) {
-            return List.of();
+    private CleanupReport deletePages(String apiBase, List<CleanupTarget> targets) {
+        Timer.Sample sample = metrics.start();
+        String outcome = ArchiveMetrics.OUTCOME_ERROR;
+        try (ArchiveTracing.TracedSpan span = tracing.start("confluence.delete-children")
+                .tag(ArchiveTracing.COUNT, targets.size())) {
+            CleanupReport report = runCleanup(targets, (id, limiter) -> deletePage(apiBase, id, limiter));
+            span.tag("items.failed", report.failed());
+            if (!report.hasFailures()) {
+                outcome = ArchiveMetrics.OUTCOME_SUCCESS;
+            }
+            return report;
+        } finally {
+            metrics.stopArchiveStep(sample, "delete_children", outcome);
         }
-        List<String> ids = childRefs.stream().map(ConfluenceApiResponse.ChildRef::getId).toList();
-        deleteChildPages(confluenceUrl, ids);
-        return childRefs.stream().map(ConfluenceApiResponse.ChildRef::getTitle).toList();
     }
 
     /**
-     * Шаг 3: Удаление всех вложений со страницы
+     * Шаг 3: Удаление всех вложений со страницы (список читается постранично, удаление параллельное).
      */
-    public void deleteAttachments(String confluenceUrl) {
+    public CleanupReport deleteAttachments(String confluenceUrl) {
         ConfluenceUrlParser.ParsedUrl parsed = ConfluenceUrlParser.parse(confluenceUrl);
         String apiBase = parsed.getApiBaseUrl();
-        String pageId = parsed.pageId();
+        List<AttachmentInfo> attachments = new ArrayList<>();
+        for (ConfluenceJsonReader.ContentRef att : listChildren(apiBase, parsed.pageId(), "attachment")) {
+            if (att.id() != null) {
+                attachments.add(new AttachmentInfo(att.id(), att.title()));
+            }
+        }
+        return deleteAttachments(new PageRef(apiBase, parsed.pageId()), attachments);
+    }
 
-        String url = apiBase + pageId + "?expand=children.attachment";
-        ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                url,
-                org.springframework.http.HttpMethod.GET,
-                null,
-                new ParameterizedTypeReference<Map<String, Object>>() {}
-        );
+    /**
+     * Удаление известных вложений страницы (список получен при экспорте).
+     */
+    public CleanupReport deleteAttachments(PageRef page, List<AttachmentInfo> attachments) {
+        Timer.Sample sample = metrics.start();
+        String outcome = ArchiveMetrics.OUTCOME_ERROR;
+        try (ArchiveTracing.TracedSpan span = tracing.start("confluence.delete-attachments")
+                .tag(ArchiveTracing.PAGE_ID, page.pageId())
+                .tag(ArchiveTracing.COUNT, attachments.size())) {
+            List<CleanupTarget> targets = attachments.stream().map(a -> new CleanupTarget(a.id(), a.title())).toList();
+            CleanupReport report = runCleanup(targets, (id, limiter) -> deleteContent(page.apiBase() + id, limiter));
+            span.tag("items.failed", report.failed());
+            if (!report.hasFailures()) {
+                outcome = ArchiveMetrics.OUTCOME_SUCCESS;
+            }
+            return report;
+        } finally {
+            metrics.stopArchiveStep(sample, "delete_attachments", outcome);
+        }
+    }
 
-        Map<String, Object> body = response.getBody();
-        if (body == null) return;
+    /**
+     * Удаляет элементы на ограниченном пуле потоков; частота DELETE-запросов общая для всех потоков.
+     */
+    private CleanupReport runCleanup(List<CleanupTarget> targets, CleanupAction action) {
+        if (targets.isEmpty()) {
+            return CleanupReport.of(List.of());
+        }
+        IoThrottle limiter = new IoThrottle(cleanupRequestsPerSecond);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(cleanupParallelism, targets.size())), r -> {
+            Thread t = new Thread(r, "confluence-cleanup");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<CleanupReport.Item>> futures = new ArrayList<>(targets.size());
+            for (CleanupTarget target : targets) {
+                // DELETE-запросы из пула — в трассе шага, а не отдельными трассами
+                futures.add(executor.submit(tracing.wrap(() -> {
+                    try {
+                        return new CleanupReport.Item(target.id(), target.title(), action.delete(target.id(), limiter), null);
+                    } catch (Exception e) {
+                        log.warn("Не удалось удалить {} ({}): {}", target.id(), target.title(), e.getMessage());
+                        return new CleanupReport.Item(target.id(), target.title(), CleanupReport.Status.FAILED, e.getMessage());
+                    }
+                })));
+            }
+            List<CleanupReport.Item> items = new ArrayList<>(targets.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    items.add(futures.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    items.add(new CleanupReport.Item(targets.get(i).id(), targets.get(i).title(),
+                            CleanupReport.Status.FAILED, "прервано"));
+                } catch (ExecutionException e) {
+                    items.add(new CleanupReport.Item(targets.get(i).id(), targets.get(i).title(),
+                            CleanupReport.Status.FAILED, e.getCause().getMessage()));
+                }
+            }
+            return CleanupReport.of(items);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        Object childrenObj = body.get("children");
-        if (childrenObj == null) return;
+    /**
+     * Удаление страницы: сначала ?status=trashed, затем без status (старые версии Confluence).
+     */
+    private CleanupReport.Status deletePage(String apiBase, String pageId, IoThrottle limiter) {
+        try {
+            acquire(limiter);
+            restTemplate.delete(apiBase + pageId + "?status=trashed");
+            return CleanupReport.Status.DELETED;
+        } catch (Exception e) {
+            // Пробуем без status для старых версий
+        }
+        return deleteContent(apiBase + pageId, limiter);
+    }
 
-        Map<String, Object> children = (Map<String, Object>) childrenObj;
-        Object attachmentObj = children.get("attachment");
-        if (attachmentObj == null) return;
+    private CleanupReport.Status deleteContent(String url, IoThrottle limiter) {
+        acquire(limiter);
+        try {
+            restTemplate.delete(url);
+            return CleanupReport.Status.DELETED;
+        } catch (HttpClientErrorException.NotFound e) {
+            return CleanupReport.Status.ALREADY_GONE;
+        }
+    }
 
-        Map<String, Object> attachmentData = (Map<String, Object>) attachmentObj;
-        List<Map<String, Object>> results = (List<Map<String, Object>>) attachmentData.get("results");
-        if (results == null) return;
+    private static void acquire(IoThrottle limiter) {
+        // IoThrottle не потокобезопасен; ожидание под блокировкой выстраивает потоки в очередь за разрешением
+        synchronized (limiter) {
+            limiter.acquire(1);
+        }
+    }
 
-        for (Map<String, Object> att : results) {
-            String attId = (String) att.get("id");
-            if (attId != null) {
-                try {
-                    restTemplate.delete(apiBase + attId);
-                } catch (Exception e) {
-                    // Логируем и продолжаем
-                }
+    /**
+     * Все дочерние элементы страницы (page или attachment) через /child/{type} с постраничным чтением.
+     * Ответы разбираются потоково — из элементов берутся только id, заголовок и ссылка на скачивание.
+     */
+    private List<ConfluenceJsonReader.ContentRef> listChildren(String apiBase, String pageId, String type) {
+        List<ConfluenceJsonReader.ContentRef> all = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            String url = apiBase + pageId + "/child/" + type + "?start=" + start + "&limit=" + CHILDREN_PAGE_SIZE;
+            ConfluenceJsonReader.ListingPage listing = restTemplate.execute(url, HttpMethod.GET, null,
+                    response -> ConfluenceJsonReader.readListing(response.getBody(), all::add));
+            if (listing == null || listing.size() == 0) {
+                return all;
+            }
+            if (!listing.hasNext() && listing.size() < CHILDREN_PAGE_SIZE) {
+                return all;
             }
+            start += listing.size();
         }
     }
 
@@ -318,8 +638,38 @@ public class ConfluenceArchiveService {
      */
     public void replacePageContent(String confluenceUrl, String pageTitle, String archiveId, String projectName, String jiraKey) {
         ConfluenceUrlParser.ParsedUrl parsed = ConfluenceUrlParser.parse(confluenceUrl);
-        String apiBase = parsed.getApiBaseUrl();
-        String pageId = parsed.pageId();
+        replacePageContent(new PageRef(parsed.getApiBaseUrl(), parsed.pageId()), pageTitle, null, archiveId, projectName, jiraKey);
+    }
+
+    /**
+     * Замена контента с известной версией страницы (получена при экспорте) — без отдельного GET ради версии.
+     * Если страницу успели изменить (409), версия перечитывается и запрос повторяется.
+     *
+     * @param knownVersion текущая версия страницы или null, если неизвестна
+     */
+    public void replacePageContent(PageRef page, String pageTitle, Integer knownVersion,
+                                   String archiveId, String projectName, String jiraKey) {
+        Timer.Sample sample = metrics.start();
+        String outcome = ArchiveMetrics.OUTCOME_ERROR;
+        try (ArchiveTracing.TracedSpan span = tracing.start("confluence.replace-content")
+                .tag(ArchiveTracing.PAGE_ID, page.pageId())
+                .tag(ArchiveTracing.ARCHIVE_ID, archiveId)) {
+            try {
+                doReplacePageContent(page, pageTitle, knownVersion, archiveId, projectName, jiraKey);
+            } catch (RuntimeException e) {
+                span.error(e);
+                throw e;
+            }
+            outcome = ArchiveMetrics.OUTCOME_SUCCESS;
+        } finally {
+            metrics.stopArchiveStep(sample, "replace_content", outcome);
+        }
+    }
+
+    private void doReplacePageContent(PageRef page, String pageTitle, Integer knownVersion,
+                                      String archiveId, String projectName, String jiraKey) {
+        String apiBase = page.apiBase();
+        String pageId = page.pageId();
 
         String viewUrl = appBaseUrl != null && !appBaseUrl.isBlank()
                 ? (appBaseUrl.endsWith("/") ? appBaseUrl : appBaseUrl + "/") + projectName + "/" + archiveId
@@ -333,21 +683,32 @@ public class ConfluenceArchiveService {
                 <p>Для просмотра используйте: <a href="%s">%s</a></p>
                 """.formatted(pageTitle, ticket, now, viewUrl, viewUrl);
 
-        int nextVersion = getCurrentVersion(apiBase, pageId) + 1;
-        Map<String, Object> request = Map.of(
+        int currentVersion = knownVersion != null ? knownVersion : getCurrentVersion(apiBase, pageId);
+        try {
+            restTemplate.put(apiBase + pageId, replaceRequest(pageId, pageTitle, newContent, currentVersion + 1));
+        } catch (HttpClientErrorException.Conflict e) {
+            if (knownVersion == null) {
+                throw e;
+            }
+            // Страницу изменили после экспорта — берём актуальную версию
+            int latest = getCurrentVersion(apiBase, pageId);
+            restTemplate.put(apiBase + pageId, replaceRequest(pageId, pageTitle, newContent, latest + 1));
+        }
+    }
+
+    private static Map<String, Object> replaceRequest(String pageId, String pageTitle, String content, int nextVersion) {
+        return Map.of(
                 "id", pageId,
                 "type", "page",
                 "title", pageTitle,
                 "body", Map.of(
                         "storage", Map.of(
-                                "value", newContent,
+                                "value", content,
                                 "representation", "storage"
                         )
                 ),
                 "version", Map.of("number", nextVersion)
         );
-
-        restTemplate.put(apiBase + pageId, request);
     }
 
     /**
@@ -355,6 +716,21 @@ public class ConfluenceArchiveService {
      */
     public ArchivedReport saveToDatabase(String archiveId, String name, String projectName,
                                          List<String> childPageNames, String jiraKey) {
+        Timer.Sample sample = metrics.start();
+        String outcome = ArchiveMetrics.OUTCOME_ERROR;
+        try (ArchiveTracing.TracedSpan ignored = tracing.start("archive.save-db")
+                .tag(ArchiveTracing.ARCHIVE_ID, archiveId)
+                .tag(ArchiveTracing.PROJECT, projectName)) {
+            ArchivedReport saved = doSaveToDatabase(archiveId, name, projectName, childPageNames, jiraKey);
+            outcome = ArchiveMetrics.OUTCOME_SUCCESS;
+            return saved;
+        } finally {
+            metrics.stopArchiveStep(sample, "save_db", outcome);
+        }
+    }
+
+    private ArchivedReport doSaveToDatabase(String archiveId, String name, String projectName,
+                                            List<String> childPageNames, String jiraKey) {
         Project project = archivedReportService.getOrCreateProject(projectName);
         ArchivedReport report = new ArchivedReport(archiveId, name, project);
         report.setJiraKey(jiraKey != null && !jiraKey.isBlank() ? jiraKey : null);
@@ -367,32 +743,38 @@ public class ConfluenceArchiveService {
     }
 
     private int getCurrentVersion(String apiBase, String pageId) {
-        ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                apiBase + pageId,
-                org.springframework.http.HttpMethod.GET,
-                null,
-                new ParameterizedTypeReference<Map<String, Object>>() {}
-        );
-        Map<String, Object> version = (Map<String, Object>) response.getBody().get("version");
-        return (Integer) version.get("number");
+        ConfluenceApiResponse page = getPage(apiBase + pageId + "?expand=version");
+        if (page == null || page.getVersion() == null || page.getVersion().getNumber() == null) {
+            throw new IllegalStateException("Confluence не вернул версию страницы " + pageId);
+        }
+        return page.getVersion().getNumber();
     }
 
     /**
      * Загружает страницу по REST API. При ошибке (404, 401, сеть) бросает исключение с URL и причиной.
+     * Запрашивается только export_view; если его нет, отдельно дозапрашиваются view, затем storage.
      */
     private ConfluenceApiResponse fetchPageOrThrow(String apiBase, String pageId, String label) {
-        String url = apiBase + pageId + "?expand=" + EXPAND;
-        try {
-            ResponseEntity<ConfluenceApiResponse> response = restTemplate.exchange(
-                    url,
-                    org.springframework.http.HttpMethod.GET,
-                    null,
-                    ConfluenceApiResponse.class
-            );
-            ConfluenceApiResponse page = response.getBody();
+        String url = apiBase + pageId + "?expand=" + PAGE_EXPAND;
+        Timer.Sample sample = metrics.start();
+        String outcome = ArchiveMetrics.OUTCOME_ERROR;
+        try (ArchiveTracing.TracedSpan ignored = tracing.start("confluence.fetch-page")
+                .tag(ArchiveTracing.PAGE_ID, pageId)) {
+            ConfluenceApiResponse page = getPage(url);
             if (page == null) {
                 throw new IllegalStateException(label + ": пустой ответ от " + url);
             }
+            for (String representation : FALLBACK_REPRESENTATIONS) {
+                if (hasBody(page)) {
+                    break;
+                }
+                url = apiBase + pageId + "?expand=body." + representation;
+                ConfluenceApiResponse fallback = getPage(url);
+                if (fallback != null && fallback.getBody() != null) {
+                    page.setBody(fallback.getBody());
+                }
+            }
+            outcome = ArchiveMetrics.OUTCOME_SUCCESS;
             return page;
         } catch (org.springframework.web.client.HttpClientErrorException e) {
             String hint = "";
@@ -405,7 +787,25 @@ public class ConfluenceArchiveService {
                     + " — " + url + hint, e);
         } catch (Exception e) {
             throw new IllegalStateException(label + " (id=" + pageId + ") не найдена или недоступна: " + url + " — " + e.getMessage(), e);
+        } finally {
+            metrics.stopExportPhase(sample, ArchiveMetrics.PHASE_FETCH_PAGE, outcome);
+        }
+    }
+
+    /**
+     * GET страницы с потоковым разбором ответа (без промежуточного дерева и лишних копий тела).
+     */
+    private ConfluenceApiResponse getPage(String url) {
+        return restTemplate.execute(url, HttpMethod.GET, null,
+                response -> ConfluenceJsonReader.readPage(response.getBody()));
+    }
+
+    private static boolean hasBody(ConfluenceApiResponse page) {
+        if (page.getBody() == null) return false;
+        for (ConfluenceApiResponse.BodyRepresentation br : page.getBody().values()) {
+            if (br != null && br.getValue() != null) return true;
         }
+        return false;
     }
 
     private String extractHtmlFromPage(ConfluenceApiResponse page) {
@@ -427,21 +827,14 @@ public class ConfluenceArchiveService {
         return br != null ? br.getValue() : null;
     }
 
-    private List<ConfluenceApiResponse.ChildRef> getChildPages(ConfluenceApiResponse page) {
-        if (page.getChildren() == null) return List.of();
-        ConfluenceApiResponse.ChildrenWrapper pageChildren = page.getChildren().get("page");
-        if (pageChildren == null || pageChildren.getResults() == null) return List.of();
-        return pageChildren.getResults();
-    }
-
     private String wrapInHtmlDocument(String title, String body) {
         return """
                 <!DOCTYPE html>
                 <html>
-                <head><meta charset="UTF-8"><title>%s</title></head>
+                <head><meta charset="UTF-8">%s<title>%s</title></head>
                 <body>%s</body>
                 </html>
-                """.formatted(escapeHtml(title), body);
+                """.formatted(HtmlMinifier.GENERATOR_META, escapeHtml(title), body);
     }
 
     private String escapeHtml(String s) {
@@ -449,15 +842,27 @@ public class ConfluenceArchiveService {
         return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
     }
 
-    private String sanitizeFilename(String name) {
-        if (name == null) return "page";
-        return name.replaceAll("[^a-zA-Z0-9а-яА-ЯёЁ\\s_-]", "_").replaceAll("\\s+", "_");
-    }
-
+    /**
+     * @param page        REST-адрес корневой страницы (для следующих шагов без повторного разбора URL)
+     * @param pageVersion версия корневой страницы на момент экспорта (null, если Confluence её не вернул)
+     * @param attachments вложения корневой страницы
+     */
     public record ExportResult(String archiveId, String pageTitle, List<String> childPageNames,
-                               List<ChildInfo> childInfos, String zipPath) {}
+                               List<ChildInfo> childInfos, String zipPath,
+                               List<HtmlMinificationService.PageSizeStat> htmlSizes,
+                               PageRef page, Integer pageVersion, List<AttachmentInfo> attachments) {}
+
+    /** REST API base (…/rest/api/content/) и id страницы */
+    public record PageRef(String apiBase, String pageId) {}
 
     public record ChildInfo(String id, String title) {}
-    private record PageContent(String filename, String title, String content) {}
+    public record AttachmentInfo(String id, String title) {}
+    private record FetchedPage(String filename, String pageId, String title, String html) {}
     private record AttachmentEntry(String zipPath, byte[] data) {}
+    private record CleanupTarget(String id, String title) {}
+
+    @FunctionalInterface
+    private interface CleanupAction {
+        CleanupReport.Status delete(String id, IoThrottle limiter);
+    }
 }
@@ -0,0 +1,200 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.confluence.ConfluenceHtmlRewriter;
+import com.example.ConflArchReport.entity.ConfluenceAsset;
+import com.example.ConflArchReport.repository.ConfluenceAssetRepository;
+import com.example.ConflArchReport.zip.ArchiveEntryTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Общий набор статических ресурсов Confluence (CSS, иконки, смайлы, картинки макросов) для архивированных страниц.
+ * Каждый ресурс скачивается один раз на экземпляр Confluence и хранится в app.assets.path под именем по хешу содержимого;
+ * архивы ссылаются на него по URL /_assets/{файл}, который отдаётся с неизменяемым кешированием.
+ */
+@Service
+public class ConfluenceAssetService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfluenceAssetService.class);
+
+    /** URL, под которым приложение отдаёт набор ресурсов */
+    public static final String BUNDLE_URL_PREFIX = "/_assets/";
+    /** Допустимое имя файла набора: хеш + необязательное расширение */
+    private static final Pattern BUNDLE_FILE_NAME = Pattern.compile("[0-9a-f]{32}(\\.[a-z0-9]{1,8})?");
+    private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+    private static final List<String> ASSET_PREFIXES = List.of("/s/", "/images/icons/", "/download/resources/");
+    /** Глубина захвата ресурсов, на которые ссылаются CSS (картинки/шрифты из стилей) */
+    private static final int MAX_CSS_DEPTH = 2;
+
+    private final RestTemplate restTemplate;
+    private final ConfluenceAssetRepository confluenceAssetRepository;
+
+    @Value("${app.assets.path:assets}")
+    private String assetsBasePath;
+
+    public ConfluenceAssetService(@Qualifier("confluenceRestTemplate") RestTemplate restTemplate,
+                                  ConfluenceAssetRepository confluenceAssetRepository) {
+        this.restTemplate = restTemplate;
+        this.confluenceAssetRepository = confluenceAssetRepository;
+    }
+
+    /**
+     * Сохраняет ресурсы в общий набор (уже сохранённые для этого экземпляра не скачиваются повторно).
+     *
+     * @param confluenceBase базовый URL Confluence с контекстным путём (ключ экземпляра и база для скачивания)
+     * @param assetPaths     пути ресурсов от корня Confluence (/s/..., /images/icons/...) с query,
+     *                       нормализованные {@link ConfluenceHtmlRewriter#normalizeAssetPath}
+     * @return путь ресурса → URL в наборе; ресурсы, которые не удалось скачать, отсутствуют
+     */
+    public Map<String, String> captureAssets(String confluenceBase, Collection<String> assetPaths) {
+        Map<String, String> result = new HashMap<>();
+        for (String assetPath : assetPaths) {
+            String fileName = capture(confluenceBase, assetPath, 0);
+            if (fileName != null) {
+                result.put(assetPath, BUNDLE_URL_PREFIX + fileName);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Путь к файлу набора по имени или empty, если имя недопустимо или файла нет.
+     */
+    public Optional<Path> getBundleFile(String fileName) {
+        if (fileName == null || !BUNDLE_FILE_NAME.matcher(fileName).matches()) {
+            return Optional.empty();
+        }
+        Path file = Paths.get(assetsBasePath, fileName).normalize();
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    private String capture(String confluenceBase, String assetPath, int depth) {
+        Optional<ConfluenceAsset> existing = confluenceAssetRepository.findByInstanceAndSourcePath(confluenceBase, assetPath);
+        if (existing.isPresent() && getBundleFile(existing.get().getFileName()).isPresent()) {
+            return existing.get().getFileName();
+        }
+
+        byte[] data = download(confluenceBase + assetPath);
+        if (data == null) {
+            return null;
+        }
+        int query = assetPath.indexOf('?');
+        String ext = ArchiveEntryTypes.extension(query >= 0 ? assetPath.substring(0, query) : assetPath);
+        if ("css".equals(ext) && depth < MAX_CSS_DEPTH) {
+            data = rewriteCssUrls(confluenceBase, assetPath, new String(data, StandardCharsets.UTF_8), depth)
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        String fileName = sha256Hex(data).substring(0, 32) + (ext.matches("[a-z0-9]{1,8}") ? "." + ext : "");
+
+        try {
+            Path dir = Paths.get(assetsBasePath).normalize();
+            Files.createDirectories(dir);
+            Path target = dir.resolve(fileName);
+            if (!Files.exists(target)) {
+                Path temp = Files.createTempFile(dir, fileName, ".tmp");
+                Files.write(temp, data);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить ресурс {} в общий набор: {}", assetPath, e.getMessage());
+            return null;
+        }
+
+        ConfluenceAsset asset = existing.orElseGet(() -> new ConfluenceAsset(confluenceBase, assetPath, fileName, 0));
+        asset.setFileName(fileName);
+        asset.setSize(data.length);
+        try {
+            confluenceAssetRepository.save(asset);
+        } catch (DataIntegrityViolationException e) {
+            // Параллельный экспорт уже сохранил этот ресурс — файл с тем же хешем на месте
+        }
+        return fileName;
+    }
+
+    /**
+     * Заменяет в CSS url(...) на ресурсы этого же экземпляра ссылками на набор (относительные пути разрешаются от CSS).
+     */
+    private String rewriteCssUrls(String confluenceBase, String cssPath, String css, int depth) {
+        Matcher m = CSS_URL.matcher(css);
+        StringBuilder sb = new StringBuilder(css.length());
+        URI cssUri;
+        try {
+            cssUri = URI.create("http://confluence" + cssPath);
+        } catch (IllegalArgumentException e) {
+            return css;
+        }
+        while (m.find()) {
+            String ref = m.group(2).trim();
+            String replacement = null;
+            if (!ref.startsWith("data:") && !ref.contains("://") && !ref.startsWith("//")) {
+                try {
+                    URI refUri = cssUri.resolve(ref);
+                    String resolved = refUri.getRawPath();
+                    String contextPath = URI.create(confluenceBase).getRawPath();
+                    if (contextPath != null && !contextPath.isEmpty() && resolved.startsWith(contextPath + "/")) {
+                        resolved = resolved.substring(contextPath.length());
+                    }
+                    if (refUri.getRawQuery() != null) {
+                        resolved = ConfluenceHtmlRewriter.normalizeAssetPath(resolved + "?" + refUri.getRawQuery());
+                    }
+                    if (isAssetPath(resolved)) {
+                        String fileName = capture(confluenceBase, resolved, depth + 1);
+                        if (fileName != null) {
+                            replacement = "url(" + BUNDLE_URL_PREFIX + fileName + ")";
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Некорректная ссылка в CSS — оставляем как есть
+                }
+            }
+            m.appendReplacement(sb, Matcher.quoteReplacement(replacement != null ? replacement : m.group()));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static boolean isAssetPath(String path) {
+        for (String prefix : ASSET_PREFIXES) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] download(String url) {
+        try {
+            ResponseEntity<byte[]> response = restTemplate.exchange(URI.create(url), HttpMethod.GET, null, byte[].class);
+            byte[] body = response.getBody();
+            return body != null && body.length > 0 ? body : null;
+        } catch (Exception e) {
+            log.warn("Ошибка скачивания статического ресурса {}: {}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.confluence.HtmlMinifier;
+import com.example.ConflArchReport.zip.ArchiveEntryTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Необязательный этап приёма HTML (экспорт из Confluence и загрузка zip): облегчение разметки {@link HtmlMinifier}
+ * с учётом размера каждой страницы до и после.
+ * Включается свойством app.ingest.minify-html.
+ */
+@Service
+public class HtmlMinificationService {
+
+    private static final Logger log = LoggerFactory.getLogger(HtmlMinificationService.class);
+
+    /** Кодировка имён записей — как в {@link ZipReportService} */
+    private static final Charset ZIP_ENTRY_CHARSET = StandardCharsets.ISO_8859_1;
+
+    private final HtmlMinifier minifier = new HtmlMinifier();
+
+    @Value("${app.ingest.minify-html:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Облегчает HTML страницы, если этап включён; иначе возвращает его без изменений.
+     */
+    public MinifiedPage minifyPage(String page, String html) {
+        long before = html.getBytes(StandardCharsets.UTF_8).length;
+        if (!enabled) {
+            return new MinifiedPage(html, new PageSizeStat(page, before, before));
+        }
+        String minified = minifier.minify(html);
+        long after = minified.getBytes(StandardCharsets.UTF_8).length;
+        log.debug("HTML {}: {} -> {} байт", page, before, after);
+        return new MinifiedPage(minified, new PageSizeStat(page, before, after));
+    }
+
+    /**
+     * Облегчает все HTML-страницы загруженного архива (перезапись через временный файл с атомарной подменой).
+     * Архивы, в которых нет ни одной страницы Confluence ({@link HtmlMinifier#isConfluencePage}), не меняются:
+     * правила облегчения могут испортить отображение отчётов других генераторов.
+     *
+     * @return размеры страниц до/после; пустой список, если этап выключен или архив не из Confluence
+     */
+    public List<PageSizeStat> minifyArchive(Path zipPath) throws IOException {
+        if (!enabled) {
+            return List.of();
+        }
+        List<PageSizeStat> stats = new ArrayList<>();
+        Path tempPath = zipPath.resolveSibling(zipPath.getFileName() + ".minify.tmp");
+        try {
+            try (ZipFile source = new ZipFile(zipPath.toFile(), ZIP_ENTRY_CHARSET)) {
+                List<? extends ZipEntry> entries = Collections.list(source.entries());
+                if (!isConfluenceExport(source, entries)) {
+                    log.info("Облегчение HTML {} пропущено: в архиве нет страниц Confluence", zipPath);
+                    return List.of();
+                }
+                Charset charset = ArchiveEntryTypes.nameCharset(entries.stream().map(ZipEntry::getName).toList());
+                try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(tempPath), charset)) {
+                    for (ZipEntry original : entries) {
+                        ZipEntry entry = new ZipEntry(original.getName());
+                        if (original.getTime() != -1) {
+                            entry.setTime(original.getTime());
+                        }
+                        if (original.isDirectory() || !ArchiveEntryTypes.isHtml(original.getName())) {
+                            // Остальные записи копируются потоком с исходным методом сжатия
+                            if (original.getMethod() == ZipEntry.STORED) {
+                                entry.setMethod(ZipEntry.STORED);
+                                entry.setSize(original.getSize());
+                                entry.setCompressedSize(original.getSize());
+                                entry.setCrc(original.getCrc());
+                            }
+                            zos.putNextEntry(entry);
+                            try (InputStream in = source.getInputStream(original)) {
+                                in.transferTo(zos);
+                            }
+                            zos.closeEntry();
+                            continue;
+                        }
+                        String html;
+                        try (InputStream in = source.getInputStream(original)) {
+                            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                        }
+                        MinifiedPage page = minifyPage(original.getName(), html);
+                        byte[] data = page.html().getBytes(StandardCharsets.UTF_8);
+                        stats.add(page.stat());
+                        if (original.getMethod() == ZipEntry.STORED) {
+                            CRC32 crc = new CRC32();
+                            crc.update(data);
+                            entry.setMethod(ZipEntry.STORED);
+                            entry.setSize(data.length);
+                            entry.setCompressedSize(data.length);
+                            entry.setCrc(crc.getValue());
+                        }
+                        zos.putNextEntry(entry);
+                        zos.write(data);
+                        zos.closeEntry();
+                    }
+                }
+            }
+            try {
+                Files.move(tempPath, zipPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, zipPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        logTotals(zipPath.toString(), stats);
+        return stats;
+    }
+
+    /**
+     * Есть ли в архиве хотя бы одна HTML-страница с разметкой Confluence (просмотр до первой найденной).
+     */
+    private static boolean isConfluenceExport(ZipFile source, List<? extends ZipEntry> entries) throws IOException {
+        for (ZipEntry entry : entries) {
+            if (entry.isDirectory() || !ArchiveEntryTypes.isHtml(entry.getName())) {
+                continue;
+            }
+            try (InputStream in = source.getInputStream(entry)) {
+                if (HtmlMinifier.isConfluencePage(new String(in.readAllBytes(), StandardCharsets.UTF_8))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Пишет в лог суммарный размер HTML до/после облегчения.
+     */
+    public void logTotals(String archive, List<PageSizeStat> stats) {
+        if (!enabled || stats.isEmpty()) {
+            return;
+        }
+        long before = stats.stream().mapToLong(PageSizeStat::bytesBefore).sum();
+        long after = stats.stream().mapToLong(PageSizeStat::bytesAfter).sum();
+        log.info("Облегчение HTML {}: {} страниц, {} -> {} байт", archive, stats.size(), before, after);
+    }
+
+    public record PageSizeStat(String page, long bytesBefore, long bytesAfter) {}
+
+    public record MinifiedPage(String html, PageSizeStat stat) {}
+}
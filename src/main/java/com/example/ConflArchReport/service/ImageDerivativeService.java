@@ -0,0 +1,236 @@
+package com.example.ConflArchReport.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Уменьшенные копии крупных картинок-вложений (скриншоты Grafana, графики нагрузочных тестов) для экспорта в zip.
+ * Копии кладутся рядом с оригиналом в attachments/w{ширина}/ и подключаются к страницам через srcset,
+ * оригинал остаётся в архиве и открывается по клику.
+ * <p>
+ * Кодируются в JPEG (качество app.images.derivatives.jpeg-quality) на белом фоне, а картинки с прозрачностью — в PNG.
+ * Копия сохраняется, только если она заметно меньше оригинала.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private static final String DERIVATIVES_DIR = "w";
+    private static final Set<String> SOURCE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "bmp");
+    /** Копия нужна, только если она меньше этой доли оригинала */
+    private static final double MAX_SIZE_RATIO = 0.9;
+
+    @Value("${app.images.derivatives.enabled:true}")
+    private boolean enabled = true;
+
+    /** Картинки меньше этого размера отдаются как есть, байт */
+    @Value("${app.images.derivatives.min-bytes:262144}")
+    private long minBytes = 262144;
+
+    /** Ширины копий, пикселей; копии не шире оригинала не делаются */
+    @Value("${app.images.derivatives.widths:640,1280}")
+    private int[] widths = {640, 1280};
+
+    @Value("${app.images.derivatives.jpeg-quality:0.82}")
+    private float jpegQuality = 0.82f;
+
+    /** Картинки с большим числом пикселей не декодируются (защита памяти), пикселей */
+    @Value("${app.images.derivatives.max-source-pixels:25000000}")
+    private long maxSourcePixels = 25_000_000L;
+
+    /**
+     * Уменьшенная копия: путь в zip, ширина и содержимое.
+     */
+    public record DerivedVariant(String zipPath, int width, byte[] data) {}
+
+    /**
+     * Ширина оригинала и его копии по возрастанию ширины.
+     */
+    public record DerivedImage(int width, List<DerivedVariant> variants) {}
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Делает уменьшенные копии картинки-вложения.
+     *
+     * @param zipPath путь оригинала в zip (attachments/...)
+     * @return копии или пусто, если этап выключен, файл мал, не картинка или копии не дают выигрыша
+     */
+    public Optional<DerivedImage> derive(String zipPath, byte[] data) {
+        if (!enabled || data == null || data.length < minBytes || !SOURCE_EXTENSIONS.contains(extension(zipPath))) {
+            return Optional.empty();
+        }
+        try {
+            BufferedImage source = read(zipPath, data);
+            if (source == null) {
+                return Optional.empty();
+            }
+            boolean transparent = hasTransparentPixels(source);
+            int[] targets = Arrays.stream(widths).filter(w -> w > 0 && w < source.getWidth()).distinct().sorted().toArray();
+            List<DerivedVariant> variants = new ArrayList<>(targets.length);
+            // От большей копии к меньшей: каждая следующая уменьшается из предыдущей, а не из оригинала
+            BufferedImage current = source;
+            for (int i = targets.length - 1; i >= 0; i--) {
+                int width = targets[i];
+                int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+                current = downscale(current, width, height, transparent);
+                byte[] encoded = transparent ? encodePng(current) : encodeJpeg(current);
+                if (encoded.length < data.length * MAX_SIZE_RATIO) {
+                    variants.add(0, new DerivedVariant(variantPath(zipPath, width, transparent), width, encoded));
+                }
+            }
+            if (variants.isEmpty()) {
+                return Optional.empty();
+            }
+            log.debug("Копии картинки {} ({}x{}, {} байт): {}", zipPath, source.getWidth(), source.getHeight(), data.length,
+                    variants.stream().map(v -> v.width() + "px=" + v.data().length).toList());
+            return Optional.of(new DerivedImage(source.getWidth(), variants));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось сделать копии картинки {}: {}", zipPath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Декодирует картинку, предварительно проверив размеры по заголовку; null — формат не распознан или картинка слишком велика.
+     */
+    private BufferedImage read(String zipPath, byte[] data) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxSourcePixels) {
+                    log.debug("Картинка {} не уменьшается: {} пикселей больше лимита {}", zipPath, pixels, maxSourcePixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Уменьшение последовательными половинами с билинейной интерполяцией: заметно чище однократного
+     * уменьшения в несколько раз (мелкий текст и линии графиков не рассыпаются) и быстрее бикубического.
+     */
+    private static BufferedImage downscale(BufferedImage image, int width, int height, boolean transparent) {
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            current = draw(current, w, h, transparent);
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height, boolean transparent) {
+        BufferedImage result = new BufferedImage(width, height,
+                transparent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!transparent) {
+                // JPEG без альфа-канала: полупрозрачные края ложатся на белый фон страницы, а не на чёрный
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    private static boolean hasTransparentPixels(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return false;
+        }
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int argb : row) {
+                if ((argb >>> 24) != 0xFF) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            ImageIO.write(image, "png", output);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * attachments/123_graph.png → attachments/w640/123_graph.jpg
+     */
+    static String variantPath(String zipPath, int width, boolean png) {
+        int slash = zipPath.lastIndexOf('/');
+        String dir = slash >= 0 ? zipPath.substring(0, slash + 1) : "";
+        String name = zipPath.substring(slash + 1);
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return dir + DERIVATIVES_DIR + width + "/" + base + (png ? ".png" : ".jpg");
+    }
+
+    private static String extension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 && dot > path.lastIndexOf('/') ? path.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.ConflArchReport.service;
+
+/**
+ * Ограничитель дискового ввода-вывода для фоновых задач (байт в секунду).
+ * Не потокобезопасен: один экземпляр на одну задачу.
+ */
+public class IoThrottle {
+
+    private final long bytesPerSecond;
+    private long windowStart = System.nanoTime();
+    private long bytesInWindow;
+
+    /**
+     * @param bytesPerSecond допустимая скорость; 0 или меньше — без ограничения
+     */
+    public IoThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Учитывает прочитанные/записанные байты и при превышении бюджета засыпает до конца окна.
+     */
+    public void acquire(long bytes) {
+        if (bytesPerSecond <= 0 || bytes <= 0) {
+            return;
+        }
+        bytesInWindow += bytes;
+        long elapsedNanos = System.nanoTime() - windowStart;
+        long allowedNanos = bytesInWindow * 1_000_000_000L / bytesPerSecond;
+        if (allowedNanos > elapsedNanos) {
+            sleepNanos(allowedNanos - elapsedNanos);
+        }
+        if (elapsedNanos > 1_000_000_000L) {
+            windowStart = System.nanoTime();
+            bytesInWindow = 0;
+        }
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            Thread.sleep(nanos / 1_000_000L, (int) (nanos % 1_000_000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
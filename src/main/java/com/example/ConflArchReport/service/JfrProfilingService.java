@@ -0,0 +1,355 @@
+package com.example.ConflArchReport.service;
+
+import com.example.ConflArchReport.jfr.ArchiveOpenEvent;
+import com.example.ConflArchReport.jfr.ConfluenceCallEvent;
+import com.example.ConflArchReport.jfr.EntryInflateEvent;
+import com.example.ConflArchReport.jfr.SyncBatchEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Профилирование по запросу (POST /admin/profiling): запись Java Flight Recorder с настройками profile
+ * и событиями приложения — открытие архива, чтение записи, вызов Confluence, синхронизация с БД.
+ * <p>
+ * Запись идёт до остановки или до max-duration; по остановке файл .jfr остаётся для скачивания (до следующего
+ * запуска), а из него строится сводка: горячие места по CPU (jdk.ExecutionSample) и по выделению памяти
+ * (jdk.ObjectAllocationSample), число и длительность событий приложения. Место — верхний кадр стека
+ * и первый кадр кода приложения под ним.
+ */
+@Service
+public class JfrProfilingService {
+
+    private static final Logger log = LoggerFactory.getLogger(JfrProfilingService.class);
+
+    private static final List<String> APP_EVENTS = List.of(
+            ArchiveOpenEvent.NAME, EntryInflateEvent.NAME, ConfluenceCallEvent.NAME, SyncBatchEvent.NAME);
+    private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+    private static final String APP_PACKAGE = "com.example.ConflArchReport.";
+    private static final String RECORDING_NAME = "conflarch-admin";
+    /**
+     * События с окружением процесса: переменные окружения (DB_PASSWORD и т.п.), системные свойства, security-свойства
+     * и аргументы командной строки (-D с паролями). В profile и default они включены — в записи их быть не должно.
+     */
+    private static final List<String> SENSITIVE_EVENTS = List.of("jdk.InitialEnvironmentVariable",
+            "jdk.InitialSystemProperty", "jdk.InitialSecurityProperty", "jdk.JVMInformation");
+    /** Служебные поля событий, не нужные в описании самых долгих */
+    private static final Set<String> SKIPPED_FIELDS = Set.of("startTime", "duration", "eventThread", "stackTrace");
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /** Сколько мест и самых долгих событий показывать в сводке */
+    private static final int TOP_SITES = 15;
+    private static final int SLOWEST_EVENTS = 5;
+
+    /** Настройки JFR: profile (подробнее) или default (накладные расходы ~1%) */
+    @Value("${app.profiling.jfr.settings:profile}")
+    private String settings;
+
+    /** Наибольшая длительность записи: забытая запись останавливается сама */
+    @Value("${app.profiling.jfr.max-duration:30m}")
+    private Duration maxDuration;
+
+    /** Наибольший объём записи на диске: старые данные вытесняются */
+    @Value("${app.profiling.jfr.max-size:268435456}")
+    private long maxSize;
+
+    /** Папка для файлов .jfr */
+    @Value("${app.profiling.jfr.dir:${java.io.tmpdir}/conflarch-jfr}")
+    private String directory;
+
+    /**
+     * Токен для скачивания файла записи (заголовок X-Profiling-Token); пусто — скачивание выключено.
+     * Задаётся в application-secret.properties.
+     */
+    @Value("${app.profiling.jfr.download-token:}")
+    private String downloadToken;
+
+    private Recording recording;
+    private LocalDateTime startedAt;
+    private LocalDateTime stoppedAt;
+    private Path recordingFile;
+    private ProfileSummary summary;
+
+    /**
+     * Запускает запись.
+     *
+     * @param duration длительность (не больше max-duration) или null — max-duration
+     * @return false, если запись уже идёт
+     * @throws IllegalStateException JFR недоступен в этой JVM
+     */
+    public synchronized boolean start(Duration duration) throws IOException, ParseException {
+        finishIfStopped();
+        if (recording != null) {
+            return false;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("Java Flight Recorder недоступен в этой JVM");
+        }
+        Path dir = Path.of(directory);
+        Files.createDirectories(dir);
+        deleteRecordingFile();
+
+        Recording started = new Recording(Configuration.getConfiguration(settings));
+        started.setName(RECORDING_NAME);
+        for (String event : APP_EVENTS) {
+            started.enable(event);
+        }
+        for (String event : SENSITIVE_EVENTS) {
+            started.disable(event);
+        }
+        started.setDuration(duration != null && duration.compareTo(maxDuration) < 0 ? duration : maxDuration);
+        started.setMaxSize(maxSize);
+        started.setToDisk(true);
+        startedAt = LocalDateTime.now();
+        Path file = dir.resolve("conflarch-" + FILE_TIMESTAMP.format(startedAt) + ".jfr");
+        // Файл пишется при остановке — и по stop(), и по истечении длительности
+        started.setDestination(file);
+        started.start();
+
+        recording = started;
+        recordingFile = file;
+        stoppedAt = null;
+        summary = null;
+        log.info("Запись JFR начата: {} ({}, не дольше {})", file, settings, started.getDuration());
+        return true;
+    }
+
+    /**
+     * Останавливает запись и строит сводку.
+     *
+     * @return состояние с итогом или empty, если запись не идёт
+     */
+    public synchronized Optional<ProfilingStatus> stop() throws IOException {
+        finishIfStopped();
+        if (recording == null) {
+            return Optional.empty();
+        }
+        try {
+            recording.stop();
+        } catch (IllegalStateException e) {
+            // длительность истекла между проверкой и остановкой — файл уже записан JFR
+        }
+        finish();
+        return Optional.of(status());
+    }
+
+    /**
+     * Состояние текущей или последней записи; empty, если записей не было.
+     */
+    public synchronized Optional<ProfilingStatus> getStatus() throws IOException {
+        finishIfStopped();
+        return startedAt != null ? Optional.of(status()) : Optional.empty();
+    }
+
+    /**
+     * Можно ли отдать файл записи по переданному токену: токен задан в настройках и совпадает.
+     */
+    public boolean isDownloadAllowed(String token) {
+        if (downloadToken == null || downloadToken.isBlank() || token == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(downloadToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Файл записи для скачивания: во время записи — снимок на текущий момент (временный файл), после — итоговый.
+     */
+    public synchronized Optional<RecordingDownload> download() throws IOException {
+        finishIfStopped();
+        if (recording != null) {
+            Path snapshot = Files.createTempFile(Path.of(directory), "conflarch-snapshot-", ".jfr");
+            recording.dump(snapshot);
+            return Optional.of(new RecordingDownload(snapshot, true));
+        }
+        if (recordingFile != null && Files.isRegularFile(recordingFile)) {
+            return Optional.of(new RecordingDownload(recordingFile, false));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Запись, остановленная самим JFR по истечении длительности (запись с destination он сразу и закрывает),
+     * завершается при следующем обращении.
+     */
+    private void finishIfStopped() throws IOException {
+        if (recording != null && (recording.getState() == RecordingState.STOPPED
+                || recording.getState() == RecordingState.CLOSED)) {
+            finish();
+        }
+    }
+
+    private void finish() throws IOException {
+        stoppedAt = LocalDateTime.now();
+        recording.close();
+        recording = null;
+        long started = System.nanoTime();
+        summary = summarize(recordingFile);
+        log.info("Запись JFR остановлена: {} ({} байт), сводка построена за {} мс", recordingFile,
+                Files.size(recordingFile), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void deleteRecordingFile() {
+        if (recordingFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(recordingFile);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить прошлую запись JFR {}: {}", recordingFile, e.getMessage());
+        }
+    }
+
+    private ProfilingStatus status() throws IOException {
+        long bytes = recordingFile != null && Files.isRegularFile(recordingFile) ? Files.size(recordingFile) : 0;
+        return new ProfilingStatus(recording != null, startedAt, stoppedAt, settings,
+                recordingFile != null ? recordingFile.toString() : null, bytes, summary);
+    }
+
+    /**
+     * Сводка по файлу записи (читается потоково, событие за событием).
+     */
+    static ProfileSummary summarize(Path file) throws IOException {
+        Map<String, Long> cpu = new HashMap<>();
+        Map<String, Long> allocationSites = new HashMap<>();
+        Map<String, Long> allocationClasses = new HashMap<>();
+        Map<String, EventAccumulator> appEvents = new LinkedHashMap<>();
+        for (String event : APP_EVENTS) {
+            appEvents.put(event, new EventAccumulator());
+        }
+        long cpuSamples = 0;
+        long allocatedBytes = 0;
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                String name = event.getEventType().getName();
+                if (EXECUTION_SAMPLE.equals(name)) {
+                    cpuSamples++;
+                    cpu.merge(site(event.getStackTrace()), 1L, Long::sum);
+                } else if (ALLOCATION_SAMPLE.equals(name)) {
+                    long weight = event.getLong("weight");
+                    allocatedBytes += weight;
+                    allocationSites.merge(site(event.getStackTrace()), weight, Long::sum);
+                    RecordedClass objectClass = event.getClass("objectClass");
+                    allocationClasses.merge(objectClass != null ? objectClass.getName() : "?", weight, Long::sum);
+                } else if (appEvents.containsKey(name)) {
+                    appEvents.get(name).add(event);
+                }
+            }
+        }
+        List<EventStats> events = appEvents.entrySet().stream()
+                .map(e -> e.getValue().stats(e.getKey()))
+                .toList();
+        return new ProfileSummary(cpuSamples, top(cpu, cpuSamples), allocatedBytes,
+                top(allocationSites, allocatedBytes), top(allocationClasses, allocatedBytes), events);
+    }
+
+    /**
+     * Верхний кадр и первый кадр приложения под ним: «Inflater.inflate ← ZipReportService.readEntryData:312».
+     */
+    private static String site(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "(нет стека)";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        String top = frame(frames.get(0));
+        for (RecordedFrame frame : frames) {
+            if (frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith(APP_PACKAGE)) {
+                return frame == frames.get(0) ? top : top + " ← " + frame(frame);
+            }
+        }
+        return top;
+    }
+
+    private static String frame(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        String method = type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethod().getName();
+        return frame.getLineNumber() > 0 ? method + ":" + frame.getLineNumber() : method;
+    }
+
+    private static List<Site> top(Map<String, Long> values, long total) {
+        return values.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_SITES)
+                .map(e -> new Site(e.getKey(), e.getValue(), total > 0 ? Math.round(e.getValue() * 1000.0 / total) / 10.0 : 0))
+                .toList();
+    }
+
+    /**
+     * Число, суммарная и наибольшая длительность событий одного типа и самые долгие из них.
+     */
+    private static final class EventAccumulator {
+
+        private long count;
+        private long totalNanos;
+        private final PriorityQueue<RecordedEvent> slowest =
+                new PriorityQueue<>(Comparator.comparing(RecordedEvent::getDuration));
+
+        void add(RecordedEvent event) {
+            count++;
+            totalNanos += event.getDuration().toNanos();
+            slowest.add(event);
+            if (slowest.size() > SLOWEST_EVENTS) {
+                slowest.poll();
+            }
+        }
+
+        EventStats stats(String name) {
+            List<RecordedEvent> events = new ArrayList<>(slowest);
+            events.sort(Comparator.comparing(RecordedEvent::getDuration, Comparator.reverseOrder()));
+            long maxNanos = events.isEmpty() ? 0 : events.get(0).getDuration().toNanos();
+            return new EventStats(name, count, totalNanos / 1_000_000.0, maxNanos / 1_000_000.0,
+                    events.stream().map(EventAccumulator::describe).toList());
+        }
+
+        private static String describe(RecordedEvent event) {
+            String fields = event.getFields().stream()
+                    .map(ValueDescriptor::getName)
+                    .filter(f -> !SKIPPED_FIELDS.contains(f))
+                    .map(f -> f + "=" + (Object) event.getValue(f))
+                    .collect(Collectors.joining(", "));
+            return String.format(Locale.ROOT, "%.1f мс: %s", event.getDuration().toNanos() / 1_000_000.0, fields);
+        }
+    }
+
+    public record ProfilingStatus(boolean running, LocalDateTime startedAt, LocalDateTime stoppedAt, String settings,
+                                  String file, long fileBytes, ProfileSummary summary) {}
+
+    public record ProfileSummary(long cpuSamples, List<Site> cpuTop, long allocatedBytes, List<Site> allocationTop,
+                                 List<Site> allocationByClass, List<EventStats> events) {}
+
+    /**
+     * Горячее место: число CPU-сэмплов или выделенные байты и доля от общего, %.
+     */
+    public record Site(String site, long value, double percent) {}
+
+    public record EventStats(String event, long count, double totalMs, double maxMs, List<String> slowest) {}
+
+    /**
+     * Файл для скачивания; temporary — снимок идущей записи, удаляется после отдачи.
+     */
+    public record RecordingDownload(Path file, boolean temporary) {}
+}
@@ -1,72 +1,82 @@
 package com.example.ConflArchReport.service;
 
+import com.example.ConflArchReport.config.DataSourceRouting;
 import com.example.ConflArchReport.entity.ArchivedReport;
 import com.example.ConflArchReport.entity.Project;
+import com.example.ConflArchReport.jfr.SyncBatchEvent;
 import com.example.ConflArchReport.repository.ArchivedReportRepository;
 import com.example.ConflArchReport.repository.ProjectRepository;
-import org.springframework.beans.factory.annotation.Value;
+import com.example.ConflArchReport.storage.ArchiveStore;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Синхронизирует архивы из папки reports с базой данных.
+ * Синхронизирует архивы из хранилища архивов (папки reports или бакета S3) с базой данных.
  */
 @Service
 public class ReportSyncService {
 
-    @Value("${app.reports.path:reports}")
-    private String reportsBasePath;
-
     private final ArchivedReportRepository archivedReportRepository;
     private final ProjectRepository projectRepository;
+    private final ArchiveStore archiveStore;
+    private final ArchiveMetrics metrics;
+    private final DataSourceRouting dataSourceRouting;
 
     public ReportSyncService(ArchivedReportRepository archivedReportRepository,
-                             ProjectRepository projectRepository) {
+                             ProjectRepository projectRepository,
+                             ArchiveStore archiveStore,
+                             ArchiveMetrics metrics,
+                             DataSourceRouting dataSourceRouting) {
         this.archivedReportRepository = archivedReportRepository;
         this.projectRepository = projectRepository;
+        this.archiveStore = archiveStore;
+        this.metrics = metrics;
+        this.dataSourceRouting = dataSourceRouting;
     }
 
     @Transactional
     public SyncResult syncFromFilesystem() throws IOException {
-        Path reportsPath = Paths.get(reportsBasePath).normalize();
-        if (!Files.exists(reportsPath) || !Files.isDirectory(reportsPath)) {
-            return new SyncResult(0, 0, List.of("Папка reports не найдена: " + reportsPath));
+        SyncBatchEvent event = new SyncBatchEvent();
+        event.begin();
+        List<ArchiveStore.StoredArchive> archives;
+        try {
+            archives = archiveStore.list();
+        } catch (NoSuchFileException e) {
+            return new SyncResult(0, 0, List.of("Папка reports не найдена: " + e.getMessage()));
         }
 
+        Timer.Sample sample = metrics.start();
         List<String> errors = new ArrayList<>();
         int added = 0;
         int total = 0;
 
-        try (DirectoryStream<Path> projectDirs = Files.newDirectoryStream(reportsPath, Files::isDirectory)) {
-            for (Path projectDir : projectDirs) {
-                String projectName = projectDir.getFileName().toString();
-                Project project = projectRepository.findByName(projectName)
-                        .orElseGet(() -> projectRepository.save(new Project(projectName)));
-
-                try (DirectoryStream<Path> zipFiles = Files.newDirectoryStream(projectDir, "*.zip")) {
-                    for (Path zipPath : zipFiles) {
-                        total++;
-                        String fileName = zipPath.getFileName().toString();
-                        String archiveId = fileName.substring(0, fileName.length() - 4);
-
-                        if (archivedReportRepository.findByProjectNameAndId(projectName, archiveId).isEmpty()) {
-                            ArchivedReport report = new ArchivedReport(archiveId, fileName, project);
-                            archivedReportRepository.save(report);
-                            added++;
-                        }
-                    }
-                }
+        Map<String, Project> projects = new HashMap<>();
+        for (ArchiveStore.StoredArchive archive : archives) {
+            total++;
+            Project project = projects.computeIfAbsent(archive.project(), name -> projectRepository.findByName(name)
+                    .orElseGet(() -> projectRepository.save(new Project(name))));
+            if (archivedReportRepository.findByProjectNameAndId(archive.project(), archive.id()).isEmpty()) {
+                ArchivedReport report = new ArchivedReport(archive.id(), archive.id() + ".zip", project);
+                archivedReportRepository.save(report);
+                added++;
             }
         }
 
+        if (added > 0) {
+            dataSourceRouting.recordWrite();
+        }
+        metrics.stopSync(sample, added, total);
+        event.total = total;
+        event.added = added;
+        event.commit();
         return new SyncResult(added, total, errors);
     }
 
@@ -1,41 +1,129 @@
 package com.example.ConflArchReport.service;
 
+import com.example.ConflArchReport.jfr.ArchiveOpenEvent;
+import com.example.ConflArchReport.jfr.EntryInflateEvent;
+import com.example.ConflArchReport.storage.ArchiveStore;
+import com.example.ConflArchReport.zip.ZipCentralDirectory;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
+/**
+ * Чтение архивов отчётов из {@link ArchiveStore}: записи находятся по центральному каталогу и читаются
+ * по смещению, поэтому для удалённого хранилища загружаются только нужные диапазоны байт.
+ * <p>
+ * Разобранные каталоги последних app.reports.directory-cache-size архивов хранятся в памяти и сверяются с размером
+ * и временем изменения архива: страница с десятками картинок и стилей не разбирает каталог на каждый ресурс.
+ */
 @Service
 public class ZipReportService {
 
-    @Value("${app.reports.path:reports}")
-    private String reportsBasePath;
-
     /** Кодировка имён записей в zip: ISO-8859-1 принимает любые байты, избегает "bad entry name" для архивов из Windows/других кодировок. */
     private static final Charset ZIP_ENTRY_CHARSET = Charset.forName("ISO-8859-1");
+    private static final int METHOD_DEFLATED = 8;
+
+    private final ArchiveMetrics metrics;
+    private final ArchiveStore archiveStore;
+    private final ArchiveTracing tracing;
+
+    /** Число архивов, разобранные центральные каталоги которых хранятся в памяти (0 — без кэша) */
+    @Value("${app.reports.directory-cache-size:512}")
+    private int directoryCacheSize = 512;
+
+    /** Кэш каталогов в порядке обращения (LRU); доступ — под блокировкой самой карты */
+    private final Map<ArchiveKey, CachedDirectory> directoryCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ArchiveKey, CachedDirectory> eldest) {
+            return size() > directoryCacheSize;
+        }
+    };
+
+    public ZipReportService(ArchiveMetrics metrics, ArchiveStore archiveStore, ArchiveTracing tracing) {
+        this.metrics = metrics;
+        this.archiveStore = archiveStore;
+        this.tracing = tracing;
+    }
 
     /**
      * Извлекает HTML страницу из zip архива и возвращает её содержимое.
      * Ищет index.html, затем первый найденный .html файл.
      */
     public Optional<String> extractHtmlContent(String project, String id) throws IOException {
-        Path zipPath = getZipPath(project, id);
-        if (!Files.exists(zipPath)) {
+        Timer.Sample sample = metrics.start();
+        Optional<String> result = Optional.empty();
+        try (ArchiveTracing.TracedSpan span = archiveSpan("archive.read-index", project, id)) {
+            result = readHtmlContent(project, id);
+            span.tag(ArchiveTracing.FOUND, result.isPresent());
+            return result;
+        } finally {
+            metrics.stopArchiveLookup(sample, "index", result.isPresent());
+        }
+    }
+
+    private Optional<String> readHtmlContent(String project, String id) throws IOException {
+        Optional<ArchiveStore.ArchiveStat> stat = archiveStore.stat(project, id);
+        if (stat.isEmpty()) {
             return Optional.empty();
         }
+        try (SeekableByteChannel channel = archiveStore.open(project, id, stat.get())) {
+            Optional<ZipCentralDirectory> directory = readDirectory(project, id, stat.get(), channel);
+            if (directory.isPresent()) {
+                ZipCentralDirectory.Entry preferredHtml = null;
+                ZipCentralDirectory.Entry firstHtml = null;
+                for (ZipCentralDirectory.Entry entry : directory.get().entries()) {
+                    if (!entry.isDirectory() && entry.name().toLowerCase().endsWith(".html")) {
+                        if ("index.html".equalsIgnoreCase(Paths.get(entry.name()).getFileName().toString())) {
+                            preferredHtml = entry;
+                            break;
+                        }
+                        if (firstHtml == null) {
+                            firstHtml = entry;
+                        }
+                    }
+                }
+                ZipCentralDirectory.Entry html = preferredHtml != null ? preferredHtml : firstHtml;
+                if (html == null) {
+                    return Optional.empty();
+                }
+                return Optional.of(new String(readEntry(channel, html), StandardCharsets.UTF_8));
+            }
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        return scanHtmlContent(project, id);
+    }
 
-        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipPath), ZIP_ENTRY_CHARSET)) {
+    /**
+     * Последовательное чтение архива, центральный каталог которого не разобран (Zip64, повреждённый конец файла).
+     */
+    private Optional<String> scanHtmlContent(String project, String id) throws IOException {
+        try (ZipInputStream zis = new ZipInputStream(Channels.newInputStream(archiveStore.open(project, id)), ZIP_ENTRY_CHARSET)) {
             ZipEntry entry;
             String preferredHtml = null;
             String firstHtml = null;
@@ -57,18 +145,11 @@ public class ZipReportService {
         }
     }
 
-    /**
-     * Возвращает путь к zip архиву
-     */
-    public Path getZipPath(String project, String id) {
-        return Paths.get(reportsBasePath, project, id + ".zip").normalize();
-    }
-
     /**
      * Проверяет существование архива
      */
-    public boolean archiveExists(String project, String id) {
-        return Files.exists(getZipPath(project, id));
+    public boolean archiveExists(String project, String id) throws IOException {
+        return archiveStore.exists(project, id);
     }
 
     /**
@@ -81,22 +162,38 @@ public class ZipReportService {
      * @return содержимое файла или empty, если архив/файл не найден
      */
     public Optional<byte[]> getFileContent(String project, String id, String path) throws IOException {
-        if (path == null || path.isBlank()) {
-            return Optional.empty();
+        Timer.Sample sample = metrics.start();
+        Optional<byte[]> result = Optional.empty();
+        try (ArchiveTracing.TracedSpan span = archiveSpan("archive.read-entry", project, id).tag(ArchiveTracing.ENTRY, path)) {
+            result = readFileContent(project, id, path);
+            span.tag(ArchiveTracing.FOUND, result.isPresent());
+            result.ifPresent(content -> span.tag(ArchiveTracing.BYTES, content.length));
+            return result;
+        } finally {
+            metrics.stopArchiveLookup(sample, "entry", result.isPresent());
         }
-        String normalized = path.replace('\\', '/').trim();
-        if (normalized.startsWith("/")) {
-            normalized = normalized.substring(1);
+    }
+
+    private Optional<byte[]> readFileContent(String project, String id, String path) throws IOException {
+        String normalized = normalizeEntryPath(path);
+        if (normalized == null) {
+            return Optional.empty();
         }
-        if (normalized.contains("..")) {
+        Optional<ArchiveStore.ArchiveStat> stat = archiveStore.stat(project, id);
+        if (stat.isEmpty()) {
             return Optional.empty();
         }
-        Path zipPath = getZipPath(project, id);
-        if (!Files.exists(zipPath)) {
+        try (SeekableByteChannel channel = archiveStore.open(project, id, stat.get())) {
+            Optional<ZipCentralDirectory> directory = readDirectory(project, id, stat.get(), channel);
+            if (directory.isPresent()) {
+                Optional<ZipCentralDirectory.Entry> entry = directory.get().find(normalized);
+                return entry.isPresent() ? Optional.of(readEntry(channel, entry.get())) : Optional.empty();
+            }
+        } catch (NoSuchFileException e) {
             return Optional.empty();
         }
 
-        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipPath), ZIP_ENTRY_CHARSET)) {
+        try (ZipInputStream zis = new ZipInputStream(Channels.newInputStream(archiveStore.open(project, id)), ZIP_ENTRY_CHARSET)) {
             ZipEntry entry;
             while ((entry = zis.getNextEntry()) != null) {
                 if (entry.isDirectory()) {
@@ -121,16 +218,211 @@ public class ZipReportService {
     }
 
     /**
-     * Сохраняет загруженный zip в каталог проекта.
+     * Ищет запись, сохранённую в архиве без сжатия (STORED), и возвращает её положение в zip-файле.
+     * Такую запись можно отдать клиенту напрямую из файла (sendfile / {@link FileChannel#transferTo}) без распаковки.
+     *
+     * @return положение данных записи или empty, если архив/файл не найден, запись сжата, архив в формате Zip64
+     * или хранилище не файловое
+     */
+    public Optional<StoredEntry> findStoredEntry(String project, String id, String path) throws IOException {
+        Timer.Sample sample = metrics.start();
+        Optional<StoredEntry> result = Optional.empty();
+        try (ArchiveTracing.TracedSpan span = archiveSpan("archive.stored-lookup", project, id).tag(ArchiveTracing.ENTRY, path)) {
+            result = locateStoredEntry(project, id, path);
+            span.tag(ArchiveTracing.FOUND, result.isPresent());
+            return result;
+        } finally {
+            metrics.stopArchiveLookup(sample, "stored_lookup", result.isPresent());
+        }
+    }
+
+    private Optional<StoredEntry> locateStoredEntry(String project, String id, String path) throws IOException {
+        String normalized = normalizeEntryPath(path);
+        if (normalized == null) {
+            return Optional.empty();
+        }
+        Optional<Path> localPath = archiveStore.localPath(project, id);
+        if (localPath.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<ArchiveStore.ArchiveStat> stat = archiveStore.stat(project, id);
+        if (stat.isEmpty()) {
+            return Optional.empty();
+        }
+        // Канал не закрывается при успехе: данные отдаются из того же открытого файла, по которому найдено смещение
+        FileChannel channel = FileChannel.open(localPath.get(), StandardOpenOption.READ);
+        try {
+            Optional<ZipCentralDirectory> directory = readDirectory(project, id, stat.get(), channel);
+            Optional<ZipCentralDirectory.Entry> entry = directory.flatMap(d -> d.find(normalized));
+            if (entry.isPresent() && entry.get().isStored()) {
+                long offset = ZipCentralDirectory.dataOffset(channel, entry.get());
+                return Optional.of(new StoredEntry(channel, offset, entry.get().size()));
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        return Optional.empty();
+    }
+
+    private ArchiveTracing.TracedSpan archiveSpan(String name, String project, String id) {
+        return tracing.start(name).tag(ArchiveTracing.PROJECT, project).tag(ArchiveTracing.ARCHIVE_ID, id);
+    }
+
+    /**
+     * Центральный каталог архива из кэша, если архив с тех пор не менялся (те же размер, время изменения и версия —
+     * ETag в S3), иначе разобранный заново. Empty, если каталог нельзя разобрать (Zip64, повреждённый конец файла) —
+     * тогда архив читается последовательно, как раньше.
+     */
+    private Optional<ZipCentralDirectory> readDirectory(String project, String id, ArchiveStore.ArchiveStat stat,
+                                                        SeekableByteChannel channel) throws IOException {
+        ArchiveKey key = new ArchiveKey(project, id);
+        CachedDirectory cached;
+        synchronized (directoryCache) {
+            cached = directoryCache.get(key);
+        }
+        // Размер канала сверяется на случай замены файла между stat и открытием
+        if (cached != null && cached.stat().equals(stat) && channel.size() == stat.size()) {
+            return Optional.of(cached.directory());
+        }
+        Optional<ZipCentralDirectory> directory = parseDirectory(project, id, channel);
+        if (directory.isPresent() && directoryCacheSize > 0) {
+            synchronized (directoryCache) {
+                directoryCache.put(key, new CachedDirectory(stat, directory.get()));
+            }
+        }
+        return directory;
+    }
+
+    private static Optional<ZipCentralDirectory> parseDirectory(String project, String id, SeekableByteChannel channel) {
+        ArchiveOpenEvent event = new ArchiveOpenEvent();
+        event.begin();
+        Optional<ZipCentralDirectory> directory;
+        try {
+            directory = Optional.of(ZipCentralDirectory.read(channel, ZIP_ENTRY_CHARSET));
+        } catch (IOException e) {
+            directory = Optional.empty();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.project = project;
+            event.archiveId = id;
+            event.parsed = directory.isPresent();
+            event.entries = directory.map(d -> d.entries().size()).orElse(0);
+            event.commit();
+        }
+        return directory;
+    }
+
+    /**
+     * Данные записи по смещению из центрального каталога: STORED — как есть, DEFLATED — с распаковкой.
+     */
+    private static byte[] readEntry(SeekableByteChannel channel, ZipCentralDirectory.Entry entry) throws IOException {
+        EntryInflateEvent event = new EntryInflateEvent();
+        event.begin();
+        byte[] content = readEntryData(channel, entry);
+        event.end();
+        if (event.shouldCommit()) {
+            event.entry = entry.name();
+            event.deflated = !entry.isStored();
+            event.compressedSize = entry.compressedSize();
+            event.size = content.length;
+            event.commit();
+        }
+        return content;
+    }
+
+    private static byte[] readEntryData(SeekableByteChannel channel, ZipCentralDirectory.Entry entry) throws IOException {
+        long offset = ZipCentralDirectory.dataOffset(channel, entry);
+        ByteBuffer data = ByteBuffer.allocate(Math.toIntExact(entry.compressedSize()));
+        channel.position(offset);
+        while (data.hasRemaining()) {
+            if (channel.read(data) < 0) {
+                throw new ZipException("Неожиданный конец данных записи " + entry.name());
+            }
+        }
+        if (entry.isStored()) {
+            return data.array();
+        }
+        if (entry.method() != METHOD_DEFLATED) {
+            throw new ZipException("Неподдерживаемый метод сжатия " + entry.method() + ": " + entry.name());
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data.array());
+            byte[] content = new byte[Math.toIntExact(entry.size())];
+            int n = 0;
+            while (n < content.length && !inflater.finished()) {
+                int read = inflater.inflate(content, n, content.length - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != content.length) {
+                throw new ZipException("Несовпадение размера: " + entry.name());
+            }
+            return content;
+        } catch (DataFormatException e) {
+            throw new ZipException("Повреждены данные записи " + entry.name() + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Нормализует относительный путь к файлу в архиве; null — если путь пустой или содержит "..".
+     */
+    private static String normalizeEntryPath(String path) {
+        if (path == null || path.isBlank()) {
+            return null;
+        }
+        String normalized = path.replace('\\', '/').trim();
+        if (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.contains("..")) {
+            return null;
+        }
+        return normalized;
+    }
+
+    /**
+     * Временный файл для загруженного zip: его можно обработать на диске до сохранения в хранилище.
+     */
+    public Path stageUploadedZip(InputStream zipStream) throws IOException {
+        Path staged = archiveStore.createStagingFile();
+        try {
+            Files.copy(zipStream, staged, StandardCopyOption.REPLACE_EXISTING);
+            return staged;
+        } catch (IOException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+    }
+
+    /**
+     * Сохраняет подготовленный zip в хранилище архивов (файл переходит хранилищу).
      *
      * @param project   название проекта
      * @param archiveId идентификатор архива (без .zip)
-     * @param zipStream содержимое zip-файла
+     * @param zipPath   готовый zip-файл
+     * @return расположение архива в хранилище
      */
-    public void saveUploadedZip(String project, String archiveId, InputStream zipStream) throws IOException {
-        Path zipPath = getZipPath(project, archiveId);
-        Files.createDirectories(zipPath.getParent());
-        Files.copy(zipStream, zipPath);
+    public String saveArchive(String project, String archiveId, Path zipPath) throws IOException {
+        try (ArchiveTracing.TracedSpan span = archiveSpan("archive.save", project, archiveId)
+                .tag(ArchiveTracing.BYTES, Files.size(zipPath))) {
+            try {
+                synchronized (directoryCache) {
+                    directoryCache.remove(new ArchiveKey(project, archiveId));
+                }
+                return archiveStore.put(project, archiveId, zipPath);
+            } catch (IOException | RuntimeException e) {
+                span.error(e);
+                throw e;
+            }
+        }
     }
 
     private static final Pattern TITLE_TAG = Pattern.compile("<title[^>]*>\\s*([^<]+)\\s*</title>", Pattern.CASE_INSENSITIVE);
@@ -150,4 +442,21 @@ public class ZipReportService {
         Matcher m = TITLE_TAG.matcher(html.get());
         return m.find() ? Optional.of(m.group(1).trim()) : Optional.empty();
     }
+
+    /**
+     * Несжатая запись архива: открытый канал zip-файла, смещение начала данных и их длина.
+     * Канал — тот же, по которому найдено смещение: замена файла перепаковкой, переносом в холодное хранилище
+     * или в другую раскладку не подменит отдаваемые байты. Закрывает запись тот, кто её отдаёт.
+     */
+    public record StoredEntry(FileChannel channel, long offset, long length) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private record ArchiveKey(String project, String id) {}
+
+    private record CachedDirectory(ArchiveStore.ArchiveStat stat, ZipCentralDirectory directory) {}
 }
@@ -0,0 +1,87 @@
+package com.example.ConflArchReport.storage;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Хранилище zip-архивов отчётов. Архив адресуется парой (проект, id); реализация выбирается app.storage.type:
+ * <ul>
+ *     <li>filesystem — каталог app.reports.path ({@link FileSystemArchiveStore}, по умолчанию);</li>
+ *     <li>s3 — S3-совместимое объектное хранилище ({@link S3ArchiveStore}), в том числе MinIO.</li>
+ * </ul>
+ * Чтение идёт через {@link #open}: канал с произвольным доступом, поэтому центральный каталог и отдельные записи
+ * читаются диапазонами, не загружая архив целиком.
+ */
+public interface ArchiveStore {
+
+    String TYPE_FILESYSTEM = "filesystem";
+    String TYPE_S3 = "s3";
+
+    /**
+     * Размер, время изменения и версия архива или empty, если архива нет.
+     */
+    Optional<ArchiveStat> stat(String project, String id) throws IOException;
+
+    default boolean exists(String project, String id) throws IOException {
+        return stat(project, id).isPresent();
+    }
+
+    /**
+     * Канал только для чтения с произвольным доступом.
+     *
+     * @throws java.nio.file.NoSuchFileException если архива нет
+     */
+    SeekableByteChannel open(String project, String id) throws IOException;
+
+    /**
+     * То же, когда размер и версия уже получены {@link #stat} — хранилище может не запрашивать их повторно
+     * и читать именно эту версию (S3: If-Match по ETag; чтение заменённого объекта — ошибка).
+     */
+    default SeekableByteChannel open(String project, String id, ArchiveStat stat) throws IOException {
+        return open(project, id);
+    }
+
+    /**
+     * Временный файл для сборки архива перед {@link #put}: для файлового хранилища — рядом с архивами,
+     * чтобы сохранение было атомарным переименованием.
+     */
+    Path createStagingFile() throws IOException;
+
+    /**
+     * Сохраняет готовый архив; после успешного сохранения файл source принадлежит хранилищу (перемещается или удаляется).
+     * При ошибке source остаётся на месте — вызывающий код удаляет его или возвращает владельцу.
+     *
+     * @return расположение архива в хранилище (путь или URI) — для журналов и ответов API
+     */
+    String put(String project, String id, Path source) throws IOException;
+
+    /**
+     * Все архивы хранилища.
+     */
+    List<StoredArchive> list() throws IOException;
+
+    /**
+     * @return false, если архива не было
+     */
+    boolean delete(String project, String id) throws IOException;
+
+    /**
+     * Локальный файл архива, если хранилище файловое (для отдачи без копирования и обслуживания на диске).
+     */
+    default Optional<Path> localPath(String project, String id) {
+        return Optional.empty();
+    }
+
+    /**
+     * @param version версия содержимого: ETag объекта в S3, ключ файла (устройство и inode) в файловой системе;
+     *                null, если хранилище её не сообщает. Время изменения S3 — с точностью до секунды, поэтому
+     *                перезапись объекта того же размера отличается только версией
+     */
+    record ArchiveStat(long size, Instant lastModified, String version) {}
+
+    record StoredArchive(String project, String id, long size) {}
+}
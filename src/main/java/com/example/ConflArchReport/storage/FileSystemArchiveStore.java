@@ -0,0 +1,106 @@
+package com.example.ConflArchReport.storage;
+
+import com.example.ConflArchReport.service.ArchiveLayout;
+import com.example.ConflArchReport.service.ArchiveTieringService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Архивы в каталоге app.reports.path (раскладка — {@link ArchiveLayout}, горячее/холодное хранение —
+ * {@link ArchiveTieringService}).
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = ArchiveStore.TYPE_FILESYSTEM, matchIfMissing = true)
+public class FileSystemArchiveStore implements ArchiveStore {
+
+    private final ArchiveTieringService tieringService;
+
+    @Value("${app.reports.path:reports}")
+    private String reportsBasePath;
+
+    public FileSystemArchiveStore(ArchiveTieringService tieringService) {
+        this.tieringService = tieringService;
+    }
+
+    @Override
+    public Optional<ArchiveStat> stat(String project, String id) throws IOException {
+        Path zipPath = tieringService.locate(project, id);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(zipPath, BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey();
+            return Optional.of(new ArchiveStat(attributes.size(), attributes.lastModifiedTime().toInstant(),
+                    fileKey != null ? fileKey.toString() : null));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean exists(String project, String id) {
+        return Files.exists(tieringService.locate(project, id));
+    }
+
+    @Override
+    public SeekableByteChannel open(String project, String id) throws IOException {
+        return FileChannel.open(tieringService.locate(project, id), StandardOpenOption.READ);
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        Path root = Paths.get(reportsBasePath);
+        Files.createDirectories(root);
+        // Файл в корне, а не в каталоге проекта — синхронизация и обслуживание его не увидят
+        return Files.createTempFile(root, ".staging-", ".zip.tmp");
+    }
+
+    @Override
+    public String put(String project, String id, Path source) throws IOException {
+        Path target = tieringService.hotPath(project, id);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+        return target.toString();
+    }
+
+    @Override
+    public List<StoredArchive> list() throws IOException {
+        Path root = Paths.get(reportsBasePath).normalize();
+        if (!Files.isDirectory(root)) {
+            throw new NoSuchFileException(root.toString());
+        }
+        List<StoredArchive> result = new ArrayList<>();
+        try (DirectoryStream<Path> projectDirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path projectDir : projectDirs) {
+                String project = projectDir.getFileName().toString();
+                for (Path zipPath : ArchiveLayout.listArchives(projectDir)) {
+                    result.add(new StoredArchive(project, ArchiveLayout.archiveId(zipPath), Files.size(zipPath)));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean delete(String project, String id) throws IOException {
+        return Files.deleteIfExists(tieringService.locate(project, id));
+    }
+
+    @Override
+    public Optional<Path> localPath(String project, String id) {
+        Path zipPath = tieringService.locate(project, id);
+        return Files.exists(zipPath) ? Optional.of(zipPath) : Optional.empty();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.ConflArchReport.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Канал только для чтения поверх запросов диапазона байт (HTTP Range).
+ * Каждый промах читает не меньше minRangeBytes и запоминает последний блок: мелкие чтения подряд
+ * (конец центрального каталога, локальный заголовок и данные небольшой записи) обходятся одним запросом.
+ * Промах сразу за концом прошлого блока считается последовательным чтением, и следующий диапазон удваивается
+ * до maxRangeBytes: потоковое чтение всего архива (проверка целостности, выгрузка) делает десятки запросов, а не
+ * по запросу на minRangeBytes. Переход в другое место сбрасывает размер к minRangeBytes.
+ */
+public class RangedReadChannel implements SeekableByteChannel {
+
+    /**
+     * Чтение length байт начиная с offset (offset + length не больше размера объекта).
+     */
+    @FunctionalInterface
+    public interface RangeReader {
+        byte[] read(long offset, int length) throws IOException;
+    }
+
+    private final RangeReader reader;
+    private final long size;
+    private final int minRangeBytes;
+    private final int maxRangeBytes;
+    private int rangeBytes;
+    private long position;
+    private boolean open = true;
+
+    private byte[] block;
+    private long blockStart;
+
+    public RangedReadChannel(RangeReader reader, long size, int minRangeBytes, int maxRangeBytes) {
+        this.reader = reader;
+        this.size = size;
+        this.minRangeBytes = Math.max(1, minRangeBytes);
+        this.maxRangeBytes = Math.max(this.minRangeBytes, maxRangeBytes);
+        this.rangeBytes = this.minRangeBytes;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (block == null || position < blockStart || position >= blockStart + block.length) {
+            boolean sequential = block != null && position == blockStart + block.length;
+            rangeBytes = sequential ? (int) Math.min(maxRangeBytes, 2L * rangeBytes) : minRangeBytes;
+            int length = (int) Math.min(size - position, Math.max(dst.remaining(), rangeBytes));
+            block = reader.read(position, length);
+            blockStart = position;
+        }
+        int offset = (int) (position - blockStart);
+        int n = Math.min(dst.remaining(), block.length - offset);
+        dst.put(block, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Отрицательная позиция: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        block = null;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.ConflArchReport.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Архивы в S3-совместимом хранилище (AWS S3, MinIO): объект {app.storage.s3.prefix}{проект}/{id}.zip в бакете
+ * app.storage.s3.bucket. Чтение — GET с заголовком Range ({@link RangedReadChannel}): для выдачи одной записи
+ * читаются только конец архива с центральным каталогом и данные записи, поэтому узлы приложения не хранят архивы локально.
+ * Запросы подписываются AWS Signature V4; для MinIO и других совместимых серверов — адресация path-style.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = ArchiveStore.TYPE_S3)
+public class S3ArchiveStore implements ArchiveStore {
+
+    private static final Logger log = LoggerFactory.getLogger(S3ArchiveStore.class);
+
+    private static final String ZIP_SUFFIX = ".zip";
+
+    private final HttpClient httpClient;
+    private final S3RequestSigner signer;
+    private final String endpoint;
+    private final String bucket;
+    private final String prefix;
+    private final boolean pathStyle;
+    private final int minRangeBytes;
+    private final int maxReadAheadBytes;
+    private final Duration timeout;
+
+    public S3ArchiveStore(@Value("${app.storage.s3.endpoint:http://localhost:9000}") String endpoint,
+                          @Value("${app.storage.s3.region:us-east-1}") String region,
+                          @Value("${app.storage.s3.bucket:conflarch}") String bucket,
+                          @Value("${app.storage.s3.prefix:reports/}") String prefix,
+                          @Value("${app.storage.s3.access-key:}") String accessKey,
+                          @Value("${app.storage.s3.secret-key:}") String secretKey,
+                          @Value("${app.storage.s3.path-style:true}") boolean pathStyle,
+                          @Value("${app.storage.s3.min-range-bytes:65536}") int minRangeBytes,
+                          @Value("${app.storage.s3.max-read-ahead-bytes:8388608}") int maxReadAheadBytes,
+                          @Value("${app.storage.s3.timeout-ms:30000}") long timeoutMillis) {
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.bucket = bucket;
+        String keyPrefix = prefix == null ? "" : prefix;
+        this.prefix = keyPrefix.isEmpty() || keyPrefix.endsWith("/") ? keyPrefix : keyPrefix + "/";
+        this.pathStyle = pathStyle;
+        this.minRangeBytes = minRangeBytes;
+        this.maxReadAheadBytes = maxReadAheadBytes;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.signer = new S3RequestSigner(accessKey, secretKey, region);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public Optional<ArchiveStat> stat(String project, String id) throws IOException {
+        HttpResponse<Void> response = send(request("HEAD", key(project, id), new TreeMap<>(),
+                S3RequestSigner.EMPTY_PAYLOAD_SHA256, HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return Optional.empty();
+        }
+        expectSuccess(response, "HEAD", key(project, id));
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        Instant lastModified = response.headers().firstValue("Last-Modified")
+                .map(v -> ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant())
+                .orElse(null);
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        return Optional.of(new ArchiveStat(size, lastModified, etag));
+    }
+
+    @Override
+    public SeekableByteChannel open(String project, String id) throws IOException {
+        ArchiveStat stat = stat(project, id).orElseThrow(() -> new NoSuchFileException(location(key(project, id))));
+        return open(project, id, stat);
+    }
+
+    @Override
+    public SeekableByteChannel open(String project, String id, ArchiveStat stat) {
+        String key = key(project, id);
+        return new RangedReadChannel((offset, length) -> readRange(key, stat.version(), offset, length), stat.size(),
+                minRangeBytes, maxReadAheadBytes);
+    }
+
+    /**
+     * Диапазон объекта той версии, что вернул HEAD: If-Match по ETag, иначе после перезаписи ключа (повтор экспорта
+     * с тем же id) смещения из закэшированного каталога указывали бы в новый объект.
+     */
+    private byte[] readRange(String key, String etag, long offset, int length) throws IOException {
+        if (length == 0) {
+            return new byte[0];
+        }
+        HttpRequest.Builder builder = request("GET", key, new TreeMap<>(),
+                S3RequestSigner.EMPTY_PAYLOAD_SHA256, HttpRequest.BodyPublishers.noBody());
+        builder.header("Range", "bytes=" + offset + "-" + (offset + length - 1));
+        if (etag != null) {
+            builder.header("If-Match", etag);
+        }
+        HttpResponse<byte[]> response = send(builder, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 404) {
+            throw new NoSuchFileException(location(key));
+        }
+        if (response.statusCode() == 412) {
+            throw new IOException("S3 GET " + key + ": объект заменён после чтения (ETag " + etag + " не совпадает)");
+        }
+        expectSuccess(response, "GET", key);
+        if (response.statusCode() != 206) {
+            // 200 на запрос диапазона — сервер проигнорировал Range; весь объект в память не читаем
+            throw new IOException("S3 GET " + key + ": на запрос диапазона получен HTTP " + response.statusCode()
+                    + " вместо 206");
+        }
+        byte[] body = response.body();
+        if (body.length != length) {
+            throw new IOException("S3 GET " + key + ": ожидалось " + length + " байт, получено " + body.length);
+        }
+        return body;
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile("conflarch-", ".zip.tmp");
+    }
+
+    @Override
+    public String put(String project, String id, Path source) throws IOException {
+        String key = key(project, id);
+        HttpRequest.Builder builder = request("PUT", key, new TreeMap<>(),
+                S3RequestSigner.UNSIGNED_PAYLOAD, HttpRequest.BodyPublishers.ofFile(source));
+        builder.header("Content-Type", "application/zip");
+        expectSuccess(send(builder, HttpResponse.BodyHandlers.discarding()), "PUT", key);
+        // Только после успешной загрузки: при ошибке файл может быть единственной копией (ingest --move)
+        Files.deleteIfExists(source);
+        return location(key);
+    }
+
+    @Override
+    public List<StoredArchive> list() throws IOException {
+        List<StoredArchive> result = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            SortedMap<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (continuationToken != null) {
+                query.put("continuation-token", continuationToken);
+            }
+            HttpResponse<InputStream> response = send(request("GET", "", query,
+                    S3RequestSigner.EMPTY_PAYLOAD_SHA256, HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() / 100 != 2) {
+                    throw new IOException("S3 LIST " + bucket + "/" + prefix + ": HTTP " + response.statusCode());
+                }
+                continuationToken = readListing(body, result);
+            }
+        } while (continuationToken != null);
+        return result;
+    }
+
+    /**
+     * Разбор ответа ListObjectsV2: ключи вида {prefix}{проект}/{id}.zip добавляются в result.
+     *
+     * @return токен следующей страницы или null
+     */
+    private String readListing(InputStream body, List<StoredArchive> result) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        String nextToken = null;
+        boolean truncated = false;
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(body);
+            String key = null;
+            long size = 0;
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (xml.getLocalName()) {
+                    case "Key" -> key = xml.getElementText();
+                    case "Size" -> {
+                        size = Long.parseLong(xml.getElementText().trim());
+                        addListed(key, size, result);
+                        key = null;
+                    }
+                    case "IsTruncated" -> truncated = Boolean.parseBoolean(xml.getElementText().trim());
+                    case "NextContinuationToken" -> nextToken = xml.getElementText();
+                    default -> { }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Некорректный ответ S3 на список объектов: " + e.getMessage(), e);
+        }
+        return truncated ? nextToken : null;
+    }
+
+    private void addListed(String key, long size, List<StoredArchive> result) {
+        if (key == null || !key.startsWith(prefix) || !key.endsWith(ZIP_SUFFIX)) {
+            return;
+        }
+        String relative = key.substring(prefix.length(), key.length() - ZIP_SUFFIX.length());
+        int slash = relative.indexOf('/');
+        if (slash <= 0 || relative.indexOf('/', slash + 1) >= 0) {
+            log.debug("Пропуск объекта вне структуры проект/id.zip: {}", key);
+            return;
+        }
+        result.add(new StoredArchive(relative.substring(0, slash), relative.substring(slash + 1), size));
+    }
+
+    @Override
+    public boolean delete(String project, String id) throws IOException {
+        if (!exists(project, id)) {
+            return false;
+        }
+        String key = key(project, id);
+        expectSuccess(send(request("DELETE", key, new TreeMap<>(), S3RequestSigner.EMPTY_PAYLOAD_SHA256,
+                HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.discarding()), "DELETE", key);
+        return true;
+    }
+
+    private String key(String project, String id) {
+        return prefix + project + "/" + id + ZIP_SUFFIX;
+    }
+
+    private String location(String key) {
+        return "s3://" + bucket + "/" + key;
+    }
+
+    /**
+     * Подписанный запрос к объекту key (пустой key — к бакету).
+     */
+    private HttpRequest.Builder request(String method, String key, SortedMap<String, String> query,
+                                        String payloadHash, HttpRequest.BodyPublisher body) {
+        String objectPath = "/" + S3RequestSigner.encode(key, false);
+        String canonicalPath;
+        String base;
+        if (pathStyle) {
+            canonicalPath = "/" + S3RequestSigner.encode(bucket, true) + (key.isEmpty() ? "/" : objectPath);
+            base = endpoint;
+        } else {
+            canonicalPath = objectPath;
+            URI endpointUri = URI.create(endpoint);
+            base = endpointUri.getScheme() + "://" + bucket + "." + endpointUri.getRawAuthority();
+        }
+        String queryString = S3RequestSigner.canonicalQuery(query);
+        URI uri = URI.create(base + canonicalPath + (queryString.isEmpty() ? "" : "?" + queryString));
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(timeout).method(method, body);
+        signer.sign(method, uri, canonicalPath, query, payloadHash).forEach(builder::header);
+        return builder;
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(builder.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Запрос к S3 прерван", e);
+        }
+    }
+
+    private static void expectSuccess(HttpResponse<?> response, String method, String key) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 " + method + " " + key + ": HTTP " + response.statusCode());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.ConflArchReport.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Классификация записей архива по расширению: уже сжатые форматы (картинки, офисные документы, архивы)
+ * хранятся без сжатия (STORED), текстовые (HTML/CSS/JS) — сжимаются сильнее.
+ * Записи без расширения (вложения в архивах, экспортированных до сохранения расширений) распознаются по сигнатуре.
+ */
+public final class ArchiveEntryTypes {
+
+    /** Форматы, которые уже сжаты — повторный deflate только тратит CPU */
+    private static final Set<String> PRECOMPRESSED_EXTENSIONS = Set.of(
+            "png", "jpg", "jpeg", "gif", "webp", "ico",
+            "woff", "woff2",
+            "pdf", "docx", "xlsx", "pptx",
+            "zip", "rar", "7z", "gz", "mp4", "mp3"
+    );
+
+    /** Текстовые форматы, для которых имеет смысл максимальный уровень deflate */
+    private static final Set<String> TEXT_EXTENSIONS = Set.of(
+            "html", "htm", "css", "js", "json", "xml", "txt", "svg", "csv", "log", "yml", "yaml"
+    );
+
+    /** Сколько первых байт записи нужно для распознавания формата по сигнатуре */
+    public static final int SIGNATURE_LENGTH = 12;
+
+    private ArchiveEntryTypes() {
+    }
+
+    public static boolean isPrecompressed(String entryName) {
+        return PRECOMPRESSED_EXTENSIONS.contains(extension(entryName));
+    }
+
+    /**
+     * Уже сжатый формат по расширению, а для имени без расширения — по первым байтам содержимого.
+     */
+    public static boolean isPrecompressed(String entryName, byte[] data) {
+        if (isPrecompressed(entryName)) {
+            return true;
+        }
+        return extension(entryName).isEmpty() && data != null && hasCompressedSignature(data, data.length);
+    }
+
+    /**
+     * То же для записи открытого архива: сигнатура читается (для DEFLATED — распаковывается) только у записей без расширения.
+     */
+    public static boolean isPrecompressed(ZipFile zip, ZipEntry entry) throws IOException {
+        if (isPrecompressed(entry.getName())) {
+            return true;
+        }
+        if (entry.isDirectory() || !extension(entry.getName()).isEmpty()) {
+            return false;
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            byte[] head = in.readNBytes(SIGNATURE_LENGTH);
+            return hasCompressedSignature(head, head.length);
+        }
+    }
+
+    /**
+     * Сигнатуры сжатых форматов: PNG, JPEG, GIF, WebP, PDF, zip (в том числе docx/xlsx/pptx), gzip, 7z, rar, MP4.
+     */
+    public static boolean hasCompressedSignature(byte[] head, int length) {
+        return startsWith(head, length, 0, 0x89, 'P', 'N', 'G')
+                || startsWith(head, length, 0, 0xFF, 0xD8, 0xFF)
+                || startsWith(head, length, 0, 'G', 'I', 'F', '8')
+                || (startsWith(head, length, 0, 'R', 'I', 'F', 'F') && startsWith(head, length, 8, 'W', 'E', 'B', 'P'))
+                || startsWith(head, length, 0, '%', 'P', 'D', 'F')
+                || startsWith(head, length, 0, 'P', 'K', 0x03, 0x04)
+                || startsWith(head, length, 0, 0x1F, 0x8B)
+                || startsWith(head, length, 0, '7', 'z', 0xBC, 0xAF)
+                || startsWith(head, length, 0, 'R', 'a', 'r', '!')
+                || startsWith(head, length, 4, 'f', 't', 'y', 'p');
+    }
+
+    private static boolean startsWith(byte[] data, int length, int offset, int... signature) {
+        if (offset + signature.length > length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((data[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isText(String entryName) {
+        return TEXT_EXTENSIONS.contains(extension(entryName));
+    }
+
+    public static boolean isHtml(String entryName) {
+        String ext = extension(entryName);
+        return "html".equals(ext) || "htm".equals(ext);
+    }
+
+    /**
+     * Кодировка имён для записи архива, прочитанного в ISO-8859-1: ISO-8859-1 сохраняет исходные байты имён,
+     * если же в именах есть символы вне Latin-1 (записи с флагом UTF-8), пишем в UTF-8.
+     */
+    public static Charset nameCharset(Collection<String> entryNames) {
+        for (String name : entryNames) {
+            for (int i = 0; i < name.length(); i++) {
+                if (name.charAt(i) > 0xFF) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.ISO_8859_1;
+    }
+
+    /**
+     * Расширение имени файла в нижнем регистре (без точки) или пустая строка.
+     */
+    public static String extension(String entryName) {
+        if (entryName == null) {
+            return "";
+        }
+        int slash = entryName.lastIndexOf('/');
+        int dot = entryName.lastIndexOf('.');
+        if (dot < 0 || dot < slash) {
+            return "";
+        }
+        return entryName.substring(dot + 1).toLowerCase();
+    }
+}
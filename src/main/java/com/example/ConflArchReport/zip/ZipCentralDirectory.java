@@ -0,0 +1,170 @@
+package com.example.ConflArchReport.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Чтение центрального каталога zip без распаковки: имя, метод сжатия, размеры, CRC и смещение локального заголовка.
+ * Нужен для выдачи STORED-записей напрямую из файла (смещение данных внутри архива).
+ * Zip64 не поддерживается — для таких архивов бросается {@link Zip64Exception}, вызывающий код использует обычное чтение.
+ */
+public final class ZipCentralDirectory {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int FLAG_UTF8 = 0x800;
+
+    public static final int METHOD_STORED = 0;
+
+    public record Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public boolean isStored() {
+            return method == METHOD_STORED;
+        }
+    }
+
+    /**
+     * Архив в формате Zip64 — центральный каталог этим классом не читается.
+     */
+    public static class Zip64Exception extends IOException {
+        public Zip64Exception() {
+            super("Zip64 не поддерживается");
+        }
+    }
+
+    private final List<Entry> entries;
+    /** Записи по нормализованному пути (без ведущего слеша, с прямыми слешами); при повторах — первая */
+    private final Map<String, Entry> byPath;
+
+    private ZipCentralDirectory(List<Entry> entries) {
+        this.entries = entries;
+        this.byPath = new HashMap<>(entries.size() * 2);
+        for (Entry e : entries) {
+            if (!e.isDirectory()) {
+                byPath.putIfAbsent(normalize(e.name()), e);
+            }
+        }
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Поиск записи по пути (обратные слеши и ведущий слеш в имени записи не учитываются).
+     */
+    public Optional<Entry> find(String normalizedPath) {
+        return Optional.ofNullable(byPath.get(normalizedPath));
+    }
+
+    private static String normalize(String entryName) {
+        String name = entryName.replace('\\', '/');
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+
+    /**
+     * Читает центральный каталог архива.
+     *
+     * @param channel канал архива
+     * @param charset кодировка имён для записей без флага UTF-8
+     */
+    public static ZipCentralDirectory read(SeekableByteChannel channel, Charset charset) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < EOCD_MIN_SIZE) {
+            throw new IOException("Файл слишком мал для zip: " + fileSize + " байт");
+        }
+        int tailSize = (int) Math.min(fileSize, EOCD_MIN_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = readFully(channel, fileSize - tailSize, tailSize);
+
+        int eocd = -1;
+        for (int i = tailSize - EOCD_MIN_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new IOException("Не найден конец центрального каталога (EOCD)");
+        }
+        int totalEntries = Short.toUnsignedInt(tail.getShort(eocd + 10));
+        long cenSize = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+        long cenOffset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+        if (totalEntries == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL) {
+            throw new Zip64Exception();
+        }
+        if (cenOffset + cenSize > fileSize) {
+            throw new IOException("Центральный каталог выходит за границы файла");
+        }
+
+        ByteBuffer cen = readFully(channel, cenOffset, (int) cenSize);
+        List<Entry> entries = new ArrayList<>(totalEntries);
+        int pos = 0;
+        for (int i = 0; i < totalEntries; i++) {
+            if (pos + CEN_HEADER_SIZE > cenSize || cen.getInt(pos) != CEN_SIGNATURE) {
+                throw new IOException("Повреждён центральный каталог (запись " + i + ")");
+            }
+            int flags = Short.toUnsignedInt(cen.getShort(pos + 8));
+            int method = Short.toUnsignedInt(cen.getShort(pos + 10));
+            long crc = Integer.toUnsignedLong(cen.getInt(pos + 16));
+            long compressedSize = Integer.toUnsignedLong(cen.getInt(pos + 20));
+            long size = Integer.toUnsignedLong(cen.getInt(pos + 24));
+            int nameLen = Short.toUnsignedInt(cen.getShort(pos + 28));
+            int extraLen = Short.toUnsignedInt(cen.getShort(pos + 30));
+            int commentLen = Short.toUnsignedInt(cen.getShort(pos + 32));
+            long localOffset = Integer.toUnsignedLong(cen.getInt(pos + 42));
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                throw new Zip64Exception();
+            }
+            byte[] nameBytes = new byte[nameLen];
+            cen.get(pos + CEN_HEADER_SIZE, nameBytes);
+            String name = new String(nameBytes, (flags & FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : charset);
+            entries.add(new Entry(name, method, crc, compressedSize, size, localOffset));
+            pos += CEN_HEADER_SIZE + nameLen + extraLen + commentLen;
+        }
+        return new ZipCentralDirectory(Collections.unmodifiableList(entries));
+    }
+
+    /**
+     * Смещение начала данных записи в файле (после локального заголовка, длина extra в котором может отличаться от центрального).
+     */
+    public static long dataOffset(SeekableByteChannel channel, Entry entry) throws IOException {
+        ByteBuffer loc = readFully(channel, entry.localHeaderOffset(), LOC_HEADER_SIZE);
+        if (loc.getInt(0) != LOC_SIGNATURE) {
+            throw new IOException("Повреждён локальный заголовок записи " + entry.name());
+        }
+        int nameLen = Short.toUnsignedInt(loc.getShort(26));
+        int extraLen = Short.toUnsignedInt(loc.getShort(28));
+        return entry.localHeaderOffset() + LOC_HEADER_SIZE + nameLen + extraLen;
+    }
+
+    private static ByteBuffer readFully(SeekableByteChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Неожиданный конец zip-файла");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
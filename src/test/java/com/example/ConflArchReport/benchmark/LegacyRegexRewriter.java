@@ -0,0 +1,55 @@
+package com.example.ConflArchReport.benchmark;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Прежняя перезапись ссылок экспорта (rewriteAttachmentUrlsInHtml до {@link com.example.ConflArchReport.confluence.ConfluenceHtmlRewriter}):
+ * регулярное выражение по всей странице и StringBuffer. Заменяла только /download/attachments/...;
+ * оставлена без изменений как точка отсчёта для HtmlRewriteBenchmark (src/jmh/java) и эталон для
+ * {@link LegacyRegexRewriterEquivalenceTest}.
+ */
+final class LegacyRegexRewriter {
+
+    private static final Pattern DOWNLOAD_LINK = Pattern.compile(
+            "(?i)(href|src)=[\"']([^\"']*?/download/attachments/)(\\d+)/([^\"'?]+)([^\"']*)[\"']");
+
+    private final Map<String, String> attachmentUrlToZipPath;
+
+    LegacyRegexRewriter(Map<String, String> attachmentUrlToZipPath) {
+        this.attachmentUrlToZipPath = attachmentUrlToZipPath;
+    }
+
+    String rewrite(String html) {
+        Matcher m = DOWNLOAD_LINK.matcher(html);
+        StringBuffer sb = new StringBuffer(html.length());
+        while (m.find()) {
+            String attr = m.group(1);
+            String pid = m.group(3);
+            String filename = m.group(4);
+            String key = pid + "/" + filename;
+            String keyDecoded;
+            try {
+                keyDecoded = pid + "/" + URLDecoder.decode(filename.replace('+', ' '), StandardCharsets.UTF_8);
+            } catch (Exception ignored) {
+                keyDecoded = key;
+            }
+            String zipPath = attachmentUrlToZipPath.get(key);
+            if (zipPath == null) zipPath = attachmentUrlToZipPath.get(keyDecoded);
+            if (zipPath == null) zipPath = attachmentUrlToZipPath.get(pid + "/" + sanitizeFilename(filename));
+            if (zipPath != null) {
+                m.appendReplacement(sb, Matcher.quoteReplacement(attr + "=\"" + zipPath + "\""));
+            }
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    static String sanitizeFilename(String name) {
+        if (name == null) return "page";
+        return name.replaceAll("[^a-zA-Z0-9а-яА-ЯёЁ\\s_-]", "_").replaceAll("\\s+", "_");
+    }
+}
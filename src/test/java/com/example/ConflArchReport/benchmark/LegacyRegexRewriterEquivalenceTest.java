@@ -0,0 +1,63 @@
+package com.example.ConflArchReport.benchmark;
+
+import com.example.ConflArchReport.confluence.ConfluenceHtmlRewriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Токенизатор {@link ConfluenceHtmlRewriter} переписывает ссылки на вложения так же, как прежняя regex-версия
+ * ({@link LegacyRegexRewriter}), на синтетических страницах бенчмарка.
+ */
+class LegacyRegexRewriterEquivalenceTest {
+
+    /** href/src и производные вроде data-image-src; синтетические страницы используют только двойные кавычки */
+    private static final Pattern LINK_ATTRIBUTE = Pattern.compile("(?i)[\\w-]*(?:href|src)=\"([^\"]*)\"");
+
+    @ParameterizedTest
+    @ValueSource(ints = {50_000, 500_000})
+    void rewritesAttachmentLinksLikeLegacyRegex(int pageChars) {
+        String html = SyntheticPages.page(pageChars);
+        // Только вложения: карты страниц и статики пусты
+        ConfluenceHtmlRewriter rewriter = new ConfluenceHtmlRewriter(
+                SyntheticPages.attachmentPaths(), Map.of(), Map.of(), Map.of(), SyntheticPages.CONFLUENCE_BASE);
+        List<String> original = linkValues(html);
+        List<String> rewritten = linkValues(rewriter.rewrite(html));
+        List<String> legacy = linkValues(new LegacyRegexRewriter(SyntheticPages.attachmentPaths()).rewrite(html));
+
+        assertThat(rewritten).hasSameSizeAs(original);
+        assertThat(legacy).hasSameSizeAs(original);
+        int attachmentLinks = 0;
+        for (int i = 0; i < original.size(); i++) {
+            if (original.get(i).contains("/download/attachments/")) {
+                attachmentLinks++;
+                assertThat(rewritten.get(i)).as("ссылка %s", original.get(i)).isEqualTo(legacy.get(i)).startsWith("attachments/");
+            }
+        }
+        assertThat(attachmentLinks).isPositive();
+    }
+
+    @Test
+    void sanitizesTitlesLikeLegacyRegex() {
+        for (String title : SyntheticPages.titles()) {
+            assertThat(ConfluenceHtmlRewriter.sanitizeFilename(title)).isEqualTo(LegacyRegexRewriter.sanitizeFilename(title));
+        }
+    }
+
+    private static List<String> linkValues(String html) {
+        List<String> values = new ArrayList<>();
+        Matcher m = LINK_ATTRIBUTE.matcher(html);
+        while (m.find()) {
+            values.add(m.group(1));
+        }
+        return values;
+    }
+}
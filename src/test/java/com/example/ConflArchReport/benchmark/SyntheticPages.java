@@ -0,0 +1,146 @@
+package com.example.ConflArchReport.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Синтетические страницы в духе export_view Confluence: абзацы, таблицы, картинки-вложения, миниатюры,
+ * ссылки на другие страницы (viewpage.action, /display/..., /spaces/...) и статика (/s/..., /images/icons/...).
+ * Генерация детерминирована (фиксированный seed), чтобы результаты прогонов были сравнимы.
+ * Лежит в тестовых исходниках: используется и бенчмарками (профиль jmh добавляет src/jmh/java к ним), и тестами.
+ */
+final class SyntheticPages {
+
+    static final String CONFLUENCE_BASE = "https://confluence.example.com/confluence";
+    static final String PAGE_ID = "123456";
+    static final int ATTACHMENT_COUNT = 40;
+    static final int LINKED_PAGE_COUNT = 20;
+
+    private static final String[] WORDS = {
+            "нагрузочное", "тестирование", "отчёт", "response", "time", "throughput", "сценарий", "профиль",
+            "latency", "p99", "ошибки", "сервис", "база", "данных", "очередь", "kafka", "ресурсы", "CPU"
+    };
+
+    private SyntheticPages() {
+    }
+
+    /**
+     * Страница примерно заданного размера (в символах).
+     */
+    static String page(int approxChars) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(approxChars + 4096);
+        sb.append("<!DOCTYPE html>\n<html>\n<head><meta charset=\"UTF-8\"><title>Заключение НТ</title>")
+                .append("<link rel=\"stylesheet\" href=\"/confluence/s/d41d8cd98f00/7901/_/styles/colors.css\"></head>\n<body>");
+        int block = 0;
+        while (sb.length() < approxChars) {
+            switch (block++ % 5) {
+                case 0 -> {
+                    sb.append("<h2 id=\"section-").append(block).append("\" class=\"auto-cursor-target\">Раздел ")
+                            .append(block).append("</h2>\n<p data-mce-style=\"x\" style=\"margin-left: 10px ;\">");
+                    appendWords(sb, random, 60);
+                    sb.append("</p>\n");
+                }
+                case 1 -> {
+                    int att = random.nextInt(ATTACHMENT_COUNT);
+                    sb.append("<p><span class=\"confluence-embedded-file-wrapper\"><img class=\"confluence-embedded-image\" ")
+                            .append("src=\"/confluence/download/thumbnails/").append(PAGE_ID).append("/graph_").append(att)
+                            .append(".png?version=1&amp;modificationDate=1700000000000&amp;api=v2\" ")
+                            .append("data-image-src=\"/confluence/download/attachments/").append(PAGE_ID).append("/graph_").append(att)
+                            .append(".png?version=1&amp;modificationDate=1700000000000&amp;api=v2\" data-linked-resource-id=\"")
+                            .append(900000 + att).append("\"></span></p>\n");
+                }
+                case 2 -> {
+                    sb.append("<div class=\"table-wrap\"><table class=\"confluenceTable\"><tbody>");
+                    for (int row = 0; row < 8; row++) {
+                        sb.append("<tr>");
+                        for (int col = 0; col < 5; col++) {
+                            sb.append("<td class=\"confluenceTd\">").append(random.nextInt(10_000)).append(" ms</td>");
+                        }
+                        sb.append("</tr>");
+                    }
+                    sb.append("</tbody></table></div>\n");
+                }
+                case 3 -> {
+                    int linked = random.nextInt(LINKED_PAGE_COUNT);
+                    sb.append("<p>См. <a href=\"/confluence/pages/viewpage.action?pageId=").append(200000 + linked)
+                            .append("\">дочернюю страницу</a>, <a href=\"/confluence/display/PERF/").append(pageTitle(linked))
+                            .append("#details\">раздел</a> и <a href=\"https://jira.example.com/browse/PERF-")
+                            .append(random.nextInt(1000)).append("\">задачу</a>.")
+                            .append("<img class=\"emoticon\" src=\"/confluence/images/icons/emoticons/smile.svg\" alt=\"(smile)\"></p>\n");
+                }
+                default -> {
+                    sb.append("<p><a href=\"/confluence/download/attachments/").append(PAGE_ID).append("/report%20")
+                            .append(random.nextInt(ATTACHMENT_COUNT)).append(".xlsx?api=v2\">отчёт.xlsx</a>  \n\n  ");
+                    appendWords(sb, random, 30);
+                    sb.append("</p>\n<!-- комментарий редактора -->\n");
+                }
+            }
+        }
+        sb.append("</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Карта вложений в формате ConfluenceArchiveService: "pageId/имя" → путь в zip.
+     */
+    static Map<String, String> attachmentPaths() {
+        Map<String, String> paths = new HashMap<>();
+        for (int i = 0; i < ATTACHMENT_COUNT; i++) {
+            paths.put(PAGE_ID + "/graph_" + i + ".png", "attachments/" + (900000 + i) + "_graph_" + i + ".png");
+            paths.put(PAGE_ID + "/report " + i + ".xlsx", "attachments/" + (950000 + i) + "_report " + i + ".xlsx");
+        }
+        return paths;
+    }
+
+    static Map<String, String> pageFilesById() {
+        Map<String, String> files = new HashMap<>();
+        files.put(PAGE_ID, "index.html");
+        for (int i = 0; i < LINKED_PAGE_COUNT; i++) {
+            files.put(String.valueOf(200000 + i), pageTitle(i) + ".html");
+        }
+        return files;
+    }
+
+    static Map<String, String> pageFilesByTitle() {
+        Map<String, String> files = new HashMap<>();
+        for (int i = 0; i < LINKED_PAGE_COUNT; i++) {
+            files.put(pageTitle(i), pageTitle(i) + ".html");
+        }
+        return files;
+    }
+
+    static Map<String, String> assetUrls() {
+        return Map.of(
+                "/s/d41d8cd98f00/7901/_/styles/colors.css", "/_assets/0123456789abcdef0123456789abcdef.css",
+                "/images/icons/emoticons/smile.svg", "/_assets/fedcba9876543210fedcba9876543210.svg"
+        );
+    }
+
+    /**
+     * Заголовки страниц/вложений, типичные для отчётов НТ: кириллица, пробелы, спецсимволы.
+     */
+    static String[] titles() {
+        return new String[]{
+                "Заключение НТ по релизу 2.14",
+                "Профиль нагрузки: 100% (пик) / 50% (стаб.)",
+                "graph_response_time_p99.png",
+                "Отчёт <JMeter> \"итог\" * final?.xlsx",
+                "Результаты теста стабильности 24ч — сервис платежей",
+        };
+    }
+
+    private static String pageTitle(int i) {
+        return "Результаты теста " + i;
+    }
+
+    private static void appendWords(StringBuilder sb, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+    }
+}
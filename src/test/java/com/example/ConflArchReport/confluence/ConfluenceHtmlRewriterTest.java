@@ -0,0 +1,139 @@
+package com.example.ConflArchReport.confluence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConfluenceHtmlRewriterTest {
+
+    private static final String BASE = "https://confluence.example.com/confluence";
+
+    private final ConfluenceHtmlRewriter rewriter = new ConfluenceHtmlRewriter(
+            Map.of("123/graph.png", "attachments/901_graph.png",
+                    "123/report final.xlsx", "attachments/902_report_final.xlsx",
+                    "123/Отчёт_итог.pdf", "attachments/903_Отчёт_итог.pdf"),
+            Map.of("123", "index.html", "200", "child.html"),
+            Map.of("Результаты теста", "results.html"),
+            Map.of("/s/abc/_/styles/main.css?a=1&b=2", "/_assets/main.css",
+                    "/images/icons/emoticons/smile.svg", "/_assets/smile.svg"),
+            BASE);
+
+    @Test
+    void rewritesAttachmentLinks() {
+        assertThat(rewriter.rewrite("<a href=\"/confluence/download/attachments/123/graph.png?version=1&amp;api=v2\">x</a>"))
+                .isEqualTo("<a href=\"attachments/901_graph.png\">x</a>");
+        assertThat(rewriter.rewrite("<a href=\"" + BASE + "/download/attachments/123/graph.png\">x</a>"))
+                .isEqualTo("<a href=\"attachments/901_graph.png\">x</a>");
+    }
+
+    @Test
+    void rewritesThumbnailsToAttachments() {
+        assertThat(rewriter.rewrite("<img src=\"/confluence/download/thumbnails/123/graph.png?api=v2\">"))
+                .isEqualTo("<img src=\"attachments/901_graph.png\">");
+    }
+
+    @Test
+    void matchesEncodedAndSanitizedAttachmentNames() {
+        assertThat(rewriter.rewrite("<a href=\"/confluence/download/attachments/123/report%20final.xlsx\">"))
+                .isEqualTo("<a href=\"attachments/902_report_final.xlsx\">");
+        assertThat(rewriter.rewrite("<a href=\"/confluence/download/attachments/123/report+final.xlsx\">"))
+                .isEqualTo("<a href=\"attachments/902_report_final.xlsx\">");
+        assertThat(rewriter.rewrite("<a href=\"/confluence/download/attachments/123/Отчёт итог.pdf\">"))
+                .isEqualTo("<a href=\"attachments/903_Отчёт_итог.pdf\">");
+    }
+
+    @Test
+    void leavesUnknownAttachmentsAndForeignPagesUntouched() {
+        String html = "<a href=\"/confluence/download/attachments/123/missing.png\">"
+                + "<a href=\"/confluence/download/attachments/abc/graph.png\">"
+                + "<a href=\"/confluence/pages/viewpage.action?pageId=999\">"
+                + "<a href=\"https://jira.example.com/browse/PERF-1\">";
+        assertThat(rewriter.rewrite(html)).isEqualTo(html);
+    }
+
+    @Test
+    void rewritesUnquotedAndSingleQuotedValues() {
+        assertThat(rewriter.rewrite("<img src=/confluence/download/attachments/123/graph.png alt=x>"))
+                .isEqualTo("<img src=\"attachments/901_graph.png\" alt=x>");
+        assertThat(rewriter.rewrite("<img src='/confluence/download/attachments/123/graph.png'>"))
+                .isEqualTo("<img src=\"attachments/901_graph.png\">");
+        assertThat(rewriter.rewrite("<img SRC = \"/confluence/download/attachments/123/graph.png\">"))
+                .isEqualTo("<img SRC=\"attachments/901_graph.png\">");
+    }
+
+    @Test
+    void rewritesDataSrcAttributes() {
+        assertThat(rewriter.rewrite("<img class=\"confluence-embedded-image\" "
+                + "data-image-src=\"/confluence/download/attachments/123/graph.png?version=1&amp;api=v2\" data-linked-resource-id=\"901\">"))
+                .isEqualTo("<img class=\"confluence-embedded-image\" "
+                        + "data-image-src=\"attachments/901_graph.png\" data-linked-resource-id=\"901\">");
+    }
+
+    @Test
+    void rewritesPageLinks() {
+        assertThat(rewriter.rewrite("<a href=\"/confluence/pages/viewpage.action?spaceKey=PERF&amp;pageId=200#section\">"))
+                .isEqualTo("<a href=\"child.html#section\">");
+        assertThat(rewriter.rewrite("<a href=\"/confluence/spaces/PERF/pages/200/Child+page\">"))
+                .isEqualTo("<a href=\"child.html\">");
+        assertThat(rewriter.rewrite("<a href=\"/confluence/display/PERF/%D0%A0%D0%B5%D0%B7%D1%83%D0%BB%D1%8C%D1%82%D0%B0%D1%82%D1%8B+%D1%82%D0%B5%D1%81%D1%82%D0%B0#details\">"))
+                .isEqualTo("<a href=\"results.html#details\">");
+    }
+
+    @Test
+    void skipsScriptStyleAndComments() {
+        String script = "<script>var img = '<img src=\"/confluence/download/attachments/123/graph.png\">';</script>";
+        String style = "<STYLE>.a { background: url('/confluence/download/attachments/123/graph.png'); } <a href=\"x\"></STYLE>";
+        String comment = "<!-- <img src=\"/confluence/download/attachments/123/graph.png\"> -->";
+        String after = "<img src=\"/confluence/download/attachments/123/graph.png\">";
+        assertThat(rewriter.rewrite(script + style + comment + after))
+                .isEqualTo(script + style + comment + "<img src=\"attachments/901_graph.png\">");
+    }
+
+    @Test
+    void rewritesAndCollectsAssets() {
+        String html = "<link rel=\"stylesheet\" href=\"/confluence/s/abc/_/styles/main.css?b=2&amp;a=1\">"
+                + "<img src=\"" + BASE + "/images/icons/emoticons/smile.svg\">"
+                + "<img src=\"/confluence/s/abc/_/images/unknown.png\">"
+                + "<img src=\"//cdn.example.com/s/abc/lib.js\">"
+                + "<img src=\"https://other.example.com/confluence/s/abc/lib.js\">";
+        assertThat(rewriter.findAssetPaths(html)).isEqualTo(Set.of(
+                "/s/abc/_/styles/main.css?a=1&b=2", "/images/icons/emoticons/smile.svg", "/s/abc/_/images/unknown.png"));
+        assertThat(rewriter.rewrite(html)).isEqualTo(
+                "<link rel=\"stylesheet\" href=\"/_assets/main.css\">"
+                        + "<img src=\"/_assets/smile.svg\">"
+                        + "<img src=\"/confluence/s/abc/_/images/unknown.png\">"
+                        + "<img src=\"//cdn.example.com/s/abc/lib.js\">"
+                        + "<img src=\"https://other.example.com/confluence/s/abc/lib.js\">");
+    }
+
+    @Test
+    void ignoresAssetsOutsideContextPath() {
+        assertThat(rewriter.findAssetPaths("<img src=\"/s/abc/lib.js\"><img src=\"/confluence/other/s/x.css\">")).isEmpty();
+    }
+
+    @Test
+    void normalizesAssetPath() {
+        assertThat(ConfluenceHtmlRewriter.normalizeAssetPath("/s/x.css")).isEqualTo("/s/x.css");
+        assertThat(ConfluenceHtmlRewriter.normalizeAssetPath("/s/x.css?b=2&a=1")).isEqualTo("/s/x.css?a=1&b=2");
+        assertThat(ConfluenceHtmlRewriter.normalizeAssetPath("/s/x.css?a=1#top")).isEqualTo("/s/x.css?a=1");
+        assertThat(ConfluenceHtmlRewriter.normalizeAssetPath("/s/x.css?")).isEqualTo("/s/x.css");
+        assertThat(ConfluenceHtmlRewriter.normalizeAssetPath("/s/x.css?&&media=print&")).isEqualTo("/s/x.css?media=print");
+        assertThat(ConfluenceHtmlRewriter.normalizeAssetPath("/s/x.css#top")).isEqualTo("/s/x.css");
+        // Кодирование параметров не меняется
+        assertThat(ConfluenceHtmlRewriter.normalizeAssetPath("/s/batch.js?locale=ru-RU&name=a%20b"))
+                .isEqualTo("/s/batch.js?locale=ru-RU&name=a%20b");
+    }
+
+    @Test
+    void sanitizesAttachmentFilenameKeepingExtension() {
+        assertThat(ConfluenceHtmlRewriter.sanitizeAttachmentFilename("Отчёт <JMeter> итог.xlsx")).isEqualTo("Отчёт__JMeter__итог.xlsx");
+        assertThat(ConfluenceHtmlRewriter.sanitizeAttachmentFilename("data")).isEqualTo("data");
+        assertThat(ConfluenceHtmlRewriter.sanitizeAttachmentFilename(".hidden")).isEqualTo("_hidden");
+        assertThat(ConfluenceHtmlRewriter.sanitizeAttachmentFilename("archive.tar gz")).isEqualTo("archive_tar_gz");
+        assertThat(ConfluenceHtmlRewriter.sanitizeFilename("a  \t b")).isEqualTo("a_b");
+        assertThat(ConfluenceHtmlRewriter.sanitizeFilename(null)).isEqualTo("page");
+    }
+}
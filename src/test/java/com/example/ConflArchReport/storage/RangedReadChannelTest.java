@@ -0,0 +1,128 @@
+package com.example.ConflArchReport.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RangedReadChannelTest {
+
+    private static final int KB = 1024;
+
+    private final byte[] object = randomBytes(200 * KB);
+    /** Запрошенные диапазоны: {offset, length} */
+    private final List<long[]> ranges = new ArrayList<>();
+
+    private RangedReadChannel channel(int minRangeBytes, int maxRangeBytes) {
+        return new RangedReadChannel((offset, length) -> {
+            ranges.add(new long[]{offset, length});
+            return Arrays.copyOfRange(object, (int) offset, (int) offset + length);
+        }, object.length, minRangeBytes, maxRangeBytes);
+    }
+
+    @Test
+    void smallReadsWithinBlockUseOneRange() throws IOException {
+        RangedReadChannel channel = channel(4 * KB, 32 * KB);
+        ByteBuffer header = ByteBuffer.allocate(30);
+        channel.position(1000).read(header);
+        channel.position(1030).read(ByteBuffer.allocate(100));
+        channel.position(1000 + 4 * KB - 1).read(ByteBuffer.allocate(1));
+
+        assertThat(ranges).hasSize(1);
+        assertThat(ranges.get(0)).containsExactly(1000, 4 * KB);
+        assertThat(header.array()).isEqualTo(Arrays.copyOfRange(object, 1000, 1030));
+    }
+
+    @Test
+    void sequentialReadDoublesRangeUpToMax() throws IOException {
+        RangedReadChannel channel = channel(4 * KB, 32 * KB);
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(KB);
+        while (channel.read(buffer.clear()) > 0) {
+            read.write(buffer.array(), 0, buffer.position());
+        }
+
+        assertThat(read.toByteArray()).isEqualTo(object);
+        assertThat(ranges).extracting(r -> r[1]).startsWith(4L * KB, 8L * KB, 16L * KB, 32L * KB, 32L * KB);
+        assertThat(ranges).extracting(r -> r[1]).allMatch(length -> length <= 32 * KB);
+        // 4 + 8 + 16 = 28 КБ, затем по 32 КБ: 172 КБ — ещё 6 запросов, последний укорочен до конца объекта
+        assertThat(ranges).hasSize(9);
+        long[] last = ranges.get(ranges.size() - 1);
+        assertThat(last[0] + last[1]).isEqualTo(object.length);
+    }
+
+    @Test
+    void seekResetsRangeToMin() throws IOException {
+        RangedReadChannel channel = channel(4 * KB, 32 * KB);
+        ByteBuffer buffer = ByteBuffer.allocate(KB);
+        for (int i = 0; i < 12; i++) {
+            channel.read(buffer.clear());
+        }
+        channel.position(150 * KB).read(buffer.clear());
+
+        assertThat(ranges.get(ranges.size() - 1)).containsExactly(150 * KB, 4 * KB);
+    }
+
+    @Test
+    void largeReadFetchesWholeBuffer() throws IOException {
+        RangedReadChannel channel = channel(4 * KB, 32 * KB);
+        ByteBuffer buffer = ByteBuffer.allocate(64 * KB);
+        assertThat(channel.position(10).read(buffer)).isEqualTo(64 * KB);
+
+        assertThat(ranges).hasSize(1);
+        assertThat(ranges.get(0)).containsExactly(10, 64 * KB);
+        assertThat(buffer.array()).isEqualTo(Arrays.copyOfRange(object, 10, 10 + 64 * KB));
+    }
+
+    @Test
+    void endOfObject() throws IOException {
+        RangedReadChannel channel = channel(4 * KB, 32 * KB);
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        assertThat(channel.position(object.length - 10).read(buffer)).isEqualTo(10);
+        assertThat(ranges.get(0)).containsExactly(object.length - 10, 10);
+        assertThat(channel.read(buffer.clear())).isEqualTo(-1);
+        assertThat(channel.position(object.length + 5).read(buffer.clear())).isEqualTo(-1);
+        assertThat(channel.read(ByteBuffer.allocate(0))).isEqualTo(-1);
+        assertThat(channel.position(0).read(ByteBuffer.allocate(0))).isZero();
+        assertThat(ranges).hasSize(1);
+    }
+
+    @Test
+    void readOnlyAndClosed() throws IOException {
+        RangedReadChannel channel = channel(4 * KB, 32 * KB);
+        assertThat(channel.size()).isEqualTo(object.length);
+        assertThatThrownBy(() -> channel.write(ByteBuffer.allocate(1))).isInstanceOf(NonWritableChannelException.class);
+        assertThatThrownBy(() -> channel.truncate(0)).isInstanceOf(NonWritableChannelException.class);
+        assertThatThrownBy(() -> channel.position(-1)).isInstanceOf(IllegalArgumentException.class);
+
+        channel.close();
+        assertThat(channel.isOpen()).isFalse();
+        assertThatThrownBy(() -> channel.read(ByteBuffer.allocate(1))).isInstanceOf(ClosedChannelException.class);
+        assertThatThrownBy(channel::size).isInstanceOf(ClosedChannelException.class);
+    }
+
+    @Test
+    void readerErrorsPropagate() {
+        RangedReadChannel channel = new RangedReadChannel((offset, length) -> {
+            throw new IOException("объект заменён");
+        }, 100, 16, 64);
+        assertThatThrownBy(() -> channel.read(ByteBuffer.allocate(10))).isInstanceOf(IOException.class)
+                .hasMessage("объект заменён");
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(7).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.ConflArchReport.zip;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZipCentralDirectoryTest {
+
+    private static final Charset CP866 = Charset.forName("IBM866");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsEntriesAndLocatesStoredData() throws IOException {
+        byte[] image = new byte[10_000];
+        new Random(1).nextBytes(image);
+        Path zip = dir.resolve("a.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            zos.setComment("комментарий архива");
+            deflated(zos, "index.html", "<html>страница</html>".repeat(100).getBytes(StandardCharsets.UTF_8));
+            zos.putNextEntry(new ZipEntry("attachments/"));
+            zos.closeEntry();
+            ZipEntry entry = stored("attachments/901_graph.png", image);
+            // extra в локальном заголовке сдвигает начало данных относительно центрального каталога
+            entry.setExtra(new byte[]{(byte) 0xCA, (byte) 0xFE, 4, 0, 1, 2, 3, 4});
+            zos.putNextEntry(entry);
+            zos.write(image);
+            zos.closeEntry();
+        }
+
+        try (FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ)) {
+            ZipCentralDirectory directory = ZipCentralDirectory.read(channel, StandardCharsets.UTF_8);
+            assertThat(directory.entries()).extracting(ZipCentralDirectory.Entry::name)
+                    .containsExactly("index.html", "attachments/", "attachments/901_graph.png");
+            assertThat(directory.find("attachments/")).isEmpty();
+            assertThat(directory.find("index.html")).get().extracting(ZipCentralDirectory.Entry::isStored).isEqualTo(false);
+
+            ZipCentralDirectory.Entry png = directory.find("attachments/901_graph.png").orElseThrow();
+            assertThat(png.isStored()).isTrue();
+            assertThat(png.size()).isEqualTo(image.length);
+            assertThat(png.compressedSize()).isEqualTo(image.length);
+            assertThat(png.crc()).isEqualTo(crc(image));
+
+            long offset = ZipCentralDirectory.dataOffset(channel, png);
+            ByteBuffer data = ByteBuffer.allocate(image.length);
+            channel.read(data, offset);
+            assertThat(data.array()).isEqualTo(image);
+        }
+    }
+
+    @Test
+    void decodesNamesWithoutUtf8FlagInGivenCharsetAndNormalizesPaths() throws IOException {
+        Path zip = dir.resolve("cp866.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip), CP866)) {
+            deflated(zos, "Отчёт.html", new byte[]{1});
+            deflated(zos, "\\docs\\readme.txt", new byte[]{2});
+            deflated(zos, "/root.txt", new byte[]{3});
+        }
+        try (FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ)) {
+            ZipCentralDirectory directory = ZipCentralDirectory.read(channel, CP866);
+            assertThat(directory.find("Отчёт.html")).isPresent();
+            assertThat(directory.find("docs/readme.txt")).isPresent();
+            assertThat(directory.find("root.txt")).isPresent();
+        }
+    }
+
+    @Test
+    void rejectsFilesWithoutEndOfCentralDirectory() throws IOException {
+        Path notZip = dir.resolve("not.zip");
+        Files.write(notZip, "<html>не архив</html>".repeat(10).getBytes(StandardCharsets.UTF_8));
+        Path tiny = dir.resolve("tiny.zip");
+        Files.write(tiny, new byte[]{'P', 'K'});
+        try (FileChannel channel = FileChannel.open(notZip, StandardOpenOption.READ)) {
+            assertThatThrownBy(() -> ZipCentralDirectory.read(channel, StandardCharsets.UTF_8))
+                    .isInstanceOf(IOException.class).hasMessageContaining("EOCD");
+        }
+        try (FileChannel channel = FileChannel.open(tiny, StandardOpenOption.READ)) {
+            assertThatThrownBy(() -> ZipCentralDirectory.read(channel, StandardCharsets.UTF_8))
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void rejectsCentralDirectoryBeyondFile() throws IOException {
+        Path zip = dir.resolve("truncated.zip");
+        Files.write(zip, endOfCentralDirectory(1, 46, 1_000_000));
+        try (FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ)) {
+            assertThatThrownBy(() -> ZipCentralDirectory.read(channel, StandardCharsets.UTF_8))
+                    .isInstanceOf(IOException.class).isNotInstanceOf(ZipCentralDirectory.Zip64Exception.class);
+        }
+    }
+
+    @Test
+    void reportsZip64() throws IOException {
+        Path zip = dir.resolve("zip64.zip");
+        Files.write(zip, endOfCentralDirectory(0xFFFF, 0xFFFFFFFFL, 0xFFFFFFFFL));
+        try (FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ)) {
+            assertThatThrownBy(() -> ZipCentralDirectory.read(channel, StandardCharsets.UTF_8))
+                    .isInstanceOf(ZipCentralDirectory.Zip64Exception.class);
+        }
+    }
+
+    @Test
+    void rejectsDataOffsetWithoutLocalHeader() throws IOException {
+        Path zip = dir.resolve("b.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            deflated(zos, "index.html", new byte[100]);
+        }
+        try (FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ)) {
+            ZipCentralDirectory.Entry entry = ZipCentralDirectory.read(channel, StandardCharsets.UTF_8).entries().get(0);
+            ZipCentralDirectory.Entry shifted = new ZipCentralDirectory.Entry(entry.name(), entry.method(), entry.crc(),
+                    entry.compressedSize(), entry.size(), entry.localHeaderOffset() + 1);
+            assertThatThrownBy(() -> ZipCentralDirectory.dataOffset(channel, shifted))
+                    .isInstanceOf(IOException.class).hasMessageContaining("index.html");
+        }
+    }
+
+    private static void deflated(ZipOutputStream zos, String name, byte[] data) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    private static ZipEntry stored(String name, byte[] data) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc(data));
+        return entry;
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Только запись конца центрального каталога (22 байта) с заданными числом записей, размером и смещением каталога.
+     */
+    private static byte[] endOfCentralDirectory(int entries, long cenSize, long cenOffset) {
+        ByteBuffer eocd = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+        eocd.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+                .putShort((short) entries).putShort((short) entries)
+                .putInt((int) cenSize).putInt((int) cenOffset).putShort((short) 0);
+        return eocd.array();
+    }
+}